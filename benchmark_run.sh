@@ -0,0 +1 @@
+gradle run --args="--benchmark $*" --console=plain
\ No newline at end of file
@@ -0,0 +1,42 @@
+package com.protoevo.benchmarks;
+
+import com.protoevo.biology.cells.Cell;
+import com.protoevo.env.ChemicalSolution;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Diffuses the chemical field of a seeded world on the CPU, and deposits and extracts chemicals
+ * for all of its cells.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChemicalBenchmarks {
+
+    private ChemicalSolution chemicals;
+    private List<Cell> cells;
+
+    @Setup
+    public void setup(WorldState world) {
+        chemicals = world.environment.getChemicalSolution();
+        cells = world.getCells();
+    }
+
+    @Benchmark
+    public int diffusion() {
+        chemicals.fullGridCPUDiffuse();
+        return chemicals.getActiveTileCount();
+    }
+
+    @Benchmark
+    public int deposition() {
+        chemicals.deposit(WorldState.DELTA, cells);
+        return cells.size();
+    }
+}
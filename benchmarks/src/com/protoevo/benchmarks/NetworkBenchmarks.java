@@ -0,0 +1,56 @@
+package com.protoevo.benchmarks;
+
+import com.protoevo.biology.cells.Protozoan;
+import com.protoevo.biology.evolution.GeneExpressionFunction;
+import com.protoevo.biology.nn.NeuralNetwork;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Ticks the gene regulatory networks of the protozoa in a seeded world, on their own and as part
+ * of updating their gene expression functions. Times are for the whole population.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NetworkBenchmarks {
+
+    private List<GeneExpressionFunction> functions;
+    private List<NeuralNetwork> networks;
+
+    @Setup
+    public void setup(WorldState world) {
+        functions = world.protozoa.stream()
+                .map(Protozoan::getGeneExpressionFunction)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        networks = functions.stream()
+                .map(GeneExpressionFunction::getRegulatoryNetwork)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public float neuralNetworkTick() {
+        float sum = 0;
+        for (NeuralNetwork network : networks) {
+            network.tick();
+            sum += network.outputs()[0];
+        }
+        return sum / networks.size();
+    }
+
+    @Benchmark
+    public int geneExpressionUpdate() {
+        for (GeneExpressionFunction fn : functions)
+            fn.update();
+        return functions.size();
+    }
+}
@@ -0,0 +1,58 @@
+package com.protoevo.benchmarks;
+
+import com.protoevo.biology.cells.Protozoan;
+import com.protoevo.biology.nodes.Photoreceptor;
+import com.protoevo.biology.nodes.SurfaceNode;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Casts the rays of photoreceptors on the protozoa of a seeded world against the objects their
+ * cells can see. Protozoa that have not grown a photoreceptor by the end of the warmup are given
+ * one on their first free node, so that every protozoan senses. Times are for every photoreceptor
+ * sensing once.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PhotoreceptorBenchmark {
+
+    private final List<Photoreceptor> photoreceptors = new ArrayList<>();
+    private final float[] input = new float[1], output = new float[3];
+
+    @Setup
+    public void setup(WorldState world) {
+        for (Protozoan protozoan : world.protozoa) {
+            Photoreceptor photoreceptor = null;
+            SurfaceNode freeNode = null;
+            for (SurfaceNode node : protozoan.getSurfaceNodes()) {
+                if (node.getAttachment() instanceof Photoreceptor)
+                    photoreceptor = (Photoreceptor) node.getAttachment();
+                else if (freeNode == null && !node.hasAttachment())
+                    freeNode = node;
+            }
+            if (photoreceptor == null && freeNode != null) {
+                photoreceptor = new Photoreceptor(freeNode);
+                freeNode.setAttachment(photoreceptor);
+            }
+            if (photoreceptor != null)
+                photoreceptors.add(photoreceptor);
+        }
+    }
+
+    @Benchmark
+    public float sense() {
+        float sum = 0;
+        for (Photoreceptor photoreceptor : photoreceptors) {
+            photoreceptor.update(WorldState.DELTA, input, output);
+            sum += output[0] + output[1] + output[2];
+        }
+        return sum / Math.max(1, photoreceptors.size());
+    }
+}
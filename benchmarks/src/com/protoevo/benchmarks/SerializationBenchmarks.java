@@ -0,0 +1,38 @@
+package com.protoevo.benchmarks;
+
+import com.protoevo.env.Environment;
+import com.protoevo.env.Serialization;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialises a seeded world to bytes and back, as done when saving and loading.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmarks {
+
+    private Environment environment;
+    private byte[] bytes;
+
+    @Setup
+    public void setup(WorldState world) {
+        environment = world.environment;
+        bytes = Serialization.toBytes(environment, Environment.class);
+    }
+
+    @Benchmark
+    public int toBytes() {
+        return Serialization.toBytes(environment, Environment.class).length;
+    }
+
+    @Benchmark
+    public Environment fromBytes() {
+        return Serialization.fromBytes(bytes, Environment.class);
+    }
+}
@@ -0,0 +1,51 @@
+package com.protoevo.benchmarks;
+
+import com.protoevo.biology.cells.Cell;
+import com.protoevo.env.Chunks;
+import com.protoevo.physics.SpatialHash;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rebuilds the spatial indices of a seeded world from scratch, and updates them after the cells
+ * have moved for a tick.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SpatialBenchmarks {
+
+    private List<Cell> cells;
+    private Chunks chunks;
+    private SpatialHash<Cell> hash;
+
+    @Setup
+    public void setup(WorldState world) {
+        cells = world.getCells();
+        chunks = world.environment.getChunks();
+        hash = new SpatialHash<>(
+                world.environment.getSettings().misc.spatialHashResolution.get(),
+                1.5f * world.environment.getRadius());
+    }
+
+    @Benchmark
+    public int spatialHashRebuild() {
+        return hash.rebuild(cells, Cell::getPos).length;
+    }
+
+    @Benchmark
+    public int chunksRebuild() {
+        chunks.rebuild(cells);
+        return chunks.getNumChunks();
+    }
+
+    @Benchmark
+    public int chunksUpdate() {
+        return chunks.update(cells);
+    }
+}
@@ -0,0 +1,36 @@
+package com.protoevo.benchmarks;
+
+import com.protoevo.biology.cells.Protozoan;
+import com.protoevo.core.Statistics;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Summarises the statistics of every protozoan in a seeded world, as done for the statistics
+ * snapshots.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StatisticsBenchmark {
+
+    private List<Statistics> protozoaStats;
+
+    @Setup
+    public void setup(WorldState world) {
+        protozoaStats = world.protozoa.stream()
+                .map(Protozoan::getAllStats)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public Statistics computeSummaryStatistics() {
+        return Statistics.computeSummaryStatistics(protozoaStats.iterator(), true);
+    }
+}
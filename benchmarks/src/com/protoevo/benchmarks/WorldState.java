@@ -0,0 +1,69 @@
+package com.protoevo.benchmarks;
+
+import com.badlogic.gdx.physics.box2d.Box2D;
+import com.protoevo.biology.cells.Cell;
+import com.protoevo.biology.cells.Protozoan;
+import com.protoevo.env.Environment;
+import com.protoevo.settings.SimulationSettings;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A world generated from a fixed seed and simulated for a fixed number of ticks, shared by the
+ * benchmarks of a trial so that results are comparable across commits.
+ * <p>
+ * GPU diffusion is disabled, so the world can be created without a window and chemicals are
+ * diffused by the full-grid CPU path.
+ */
+@State(Scope.Benchmark)
+public class WorldState {
+
+    public static final long SEED = 1;
+    public static final int WARMUP_TICKS = 300;
+    public static final float DELTA = 1 / 60f;
+
+    public Environment environment;
+    public List<Protozoan> protozoa;
+
+    public static Environment createWorld(long seed, int ticks) {
+        Box2D.init();
+
+        SimulationSettings settings = SimulationSettings.createDefault();
+        settings.simulationSeed.set(seed);
+        settings.worldgen.seed.set(seed);
+        settings.misc.useCUDA.set(false);
+        settings.misc.useOpenGLComputeShader.set(false);
+        settings.misc.useFullGridCPUDiffusion.set(true);
+
+        Environment environment = new Environment(settings);
+        environment.initialise();
+        for (int i = 0; i < ticks; i++)
+            environment.update(DELTA);
+        return environment;
+    }
+
+    @Setup
+    public void setup() {
+        environment = createWorld(SEED, WARMUP_TICKS);
+        protozoa = environment.getCells().stream()
+                .filter(cell -> cell instanceof Protozoan && !cell.isDead())
+                .map(cell -> (Protozoan) cell)
+                .collect(Collectors.toList());
+    }
+
+    public List<Cell> getCells() {
+        return environment.getCells().stream()
+                .filter(cell -> !cell.isDead())
+                .collect(Collectors.toList());
+    }
+
+    @TearDown
+    public void tearDown() {
+        environment.dispose();
+    }
+}
@@ -1,17 +1,17 @@
 package com.protoevo.biology;
 
-import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector2;
 import com.protoevo.biology.cells.Cell;
 import com.protoevo.biology.cells.MeatCell;
 import com.protoevo.biology.cells.Protozoan;
-import com.protoevo.core.Simulation;
 import com.protoevo.env.Environment;
 import com.protoevo.physics.Particle;
 import com.protoevo.maths.Geometry;
 import com.protoevo.utils.SerializableFunction;
+import com.protoevo.maths.RandomStreams;
 
 import java.io.Serializable;
+import java.util.Optional;
 
 
 public class BurstRequest<T extends Cell> implements Serializable {
@@ -73,26 +73,27 @@ public class BurstRequest<T extends Cell> implements Serializable {
 
         parent.setHasBurst(true);
 
-        float angle = (float) (2 * Math.PI * Simulation.RANDOM.nextDouble());
+        float angle = (float) (2 * Math.PI * RandomStreams.current().nextDouble());
 
         float volume = Geometry.getSphereVolume(parent.getRadius());
-        float minVolume = Geometry.getSphereVolume(Environment.settings.minParticleRadius.get());
+        float minVolume = Geometry.getSphereVolume(Environment.settings().minParticleRadius.get());
         int maxChildren = Math.min(6, (int) (volume / minVolume));
 
         int nChildren = 2;
         if (maxChildren > 2) {
             int chances = parent.burstMultiplier();
             for (int i = 0; i < chances; i++)
-                nChildren = Math.max(nChildren, MathUtils.random(2, maxChildren));
+                nChildren = Math.max(nChildren, RandomStreams.random(2, maxChildren));
         }
 
         for (int i = 0; i < nChildren; i++) {
             Vector2 dir = new Vector2((float) Math.cos(angle), (float) Math.sin(angle));
-            float p = 0.3f + 0.7f * MathUtils.random() / nChildren;
+            float p = 0.3f + 0.7f * RandomStreams.random() / nChildren;
 
             T child = createChild.apply(parent.getRadius() * p);
             Particle childParticle = child.getParticle();
-            childParticle.setPos(parent.getParticle().getPos().cpy().add(dir.scl(2 * childParticle.getRadius())));
+            Vector2 childPos = parent.getParticle().getPos().cpy().add(dir.scl(2 * childParticle.getRadius()));
+            placeChild(child, childPos);
             childParticle.applyImpulse(dir.scl(.005f));
 
             child.setGeneration(parent.getGeneration() + 1);
@@ -102,6 +103,19 @@ public class BurstRequest<T extends Cell> implements Serializable {
         }
     }
 
+    private void placeChild(Cell child, Vector2 childPos) {
+        Optional<Environment> maybeEnv = parent.getEnv();
+        if (!maybeEnv.isPresent()) {
+            child.getParticle().setPos(childPos);
+            return;
+        }
+        Environment environment = maybeEnv.get();
+        // Keep children out of rocks by falling back to the parent's centre
+        if (environment.overlapsRock(childPos, child.getRadius()))
+            childPos.set(parent.getPos());
+        environment.setSpawnPosition(child, childPos);
+    }
+
     public void allocateChildResources(Cell child, float p) {
         child.setAvailableConstructionMass(parent.getConstructionMassAvailable() * p);
         child.setEnergyAvailable(parent.getEnergyAvailable() * p);
@@ -111,8 +125,10 @@ public class BurstRequest<T extends Cell> implements Serializable {
 //        for (CellAdhesion.CAM cam : parent.getSurfaceCAMs())
 //            child.setCAMAvailable(cam, p * parent.getCAMAvailable(cam));
 
-        for (Food.Type foodType : parent.getFoodToDigest().keySet()) {
-            Food oldFood = parent.getFoodToDigest().get(foodType);
+        for (Food.Type foodType : Food.Type.values()) {
+            Food oldFood = parent.getFoodToDigest(foodType);
+            if (oldFood == null)
+                continue;
             Food newFood = new Food(p * oldFood.getSimpleMass(), foodType);
             if (newFood.getSimpleMass() <= 1e-12)
                 continue;
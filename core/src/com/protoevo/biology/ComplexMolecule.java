@@ -1,10 +1,10 @@
 package com.protoevo.biology;
 
+import com.protoevo.core.SimulationContext;
 import com.protoevo.env.Environment;
+import com.protoevo.settings.SimulationSettings;
 
 import java.io.Serializable;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * Complex molecules are required for the construction of specialised cell behaviour.
@@ -14,13 +14,23 @@ public class ComplexMolecule implements Serializable {
     public static final long serialVersionUID = 1L;
 
     private final float signature, productionCost;
+    private final int index;
 
-    private final static Map<Float, ComplexMolecule> cache = new HashMap<>(
-            Environment.settings.possibleMolecules.get(), 1);
-
-    private ComplexMolecule(float signature, float productionCost) {
+    private ComplexMolecule(float signature, float productionCost, int possibleMolecules) {
         this.signature = signature;
         this.productionCost = productionCost;
+        this.index = Math.round(signature * possibleMolecules);
+    }
+
+    /**
+     * @return the number of distinct indices that molecules may have
+     */
+    public static int numPossibleIndices() {
+        return numPossibleIndices(Environment.settings());
+    }
+
+    public static int numPossibleIndices(SimulationSettings settings) {
+        return settings.possibleMolecules.get() + 1;
     }
 
     /**
@@ -34,18 +44,30 @@ public class ComplexMolecule implements Serializable {
         return signature;
     }
 
+    /**
+     * @return the bucket the signature was quantised to, from 0 to the number of possible molecules
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Molecules are cached by the context of the simulation, since their quantisation and cost
+     * depend on its settings. Two threads may race to create the same molecule, which is harmless
+     * as molecules are compared by signature.
+     */
     public static ComplexMolecule fromSignature(float signature) {
-        int possibleMolecules = Environment.settings.possibleMolecules.get();
+        SimulationContext context = SimulationContext.current();
+        SimulationSettings settings = context.getSettings();
+        int possibleMolecules = settings.possibleMolecules.get();
         signature = (float) (Math.floor(signature * possibleMolecules) / possibleMolecules);
-        if (!cache.containsKey(signature) || cache.get(signature) == null) {
-            ComplexMolecule molecule = new ComplexMolecule(
-                    signature, Environment.settings.moleculeProductionEnergyCost.get());
-            cache.put(signature, molecule);
-            return molecule;
-        }
-        ComplexMolecule molecule = cache.get(signature);
-        if (molecule == null) {
-            throw new RuntimeException("Molecule cache is null");
+        int index = Math.max(0, Math.min(possibleMolecules, Math.round(signature * possibleMolecules)));
+        ComplexMolecule[] cache = context.getMoleculeCache();
+        ComplexMolecule molecule = cache[index];
+        if (molecule == null || molecule.signature != signature) {
+            molecule = new ComplexMolecule(
+                    signature, settings.moleculeProductionEnergyCost.get(), possibleMolecules);
+            cache[index] = molecule;
         }
         return molecule;
     }
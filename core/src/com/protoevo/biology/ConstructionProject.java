@@ -43,13 +43,13 @@ public class ConstructionProject implements Serializable {
 
     public boolean canMakeProgress(float availableEnergy,
                                    float availableMass,
-                                   Map<ComplexMolecule, Float> availableComplexMolecules,
+                                   MoleculeAmounts availableComplexMolecules,
                                    float delta) {
         if (availableEnergy < energyToMakeProgress(delta) || availableMass < massToMakeProgress(delta))
             return false;
         if (requiresComplexMolecules() && availableComplexMolecules != null)
             for (ComplexMolecule molecule : getRequiredMolecules()) {
-                float available = availableComplexMolecules.getOrDefault(molecule, 0f);
+                float available = availableComplexMolecules.get(molecule);
                 if (available < complexMoleculesToMakeProgress(delta, molecule))
                     return false;
             }
@@ -4,8 +4,6 @@ import com.protoevo.env.Environment;
 
 import java.io.Serializable;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
 
 public class Food implements Serializable {
 
@@ -15,9 +13,9 @@ public class Food implements Serializable {
         public float getEnergyDensity() {
             switch (this) {
                 case Plant:
-                    return Environment.settings.plantEnergyDensity.get();
+                    return Environment.settings().plantEnergyDensity.get();
                 case Meat:
-                    return Environment.settings.meatEnergyDensity.get();
+                    return Environment.settings().meatEnergyDensity.get();
                 default:
                     return 0;
             }
@@ -30,16 +28,11 @@ public class Food implements Serializable {
 
     private float mass, energy;
     private final Type type;
-    private final Map<ComplexMolecule, Float> complexMoleculeMasses;
+    private final MoleculeAmounts complexMoleculeMasses = new MoleculeAmounts();
 
-    public Food(float mass, Type foodType, HashMap<ComplexMolecule, Float> complexMoleculeMass) {
+    public Food(float mass, Type foodType) {
         this.mass = mass;
         this.type = foodType;
-        this.complexMoleculeMasses = complexMoleculeMass;
-    }
-
-    public Food(float mass, Type foodType) {
-        this(mass, foodType, new HashMap<>(0));
     }
 
     public Type getType() {
@@ -63,19 +56,15 @@ public class Food implements Serializable {
     }
 
     public float getComplexMoleculeMass(ComplexMolecule molecule) {
-        return complexMoleculeMasses.getOrDefault(molecule, 0f);
+        return complexMoleculeMasses.get(molecule);
     }
 
     public float getMass() {
-        float totalMass = mass;
-        for (float complexMoleculeMass : complexMoleculeMasses.values()) {
-            totalMass += complexMoleculeMass;
-        }
-        return totalMass;
+        return mass + complexMoleculeMasses.total();
     }
 
     public Collection<ComplexMolecule> getComplexMolecules() {
-        return complexMoleculeMasses.keySet();
+        return complexMoleculeMasses.molecules();
     }
 
     public void subtractComplexMolecule(ComplexMolecule molecule, float extracted) {
@@ -83,18 +72,12 @@ public class Food implements Serializable {
         complexMoleculeMasses.put(molecule, Math.max(0, currentAmount - extracted));
     }
 
-    public Map<ComplexMolecule, Float> getComplexMoleculeMasses() {
+    public MoleculeAmounts getComplexMoleculeMasses() {
         return complexMoleculeMasses;
     }
 
-    public void addComplexMolecules(Map<ComplexMolecule, Float> masses) {
-        for (ComplexMolecule molecule : masses.keySet())
-            addComplexMoleculeMass(molecule, masses.get(molecule));
-    }
-
     public void addComplexMoleculeMass(ComplexMolecule molecule, float mass) {
-        float currentMass = complexMoleculeMasses.getOrDefault(molecule, 0f);
-        complexMoleculeMasses.put(molecule, currentMass + mass);
+        complexMoleculeMasses.add(molecule, mass);
     }
 
     public float getEnergy(float m) {
@@ -108,14 +91,13 @@ public class Food implements Serializable {
 
     public float getDecayRate() {
         return this.type == Type.Plant ?
-                Environment.settings.plantDecayRate.get() : Environment.settings.meatDecayRate.get();
+                Environment.settings().plantDecayRate.get() : Environment.settings().meatDecayRate.get();
     }
 
     public void decay(float delta) {
         float decay = Math.max(0, 1f - getDecayRate() * delta);
         mass = Math.max(0, mass - decay);
         energy = Math.max(0, energy - decay);
-        complexMoleculeMasses.replaceAll((m, v) -> complexMoleculeMasses.get(m)
-                * Environment.settings.cell.complexMoleculeDecayRate.get());
+        complexMoleculeMasses.scale(Environment.settings().cell.complexMoleculeDecayRate.get());
     }
 }
@@ -0,0 +1,153 @@
+package com.protoevo.biology;
+
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Amounts of complex molecules, keyed by each molecule's {@link ComplexMolecule#getIndex() index}.
+ * <p>
+ * The molecules and their amounts are held in compact primitive arrays in the order they were
+ * added, so that the few molecules a cell usually has can be visited with {@link #size()},
+ * {@link #getMolecule(int)} and {@link #getAmount(int)} without boxing or hashing. A small array
+ * indexed by molecule index maps each molecule to its position. Molecules keep their entry once
+ * added, even if their amount falls to zero. Nothing is allocated until the first molecule is
+ * added.
+ * <p>
+ * The amounts are not thread-safe. Code sharing them between threads has to synchronise on
+ * them, as the iterator of {@link #molecules()} does for each step, so that it can be used while
+ * molecules are added.
+ */
+public class MoleculeAmounts implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private short[] positions;
+    private ComplexMolecule[] molecules;
+    private float[] amounts;
+    private int size = 0;
+
+    private int positionOf(int index) {
+        short[] positions = this.positions;
+        return positions == null || index >= positions.length ? -1 : positions[index] - 1;
+    }
+
+    private int append(ComplexMolecule molecule) {
+        int index = molecule.getIndex();
+        if (positions == null) {
+            positions = new short[Math.max(index + 1, ComplexMolecule.numPossibleIndices())];
+            molecules = new ComplexMolecule[2];
+            amounts = new float[2];
+        } else if (index >= positions.length) {
+            positions = Arrays.copyOf(positions, index + 1);
+        }
+        if (size == molecules.length) {
+            molecules = Arrays.copyOf(molecules, 2 * size);
+            amounts = Arrays.copyOf(amounts, 2 * size);
+        }
+        molecules[size] = molecule;
+        positions[index] = (short) (size + 1);
+        return size++;
+    }
+
+    public float get(ComplexMolecule molecule) {
+        int position = positionOf(molecule.getIndex());
+        return position < 0 ? 0f : amounts[position];
+    }
+
+    public boolean contains(ComplexMolecule molecule) {
+        return positionOf(molecule.getIndex()) >= 0;
+    }
+
+    public void put(ComplexMolecule molecule, float amount) {
+        int position = positionOf(molecule.getIndex());
+        if (position < 0)
+            position = append(molecule);
+        amounts[position] = amount;
+    }
+
+    public void add(ComplexMolecule molecule, float amount) {
+        int position = positionOf(molecule.getIndex());
+        if (position < 0) {
+            position = append(molecule);
+            amounts[position] = amount;
+        } else {
+            amounts[position] += amount;
+        }
+    }
+
+    /**
+     * @return the number of molecules that have an entry
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the i-th molecule with an entry, for i from 0 to {@link #size()} - 1
+     */
+    public ComplexMolecule getMolecule(int i) {
+        return molecules[i];
+    }
+
+    public float getAmount(int i) {
+        return amounts[i];
+    }
+
+    public void setAmount(int i, float amount) {
+        amounts[i] = amount;
+    }
+
+    public float total() {
+        float total = 0;
+        for (int i = 0; i < size; i++)
+            total += amounts[i];
+        return total;
+    }
+
+    public void scale(float factor) {
+        for (int i = 0; i < size; i++)
+            amounts[i] *= factor;
+    }
+
+    /**
+     * @return a view of the molecules that have an entry
+     */
+    public Collection<ComplexMolecule> molecules() {
+        return new AbstractCollection<ComplexMolecule>() {
+            @Override
+            public Iterator<ComplexMolecule> iterator() {
+                return new Iterator<ComplexMolecule>() {
+                    private int next = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        synchronized (MoleculeAmounts.this) {
+                            return next < size;
+                        }
+                    }
+
+                    @Override
+                    public ComplexMolecule next() {
+                        synchronized (MoleculeAmounts.this) {
+                            if (next >= size)
+                                throw new NoSuchElementException();
+                            return getMolecule(next++);
+                        }
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+}
@@ -16,10 +16,10 @@ import com.protoevo.physics.Joining;
 import com.protoevo.physics.Particle;
 import com.protoevo.utils.Colour;
 import com.protoevo.maths.Geometry;
+import com.protoevo.maths.RandomStreams;
 
 import java.io.Serializable;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 import static com.protoevo.maths.Functions.lerp;
@@ -37,36 +37,40 @@ public abstract class Cell implements Serializable, Coloured, Spawnable {
 	private float health = 1f;
 	private DamageEvent lastDamageEvent = null;
 	private float growthRate = 0.0f;
-	private float energyAvailable = Environment.settings.cell.startingAvailableCellEnergy.get();
-	private double constructionMassAvailable = Environment.settings.cell.startingAvailableConstructionMass.get();
+	private float energyAvailable = Environment.settings().cell.startingAvailableCellEnergy.get();
+	private double constructionMassAvailable = Environment.settings().cell.startingAvailableConstructionMass.get();
 	private double massChangeForGrowth = 0f;
-	private double radius = Environment.settings.minParticleRadius.get() * (1 + 2 * Math.random());
-	private final Map<ComplexMolecule, Float> availableComplexMolecules = new ConcurrentHashMap<>(0);
+	private double radius = Environment.settings().minParticleRadius.get() * (1 + 2 * RandomStreams.random());
+	// other cells move molecules in and out while this cell updates, so every access locks the amounts
+	private final MoleculeAmounts availableComplexMolecules = new MoleculeAmounts();
 	private final Collection<Long> attachedCellIDs = new ConcurrentLinkedQueue<>(); // cells attached to this cell
 	private final Set<Long> cellIdsInMultiCellGroup = new HashSet<>(0); // cells in the same multi-cell group
-	private final Map<Food.Type, Float> foodDigestionRates = new HashMap<>(0);
-	private final Map<Food.Type, Food> foodToDigest = new HashMap<>(0);
-	private final Set<ConstructionProject> constructionProjects = new LinkedHashSet<>(0);
+	private final float[] foodDigestionRates = new float[Food.Type.numTypes()];  // by food type ordinal
+	private final Food[] foodToDigest = new Food[Food.Type.numTypes()];  // by food type ordinal
+	private final List<ConstructionProject> constructionProjects = new ArrayList<>(0);
 	private ArrayList<Organelle> organelles = new ArrayList<>();
 	private boolean hasBurst = false;
 	private float repairRate = 1f;
 	private float activity = 0f, lastActivity = 0f;
-	private float idealTemperature = Environment.settings.env.maxLightEnvTemp.get();
+	private float idealTemperature = Environment.settings().env.maxLightEnvTemp.get();
 	private float temperature = idealTemperature;
-	private float temperatureTolerance = Environment.settings.cell.minTemperatureTolerance.get();
+	private float temperatureTolerance = Environment.settings().cell.minTemperatureTolerance.get();
 	private float membraneThermalConductance = 1f;
 	private float temperatureSatisfaction = 0f;
 
 	private Cell engulfer = null;
 	private boolean fullyEngulfed = false;
 	private float joiningCheckCounter = 0f;
+	private transient int chunkIndex = -1;
+	private transient CellStates states;
+	private transient int stateSlot = -1;
 
 	public void update(float delta) {
 		if (particle.isDead()) {
 			kill(particle.getCauseOfDeath());
 			return;
 		}
-		if (health <= 0.05f && !particle.isDead()) {
+		if (getRawHealth() <= 0.05f && !particle.isDead()) {
 			kill(CauseOfDeath.HEALTH_TOO_LOW);
 			return;
 		}
@@ -79,7 +83,8 @@ public abstract class Cell implements Serializable, Coloured, Spawnable {
 		particle.update(delta);
 		timeAlive += delta;
 
-		voidDamage(delta);
+		if (states == null)  // otherwise applied across all cells by the environment's cell states
+			voidDamage(delta);
 		digest(delta);
 		grow(delta);
 		repair(delta);
@@ -88,7 +93,7 @@ public abstract class Cell implements Serializable, Coloured, Spawnable {
 			organelle.update(delta);
 
 
-		if (joiningCheckCounter >= Environment.settings.misc.checkCellJoiningsInterval.get()) {
+		if (joiningCheckCounter >= Environment.settings().misc.checkCellJoiningsInterval.get()) {
 			particle.getJoiningIds().entrySet().removeIf(this::detachCellCondition);
 			attachedCellIDs.clear();
 			attachedCellIDs.addAll(particle.getJoiningIds().keySet());
@@ -101,18 +106,17 @@ public abstract class Cell implements Serializable, Coloured, Spawnable {
 
 	public void handleTemperature(float delta) {
 		float envTemp = getExternalTemperature();
-		temperature = Functions.lerp(
-				temperature, envTemp, membraneThermalConductance * delta);
+		float temperature = Functions.lerp(
+				getInternalTemperature(), envTemp, membraneThermalConductance * delta);
 		for (Long otherId : getAttachedCellIDs()) {
-			Optional<Cell> other = getCell(otherId);
-			other.ifPresent(cell -> {
-				float otherTemp = cell.getInternalTemperature();
+			Cell other = findCell(otherId);
+			if (other != null)
 				temperature = Functions.lerp(
-						temperature, otherTemp, membraneThermalConductance * delta);
-			});
+						temperature, other.getInternalTemperature(), membraneThermalConductance * delta);
 		}
 
-		temperature += delta * activity * Environment.settings.cell.activityHeatGeneration.get();
+		temperature += delta * activity * Environment.settings().cell.activityHeatGeneration.get();
+		setInternalTemperature(temperature);
 
 		updateTemperatureSatisfaction(delta);
 		handleTemperatureDamage(delta);
@@ -121,14 +125,15 @@ public abstract class Cell implements Serializable, Coloured, Spawnable {
 	private void updateTemperatureSatisfaction(float delta) {
 		float tolerance = temperatureTolerance;
 
-		float energyRequired = delta * tolerance * Environment.settings.cell.temperatureToleranceEnergyCost.get();
+		float energyRequired = delta * tolerance * Environment.settings().cell.temperatureToleranceEnergyCost.get();
 		if (getEnergyAvailable() < energyRequired) {
 			tolerance = Math.max(
-					Environment.settings.cell.minTemperatureTolerance.get(),
+					Environment.settings().cell.minTemperatureTolerance.get(),
 					tolerance * getEnergyAvailable() / energyRequired);
 		}
 		depleteEnergy(energyRequired);
 
+		float temperature = getInternalTemperature();
 		if (temperature < idealTemperature - tolerance) {
 			temperatureSatisfaction = Functions.clampedLinearRemap(
 					temperature,
@@ -150,8 +155,8 @@ public abstract class Cell implements Serializable, Coloured, Spawnable {
 
 	private void handleTemperatureDamage(float delta) {
 		if (temperatureSatisfaction < 1f) {
-			float damage = delta * (1 - temperatureSatisfaction) * Environment.settings.cell.temperatureDeathRate.get();
-			if (temperature < idealTemperature)
+			float damage = delta * (1 - temperatureSatisfaction) * Environment.settings().cell.temperatureDeathRate.get();
+			if (getInternalTemperature() < idealTemperature)
 				damage(damage, CauseOfDeath.HYPOTHERMIA);
 			else
 				damage(damage, CauseOfDeath.HYPERTHERMIA);
@@ -177,7 +182,14 @@ public abstract class Cell implements Serializable, Coloured, Spawnable {
 	}
 
 	public float getInternalTemperature() {
-		return temperature;
+		return states == null ? temperature : states.temperature[stateSlot];
+	}
+
+	private void setInternalTemperature(float t) {
+		if (states == null)
+			temperature = t;
+		else
+			states.temperature[stateSlot] = t;
 	}
 
 	public void setIdealTemperature(float t) {
@@ -201,23 +213,35 @@ public abstract class Cell implements Serializable, Coloured, Spawnable {
 	}
 
 	public void decayResources(float delta) {
-		foodToDigest.values().forEach(food -> food.decay(delta));
+		for (Food food : foodToDigest)
+			if (food != null)
+				food.decay(delta);
 
-		depleteEnergy(delta * Environment.settings.cell.energyDecayRate.get());
+		if (states == null)  // otherwise applied across all cells by the environment's cell states
+			depleteEnergy(delta * Environment.settings().cell.energyDecayRate.get());
 
-		for (ComplexMolecule molecule : availableComplexMolecules.keySet()) {
-			depleteComplexMolecule(molecule, delta * Environment.settings.cell.complexMoleculeDecayRate.get());
+		float moleculeDecay = delta * Environment.settings().cell.complexMoleculeDecayRate.get();
+		synchronized (availableComplexMolecules) {
+			for (int i = 0; i < availableComplexMolecules.size(); i++)
+				availableComplexMolecules.setAmount(i, Math.max(0, availableComplexMolecules.getAmount(i) - moleculeDecay));
 		}
 	}
 
 	public void voidDamage(float delta) {
 		if (particle.getPos().len2() > getVoidStartDistance2())
-			damage(delta * Environment.settings.env.voidDamagePerSecond.get(), CauseOfDeath.THE_VOID);
+			damage(delta * Environment.settings().env.voidDamagePerSecond.get(), CauseOfDeath.THE_VOID);
 	}
 
 	protected float getVoidStartDistance2() {
-		return Environment.settings.worldgen.voidStartDistance.get()
-				* Environment.settings.worldgen.voidStartDistance.get();
+		float voidStartDistance = getVoidStartScale() * Environment.settings().worldgen.voidStartDistance.get();
+		return voidStartDistance * voidStartDistance;
+	}
+
+	/**
+	 * @return the fraction of the void start distance at which this kind of cell starts taking void damage
+	 */
+	protected float getVoidStartScale() {
+		return 1f;
 	}
 
 	public void requestJointRemoval(Long joiningId) {
@@ -260,14 +284,29 @@ public abstract class Cell implements Serializable, Coloured, Spawnable {
 		this.environment = env;
 	}
 
-	public Optional<Cell> getCell(Long id) {
-		return getEnv().flatMap(env -> env.getCell(id));
+	public Optional<Cell> getCell(long id) {
+		return Optional.ofNullable(findCell(id));
+	}
+
+	/**
+	 * @return the cell with the given id, or null if there is none
+	 */
+	public Cell findCell(long id) {
+		return environment == null ? null : environment.findCell(id);
 	}
 
 	public long getId() {
 		return particle.getId();
 	}
 
+	public int getChunkIndex() {
+		return chunkIndex;
+	}
+
+	public void setChunkIndex(int chunkIndex) {
+		this.chunkIndex = chunkIndex;
+	}
+
 	public Particle getParticle() {
 		return particle;
 	}
@@ -289,17 +328,22 @@ public abstract class Cell implements Serializable, Coloured, Spawnable {
 	}
 
 	public void progressConstructionProjects(float delta) {
-		for (ConstructionProject project : constructionProjects) {
-			progressProject(project, delta);
-		}
+		for (int i = 0; i < constructionProjects.size(); i++)
+			progressProject(constructionProjects.get(i), delta);
 	}
 
 	public void progressProject(ConstructionProject project, float delta) {
-		if (delta > 0 && project.notFinished() && project.canMakeProgress(
-				energyAvailable,
-				(float) constructionMassAvailable,
-				availableComplexMolecules,
-				delta)) {
+		if (delta <= 0 || !project.notFinished())
+			return;
+		boolean canMakeProgress;
+		synchronized (availableComplexMolecules) {
+			canMakeProgress = project.canMakeProgress(
+					getEnergyAvailable(),
+					getConstructionMassAvailable(),
+					availableComplexMolecules,
+					delta);
+		}
+		if (canMakeProgress) {
 			depleteEnergy(project.energyToMakeProgress(delta));
 			depleteConstructionMass(project.massToMakeProgress(delta));
 			if (project.requiresComplexMolecules())
@@ -312,18 +356,18 @@ public abstract class Cell implements Serializable, Coloured, Spawnable {
 	}
 
 	public float getDigestionRate(Food.Type foodType) {
-		return foodDigestionRates.getOrDefault(foodType, 0f);
+		return foodDigestionRates[foodType.ordinal()];
 	}
 
 	public void setDigestionRate(Food.Type foodType, float rate) {
-		foodDigestionRates.put(foodType, rate);
+		foodDigestionRates[foodType.ordinal()] = rate;
 	}
 
 	public float getTotalFoodMassToDigest() {
 		float total = 0;
-		for (Food food : foodToDigest.values()) {
-			total += food.getSimpleMass();
-		}
+		for (Food food : foodToDigest)
+			if (food != null)
+				total += food.getSimpleMass();
 		return total;
 	}
 
@@ -338,57 +382,62 @@ public abstract class Cell implements Serializable, Coloured, Spawnable {
 
 		Food.Type foodType = engulfed instanceof PlantCell ? Food.Type.Plant : Food.Type.Meat;
 		float extractedMass = engulfed.getMass() * extraction;
-		float removeMultiplier = Environment.settings.cell.engulfExtractionWasteMultiplier.get();
+		float removeMultiplier = Environment.settings().cell.engulfExtractionWasteMultiplier.get();
 		engulfed.removeMass(removeMultiplier * extractedMass, CauseOfDeath.EATEN);
 
-		Food food;
-		if (foodToDigest.containsKey(foodType))
-			food = foodToDigest.get(foodType);
-		else {
+		Food food = foodToDigest[foodType.ordinal()];
+		if (food == null) {
 			food = new Food(extractedMass, foodType);
-			foodToDigest.put(foodType, food);
+			foodToDigest[foodType.ordinal()] = food;
 		}
 
 		food.addSimpleMass(extractedMass);
 		food.addEnergy(engulfed.getEnergyAvailable() * extraction);
 
-		for (ComplexMolecule molecule : engulfed.getComplexMolecules()) {
-			if (engulfed.getComplexMoleculeAvailable(molecule) > 0) {
-				float extractedAmount = extraction * engulfed.getComplexMoleculeAvailable(molecule);
-				engulfed.depleteComplexMolecule(molecule, extractedAmount);
-				if (extractedAmount <= 1e-12)
-					continue;
-				food.addComplexMoleculeMass(molecule, extractedMass);
+		MoleculeAmounts engulfedMolecules = engulfed.availableComplexMolecules;
+		synchronized (engulfedMolecules) {
+			for (int i = 0; i < engulfedMolecules.size(); i++) {
+				float available = engulfedMolecules.getAmount(i);
+				if (available > 0) {
+					float extractedAmount = extraction * available;
+					engulfedMolecules.setAmount(i, Math.max(0, available - extractedAmount));
+					if (extractedAmount <= 1e-12)
+						continue;
+					food.addComplexMoleculeMass(engulfedMolecules.getMolecule(i), extractedMass);
+				}
 			}
 		}
 	}
 
 	public void addFood(Food.Type foodType, float amount) {
-		Food food = foodToDigest.getOrDefault(foodType, new Food(amount, foodType));
+		Food food = foodToDigest[foodType.ordinal()];
+		if (food == null) {
+			food = new Food(amount, foodType);
+			foodToDigest[foodType.ordinal()] = food;
+		}
 		food.addSimpleMass(amount);
-		foodToDigest.put(foodType, food);
 	}
 
 	public void digest(float delta) {
-		if (foodToDigest.isEmpty())
-			return;  // avoids creating iterator if there's nothing to digest
-
-		for (Food food : foodToDigest.values()) {
-			float rate = delta * Environment.settings.cell.digestionFactor.get() * getDigestionRate(food.getType());
-			activity += rate * Environment.settings.cell.digestionActivity.get();
+		for (Food food : foodToDigest) {
+			if (food == null)
+				continue;
+			float rate = delta * Environment.settings().cell.digestionFactor.get() * getDigestionRate(food.getType());
+			activity += rate * Environment.settings().cell.digestionActivity.get();
 			if (food.getSimpleMass() > 0) {
 				float massExtracted = food.getSimpleMass() * rate;
 				addConstructionMass(massExtracted);
 				food.subtractSimpleMass(massExtracted);
 				addAvailableEnergy(food.getEnergy(massExtracted));
 			}
-			for (ComplexMolecule molecule : food.getComplexMolecules()) {
-				float amount = food.getComplexMoleculeMass(molecule);
+			MoleculeAmounts molecules = food.getComplexMoleculeMasses();
+			for (int i = 0; i < molecules.size(); i++) {
+				float amount = molecules.getAmount(i);
 				if (amount == 0)
 					continue;
 				float extracted = Math.min(amount, amount * rate);
-				addAvailableComplexMolecule(molecule, extracted);
-				food.subtractComplexMolecule(molecule, extracted);
+				addAvailableComplexMolecule(molecules.getMolecule(i), extracted);
+				molecules.setAmount(i, Math.max(0, amount - extracted));
 			}
 		}
 	}
@@ -396,18 +445,18 @@ public abstract class Cell implements Serializable, Coloured, Spawnable {
 	public void repair(float delta) {
 		if (!isDead() && getHealth() < 1f && getRepairRate() > 0) {
 			float repair = delta * getRepairRate();
-			float massRequired = getBaseMass() * Environment.settings.cell.repairMassFactor.get() * repair;
-			float energyRequired = massRequired * Environment.settings.cell.repairEnergyFactor.get();
-			if (massRequired < constructionMassAvailable && energyRequired < energyAvailable) {
+			float massRequired = getBaseMass() * Environment.settings().cell.repairMassFactor.get() * repair;
+			float energyRequired = massRequired * Environment.settings().cell.repairEnergyFactor.get();
+			if (massRequired < getConstructionMassAvailableDouble() && energyRequired < getEnergyAvailable()) {
 				depleteEnergy(energyRequired);
 				depleteConstructionMass(massRequired);
 				heal(repair);
-				activity += Environment.settings.cell.repairActivity.get() * repair;
+				activity += Environment.settings().cell.repairActivity.get() * repair;
 			}
 		}
 	}
 	private float getRepairRate() {
-		return Environment.settings.cell.repairRate.get() * repairRate;
+		return Environment.settings().cell.repairRate.get() * repairRate;
 	}
 
 	private void requestJointRemoval(long joiningID) {
@@ -439,17 +488,19 @@ public abstract class Cell implements Serializable, Coloured, Spawnable {
 	}
 
 	public void addConstructionProject(ConstructionProject project) {
-		constructionProjects.add(project);
+		if (!constructionProjects.contains(project))
+			constructionProjects.add(project);
 	}
 
 	public void handleInteractions(float delta) {}
 
 	public void grow(float delta) {
+		double constructionMassAvailable = getConstructionMassAvailableDouble();
 		if (constructionMassAvailable <= 0)
 			return;
 
 		double gr = getGrowthRate();
-		double dr = Environment.settings.cell.growthFactor.get() * gr * ((double) delta);
+		double dr = Environment.settings().cell.growthFactor.get() * gr * ((double) delta);
 		double currR = getRadiusDouble();
 		double newR = currR + dr;
 
@@ -462,7 +513,7 @@ public abstract class Cell implements Serializable, Coloured, Spawnable {
 
 		massChangeForGrowth = particle.getMassIfRadius(newR) - particle.getMassIfRadius(currR);
 		float energyForGrowth = (float) (massChangeForGrowth
-				* Environment.settings.cell.energyRequiredForGrowth.get());
+				* Environment.settings().cell.energyRequiredForGrowth.get());
 
 		if (massChangeForGrowth > constructionMassAvailable) {
 			double dr2 = constructionMassAvailable / (Math.PI * particle.getMassDensity());
@@ -471,13 +522,13 @@ public abstract class Cell implements Serializable, Coloured, Spawnable {
 		}
 
 		if (massChangeForGrowth <= constructionMassAvailable
-				&& energyForGrowth <= energyAvailable) {
+				&& energyForGrowth <= getEnergyAvailable()) {
 			setRadius(newR);
 			if (massChangeForGrowth > 0) {
 				depleteConstructionMass(massChangeForGrowth);
 				depleteEnergy(energyForGrowth);
 			}
-			activity += Environment.settings.cell.growthActivity.get() * newR / currR;
+			activity += Environment.settings().cell.growthActivity.get() * newR / currR;
 		}
 
 		if (newR < getMinRadius())
@@ -485,11 +536,11 @@ public abstract class Cell implements Serializable, Coloured, Spawnable {
 	}
 
 	public float getMaxRadius() {
-		return Environment.settings.maxParticleRadius.get();
+		return Environment.settings().maxParticleRadius.get();
 	}
 
 	public float getMinRadius() {
-		return Environment.settings.minParticleRadius.get();
+		return Environment.settings().minParticleRadius.get();
 	}
 
 	public void setGrowthRate(float gr) {
@@ -535,9 +586,10 @@ public abstract class Cell implements Serializable, Coloured, Spawnable {
 			}
 		}
 
-		health -= d;
+		float health = getRawHealth() - d;
 		if (health > 1)
 			health = 1;
+		setRawHealth(health);
 
 		if (health < 0.05)
 			kill(cause);
@@ -601,7 +653,7 @@ public abstract class Cell implements Serializable, Coloured, Spawnable {
 		// TODO: add work to apply torque
 
 		if (enoughEnergyAvailable(work)) {
-			activity += work * Environment.settings.cell.kineticEnergyActivity.get();
+			activity += work * Environment.settings().cell.kineticEnergyActivity.get();
 			depleteEnergy(work);
 			particle.applyImpulse(thrustVector);
 			particle.applyTorque(torque);
@@ -622,9 +674,9 @@ public abstract class Cell implements Serializable, Coloured, Spawnable {
 		Statistics stats = particle.getStats();
 		stats.clear();
 
-		stats.putEnergy("Available Energy", energyAvailable);
+		stats.putEnergy("Available Energy", getEnergyAvailable());
 		stats.putEnergy("Energy Limit", getAvailableEnergyCap());
-		stats.putMass("Construction Mass", (float) constructionMassAvailable);
+		stats.putMass("Construction Mass", getConstructionMassAvailable());
 		stats.putMass("Construction Mass Limit", getConstructionMassCap());
 
 		if (lastDamageEvent != null) {
@@ -632,20 +684,23 @@ public abstract class Cell implements Serializable, Coloured, Spawnable {
 			stats.putTime("Last Damage Time", lastDamageEvent.getDamageTime());
 			stats.put("Last Damage Cause", lastDamageEvent.getCauseOfDamage().getReasonSentence());
 		}
-		for (ComplexMolecule molecule : availableComplexMolecules.keySet())
-			if (availableComplexMolecules.get(molecule) >= 1e-12)
-				stats.putMass(
-						String.format("Molecule %.2f Available", molecule.getSignature()),
-						availableComplexMolecules.get(molecule));
+		synchronized (availableComplexMolecules) {
+			for (int i = 0; i < availableComplexMolecules.size(); i++)
+				if (availableComplexMolecules.getAmount(i) >= 1e-12)
+					stats.putMass(
+							String.format("Molecule %.2f Available", availableComplexMolecules.getMolecule(i).getSignature()),
+							availableComplexMolecules.getAmount(i));
+		}
 
 		Statistics.ComplexUnit massPerTime = Statistics.ComplexUnit.MASS_PER_TIME;
 
-		for (Food.Type foodType : foodDigestionRates.keySet())
-			if (foodDigestionRates.get(foodType) > 0)
-				stats.put(foodType + " Digestion Rate", foodDigestionRates.get(foodType), massPerTime);
+		for (Food.Type foodType : Food.Type.values())
+			if (getDigestionRate(foodType) > 0)
+				stats.put(foodType + " Digestion Rate", getDigestionRate(foodType), massPerTime);
 
-		for (Food food : foodToDigest.values())
-			stats.putMass(food + " to Digest", food.getSimpleMass());
+		for (Food food : foodToDigest)
+			if (food != null)
+				stats.putMass(food + " to Digest", food.getSimpleMass());
 
 		return stats;
 	}
@@ -656,8 +711,8 @@ public abstract class Cell implements Serializable, Coloured, Spawnable {
 		stats.putTime("Age", timeAlive);
 		stats.putPercentage("Health", 100 * getHealth());
 		stats.putCount("Generation", getGeneration());
-		stats.putEnergy("Available Energy", energyAvailable);
-		stats.putMass("Construction Mass", (float) constructionMassAvailable);
+		stats.putEnergy("Available Energy", getEnergyAvailable());
+		stats.putMass("Construction Mass", getConstructionMassAvailable());
 
 		stats.putSpeed("Growth Rate", getGrowthRate());
 		stats.put("Repair Rate", 100 * getRepairRate(),
@@ -671,7 +726,7 @@ public abstract class Cell implements Serializable, Coloured, Spawnable {
 		stats.putBoolean("Being Engulfed", engulfer != null);
 
 		stats.putPercentage("Light Level", 100f * getLightAtCell());
-		stats.putTemperature("Temperature (Internal)", temperature);
+		stats.putTemperature("Temperature (Internal)", getInternalTemperature());
 		stats.putTemperature("Temperature (External)", getExternalTemperature());
 		stats.put("Thermal Conductance", membraneThermalConductance);
 		stats.putTemperature("Temperature Tolerance", temperatureTolerance);
@@ -691,9 +746,9 @@ public abstract class Cell implements Serializable, Coloured, Spawnable {
 		for (Long cellId : particle.getJoiningIds().keySet()) {
 			if (!visited.contains(cellId)) {
 				visited.add(cellId);
-				numCells += getCell(cellId)
-						.map(cell -> cell.getNumCellsInMulticellularOrganism(visited))
-						.orElse(0);
+				Cell cell = findCell(cellId);
+				if (cell != null)
+					numCells += cell.getNumCellsInMulticellularOrganism(visited);
 			}
 		}
 		return numCells;
@@ -716,7 +771,49 @@ public abstract class Cell implements Serializable, Coloured, Spawnable {
 	}
 
 	public float getHealth() {
-		return MathUtils.clamp(health, 0, 1);
+		return MathUtils.clamp(getRawHealth(), 0, 1);
+	}
+
+	private float getRawHealth() {
+		return states == null ? health : states.health[stateSlot];
+	}
+
+	private void setRawHealth(float h) {
+		if (states == null)
+			health = h;
+		else
+			states.health[stateSlot] = h;
+	}
+
+	void bindState(CellStates states, int slot) {
+		states.health[slot] = getRawHealth();
+		states.energy[slot] = getEnergyAvailable();
+		states.constructionMass[slot] = getConstructionMassAvailableDouble();
+		states.temperature[slot] = getInternalTemperature();
+		this.states = states;
+		this.stateSlot = slot;
+	}
+
+	void writeBackState() {
+		if (states == null)
+			return;
+		health = states.health[stateSlot];
+		energyAvailable = states.energy[stateSlot];
+		constructionMassAvailable = states.constructionMass[stateSlot];
+		temperature = states.temperature[stateSlot];
+	}
+
+	void unbindState() {
+		writeBackState();
+		states = null;
+		stateSlot = -1;
+	}
+
+	/**
+	 * @return the cell's slot in the environment's {@link CellStates}, or -1 if it is not bound
+	 */
+	public int getStateSlot() {
+		return stateSlot;
 	}
 
 	public boolean isDead() {
@@ -775,11 +872,11 @@ public abstract class Cell implements Serializable, Coloured, Spawnable {
 	}
 
 	public float getMinBurstRadius() {
-		return 2 * Environment.settings.minParticleRadius.get();
+		return 2 * Environment.settings().minParticleRadius.get();
 	}
 
 	public void setFoodToDigest(Food.Type foodType, Food food) {
-		foodToDigest.put(foodType, food);
+		foodToDigest[foodType.ordinal()] = food;
 	}
 
 //	public float getCAMAvailable(CellAdhesion.CAM cam) {
@@ -791,47 +888,56 @@ public abstract class Cell implements Serializable, Coloured, Spawnable {
 //	}
 
 	public boolean enoughEnergyAvailable(float work) {
-		return work < energyAvailable;
+		return work < getEnergyAvailable();
 	}
 
 	public float getEnergyAvailable() {
-		return energyAvailable;
+		return states == null ? energyAvailable : states.energy[stateSlot];
 	}
 
 	public void addAvailableEnergy(float energy) {
-		energyAvailable = Math.min(energyAvailable + energy, getAvailableEnergyCap());
+		setEnergyAvailable(Math.min(getEnergyAvailable() + energy, getAvailableEnergyCap()));
 	}
 
 	private float getAvailableEnergyCap() {
-		return Environment.settings.cell.energyCapFactor.get() * getRadius()
-				/ Environment.settings.minParticleRadius.get();
+		return Environment.settings().cell.energyCapFactor.get() * getRadius()
+				/ Environment.settings().minParticleRadius.get();
 	}
 
 	public void setEnergyAvailable(float energy) {
-		energyAvailable = energy;
+		if (states == null)
+			energyAvailable = energy;
+		else
+			states.energy[stateSlot] = energy;
 	}
 
 	public void depleteEnergy(float energy) {
-		energyAvailable = Math.max(0, energyAvailable - energy);
+		setEnergyAvailable(Math.max(0, getEnergyAvailable() - energy));
 	}
 
 	public Collection<ComplexMolecule> getComplexMolecules() {
-		return availableComplexMolecules.keySet();
+		return availableComplexMolecules.molecules();
 	}
 
 	public void depleteComplexMolecule(ComplexMolecule molecule, float amount) {
-		float currAmount = getComplexMoleculeAvailable(molecule);
-		setComplexMoleculeAvailable(molecule, currAmount - amount);
+		synchronized (availableComplexMolecules) {
+			float currAmount = availableComplexMolecules.get(molecule);
+			availableComplexMolecules.put(molecule, Math.max(0, currAmount - amount));
+		}
 	}
 
 	public float getComplexMoleculeAvailable(ComplexMolecule molecule) {
-		return availableComplexMolecules.getOrDefault(molecule, 0f);
+		synchronized (availableComplexMolecules) {
+			return availableComplexMolecules.get(molecule);
+		}
 	}
 
 	public void addAvailableComplexMolecule(ComplexMolecule molecule, float amount) {
-		float currentAmount = availableComplexMolecules.getOrDefault(molecule, 0f);
-		float newAmount = Math.min(getComplexMoleculeMassCap(), currentAmount + amount);
-		availableComplexMolecules.put(molecule, newAmount);
+		float cap = getComplexMoleculeMassCap();
+		synchronized (availableComplexMolecules) {
+			float currentAmount = availableComplexMolecules.get(molecule);
+			availableComplexMolecules.put(molecule, Math.min(cap, currentAmount + amount));
+		}
 	}
 
 	private float getComplexMoleculeMassCap() {
@@ -842,7 +948,9 @@ public abstract class Cell implements Serializable, Coloured, Spawnable {
 	}
 
 	public void setComplexMoleculeAvailable(ComplexMolecule molecule, float amount) {
-		availableComplexMolecules.put(molecule, Math.max(0, amount));
+		synchronized (availableComplexMolecules) {
+			availableComplexMolecules.put(molecule, Math.max(0, amount));
+		}
 	}
 
 	public float getConstructionMassCap() {
@@ -853,46 +961,55 @@ public abstract class Cell implements Serializable, Coloured, Spawnable {
 	}
 
 	public void setAvailableConstructionMass(float mass) {
-		constructionMassAvailable = Math.min(mass, getConstructionMassCap());
+		setConstructionMass(Math.min(mass, getConstructionMassCap()));
 	}
 
 	public void setAvailableConstructionMass(double mass) {
-		constructionMassAvailable = Math.min(mass, getConstructionMassCap());
+		setConstructionMass(Math.min(mass, getConstructionMassCap()));
+	}
+
+	private void setConstructionMass(double mass) {
+		if (states == null)
+			constructionMassAvailable = mass;
+		else
+			states.constructionMass[stateSlot] = mass;
 	}
 
 	public float getConstructionMassAvailable() {
-		return (float) constructionMassAvailable;
+		return (float) getConstructionMassAvailableDouble();
 	}
 
 	public double getConstructionMassAvailableDouble() {
-		return constructionMassAvailable;
+		return states == null ? constructionMassAvailable : states.constructionMass[stateSlot];
 	}
 
 	public void addConstructionMass(float mass) {
-		setAvailableConstructionMass(constructionMassAvailable + mass);
+		setAvailableConstructionMass(getConstructionMassAvailableDouble() + mass);
 	}
 
 	public void addConstructionMass(double mass) {
-		setAvailableConstructionMass(constructionMassAvailable + mass);
+		setAvailableConstructionMass(getConstructionMassAvailableDouble() + mass);
 	}
 
 	public void depleteConstructionMass(float mass) {
-		constructionMassAvailable = Math.max(0, constructionMassAvailable - mass);
+		setConstructionMass(Math.max(0, getConstructionMassAvailableDouble() - mass));
 	}
 
 	public void depleteConstructionMass(double mass) {
-		constructionMassAvailable = Math.max(0, constructionMassAvailable - mass);
+		setConstructionMass(Math.max(0, getConstructionMassAvailableDouble() - mass));
 	}
 
 	public float getMass() {
 		if (particle == null)
 			return 1f;
 
-		float extraMass = (float) constructionMassAvailable;
-		for (float mass : availableComplexMolecules.values())
-			extraMass += mass;
-		for (Food food : foodToDigest.values())
-			extraMass += food.getMass();
+		float extraMass = getConstructionMassAvailable();
+		synchronized (availableComplexMolecules) {
+			extraMass += availableComplexMolecules.total();
+		}
+		for (Food food : foodToDigest)
+			if (food != null)
+				extraMass += food.getMass();
 		return particle.getMass() + extraMass;
 	}
 
@@ -912,7 +1029,7 @@ public abstract class Cell implements Serializable, Coloured, Spawnable {
 		damage(percentRemoved, causeOfDeath);
 
 		double newR = (1 - percentRemoved) * getRadius();
-		if (newR < Environment.settings.minParticleRadius.get() * 0.5f)
+		if (newR < Environment.settings().minParticleRadius.get() * 0.5f)
 			kill(causeOfDeath);
 
 		setRadius(newR);
@@ -922,8 +1039,11 @@ public abstract class Cell implements Serializable, Coloured, Spawnable {
 		removeMass(mass, CauseOfDeath.LOST_TOO_MUCH_MASS);
 	}
 
-	public Map<Food.Type, Food> getFoodToDigest() {
-		return foodToDigest;
+	/**
+	 * @return the food of the given type waiting to be digested, or null if there is none
+	 */
+	public Food getFoodToDigest(Food.Type foodType) {
+		return foodToDigest[foodType.ordinal()];
 	}
 
 	public int getNumAttachedCells() {
@@ -986,9 +1106,9 @@ public abstract class Cell implements Serializable, Coloured, Spawnable {
 	public void spawn(Environment environment, float x, float y) {
 		setEnvironmentAndBuildPhysics(environment);
 		Particle particle = getParticle();
-		particle.setPos(new Vector2(x, y));
+		environment.setSpawnPosition(this, new Vector2(x, y));
 		Vector2 impulse = Geometry
-				.fromAngle((float) (Math.random() * Math.PI * 2))
+				.fromAngle((float) (RandomStreams.random() * Math.PI * 2))
 				.scl(.01f);
 		particle.applyImpulse(impulse);
 	}
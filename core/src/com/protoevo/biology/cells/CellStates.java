@@ -0,0 +1,169 @@
+package com.protoevo.biology.cells;
+
+import com.badlogic.gdx.math.Vector2;
+import com.protoevo.biology.CauseOfDeath;
+import com.protoevo.env.Environment;
+import com.protoevo.physics.Particle;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Columnar store of the scalar state of cells that is read or written in bulk every tick,
+ * indexed by the slot of each cell in the environment's entity registry.
+ * <p>
+ * While a cell is bound to the store, its health, available energy, construction mass and
+ * internal temperature live here rather than in its own fields, and its accessors read and write
+ * the columns. The values are written back to the cell's fields when it is unbound, and by
+ * {@link #writeBack()}, so that saved and copied cells are up to date.
+ * <p>
+ * Positions, velocities and radii are copied from the physics engine once per tick by
+ * {@link #syncPhysics()}, so passes that only need scalars can run as tight loops over arrays
+ * instead of visiting each cell and particle on the heap.
+ */
+public class CellStates {
+
+    private Cell[] cells;
+    private float[] x, y, vx, vy, radius, voidStartScale2;
+    float[] health, energy, temperature;
+    double[] constructionMass;
+    private int nSlots = 0;
+
+    public CellStates() {
+        this(64);
+    }
+
+    public CellStates(int initialCapacity) {
+        allocate(Math.max(1, initialCapacity));
+    }
+
+    private void allocate(int capacity) {
+        cells = cells == null ? new Cell[capacity] : Arrays.copyOf(cells, capacity);
+        x = resize(x, capacity);
+        y = resize(y, capacity);
+        vx = resize(vx, capacity);
+        vy = resize(vy, capacity);
+        radius = resize(radius, capacity);
+        voidStartScale2 = resize(voidStartScale2, capacity);
+        health = resize(health, capacity);
+        energy = resize(energy, capacity);
+        temperature = resize(temperature, capacity);
+        constructionMass = constructionMass == null
+                ? new double[capacity] : Arrays.copyOf(constructionMass, capacity);
+    }
+
+    private static float[] resize(float[] column, int capacity) {
+        return column == null ? new float[capacity] : Arrays.copyOf(column, capacity);
+    }
+
+    /**
+     * Moves the hot state of the cell into the given slot. Must not be called while cells are
+     * being updated in parallel.
+     */
+    public void bind(Cell cell, int slot) {
+        if (slot >= cells.length)
+            allocate(Math.max(slot + 1, 2 * cells.length));
+        nSlots = Math.max(nSlots, slot + 1);
+
+        cells[slot] = cell;
+        float voidStartScale = cell.getVoidStartScale();
+        voidStartScale2[slot] = voidStartScale * voidStartScale;
+        syncPhysics(slot);
+        cell.bindState(this, slot);
+    }
+
+    /**
+     * Writes the hot state back into the cell and frees its slot.
+     */
+    public void unbind(Cell cell) {
+        int slot = cell.getStateSlot();
+        if (slot < 0 || cells[slot] != cell)
+            return;
+        cell.unbindState();
+        cells[slot] = null;
+    }
+
+    public void syncPhysics() {
+        IntStream.range(0, nSlots).parallel().forEach(this::syncPhysics);
+    }
+
+    private void syncPhysics(int slot) {
+        Cell cell = cells[slot];
+        if (cell == null || cell.getParticle() == null)
+            return;
+        Particle particle = cell.getParticle();
+        Vector2 pos = particle.getPos();
+        Vector2 vel = particle.getVel();
+        x[slot] = pos.x;
+        y[slot] = pos.y;
+        vx[slot] = vel.x;
+        vy[slot] = vel.y;
+        radius[slot] = particle.getRadius();
+    }
+
+    /**
+     * Applies the parts of a cell update that depend only on scalar state: damage from being
+     * out in the void, and the decay of available energy. Dead cells are skipped.
+     * <p>
+     * The void start distance is read from the settings on every call, so that changes to it
+     * while the simulation is running take effect, and scaled by the factor each kind of cell
+     * stored when it was bound.
+     */
+    public void update(float delta) {
+        final float voidDamage = delta * Environment.settings().env.voidDamagePerSecond.get();
+        final float energyDecay = delta * Environment.settings().cell.energyDecayRate.get();
+        final float voidStartDistance = Environment.settings().worldgen.voidStartDistance.get();
+        final float voidStartDistance2 = voidStartDistance * voidStartDistance;
+
+        IntStream.range(0, nSlots).parallel().forEach(slot -> {
+            Cell cell = cells[slot];
+            if (cell == null || cell.isDead())
+                return;
+            float px = x[slot], py = y[slot];
+            if (px * px + py * py > voidStartDistance2 * voidStartScale2[slot])
+                cell.damage(voidDamage, CauseOfDeath.THE_VOID);
+            energy[slot] = Math.max(0, energy[slot] - energyDecay);
+        });
+    }
+
+    /**
+     * Copies the hot state back into the fields of every bound cell.
+     */
+    public void writeBack() {
+        IntStream.range(0, nSlots).parallel().forEach(slot -> {
+            if (cells[slot] != null)
+                cells[slot].writeBackState();
+        });
+    }
+
+    public Cell getCell(int slot) {
+        return slot < nSlots ? cells[slot] : null;
+    }
+
+    /**
+     * @return one more than the highest slot that has been bound
+     */
+    public int getNumSlots() {
+        return nSlots;
+    }
+
+    public float getX(int slot) {
+        return x[slot];
+    }
+
+    public float getY(int slot) {
+        return y[slot];
+    }
+
+    public float getVelX(int slot) {
+        return vx[slot];
+    }
+
+    public float getVelY(int slot) {
+        return vy[slot];
+    }
+
+    public float getRadius(int slot) {
+        return radius[slot];
+    }
+}
@@ -1,10 +1,13 @@
 package com.protoevo.biology.cells;
 
 import com.protoevo.biology.evolution.*;
+import com.protoevo.biology.nn.NeuralNetwork;
 import com.protoevo.biology.nn.Neuron;
 import com.protoevo.env.Environment;
 import com.protoevo.maths.Functions;
 
+import java.util.Optional;
+
 public abstract class EvolvableCell extends Cell implements Evolvable {
 
     private GeneExpressionFunction geneExpressionFunction;
@@ -36,8 +39,8 @@ public abstract class EvolvableCell extends Cell implements Evolvable {
     public void setTemperatureTolerance(float t) {
         float tolerance = Functions.clampedLinearRemap(
                 t, 0, 1,
-                Environment.settings.cell.minTemperatureTolerance.get(),
-                Environment.settings.cell.maxTemperatureTolerance.get()
+                Environment.settings().cell.minTemperatureTolerance.get(),
+                Environment.settings().cell.maxTemperatureTolerance.get()
         );
         super.setTemperatureTolerance(tolerance);
     }
@@ -50,7 +53,7 @@ public abstract class EvolvableCell extends Cell implements Evolvable {
     public void setIdealTemperature(float t) {
         float temp = Functions.clampedLinearRemap(
                 t, 0, 1,
-                0, Environment.settings.env.maxLightEnvTemp.get()
+                0, Environment.settings().env.maxLightEnvTemp.get()
         );
         super.setIdealTemperature(temp);
     }
@@ -79,8 +82,8 @@ public abstract class EvolvableCell extends Cell implements Evolvable {
     public float getRadiusAsProportionOfMax() {
         return Functions.clampedLinearRemap(
                 super.getRadius(),
-                Environment.settings.minParticleRadius.get(),
-                Environment.settings.maxParticleRadius.get(),
+                Environment.settings().minParticleRadius.get(),
+                Environment.settings().maxParticleRadius.get(),
                 0, 1
         );
     }
@@ -126,18 +129,44 @@ public abstract class EvolvableCell extends Cell implements Evolvable {
     public void update(float delta) {
         super.update(delta);
 
+        if (geneExpressionFunction == null || isGeneExpressionBatched())
+            return;
+
         timeSinceLastGeneExpression += delta;
-        if (geneExpressionFunction != null
-                && timeSinceLastGeneExpression >= getExpressionInterval()) {
+        if (timeSinceLastGeneExpression >= getExpressionInterval()) {
             geneExpressionFunction.update();
             timeSinceLastGeneExpression = 0;
-
-            for (Neuron n : geneExpressionFunction.getRegulatoryNetwork().getNeurons()) {
-                if (n.getType().equals(Neuron.Type.HIDDEN))
-                    addActivity(Environment.settings.cell.grnHiddenNodeActivity.get() * n.getLastState());
-            }
+            onGeneExpressed();
         }
     }
 
+    private boolean isGeneExpressionBatched() {
+        Optional<Environment> env = getEnv();
+        return env.isPresent() && env.get().isBatchingGeneExpression(this);
+    }
+
+    /**
+     * Sets the inputs of the gene regulatory network ahead of the environment ticking it
+     * as part of a population-wide batch.
+     */
+    public void beginGeneExpression() {
+        geneExpressionFunction.beginUpdate();
+    }
+
+    /**
+     * Completes a gene expression update started with {@link #beginGeneExpression()}.
+     */
+    public void completeGeneExpression() {
+        geneExpressionFunction.endUpdate();
+        onGeneExpressed();
+    }
+
+    private void onGeneExpressed() {
+        NeuralNetwork grn = geneExpressionFunction.getRegulatoryNetwork();
+        if (grn != null)
+            addActivity(Environment.settings().cell.grnHiddenNodeActivity.get()
+                    * grn.getLastStateSum(Neuron.Type.HIDDEN));
+    }
+
     public abstract float getExpressionInterval();
 }
@@ -1,9 +1,9 @@
 package com.protoevo.biology.cells;
 
-import com.badlogic.gdx.math.MathUtils;
 import com.protoevo.biology.CauseOfDeath;
 import com.protoevo.env.Environment;
 import com.protoevo.utils.Colour;
+import com.protoevo.maths.RandomStreams;
 
 
 public class MeatCell extends Cell {
@@ -15,15 +15,15 @@ public class MeatCell extends Cell {
         setRadius(radius);
         setEnvironmentAndBuildPhysics(environment);
 
-        float r = (150 + MathUtils.random(105)) / 255f;
-        float g = (25  + MathUtils.random(100)) / 255f;
-        float b = (25  + MathUtils.random(100)) / 255f;
+        float r = (150 + RandomStreams.random(105)) / 255f;
+        float g = (25  + RandomStreams.random(100)) / 255f;
+        float b = (25  + RandomStreams.random(100)) / 255f;
         setHealthyColour(new Colour(r, g, b, 1f));
         setDegradedColour(degradeColour(getHealthyColour(), 0.3f));
     }
 
     public void age(float delta) {
-        float deathRate = getRadius() * delta * Environment.settings.meatDeathFactor.get();
+        float deathRate = getRadius() * delta * Environment.settings().meatDeathFactor.get();
         damage(getHealth() * deathRate, CauseOfDeath.MEAT_DECAY);
     }
 
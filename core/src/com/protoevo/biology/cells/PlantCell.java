@@ -1,6 +1,5 @@
 package com.protoevo.biology.cells;
 
-import com.badlogic.gdx.math.MathUtils;
 import com.protoevo.biology.CauseOfDeath;
 import com.protoevo.biology.evolution.Evolvable;
 import com.protoevo.biology.evolution.EvolvableFloat;
@@ -13,6 +12,7 @@ import com.protoevo.physics.Collision;
 import com.protoevo.physics.Particle;
 import com.protoevo.utils.Colour;
 import com.protoevo.maths.Geometry;
+import com.protoevo.maths.RandomStreams;
 
 public class PlantCell extends EvolvableCell {
     public static final long serialVersionUID = -3975433688803760076L;
@@ -24,9 +24,9 @@ public class PlantCell extends EvolvableCell {
 
     public PlantCell(float radius, Environment environment) {
         super();
-        setRadius(Math.max(radius, Environment.settings.plant.minBirthRadius.get()));
+        setRadius(Math.max(radius, Environment.settings().plant.minBirthRadius.get()));
         setEnvironmentAndBuildPhysics(environment);
-        setGrowthRate(MathUtils.random(minGrowthRate(), maxGrowthRate()));
+        setGrowthRate(RandomStreams.random(minGrowthRate(), maxGrowthRate()));
 
         maxRadius = randomMaxRadius();
 
@@ -35,29 +35,29 @@ public class PlantCell extends EvolvableCell {
 
     public PlantCell() {
         super();
-        setRadius(MathUtils.random(
-                Environment.settings.plant.minBirthRadius.get(),
-                Environment.settings.plant.maxBirthRadius.get()));
+        setRadius(RandomStreams.random(
+                Environment.settings().plant.minBirthRadius.get(),
+                Environment.settings().plant.maxBirthRadius.get()));
         maxRadius = randomMaxRadius();
-        setGrowthRate(MathUtils.random(minGrowthRate(), maxGrowthRate()));
+        setGrowthRate(RandomStreams.random(minGrowthRate(), maxGrowthRate()));
         setRandomPlantColour();
     }
 
     private float randomMaxRadius() {
         // 10% larger than the max plant birth radius
-        float minMaxR = 2f * Environment.settings.plant.minBirthRadius.get();
+        float minMaxR = 2f * Environment.settings().plant.minBirthRadius.get();
         // 50% of the max particle radius
-        float maxMaxR = Environment.settings.maxParticleRadius.get() / 2f;
+        float maxMaxR = Environment.settings().maxParticleRadius.get() / 2f;
 
-        return minMaxR < maxMaxR ? MathUtils.random(minMaxR, maxMaxR) : maxMaxR;
+        return minMaxR < maxMaxR ? RandomStreams.random(minMaxR, maxMaxR) : maxMaxR;
     }
 
     public void setRandomPlantColour() {
         float darken = 0.9f;
         setHealthyColour(new Colour(
-                darken * (30 + MathUtils.random(105)) / 255f,
-                darken * (150 + MathUtils.random(100)) / 255f,
-                darken * (10 + MathUtils.random(100)) / 255f,
+                darken * (30 + RandomStreams.random(105)) / 255f,
+                darken * (150 + RandomStreams.random(100)) / 255f,
+                darken * (10 + RandomStreams.random(100)) / 255f,
                 1f)
         );
 
@@ -73,8 +73,8 @@ public class PlantCell extends EvolvableCell {
     public void setMaxRadius(float splitRadius) {
         this.maxRadius = Functions.clampedLinearRemap(
                 splitRadius, 0, 1,
-                1.5f * Environment.settings.minParticleRadius.get(),
-                Environment.settings.maxParticleRadius.get() / 2f
+                1.5f * Environment.settings().minParticleRadius.get(),
+                Environment.settings().maxParticleRadius.get() / 2f
         );
     }
 
@@ -84,8 +84,8 @@ public class PlantCell extends EvolvableCell {
     }
 
     private static float randomPlantRadius() {
-        float range = Environment.settings.plant.maxBirthRadius.get() * .5f - Environment.settings.plant.minBirthRadius.get();
-        return Environment.settings.plant.minBirthRadius.get() + range * MathUtils.random();
+        float range = Environment.settings().plant.maxBirthRadius.get() * .5f - Environment.settings().plant.minBirthRadius.get();
+        return Environment.settings().plant.minBirthRadius.get() + range * RandomStreams.random();
     }
 
     public PlantCell(Environment environment) {
@@ -94,17 +94,17 @@ public class PlantCell extends EvolvableCell {
 
     private boolean shouldSplit() {
         return hasNotBurst() && getRadius() >= 0.99f * maxRadius &&
-                getHealth() > Environment.settings.plant.minHealthToSplit.get();
+                getHealth() > Environment.settings().plant.minHealthToSplit.get();
     }
 
     @Override
     public float minGrowthRate() {
-        return Environment.settings.plant.minPlantGrowth.get();
+        return Environment.settings().plant.minPlantGrowth.get();
     }
 
     @Override
     public float maxGrowthRate() {
-        return Environment.settings.plant.maxPlantGrowth.get();
+        return Environment.settings().plant.maxPlantGrowth.get();
     }
 
     @Override
@@ -115,11 +115,11 @@ public class PlantCell extends EvolvableCell {
             return;
 
         float light = getLightAtCell();
-        float maxArea = Geometry.getCircleArea(Environment.settings.maxParticleRadius.get());
+        float maxArea = Geometry.getCircleArea(Environment.settings().maxParticleRadius.get());
         float photoRate = light * getParticle().getArea() / maxArea;
-        photosynthesisRate = photoRate * Environment.settings.plant.photosynthesizeEnergyRate.get();
+        photosynthesisRate = photoRate * Environment.settings().plant.photosynthesizeEnergyRate.get();
 
-        addConstructionMass(delta * Environment.settings.plant.constructionRate.get());
+        addConstructionMass(delta * Environment.settings().plant.constructionRate.get());
         addAvailableEnergy(delta * photosynthesisRate);
 
         int nProtozoaContacts = 0;
@@ -129,7 +129,7 @@ public class PlantCell extends EvolvableCell {
                 nProtozoaContacts++;
         }
         if (nProtozoaContacts >= 1) {
-            float dps = Environment.settings.plant.collisionDestructionRate.get() * nProtozoaContacts;
+            float dps = Environment.settings().plant.collisionDestructionRate.get() * nProtozoaContacts;
             removeMass(delta * dps, CauseOfDeath.OVERCROWDING);
         }
 
@@ -144,17 +144,17 @@ public class PlantCell extends EvolvableCell {
 
     @Override
     public float getExpressionInterval() {
-        return Environment.settings.plant.geneExpressionInterval.get();
+        return Environment.settings().plant.geneExpressionInterval.get();
     }
 
     @Override
-    protected float getVoidStartDistance2() {
-        return super.getVoidStartDistance2() * 0.9f * 0.9f;
+    protected float getVoidStartScale() {
+        return 0.9f;
     }
 
     public PlantCell createChild(float r) {
         PlantCell child;
-        if (Environment.settings.plant.evolutionEnabled.get()) {
+        if (Environment.settings().plant.evolutionEnabled.get()) {
             child = Evolvable.asexualClone(this);
             child.setRadius(r);
             getEnv().ifPresent(child::setEnvironmentAndBuildPhysics);
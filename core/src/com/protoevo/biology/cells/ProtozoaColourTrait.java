@@ -4,6 +4,7 @@ package com.protoevo.biology.cells;
 import com.badlogic.gdx.math.MathUtils;
 import com.protoevo.biology.evolution.Trait;
 import com.protoevo.utils.Colour;
+import com.protoevo.maths.RandomStreams;
 
 import java.io.Serializable;
 import java.util.Map;
@@ -41,14 +42,14 @@ public class ProtozoaColourTrait implements Trait<Colour>, Serializable {
         Colour colour = getValue();
         if (colour == null)
             return new Colour(
-                    (minVal + MathUtils.random(maxVal - 1)) / 255f,
-                    (minVal + MathUtils.random(maxVal - 1)) / 255f,
-                    (minVal + MathUtils.random(maxVal - 1)) / 255f,
+                    (minVal + RandomStreams.random(maxVal - 1)) / 255f,
+                    (minVal + RandomStreams.random(maxVal - 1)) / 255f,
+                    (minVal + RandomStreams.random(maxVal - 1)) / 255f,
                     1f
             );
 
-        float p = MathUtils.random();
-        float valChange = (-15 + MathUtils.random(30)) / 255f;
+        float p = RandomStreams.random();
+        float valChange = (-15 + RandomStreams.random(30)) / 255f;
 
         if (p < 1 / 3f) {
             float v = MathUtils.clamp(colour.r + valChange, maxVal, minVal);
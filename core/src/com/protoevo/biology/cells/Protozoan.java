@@ -12,6 +12,7 @@ import com.protoevo.env.Environment;
 import com.protoevo.maths.Functions;
 import com.protoevo.physics.Collision;
 import com.protoevo.utils.Colour;
+import com.protoevo.maths.RandomStreams;
 
 
 import java.io.Serializable;
@@ -25,13 +26,14 @@ public class Protozoan extends EvolvableCell
 	private float matingCooldown = 0;
 	private boolean mateDesire, splitDesire = false;
 	private List<SurfaceNode> surfaceNodes;
+	private transient VisibleObjects visibleObjects;
 
 	private float damageRate = 0;
 	private float herbivoreFactor, splitRadius;
 	private final Vector2 tmp = new Vector2();
 	private final Collection<Cell> engulfedCells = new ArrayList<>(0);
 	private final Vector2 thrust = new Vector2(), dir = new Vector2();
-	private float thrustAngle = (float) (2 * Math.PI * Math.random());
+	private float thrustAngle = (float) (2 * Math.PI * RandomStreams.random());
 	private float thrustTurn = 0, thrustMag;
 
 	public static class LineageTag implements Serializable, Comparable<LineageTag> {
@@ -68,6 +70,8 @@ public class Protozoan extends EvolvableCell
 		age(delta);
 
 		if (surfaceNodes != null) {
+			if (visibleObjects != null)
+				visibleObjects.markStale();
 			for (int i = 0; i < surfaceNodes.size(); i++) {
 				SurfaceNode node = surfaceNodes.get(i);
 				node.setIndex(i);
@@ -77,7 +81,7 @@ public class Protozoan extends EvolvableCell
 
 		for (Cell engulfedCell : engulfedCells) {
 			handleEngulfing(engulfedCell, delta);
-			eat(engulfedCell, Environment.settings.protozoa.engulfEatingRateMultiplier.get() * delta);
+			eat(engulfedCell, Environment.settings().protozoa.engulfEatingRateMultiplier.get() * delta);
 		}
 		engulfedCells.removeIf(this::removeEngulfedCondition);
 
@@ -92,7 +96,7 @@ public class Protozoan extends EvolvableCell
 	}
 
 	private void handleMating(float delta) {
-		if (Environment.settings.protozoa.matingEnabled.get() && mateDesire && matingCooldown <= 0) {
+		if (Environment.settings().protozoa.matingEnabled.get() && mateDesire && matingCooldown <= 0) {
 			for (Collision contact : getParticle().getContacts()) {
 				Object other = contact.getOther(contact);
 				if (other instanceof Protozoan) {
@@ -153,8 +157,8 @@ public class Protozoan extends EvolvableCell
 	public void setSplitRadius(float splitRadius) {
 		this.splitRadius = Functions.clampedLinearRemap(
 				splitRadius, 0, 1,
-				Environment.settings.protozoa.maxBirthRadius.get(),
-				Environment.settings.maxParticleRadius.get()
+				Environment.settings().protozoa.maxBirthRadius.get(),
+				Environment.settings().maxParticleRadius.get()
 		);
 	}
 
@@ -167,16 +171,18 @@ public class Protozoan extends EvolvableCell
 
 	@GeneRegulator(name="Plant to Digest")
 	public float getPlantToDigest() {
-		if (!getFoodToDigest().containsKey(Food.Type.Plant))
+		Food food = getFoodToDigest(Food.Type.Plant);
+		if (food == null)
 			return 0;
-		return getFoodToDigest().get(Food.Type.Plant).getSimpleMass() / getFoodToDigestMassCap();
+		return food.getSimpleMass() / getFoodToDigestMassCap();
 	}
 
 	@GeneRegulator(name="Meat to Digest")
 	public float getMeatToDigest() {
-		if (!getFoodToDigest().containsKey(Food.Type.Meat))
+		Food food = getFoodToDigest(Food.Type.Meat);
+		if (food == null)
 			return 0;
-		return getFoodToDigest().get(Food.Type.Meat).getSimpleMass() / getFoodToDigestMassCap();
+		return food.getSimpleMass() / getFoodToDigestMassCap();
 	}
 
 	@GeneRegulator(name="Plant Gradient", min=-1, max=1)
@@ -198,13 +204,13 @@ public class Protozoan extends EvolvableCell
 
 	@ControlVariable(name="Cilia Thrust", min=0, max=1)
 	public void setCiliaThrust(float thrust) {
-		float sizePenalty = getRadius() / Environment.settings.maxParticleRadius.get();
-		this.thrustMag = sizePenalty * thrust * Environment.settings.protozoa.maxCiliaThrust.get();
+		float sizePenalty = getRadius() / Environment.settings().maxParticleRadius.get();
+		this.thrustMag = sizePenalty * thrust * Environment.settings().protozoa.maxCiliaThrust.get();
 	}
 
 	@ControlVariable(name="Cilia Turn", min=0, max=1)
 	public void setCiliaTurn(float turn) {
-		this.thrustTurn = Environment.settings.protozoa.maxCiliaTurn.get() * turn;
+		this.thrustTurn = Environment.settings().protozoa.maxCiliaTurn.get() * turn;
 	}
 
 	@GeneRegulator(name="Orientation", min=0, max=1)
@@ -247,7 +253,7 @@ public class Protozoan extends EvolvableCell
 
 	private boolean shouldSplit() {
 		return splitDesire && getRadius() >= splitRadius
-				&& getHealth() >= Environment.settings.protozoa.minHealthToSplit.get();
+				&& getHealth() >= Environment.settings().protozoa.minHealthToSplit.get();
 	}
 
 	private Protozoan createSplitChild(float r) {
@@ -320,7 +326,7 @@ public class Protozoan extends EvolvableCell
 		// Move engulfed cell towards the centre of this cell
 		Vector2 vel = tmp.set(getPos()).sub(e.getPos());
 		float d2 = vel.len2();
-		vel.setLength(Environment.settings.protozoa.engulfForce.get() * tmp.len2());
+		vel.setLength(Environment.settings().protozoa.engulfForce.get() * tmp.len2());
 		if (!e.isFullyEngulfed())
 			vel.add(getVel());
 		else
@@ -344,7 +350,7 @@ public class Protozoan extends EvolvableCell
 			d2 = other.getPos().dst2(e.getPos());
 			if (other != e && d2 < rr*rr) {
 				tmp.set(e.getPos()).sub(other.getPos());
-				float force = Environment.settings.protozoa.engulfForce.get();
+				float force = Environment.settings().protozoa.engulfForce.get();
 				tmp.setLength(force * delta * (rr*rr - d2));
 				e.getPos().add(tmp);
 			}
@@ -446,7 +452,7 @@ public class Protozoan extends EvolvableCell
 	}
 
 	public void age(float delta) {
-		damageRate = getRadius() * Environment.settings.protozoa.starvationFactor.get();
+		damageRate = getRadius() * Environment.settings().protozoa.starvationFactor.get();
 		damage(damageRate * delta, CauseOfDeath.OLD_AGE);
 	}
 
@@ -468,6 +474,17 @@ public class Protozoan extends EvolvableCell
 		return surfaceNodes;
 	}
 
+	/**
+	 * @return the coloured shapes in range, collected once per update and shared by the photoreceptors
+	 */
+	public VisibleObjects getVisibleObjects() {
+		if (visibleObjects == null)
+			visibleObjects = new VisibleObjects();
+		if (visibleObjects.isStale())
+			visibleObjects.collect(getInteractionQueue());
+		return visibleObjects;
+	}
+
 	public Collection<Cell> getEngulfedCells() {
 		return engulfedCells;
 	}
@@ -478,16 +495,16 @@ public class Protozoan extends EvolvableCell
 
 	@Override
 	public float getExpressionInterval() {
-		return Environment.settings.protozoa.geneExpressionInterval.get();
+		return Environment.settings().protozoa.geneExpressionInterval.get();
 	}
 
 	@Override
 	public float minGrowthRate() {
-		return Environment.settings.protozoa.minProtozoanGrowthRate.get();
+		return Environment.settings().protozoa.minProtozoanGrowthRate.get();
 	}
 
 	@Override
 	public float maxGrowthRate() {
-		return Environment.settings.protozoa.maxProtozoanGrowthRate.get();
+		return Environment.settings().protozoa.maxProtozoanGrowthRate.get();
 	}
 }
@@ -1,6 +1,6 @@
 package com.protoevo.biology.evolution;
 
-import com.protoevo.core.Simulation;
+import com.protoevo.maths.RandomStreams;
 
 import java.util.Map;
 
@@ -40,7 +40,7 @@ public class BooleanTrait implements Trait<Boolean> {
 
     @Override
     public Boolean newRandomValue() {
-        return Simulation.RANDOM.nextBoolean();
+        return RandomStreams.randomBoolean();
     }
 
     @Override
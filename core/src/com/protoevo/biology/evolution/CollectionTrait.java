@@ -1,10 +1,10 @@
 package com.protoevo.biology.evolution;
 
-import com.badlogic.gdx.math.MathUtils;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import com.protoevo.maths.RandomStreams;
 
 
 public class CollectionTrait implements Trait<List<Evolvable>> {
@@ -93,13 +93,13 @@ public class CollectionTrait implements Trait<List<Evolvable>> {
 
     @Override
     public List<Evolvable> newRandomValue() {
-        double p = Math.random();
+        double p = RandomStreams.random();
         boolean removeRandom = collection.size() > minSize && p < 1.0 / nMutationTypes;
         boolean addRandom = collection.size() < maxSize && !removeRandom && p < 2.0 / nMutationTypes;
 
         List<Evolvable> newCollection = new ArrayList<>();
 
-        int removeIdx = removeRandom ? MathUtils.random(collection.size() - 1) : -1;
+        int removeIdx = removeRandom ? RandomStreams.random(collection.size() - 1) : -1;
         for (int i = 0; i < collection.size(); i++) {
             if (i == removeIdx && removeRandom) {
                 continue;
@@ -1,11 +1,9 @@
 package com.protoevo.biology.evolution;
 
 import com.protoevo.biology.nn.NetworkGenome;
-import com.protoevo.core.Simulation;
+import com.protoevo.maths.RandomStreams;
 
 import java.io.Serializable;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Arrays;
 import java.util.HashSet;
@@ -78,7 +76,7 @@ public interface Evolvable extends Serializable {
         for (String geneName : allGeneNames) {
             if (parent1Genome.hasGene(geneName) && parent2Genome.hasGene(geneName)) {
                 childGenome.addNode(geneName,
-                        Simulation.RANDOM.nextBoolean() ?
+                        RandomStreams.randomBoolean() ?
                         parent1Genome.getNode(geneName) :
                         parent2Genome.getNode(geneName)
                 );
@@ -94,18 +92,17 @@ public interface Evolvable extends Serializable {
 
     static void setTraitValue(Evolvable e, Method setter, Object value) {
         try {
-            setter.invoke(e, value);
+            TraitAccessors.objectSetter(setter).set(e, value);
         }
-        catch (IllegalArgumentException | IllegalAccessException
-               | InvocationTargetException | NullPointerException ex) {
+        catch (ClassCastException ex) {
             throw new RuntimeException(
-                    "Could not map value " + value + " to the trait. Check the signature of "
+                    "Could not cast value " + value + " to the trait. Check the signature of "
                     + setter.getName() + " on " + e + ": " + ex
             );
         }
-        catch (ClassCastException ex) {
+        catch (IllegalArgumentException | NullPointerException ex) {
             throw new RuntimeException(
-                    "Could not cast value " + value + " to the trait. Check the signature of "
+                    "Could not map value " + value + " to the trait. Check the signature of "
                     + setter.getName() + " on " + e + ": " + ex
             );
         }
@@ -117,21 +114,8 @@ public interface Evolvable extends Serializable {
     }
 
     static <T extends Evolvable> Supplier<T> createEvolvableConstructor(Class<T> clazz, GeneExpressionFunction fn) {
-        return () -> {
-            try {
-                for (Constructor<?> c : clazz.getConstructors())
-                    if (c.getParameterCount() > 0
-                            && c.getParameterTypes()[0].equals(GeneExpressionFunction.Regulators.class))
-                        return clazz.getConstructor(GeneExpressionFunction.Regulators.class)
-                                .newInstance(fn.getGeneRegulators());
-
-                return clazz.getConstructor().newInstance();
-
-            } catch (InstantiationException | IllegalAccessException | InvocationTargetException |
-                     NoSuchMethodException e) {
-                throw new RuntimeException("Could not create new evolvable: " + e);
-            }
-        };
+        EvolvableMetadata metadata = EvolvableMetadata.of(clazz);
+        return () -> clazz.cast(metadata.newInstance(fn.getGeneRegulators()));
     }
 
     static <T extends Evolvable> T createNew(Class<T> clazz, GeneExpressionFunction fn) {
@@ -175,27 +159,24 @@ public interface Evolvable extends Serializable {
     {
         T newEvolvable = constructor.get();
 
-        for (Method method : newEvolvable.getClass().getMethods()) {
-            if (method.isAnnotationPresent(EvolvableComponent.class)) {
-
-                Class<Evolvable> componentClass = (Class<Evolvable>) method.getParameterTypes()[0];
+        for (Method method : EvolvableMetadata.of(newEvolvable.getClass()).getComponentSetters()) {
+            Class<Evolvable> componentClass = (Class<Evolvable>) method.getParameterTypes()[0];
 
-                GeneExpressionFunction componentFn = createGeneMapping(componentClass);
-                Evolvable component = createNewComponent(componentClass, componentFn);
-                componentFn.registerTargetEvolvable(component.name(), component);
+            GeneExpressionFunction componentFn = createGeneMapping(componentClass);
+            Evolvable component = createNewComponent(componentClass, componentFn);
+            componentFn.registerTargetEvolvable(component.name(), component);
 //                if (component.getGeneExpressionFunction() != null)
 //                    geneExpressionFunction.merge(component.getGeneExpressionFunction());
 
-                if (component instanceof GeneExpressionFunction) {
-                    GeneExpressionFunction newFn = (GeneExpressionFunction) component;
-                    newFn.registerTargetEvolvable(newFn.name(), newFn);
-                    newFn.merge(fn);
-                    fn = newFn;
-                }
-                else {
-                    fn.merge(componentFn);
-                    setTraitValue(newEvolvable, method, component);
-                }
+            if (component instanceof GeneExpressionFunction) {
+                GeneExpressionFunction newFn = (GeneExpressionFunction) component;
+                newFn.registerTargetEvolvable(newFn.name(), newFn);
+                newFn.merge(fn);
+                fn = newFn;
+            }
+            else {
+                fn.merge(componentFn);
+                setTraitValue(newEvolvable, method, component);
             }
         }
 
@@ -215,7 +196,7 @@ public interface Evolvable extends Serializable {
             Class<T> clazz, GeneExpressionFunction.Regulators regulators
     ) {
         GeneExpressionFunction geneExpressionFunction = new GeneExpressionFunction(regulators);
-        for (Method method : clazz.getMethods()) {
+        for (Method method : EvolvableMetadata.of(clazz).getGeneMethods()) {
             if (method.isAnnotationPresent(EvolvableFloat.class)) {
                 EvolvableFloat evolvable = method.getAnnotation(EvolvableFloat.class);
                 geneExpressionFunction.addEvolvableFloat(evolvable, method);
@@ -264,13 +245,11 @@ public interface Evolvable extends Serializable {
 
     static <T extends Evolvable> GeneExpressionFunction.Regulators extractRegulators(Class<T> clazz) {
         GeneExpressionFunction.Regulators regulators = new GeneExpressionFunction.Regulators();
-        for (Method method : clazz.getMethods()) {
-            if (method.isAnnotationPresent(GeneRegulator.class)) {
-                String regulatorName = method.getAnnotation(GeneRegulator.class).name();
-                GeneExpressionFunction.RegulationNode regulator =
-                        new GeneExpressionFunction.RegulationNode(regulatorName, method);
-                regulators.put(regulatorName, regulator);
-            }
+        for (Method method : EvolvableMetadata.of(clazz).getRegulatorGetters()) {
+            String regulatorName = method.getAnnotation(GeneRegulator.class).name();
+            GeneExpressionFunction.RegulationNode regulator =
+                    new GeneExpressionFunction.RegulationNode(regulatorName, method);
+            regulators.put(regulatorName, regulator);
         }
         return regulators;
     }
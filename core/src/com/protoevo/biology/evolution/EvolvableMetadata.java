@@ -0,0 +1,165 @@
+package com.protoevo.biology.evolution;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Reflective metadata of a class, computed once per class and shared by all instances.
+ * <p>
+ * Creating, cloning and expressing evolvables used to scan {@link Class#getMethods()} and
+ * read annotations on every birth. The methods relevant to each step are instead collected
+ * here the first time a class is seen, in the same order {@link Class#getMethods()} returns
+ * them, and constructors are resolved to {@link MethodHandle}s.
+ */
+public final class EvolvableMetadata {
+
+    private static final Map<Class<?>, EvolvableMetadata> registry = new ConcurrentHashMap<>();
+    private static final Map<String, Class<?>> classesByName = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, Function<Object, ?>> singleArgConstructors = new ConcurrentHashMap<>();
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    @SuppressWarnings("unchecked")
+    private static final Class<? extends Annotation>[] geneAnnotations = new Class[]{
+            EvolvableFloat.class, ControlVariable.class, EvolvableInteger.class,
+            EvolvableObject.class, EvolvableList.class, EvolvableComponent.class
+    };
+
+    private final Class<?> type;
+    private final Method[] geneMethods, componentSetters, regulatorGetters;
+    private final Map<String, Method> methodsByName = new HashMap<>();
+    private final MethodHandle regulatorsConstructor, defaultConstructor;
+
+    public static EvolvableMetadata of(Class<?> type) {
+        EvolvableMetadata metadata = registry.get(type);
+        if (metadata == null)
+            metadata = registry.computeIfAbsent(type, EvolvableMetadata::new);
+        return metadata;
+    }
+
+    private EvolvableMetadata(Class<?> type) {
+        this.type = type;
+        List<Method> genes = new ArrayList<>(), components = new ArrayList<>(), regulators = new ArrayList<>();
+        for (Method method : type.getMethods()) {
+            methodsByName.putIfAbsent(method.getName(), method);
+            for (Class<? extends Annotation> annotation : geneAnnotations) {
+                if (method.isAnnotationPresent(annotation)) {
+                    genes.add(method);
+                    break;
+                }
+            }
+            if (method.isAnnotationPresent(EvolvableComponent.class))
+                components.add(method);
+            if (method.isAnnotationPresent(GeneRegulator.class))
+                regulators.add(method);
+        }
+        geneMethods = genes.toArray(new Method[0]);
+        componentSetters = components.toArray(new Method[0]);
+        regulatorGetters = regulators.toArray(new Method[0]);
+
+        MethodHandle withRegulators = null, noArgs = null;
+        for (Constructor<?> c : type.getConstructors()) {
+            if (c.getParameterCount() > 0
+                    && c.getParameterTypes()[0].equals(GeneExpressionFunction.Regulators.class)) {
+                withRegulators = findConstructor(
+                        MethodType.methodType(void.class, GeneExpressionFunction.Regulators.class));
+                break;
+            }
+        }
+        if (withRegulators == null)
+            noArgs = findConstructor(MethodType.methodType(void.class));
+        regulatorsConstructor = withRegulators;
+        defaultConstructor = noArgs;
+    }
+
+    private MethodHandle findConstructor(MethodType methodType) {
+        try {
+            return LOOKUP.findConstructor(type, methodType).asType(methodType.changeReturnType(Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the public methods annotated as genes or components, in declaration order
+     */
+    public Method[] getGeneMethods() {
+        return geneMethods;
+    }
+
+    public Method[] getComponentSetters() {
+        return componentSetters;
+    }
+
+    public Method[] getRegulatorGetters() {
+        return regulatorGetters;
+    }
+
+    /**
+     * @return the first public method with the given name, or null if there is none
+     */
+    public Method getMethod(String name) {
+        return methodsByName.get(name);
+    }
+
+    /**
+     * Constructs a new instance, passing the regulators if the class has a constructor taking them.
+     */
+    public Object newInstance(GeneExpressionFunction.Regulators regulators) {
+        try {
+            if (regulatorsConstructor != null)
+                return regulatorsConstructor.invoke(regulators);
+            if (defaultConstructor != null)
+                return defaultConstructor.invoke();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new RuntimeException("Could not create new evolvable: " + t, t);
+        }
+        throw new RuntimeException("Could not create new evolvable: " + type + " has no suitable constructor");
+    }
+
+    /**
+     * Resolves a class by name, caching the result.
+     */
+    public static Class<?> classForName(String className) throws ClassNotFoundException {
+        Class<?> clazz = classesByName.get(className);
+        if (clazz == null) {
+            clazz = Class.forName(className);
+            classesByName.put(className, clazz);
+        }
+        return clazz;
+    }
+
+    /**
+     * @return a cached factory calling the public constructor of the given class that takes a single
+     * argument of the given type
+     */
+    @SuppressWarnings("unchecked")
+    public static <A, T> Function<A, T> constructor(Class<T> type, Class<A> argType) {
+        return (Function<A, T>) singleArgConstructors.computeIfAbsent(type, t -> {
+            MethodHandle handle;
+            try {
+                handle = LOOKUP.findConstructor(type, MethodType.methodType(void.class, argType))
+                        .asType(MethodType.methodType(Object.class, Object.class));
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                throw new RuntimeException(type + " does not have a public constructor taking " + argType, e);
+            }
+            return arg -> {
+                try {
+                    return handle.invokeExact(arg);
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new RuntimeException("Failed to construct " + type + ": " + e, e);
+                }
+            };
+        });
+    }
+}
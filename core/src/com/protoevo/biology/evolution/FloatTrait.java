@@ -1,9 +1,9 @@
 package com.protoevo.biology.evolution;
 
-import com.badlogic.gdx.math.MathUtils;
 
 import java.io.Serializable;
 import java.util.Map;
+import com.protoevo.maths.RandomStreams;
 
 
 public class FloatTrait implements Trait<Float>, Serializable {
@@ -75,7 +75,7 @@ public class FloatTrait implements Trait<Float>, Serializable {
 
     @Override
     public Float newRandomValue() {
-        return MathUtils.random(minValue, maxValue);
+        return RandomStreams.random(minValue, maxValue);
     }
 
     @Override
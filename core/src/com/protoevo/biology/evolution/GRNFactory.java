@@ -1,9 +1,9 @@
 package com.protoevo.biology.evolution;
 
-import com.badlogic.gdx.math.MathUtils;
 import com.protoevo.biology.nn.*;
 import com.protoevo.biology.nn.meta.GRNTag;
 import com.protoevo.env.Environment;
+import com.protoevo.maths.RandomStreams;
 
 import java.util.function.Supplier;
 
@@ -29,13 +29,13 @@ public class GRNFactory {
             NetworkGenome networkGenome, NeuronGene output) {
         NeuronGene sensor = getBias(networkGenome);
         output.setMutationRange(
-                Environment.settings.evo.minTraitMutationChance.get(),
-                Environment.settings.evo.maxTraitMutationChance.get());
+                Environment.settings().evo.minTraitMutationChance.get(),
+                Environment.settings().evo.maxTraitMutationChance.get());
 
         SynapseGene synapseGene = networkGenome.addSynapse(sensor, output);
         synapseGene.setMutationRange(
-                Environment.settings.evo.minTraitMutationChance.get(),
-                Environment.settings.evo.maxTraitMutationChance.get());
+                Environment.settings().evo.minTraitMutationChance.get(),
+                Environment.settings().evo.maxTraitMutationChance.get());
     }
 
     public static String getInputName(String geneName) {
@@ -62,8 +62,8 @@ public class GRNFactory {
         if (sensor == null) {
             sensor = networkGenome.addSensor("Bias");
             sensor.setMutationRange(
-                    Environment.settings.evo.minMutationChance.get(),
-                    Environment.settings.evo.maxMutationChance.get());
+                    Environment.settings().evo.minMutationChance.get(),
+                    Environment.settings().evo.maxMutationChance.get());
         }
         return sensor;
     }
@@ -138,14 +138,14 @@ public class GRNFactory {
                     (GRNTag) fn -> fn.getExpressionNode(node.getName())
             );
             for (String regulator : regulators.keySet()) {
-                if (MathUtils.randomBoolean(Environment.settings.evo.initialGenomeConnectivity.get()))
+                if (RandomStreams.randomBoolean(Environment.settings().evo.initialGenomeConnectivity.get()))
                     continue;
 
                 SynapseGene synapseGene = networkGenome.addSynapse(
                         networkGenome.getNeuronGene(regulator), outputGene);
                 synapseGene.setMutationRange(
-                        Environment.settings.evo.minRegulationMutationChance.get(),
-                        Environment.settings.evo.maxRegulationMutationChance.get());
+                        Environment.settings().evo.minRegulationMutationChance.get(),
+                        Environment.settings().evo.maxRegulationMutationChance.get());
             }
         }
 
@@ -176,8 +176,8 @@ public class GRNFactory {
                 NeuronGene regulatorSensor = networkGenome.addSensor(regulator,
                         (GRNTag) fn -> fn.getGeneRegulators().get(regulator));
                 regulatorSensor.setMutationRange(
-                        Environment.settings.evo.minRegulationMutationChance.get(),
-                        Environment.settings.evo.maxRegulationMutationChance.get());
+                        Environment.settings().evo.minRegulationMutationChance.get(),
+                        Environment.settings().evo.maxRegulationMutationChance.get());
             }
         }
 
@@ -193,7 +193,7 @@ public class GRNFactory {
     {
         NetworkGenome networkGenome = createIO(new NetworkGenome(), geneExpressionFunction);
 
-        for (int i = 0; i < Environment.settings.evo.initialGRNMutations.get(); i++) {
+        for (int i = 0; i < Environment.settings().evo.initialGRNMutations.get(); i++) {
             networkGenome.mutate();
         }
 
@@ -1,15 +1,13 @@
 package com.protoevo.biology.evolution;
 
-import com.badlogic.gdx.math.MathUtils;
 import com.protoevo.biology.nn.NetworkGenome;
 import com.protoevo.biology.nn.NeuralNetwork;
 import com.protoevo.biology.nn.NeuronGene;
 import com.protoevo.biology.nn.SynapseGene;
 import com.protoevo.utils.Utils;
+import com.protoevo.maths.RandomStreams;
 
 import java.io.Serializable;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.*;
 import java.util.function.Function;
@@ -51,10 +49,11 @@ public class GeneExpressionFunction implements Evolvable.Component, Serializable
             String regulatorName = method.getAnnotation(GeneRegulator.class).name();
             float max = method.getAnnotation(GeneRegulator.class).max();
             float min = method.getAnnotation(GeneRegulator.class).min();
+            TraitAccessors.FloatGetter getter = TraitAccessors.floatGetter(method);
             return evolvable -> {
                 try {
-                    return 2f * ((Float) method.invoke(evolvable) - min) / (max - min) - 1f;
-                } catch (IllegalAccessException | InvocationTargetException | IllegalArgumentException e) {
+                    return 2f * (getter.get(evolvable) - min) / (max - min) - 1f;
+                } catch (RuntimeException e) {
                     throw new RuntimeException(
                         "Failed to get value for gene regulator "
                         + regulatorName + "(" + method.getName() + ":" + method.getDeclaringClass() + ")", e);
@@ -80,14 +79,16 @@ public class GeneExpressionFunction implements Evolvable.Component, Serializable
             this.targetID = target.name();
         }
 
+        public String getTargetID() {
+            return targetID;
+        }
+
         public float getValue(Evolvable evolvable) {
             lastTarget = evolvable;
             if (regulatorGetter == null) {
-                for (Method method : evolvable.getClass().getMethods())
-                    if (method.getName().equals(methodGetterName)) {
-                        regulatorGetter = createGetter(method);
-                        break;
-                    }
+                Method method = EvolvableMetadata.of(evolvable.getClass()).getMethod(methodGetterName);
+                if (method != null)
+                    regulatorGetter = createGetter(method);
 
                 if (regulatorGetter == null)
                     throw new RuntimeException(
@@ -258,21 +259,243 @@ public class GeneExpressionFunction implements Evolvable.Component, Serializable
 
             // this is to handle transient method field.
             // if the node was serialized and rebuilt, the method field will be null.
-            for (Method method : target.getClass().getMethods()) {
-                if (method.getName().equals(methodName)) {
-                    traitSetter = method;
-                    return method;
+            traitSetter = EvolvableMetadata.of(target.getClass()).getMethod(methodName);
+            return traitSetter;
+        }
+
+        public void prependName(String name) {
+            this.name = name + "/" + this.name;
+        }
+    }
+
+    /**
+     * Traits and regulators resolved to network indices and compiled accessors, so that
+     * ticking the network and expressing its outputs avoids label lookups, reflection and boxing.
+     * <p>
+     * Only float, boolean and integer traits without dependencies are bound; anything else,
+     * such as collections or genes that can be disabled, keeps going through the generic path.
+     */
+    private final class Binding {
+        final NeuralNetwork network;
+        final int biasInput, randomInput;
+        final int[] traitInputs;
+        final float[] traitInputValues;
+        final List<String> unboundInputTraits = new ArrayList<>();
+        final int[] regulatorInputs;
+        final RegulationNode[] regulatorNodes;
+        final Evolvable[] regulatorTargets;
+        final TraitAccessors.FloatGetter[] regulatorGetters;
+        final float[] regulatorMins, regulatorMaxs;
+        final List<String> unboundRegulators = new ArrayList<>();
+        final TraitOutput[] traitOutputs;
+        final List<String> unboundOutputTraits = new ArrayList<>();
+
+        Binding(NeuralNetwork network) {
+            this.network = network;
+            biasInput = network.indexOf("Bias");
+            randomInput = network.indexOf("Random Source");
+
+            List<Integer> inputs = new ArrayList<>();
+            List<Float> inputValues = new ArrayList<>();
+            List<TraitOutput> outputs = new ArrayList<>();
+            for (String geneName : getTraitNames()) {
+                ExpressionNode node = expressionNodes.get(geneName);
+                boolean primitive = isBindable(node);
+
+                int input = network.indexOf(GRNFactory.getInputName(geneName));
+                if (input != -1) {
+                    if (primitive) {
+                        inputs.add(input);
+                        inputValues.add(toFloat(geneName, node.getTrait().getValue()));
+                    } else {
+                        unboundInputTraits.add(geneName);
+                    }
                 }
+
+                if (node.mapsToTrait() && targetMap.containsKey(node.getTargetID())) {
+                    TraitOutput output = primitive ? TraitOutput.bind(
+                            node, targetMap.get(node.getTargetID()),
+                            network.indexOf(GRNFactory.getOutputName(geneName))) : null;
+                    if (output != null)
+                        outputs.add(output);
+                    else
+                        unboundOutputTraits.add(geneName);
+                }
+            }
+            traitInputs = new int[inputs.size()];
+            traitInputValues = new float[inputs.size()];
+            for (int i = 0; i < traitInputs.length; i++) {
+                traitInputs[i] = inputs.get(i);
+                traitInputValues[i] = inputValues.get(i);
+            }
+            traitOutputs = outputs.toArray(new TraitOutput[0]);
+
+            List<String> regulatorNames = new ArrayList<>();
+            for (String regulatorName : regulators.keySet()) {
+                RegulationNode node = regulators.get(regulatorName);
+                if (!targetMap.containsKey(node.targetID) || network.indexOf(regulatorName) == -1)
+                    continue;
+                Method getter = findRegulatorGetter(targetMap.get(node.targetID), node.methodGetterName);
+                if (getter != null)
+                    regulatorNames.add(regulatorName);
+                else
+                    unboundRegulators.add(regulatorName);
+            }
+            int n = regulatorNames.size();
+            regulatorInputs = new int[n];
+            regulatorNodes = new RegulationNode[n];
+            regulatorTargets = new Evolvable[n];
+            regulatorGetters = new TraitAccessors.FloatGetter[n];
+            regulatorMins = new float[n];
+            regulatorMaxs = new float[n];
+            for (int i = 0; i < n; i++) {
+                String regulatorName = regulatorNames.get(i);
+                RegulationNode node = regulators.get(regulatorName);
+                Evolvable target = targetMap.get(node.targetID);
+                Method getter = findRegulatorGetter(target, node.methodGetterName);
+                GeneRegulator annotation = getter.getAnnotation(GeneRegulator.class);
+                regulatorInputs[i] = network.indexOf(regulatorName);
+                regulatorNodes[i] = node;
+                regulatorTargets[i] = target;
+                regulatorGetters[i] = TraitAccessors.floatGetter(getter);
+                regulatorMins[i] = annotation.min();
+                regulatorMaxs[i] = annotation.max();
             }
+        }
+
+        void setInputs() {
+            if (biasInput != -1)
+                network.setState(biasInput, 1f);
+            float random = RandomStreams.random(-1f, 1f);
+            if (randomInput != -1)
+                network.setState(randomInput, random);
+
+            for (int i = 0; i < traitInputs.length; i++)
+                network.setState(traitInputs[i], traitInputValues[i]);
+            for (String geneName : unboundInputTraits)
+                setTraitInput(geneName, GRNFactory.getInputName(geneName));
 
-            return null;
+            for (int i = 0; i < regulatorInputs.length; i++) {
+                regulatorNodes[i].lastTarget = regulatorTargets[i];
+                float value = regulatorGetters[i].get(regulatorTargets[i]);
+                float min = regulatorMins[i], max = regulatorMaxs[i];
+                network.setState(regulatorInputs[i], 2f * (value - min) / (max - min) - 1f);
+            }
+            for (String regulatorName : unboundRegulators) {
+                RegulationNode node = regulators.get(regulatorName);
+                network.setInput(regulatorName, node.getValue(targetMap.get(node.targetID)));
+            }
         }
 
-        public void prependName(String name) {
-            this.name = name + "/" + this.name;
+        void expressTraits() {
+            for (TraitOutput output : traitOutputs)
+                output.express(network);
+            for (String geneName : unboundOutputTraits) {
+                ExpressionNode node = expressionNodes.get(geneName);
+                node.setTraitValue(targetMap.get(node.getTargetID()), getTraitValue(geneName));
+            }
         }
     }
 
+    /**
+     * Writes a float, integer or boolean trait to its target through a compiled setter,
+     * only when its value changes.
+     */
+    private static final class TraitOutput {
+        private static final int FLOAT = 0, INT = 1, BOOLEAN = 2;
+
+        final ExpressionNode node;
+        final Evolvable target;
+        final int output, kind;
+        final float geneValue;
+        final TraitAccessors.FloatSetter floatSetter;
+        final TraitAccessors.IntSetter intSetter;
+        final TraitAccessors.BooleanSetter booleanSetter;
+        int lastBits;
+        boolean hasLast = false;
+
+        private TraitOutput(ExpressionNode node, Evolvable target, int output, int kind, Method setter) {
+            this.node = node;
+            this.target = target;
+            this.output = output;
+            this.kind = kind;
+            this.geneValue = toFloat(node.getName(), node.getTrait().getValue());
+            floatSetter = kind == FLOAT ? TraitAccessors.floatSetter(setter) : null;
+            intSetter = kind == INT ? TraitAccessors.intSetter(setter) : null;
+            booleanSetter = kind == BOOLEAN ? TraitAccessors.booleanSetter(setter) : null;
+        }
+
+        static TraitOutput bind(ExpressionNode node, Evolvable target, int output) {
+            Method setter = node.getTraitSetter(target);
+            if (setter == null || setter.getParameterCount() != 1)
+                return null;
+            Class<?> param = setter.getParameterTypes()[0];
+            Trait<?> trait = node.getTrait();
+            int kind;
+            if (trait instanceof FloatTrait && (param == float.class || param == Float.class))
+                kind = FLOAT;
+            else if (trait instanceof IntegerTrait && (param == int.class || param == Integer.class))
+                kind = INT;
+            else if (trait instanceof BooleanTrait && (param == boolean.class || param == Boolean.class))
+                kind = BOOLEAN;
+            else
+                return null;
+            node.lastTarget = target;
+            return new TraitOutput(node, target, output, kind, setter);
+        }
+
+        void express(NeuralNetwork network) {
+            float value = output != -1 ? network.getState(output) : geneValue;
+            int bits;
+            switch (kind) {
+                case FLOAT:
+                    bits = Float.floatToIntBits(value);
+                    break;
+                case INT:
+                    bits = IntegerTrait.fromFloat(value);
+                    break;
+                default:
+                    bits = BooleanTrait.fromFloat(value) ? 1 : 0;
+            }
+            if (hasLast && bits == lastBits)
+                return;
+
+            if (kind == FLOAT)
+                floatSetter.set(target, value);
+            else if (kind == INT)
+                intSetter.set(target, bits);
+            else
+                booleanSetter.set(target, bits == 1);
+            lastBits = bits;
+            hasLast = true;
+        }
+    }
+
+    private static boolean isBindable(ExpressionNode node) {
+        Trait<?> trait = node.getTrait();
+        return node.getDependencies().isEmpty() && !trait.canDisable()
+                && (trait instanceof FloatTrait || trait instanceof IntegerTrait || trait instanceof BooleanTrait);
+    }
+
+    private static float toFloat(String geneName, Object geneValue) {
+        if (geneValue instanceof Float)
+            return (float) geneValue;
+        else if (geneValue instanceof Integer)
+            return (int) geneValue;
+        else if (geneValue instanceof Boolean)
+            return ((boolean) geneValue) ? 1f : -1f;
+        throw new RuntimeException("Could not cast gene " + geneName + " value to float.");
+    }
+
+    private static Method findRegulatorGetter(Evolvable target, String methodName) {
+        Method method = EvolvableMetadata.of(target.getClass()).getMethod(methodName);
+        if (method != null && method.getParameterCount() == 0
+                && method.isAnnotationPresent(GeneRegulator.class)
+                && method.getReturnType() == float.class)
+            return method;
+        return null;
+    }
+
     public static final long serialVersionUID = 1L;
     private ExpressionNodes expressionNodes;
     private NetworkGenome grnGenome;
@@ -280,6 +503,7 @@ public class GeneExpressionFunction implements Evolvable.Component, Serializable
     private Regulators regulators;
     private Collection<String> regulatedTraits = new ArrayList<>();
     private final Map<String, Evolvable> targetMap = new HashMap<>();
+    private transient Binding binding;
 
     public GeneExpressionFunction(ExpressionNodes expressionNodes, Regulators regulators) {
         this.expressionNodes = expressionNodes;
@@ -291,6 +515,7 @@ public class GeneExpressionFunction implements Evolvable.Component, Serializable
     }
 
     public void buildGeneRegulatoryNetwork() {
+        invalidateBinding();
         if (grnGenome == null)
             grnGenome = GRNFactory.createNetworkGenome(this);
         else  // ensure grn IO is up to date
@@ -316,48 +541,43 @@ public class GeneExpressionFunction implements Evolvable.Component, Serializable
         return geneRegulatoryNetwork;
     }
 
-    private void setGRNInputs() {
-        geneRegulatoryNetwork.setInput("Bias", 1f);
-        geneRegulatoryNetwork.setInput("Random Source", MathUtils.random(-1f, 1f));
-        for (String geneName : getTraitNames()) {
-            String inputName = GRNFactory.getInputName(geneName);
-            if (geneRegulatoryNetwork.hasSensor(inputName)) {
-                if (notDisabled(geneName)) {
-                    Object geneValue = getGeneValue(geneName);
-                    float value;
-                    if (geneValue instanceof Float)
-                        value = (float) geneValue;
-                    else if (geneValue instanceof Integer)
-                        value = (int) geneValue;
-                    else if (geneValue instanceof Boolean)
-                        value = ((boolean) geneValue) ? 1f : -1f;
-                    else
-                        throw new RuntimeException("Could not cast gene " + geneName + " value to float.");
+    private Binding getBinding() {
+        if (binding == null || binding.network != geneRegulatoryNetwork)
+            binding = new Binding(geneRegulatoryNetwork);
+        return binding;
+    }
 
-                    geneRegulatoryNetwork.setInput(inputName, value);
-                } else {
-                    geneRegulatoryNetwork.setInput(inputName, 0);
-                }
-            }
-        }
+    /**
+     * Discards the compiled binding, to be rebuilt on the next tick.
+     * Must be called whenever the genes, regulators, targets or network change.
+     */
+    private void invalidateBinding() {
+        binding = null;
+    }
 
-        for (String regulatorName : regulators.keySet()) {
-            RegulationNode node = regulators.get(regulatorName);
-            if (!targetMap.containsKey(node.targetID))
-                continue;
+    private void setGRNInputs() {
+        getBinding().setInputs();
+    }
 
-            Evolvable target = targetMap.get(node.targetID);
-            if (geneRegulatoryNetwork.hasSensor(regulatorName))
-                geneRegulatoryNetwork.setInput(regulatorName, node.getValue(target));
-        }
+    private void setTraitInput(String geneName, String inputName) {
+        if (notDisabled(geneName))
+            geneRegulatoryNetwork.setInput(inputName, toFloat(geneName, getGeneValue(geneName)));
+        else
+            geneRegulatoryNetwork.setInput(inputName, 0);
     }
 
     public void setGeneRegulators(Regulators regulators) {
         this.regulators = regulators;
+        invalidateBinding();
+    }
+
+    public Evolvable getTargetEvolvable(String id) {
+        return targetMap.get(id);
     }
 
     public void registerTargetEvolvable(String id, Evolvable evolvable) {
         targetMap.put(id, evolvable);
+        invalidateBinding();
 
         for (String trait : getTraitNames()) {
             ExpressionNode node = expressionNodes.get(trait);
@@ -386,6 +606,33 @@ public class GeneExpressionFunction implements Evolvable.Component, Serializable
 
     public void update() {
         tick();
+        expressTraits();
+    }
+
+    /**
+     * Sets the network inputs ahead of a tick performed externally, e.g. by a
+     * {@link com.protoevo.biology.nn.NetworkBatch}. Must be followed by {@link #endUpdate()}
+     * once the network has been ticked.
+     */
+    public void beginUpdate() {
+        if (geneRegulatoryNetwork != null)
+            setGRNInputs();
+    }
+
+    /**
+     * Completes an update started with {@link #beginUpdate()}.
+     */
+    public void endUpdate() {
+        if (geneRegulatoryNetwork != null)
+            setGRNInputs();
+        expressTraits();
+    }
+
+    private void expressTraits() {
+        if (geneRegulatoryNetwork != null) {
+            getBinding().expressTraits();
+            return;
+        }
         for (String trait : getTraitNames()) {
             ExpressionNode node = expressionNodes.get(trait);
             if (node.mapsToTrait() && targetMap.containsKey(node.getTargetID()))
@@ -438,25 +685,25 @@ public class GeneExpressionFunction implements Evolvable.Component, Serializable
     private Trait<?> constructTrait(String className, String traitName) {
         Class<Trait<?>> traitClass;
         try {
-            traitClass = (Class<Trait<?>>) Class.forName(className);
+            traitClass = (Class<Trait<?>>) EvolvableMetadata.classForName(className);
         } catch (ClassNotFoundException e) {
             throw new RuntimeException("Failed to find trait class: " + e);
-        } catch (ClassCastException e) {
-            throw new RuntimeException("Class is not a trait: " + e);
         }
+        if (!Trait.class.isAssignableFrom(traitClass))
+            throw new RuntimeException("Class is not a trait: " + className);
 
-        Constructor<Trait<?>> traitConstructor;
+        Function<String, Trait<?>> traitConstructor;
         try {
-            traitConstructor = traitClass.getConstructor(String.class);
-        } catch (NoSuchMethodException e) {
+            traitConstructor = EvolvableMetadata.constructor(traitClass, String.class);
+        } catch (RuntimeException e) {
             throw new RuntimeException(
                     "EvolvableObject gene class " + className + " did not have " +
                     "a constructor that takes a single string (the name): " + e);
         }
 
         try {
-            return traitConstructor.newInstance(traitName);
-        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            return traitConstructor.apply(traitName);
+        } catch (RuntimeException e) {
             throw new RuntimeException("Failed to construct trait from " + className + ": " + e);
         }
     }
@@ -480,7 +727,7 @@ public class GeneExpressionFunction implements Evolvable.Component, Serializable
 
         Class<Evolvable.Element> elementClass;
         try {
-            elementClass = (Class<Evolvable.Element>) Class.forName(evolvable.elementClassPath());
+            elementClass = (Class<Evolvable.Element>) EvolvableMetadata.classForName(evolvable.elementClassPath());
         } catch (ClassNotFoundException e) {
             throw new RuntimeException("Failed to find class for evolvable collection: " + e);
         } catch (ClassCastException e) {
@@ -508,6 +755,7 @@ public class GeneExpressionFunction implements Evolvable.Component, Serializable
     }
 
     public void merge(GeneExpressionFunction other) {
+        invalidateBinding();
         other.expressionNodes.forEach(expressionNodes::putIfAbsent);
         other.regulators.forEach(regulators::putIfAbsent);
         other.targetMap.forEach(targetMap::putIfAbsent);
@@ -638,6 +886,7 @@ public class GeneExpressionFunction implements Evolvable.Component, Serializable
     }
 
     public void addNode(String geneName, ExpressionNode node) {
+        invalidateBinding();
         expressionNodes.put(geneName, node);
         if (node.getTrait().canDisable()) {
             String disableName = "Disable " + geneName;
@@ -650,6 +899,7 @@ public class GeneExpressionFunction implements Evolvable.Component, Serializable
     }
 
     public void prependNames(String name) {
+        invalidateBinding();
         ExpressionNodes newNodes = new ExpressionNodes();
         for (Map.Entry<String, ExpressionNode> entry : expressionNodes.entrySet()) {
             ExpressionNode node = entry.getValue();
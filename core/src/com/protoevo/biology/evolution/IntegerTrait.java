@@ -1,10 +1,9 @@
 package com.protoevo.biology.evolution;
 
-import com.badlogic.gdx.math.MathUtils;
 import com.fasterxml.jackson.annotation.JsonIdentityInfo;
 import com.fasterxml.jackson.annotation.ObjectIdGenerators;
-import com.protoevo.core.Simulation;
 import com.protoevo.env.Environment;
+import com.protoevo.maths.RandomStreams;
 
 import java.util.Map;
 
@@ -139,7 +138,7 @@ public class IntegerTrait implements Trait<Integer> {
             minNewValue = minValue;
             maxNewValue = maxValue;
         }
-        return MathUtils.random(maxNewValue - minNewValue - 1) + minNewValue;
+        return RandomStreams.random(maxNewValue - minNewValue - 1) + minNewValue;
     }
 
     public EvolvableInteger.MutationMethod getMutationMethod() {
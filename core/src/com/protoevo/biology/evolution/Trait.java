@@ -1,8 +1,7 @@
 package com.protoevo.biology.evolution;
 
-import com.badlogic.gdx.math.MathUtils;
-import com.protoevo.core.Simulation;
 import com.protoevo.env.Environment;
+import com.protoevo.maths.RandomStreams;
 
 import java.io.Serializable;
 import java.util.HashMap;
@@ -30,9 +29,9 @@ public interface Trait<T> extends Evolvable.Component, Serializable {
     }
 
     default void mutateMutationRate() {
-        setMutationRate(MathUtils.random(
-                Environment.settings.evo.minTraitMutationChance.get(),
-                Environment.settings.evo.maxTraitMutationChance.get()
+        setMutationRate(RandomStreams.random(
+                Environment.settings().evo.minTraitMutationChance.get(),
+                Environment.settings().evo.maxTraitMutationChance.get()
         ));
     }
 
@@ -40,10 +39,10 @@ public interface Trait<T> extends Evolvable.Component, Serializable {
     void incrementMutationCount();
 
     default Trait<T> cloneWithMutation() {
-        if (Math.random() > getMutationRate())
+        if (RandomStreams.random() > getMutationRate())
             return copy();
 
-        if (Simulation.RANDOM.nextBoolean())
+        if (RandomStreams.randomBoolean())
             mutateMutationRate();
 
         Trait<T> newTrait = createNew(newRandomValue());
@@ -76,7 +75,7 @@ public interface Trait<T> extends Evolvable.Component, Serializable {
     }
 
     default Trait<?> crossover(Trait<?> other) {
-        if (Simulation.RANDOM.nextBoolean())
+        if (RandomStreams.randomBoolean())
             return this;
         else
             return other;
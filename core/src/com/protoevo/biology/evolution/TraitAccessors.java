@@ -0,0 +1,190 @@
+package com.protoevo.biology.evolution;
+
+import java.lang.invoke.*;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Compiles the annotated getter and setter methods of evolvables into functional interfaces
+ * with primitive signatures, so that binding gene expression to traits and regulators does not
+ * go through {@link Method#invoke} or box values.
+ * <p>
+ * Accessors are generated with {@link LambdaMetafactory}, so that once warm they are as cheap
+ * as a direct call. If the metafactory cannot be used for a method, e.g. because the declaring
+ * class is not accessible, the accessor falls back to invoking a {@link MethodHandle}.
+ * Each accessor is generated once per method and shared, as every generated lambda is a new class.
+ */
+public final class TraitAccessors {
+
+    @FunctionalInterface
+    public interface FloatGetter {
+        float get(Object target);
+    }
+
+    @FunctionalInterface
+    public interface FloatSetter {
+        void set(Object target, float value);
+    }
+
+    @FunctionalInterface
+    public interface IntSetter {
+        void set(Object target, int value);
+    }
+
+    @FunctionalInterface
+    public interface BooleanSetter {
+        void set(Object target, boolean value);
+    }
+
+    @FunctionalInterface
+    public interface ObjectSetter {
+        void set(Object target, Object value);
+    }
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final Map<Class<?>, Map<Method, Object>> accessors = new ConcurrentHashMap<>();
+
+    private TraitAccessors() {}
+
+    private static <T> T cached(Method method, Class<T> accessorType, Function<Method, T> compiler) {
+        Map<Method, Object> compiled = accessors.computeIfAbsent(accessorType, t -> new ConcurrentHashMap<>());
+        Object accessor = compiled.get(method);
+        if (accessor == null) {
+            accessor = compiler.apply(method);
+            compiled.put(method, accessor);
+        }
+        return accessorType.cast(accessor);
+    }
+
+    private static <T> T compile(Class<T> samClass, String samName, MethodType samType,
+                                 Method method, MethodType instantiatedType) throws Throwable {
+        MethodHandle impl = LOOKUP.unreflect(method);
+        CallSite site = LambdaMetafactory.metafactory(
+                LOOKUP, samName, MethodType.methodType(samClass), samType, impl, instantiatedType);
+        return samClass.cast(site.getTarget().invoke());
+    }
+
+    private static MethodHandle handle(Method method, MethodType type) {
+        try {
+            return LOOKUP.unreflect(method).asType(type);
+        } catch (IllegalAccessException | WrongMethodTypeException e) {
+            throw new RuntimeException("Could not bind " + method.getName()
+                    + " on " + method.getDeclaringClass() + ": " + e);
+        }
+    }
+
+    private static RuntimeException invocationFailed(Method method, Throwable t) {
+        if (t instanceof RuntimeException)
+            return (RuntimeException) t;
+        return new RuntimeException("Failed to invoke " + method.getName()
+                + " on " + method.getDeclaringClass() + ": " + t, t);
+    }
+
+    public static FloatGetter floatGetter(Method method) {
+        return cached(method, FloatGetter.class, TraitAccessors::compileFloatGetter);
+    }
+
+    private static FloatGetter compileFloatGetter(Method method) {
+        Class<?> declaring = method.getDeclaringClass();
+        try {
+            return compile(FloatGetter.class, "get",
+                    MethodType.methodType(float.class, Object.class), method,
+                    MethodType.methodType(float.class, declaring));
+        } catch (Throwable ignored) {
+            MethodHandle h = handle(method, MethodType.methodType(float.class, Object.class));
+            return target -> {
+                try {
+                    return (float) h.invokeExact(target);
+                } catch (Throwable t) {
+                    throw invocationFailed(method, t);
+                }
+            };
+        }
+    }
+
+    public static FloatSetter floatSetter(Method method) {
+        return cached(method, FloatSetter.class, TraitAccessors::compileFloatSetter);
+    }
+
+    private static FloatSetter compileFloatSetter(Method method) {
+        Class<?> declaring = method.getDeclaringClass();
+        try {
+            return compile(FloatSetter.class, "set",
+                    MethodType.methodType(void.class, Object.class, float.class), method,
+                    MethodType.methodType(void.class, declaring, float.class));
+        } catch (Throwable ignored) {
+            MethodHandle h = handle(method, MethodType.methodType(void.class, Object.class, float.class));
+            return (target, value) -> {
+                try {
+                    h.invokeExact(target, value);
+                } catch (Throwable t) {
+                    throw invocationFailed(method, t);
+                }
+            };
+        }
+    }
+
+    public static IntSetter intSetter(Method method) {
+        return cached(method, IntSetter.class, TraitAccessors::compileIntSetter);
+    }
+
+    private static IntSetter compileIntSetter(Method method) {
+        Class<?> declaring = method.getDeclaringClass();
+        try {
+            return compile(IntSetter.class, "set",
+                    MethodType.methodType(void.class, Object.class, int.class), method,
+                    MethodType.methodType(void.class, declaring, int.class));
+        } catch (Throwable ignored) {
+            MethodHandle h = handle(method, MethodType.methodType(void.class, Object.class, int.class));
+            return (target, value) -> {
+                try {
+                    h.invokeExact(target, value);
+                } catch (Throwable t) {
+                    throw invocationFailed(method, t);
+                }
+            };
+        }
+    }
+
+    public static BooleanSetter booleanSetter(Method method) {
+        return cached(method, BooleanSetter.class, TraitAccessors::compileBooleanSetter);
+    }
+
+    private static BooleanSetter compileBooleanSetter(Method method) {
+        Class<?> declaring = method.getDeclaringClass();
+        try {
+            return compile(BooleanSetter.class, "set",
+                    MethodType.methodType(void.class, Object.class, boolean.class), method,
+                    MethodType.methodType(void.class, declaring, boolean.class));
+        } catch (Throwable ignored) {
+            MethodHandle h = handle(method, MethodType.methodType(void.class, Object.class, boolean.class));
+            return (target, value) -> {
+                try {
+                    h.invokeExact(target, value);
+                } catch (Throwable t) {
+                    throw invocationFailed(method, t);
+                }
+            };
+        }
+    }
+
+    /**
+     * @return a setter taking the value as an object, unboxing it if the setter takes a primitive
+     */
+    public static ObjectSetter objectSetter(Method method) {
+        return cached(method, ObjectSetter.class, TraitAccessors::compileObjectSetter);
+    }
+
+    private static ObjectSetter compileObjectSetter(Method method) {
+        MethodHandle h = handle(method, MethodType.methodType(void.class, Object.class, Object.class));
+        return (target, value) -> {
+            try {
+                h.invokeExact(target, value);
+            } catch (Throwable t) {
+                throw invocationFailed(method, t);
+            }
+        };
+    }
+}
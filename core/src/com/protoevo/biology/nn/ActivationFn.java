@@ -4,6 +4,7 @@ import com.badlogic.gdx.math.MathUtils;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.protoevo.maths.Functions;
 import com.protoevo.utils.SerializableFunction;
+import com.protoevo.maths.RandomStreams;
 
 import java.io.Serializable;
 import java.util.function.Function;
@@ -11,13 +12,17 @@ import java.util.function.Function;
 public class ActivationFn implements Serializable, Function<Float, Float> {
     public static final long serialVersionUID = 1L;
 
-    public static final ActivationFn SIGMOID = new ActivationFn(z -> 1 / (1 + (float) Math.exp(-z)), "Sigmoid");
-    public static final ActivationFn LINEAR = new ActivationFn(z -> z, "Linear");
-    public static final ActivationFn TANH = new ActivationFn(z -> (float) Math.tanh(z), "Tanh");
-    public static final ActivationFn STEP = new ActivationFn(z -> z > 0 ? 1f : 0f, "Step");
-    public static final ActivationFn RELU = new ActivationFn(z -> z > 0 ? z : 0f, "ReLu");
-    public static final ActivationFn SIN = new ActivationFn(MathUtils::sin, "Sin");
-    public static final ActivationFn GAUSSIAN = new ActivationFn(z -> (float) Math.exp(-z*z), "Gaussian");
+    // Opcodes evaluated without boxing by apply(int, float, float, float); CUSTOM defers to the function
+    public static final int CUSTOM = 0, SIGMOID_OP = 1, LINEAR_OP = 2, TANH_OP = 3, STEP_OP = 4, RELU_OP = 5,
+            SIN_OP = 6, GAUSSIAN_OP = 7, OUTPUT_MAPPER_OP = 8, INPUT_MAPPER_OP = 9, BOOLEAN_INPUT_MAPPER_OP = 10;
+
+    public static final ActivationFn SIGMOID = new ActivationFn(SIGMOID_OP, "Sigmoid");
+    public static final ActivationFn LINEAR = new ActivationFn(LINEAR_OP, "Linear");
+    public static final ActivationFn TANH = new ActivationFn(TANH_OP, "Tanh");
+    public static final ActivationFn STEP = new ActivationFn(STEP_OP, "Step");
+    public static final ActivationFn RELU = new ActivationFn(RELU_OP, "ReLu");
+    public static final ActivationFn SIN = new ActivationFn(SIN_OP, "Sin");
+    public static final ActivationFn GAUSSIAN = new ActivationFn(GAUSSIAN_OP, "Gaussian");
 
     public static final ActivationFn[] activationFunctions = new ActivationFn[]{
             SIGMOID, LINEAR, TANH, STEP, RELU, SIN, GAUSSIAN
@@ -25,25 +30,56 @@ public class ActivationFn implements Serializable, Function<Float, Float> {
 
     public static ActivationFn getOutputMapper(float min, float max) {
         return new ActivationFn(
-                z -> Functions.cyclicalLinearRemap(z, -1, 1, min, max),
+                OUTPUT_MAPPER_OP, min, max,
                 String.format("CyclicalLinearRemap[[%.3f, %.3f] -> [-1, 1]]", min, max)
         );
     }
 
     public static ActivationFn getInputMapper(float min, float max) {
         return new ActivationFn(
-                z -> Functions.cyclicalLinearRemap(z, min, max, -1, 1),
+                INPUT_MAPPER_OP, min, max,
                 String.format("CyclicalLinearRemap[[-1, 1] -> [%.3f, %.3f]]", min, max)
         );
     }
 
     public static ActivationFn getBooleanInputMapper() {
-        return new ActivationFn(z -> z > 0 ? 1f : -1f);
+        return new ActivationFn(BOOLEAN_INPUT_MAPPER_OP, null);
+    }
+
+    public static float apply(int opcode, float min, float max, float z) {
+        switch (opcode) {
+            case SIGMOID_OP:
+                return 1 / (1 + (float) Math.exp(-z));
+            case LINEAR_OP:
+                return z;
+            case TANH_OP:
+                return (float) Math.tanh(z);
+            case STEP_OP:
+                return z > 0 ? 1f : 0f;
+            case RELU_OP:
+                return z > 0 ? z : 0f;
+            case SIN_OP:
+                return MathUtils.sin(z);
+            case GAUSSIAN_OP:
+                return (float) Math.exp(-z*z);
+            case OUTPUT_MAPPER_OP:
+                return Functions.cyclicalLinearRemap(z, -1, 1, min, max);
+            case INPUT_MAPPER_OP:
+                return Functions.cyclicalLinearRemap(z, min, max, -1, 1);
+            case BOOLEAN_INPUT_MAPPER_OP:
+                return z > 0 ? 1f : -1f;
+            default:
+                throw new IllegalArgumentException("Activation opcode " + opcode + " has no primitive form.");
+        }
     }
 
     @JsonIgnore
     private final SerializableFunction<Float, Float> function;
     private String name;
+    @JsonIgnore
+    private int opcode = CUSTOM;
+    @JsonIgnore
+    private float min, max;
 
     public ActivationFn(SerializableFunction<Float, Float> function) {
         this.function = function;
@@ -54,6 +90,36 @@ public class ActivationFn implements Serializable, Function<Float, Float> {
         this.name = name;
     }
 
+    private ActivationFn(int opcode, String name) {
+        this(opcode, 0, 0, name);
+    }
+
+    private ActivationFn(int opcode, float min, float max, String name) {
+        this.function = null;
+        this.opcode = opcode;
+        this.min = min;
+        this.max = max;
+        this.name = name;
+    }
+
+    public int getOpcode() {
+        return opcode;
+    }
+
+    public float getMin() {
+        return min;
+    }
+
+    public float getMax() {
+        return max;
+    }
+
+    public float applyAsFloat(float z) {
+        if (opcode == CUSTOM)
+            return function.apply(z);
+        return apply(opcode, min, max, z);
+    }
+
     @Override
     public String toString() {
         return name;
@@ -67,11 +133,11 @@ public class ActivationFn implements Serializable, Function<Float, Float> {
     }
 
     public static ActivationFn randomActivation() {
-        return activationFunctions[(int) (Math.random() * activationFunctions.length)];
+        return activationFunctions[(int) (RandomStreams.random() * activationFunctions.length)];
     }
 
     @Override
     public Float apply(Float z) {
-        return function.apply(z);
+        return applyAsFloat(z);
     }
 }
@@ -0,0 +1,212 @@
+package com.protoevo.biology.nn;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Ticks many networks at once by grouping those with equal {@link NeuralNetwork.Topology}.
+ * <p>
+ * Each network is assigned a column in a chunk of up to {@link #CHUNK_SIZE} networks of the
+ * same topology. The weights of a chunk are packed column-wise when a network joins it,
+ * so that each tick only needs to copy in the states, after which the innermost loop runs
+ * over networks with unit stride. Chunks are evaluated in parallel and the results written
+ * back to each network. Per network, synapses are summed in the same order as
+ * {@link NeuralNetwork#tick()}, so the results are bit-identical.
+ * <p>
+ * Networks that have not been ticked for {@link #EVICT_AFTER_TICKS} calls to
+ * {@link #tick(Collection)} are released, or can be released immediately with
+ * {@link #remove(NeuralNetwork)}.
+ */
+public class NetworkBatch {
+
+    public static final int CHUNK_SIZE = 64;
+    public static final int EVICT_AFTER_TICKS = 64;
+
+    private static final class Chunk {
+        final NeuralNetwork.Topology topology;
+        NeuralNetwork[] members = new NeuralNetwork[1];
+        long[] lastTicked = new long[1];
+        int capacity = 1, used = 0;
+        float[] weights, state, nextState;
+        long dueTick = -1;
+
+        Chunk(NeuralNetwork.Topology topology) {
+            this.topology = topology;
+            allocate();
+        }
+
+        private void allocate() {
+            weights = new float[topology.getSynapseCount() * capacity];
+            state = new float[topology.size * capacity];
+            nextState = new float[topology.size * capacity];
+        }
+
+        boolean isFull() {
+            return used == CHUNK_SIZE;
+        }
+
+        /**
+         * Doubles the capacity of the chunk and repacks the weights at the new stride.
+         */
+        void grow() {
+            capacity = Math.min(CHUNK_SIZE, 2 * capacity);
+            members = Arrays.copyOf(members, capacity);
+            lastTicked = Arrays.copyOf(lastTicked, capacity);
+            allocate();
+            for (int c = 0; c < used; c++)
+                if (members[c] != null)
+                    members[c].packWeights(weights, c, capacity);
+        }
+
+        void set(int column, NeuralNetwork network) {
+            members[column] = network;
+            if (network != null) {
+                network.packWeights(weights, column, capacity);
+            } else {
+                for (int k = 0; k < topology.getSynapseCount(); k++)
+                    weights[k * capacity + column] = 0;
+            }
+        }
+
+        void tick(long tick) {
+            final int n = capacity, used = this.used;
+            final int[] offsets = topology.offsets, sources = topology.sources;
+            final float[] state = this.state, nextState = this.nextState, weights = this.weights;
+
+            for (int c = 0; c < used; c++)
+                if (members[c] != null)
+                    members[c].packState(state, c, n);
+
+            Arrays.fill(nextState, 0f);
+            for (int i = 0; i < topology.size; i++) {
+                final int row = i * n;
+                for (int k = offsets[i], end = offsets[i + 1]; k < end; k++) {
+                    final int src = sources[k] * n, w = k * n;
+                    for (int c = 0; c < used; c++)
+                        nextState[row + c] += state[src + c] * weights[w + c];
+                }
+                final int op = topology.activationOps[i];
+                final float min = topology.activationMins[i], max = topology.activationMaxs[i];
+                for (int c = 0; c < used; c++)
+                    nextState[row + c] = ActivationFn.apply(op, min, max, nextState[row + c]);
+            }
+
+            for (int c = 0; c < used; c++)
+                if (members[c] != null && lastTicked[c] == tick)
+                    members[c].unpackNextState(nextState, c, n);
+        }
+    }
+
+    private static final class Slot {
+        final Chunk chunk;
+        final int column;
+
+        Slot(Chunk chunk, int column) {
+            this.chunk = chunk;
+            this.column = column;
+        }
+    }
+
+    private final Map<NeuralNetwork.Topology, List<Chunk>> chunksByTopology = new HashMap<>();
+    private final Map<NeuralNetwork.Topology, Deque<Slot>> freeSlots = new HashMap<>();
+    private final Map<NeuralNetwork, Slot> slots = new IdentityHashMap<>();
+    private final List<Chunk> dueChunks = new ArrayList<>();
+    private final List<NeuralNetwork> unbatched = new ArrayList<>();
+    private long tick = 0, networkTicks = 0;
+
+    /**
+     * Ticks each of the given networks once.
+     */
+    public void tick(Collection<NeuralNetwork> networks) {
+        tick++;
+        for (NeuralNetwork network : networks) {
+            if (!network.isBatchable()) {
+                unbatched.add(network);
+                continue;
+            }
+            Slot slot = slots.get(network);
+            if (slot == null)
+                slot = add(network);
+            slot.chunk.lastTicked[slot.column] = tick;
+            if (slot.chunk.dueTick != tick) {
+                slot.chunk.dueTick = tick;
+                dueChunks.add(slot.chunk);
+            }
+        }
+
+        final long currentTick = tick;
+        IntStream.range(0, dueChunks.size() + unbatched.size()).parallel().forEach(i -> {
+            if (i < dueChunks.size())
+                dueChunks.get(i).tick(currentTick);
+            else
+                unbatched.get(i - dueChunks.size()).tick();
+        });
+        networkTicks += networks.size();
+
+        dueChunks.clear();
+        unbatched.clear();
+        if (tick % EVICT_AFTER_TICKS == 0)
+            evictStale();
+    }
+
+    private Slot add(NeuralNetwork network) {
+        NeuralNetwork.Topology topology = network.getTopology();
+        Deque<Slot> free = freeSlots.get(topology);
+        Slot slot;
+        if (free != null && !free.isEmpty()) {
+            slot = free.pop();
+        } else {
+            List<Chunk> chunks = chunksByTopology.computeIfAbsent(topology, t -> new ArrayList<>());
+            Chunk chunk = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+            if (chunk == null || chunk.isFull()) {
+                chunk = new Chunk(topology);
+                chunks.add(chunk);
+            } else if (chunk.used == chunk.capacity) {
+                chunk.grow();
+            }
+            slot = new Slot(chunk, chunk.used++);
+        }
+        slot.chunk.set(slot.column, network);
+        slots.put(network, slot);
+        return slot;
+    }
+
+    /**
+     * Releases the column held by the network, if any.
+     */
+    public void remove(NeuralNetwork network) {
+        Slot slot = slots.remove(network);
+        if (slot == null)
+            return;
+        slot.chunk.set(slot.column, null);
+        freeSlots.computeIfAbsent(slot.chunk.topology, t -> new ArrayDeque<>()).push(slot);
+    }
+
+    private void evictStale() {
+        List<NeuralNetwork> stale = new ArrayList<>();
+        for (Map.Entry<NeuralNetwork, Slot> entry : slots.entrySet()) {
+            Slot slot = entry.getValue();
+            if (tick - slot.chunk.lastTicked[slot.column] >= EVICT_AFTER_TICKS)
+                stale.add(entry.getKey());
+        }
+        stale.forEach(this::remove);
+        if (slots.isEmpty()) {
+            chunksByTopology.clear();
+            freeSlots.clear();
+        }
+    }
+
+    /**
+     * @return the number of networks currently holding a column in this batch
+     */
+    public int size() {
+        return slots.size();
+    }
+
+    /**
+     * @return the total number of network ticks performed by this batch
+     */
+    public long getTickCount() {
+        return networkTicks;
+    }
+}
@@ -1,10 +1,8 @@
 package com.protoevo.biology.nn;
 
-import com.badlogic.gdx.math.MathUtils;
-import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.google.common.collect.Iterators;
-import com.protoevo.core.Simulation;
 import com.protoevo.env.Environment;
+import com.protoevo.maths.RandomStreams;
 import org.apache.commons.lang3.ArrayUtils;
 
 import java.io.Serializable;
@@ -13,15 +11,20 @@ import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+/**
+ * Genomes copied from one another share their gene arrays, and only copy them when one of
+ * them is changed. Genes are never modified once they are in a genome: mutations replace
+ * them with new genes, so that the genes a mutation leaves unchanged stay shared between
+ * relatives instead of being duplicated on every birth.
+ */
 public class NetworkGenome implements Serializable
 {
 	public static final long serialVersionUID = 6145947068527764820L;
 	private NeuronGene[] sensorNeuronGenes, outputNeuronGenes, hiddenNeuronGenes;
 	private int nNeuronGenes;
 	private SynapseGene[] synapseGenes;
-	@JsonIgnore
-	private Random random = Simulation.RANDOM;
 	private int numStructuralMutations = 0, nSensors, nOutputs;
+	private boolean sharesGenes = false;
 	private static int maxSynapseMutationsPerGeneration = 10;
 	private static int maxNodeMutationsPerGeneration = 10;
 
@@ -31,12 +34,13 @@ public class NetworkGenome implements Serializable
 
 	public void setProperties(NetworkGenome other)
 	{
-		sensorNeuronGenes = copy(other.sensorNeuronGenes);
-		outputNeuronGenes = copy(other.outputNeuronGenes);
-		hiddenNeuronGenes = copy(other.hiddenNeuronGenes);
-		synapseGenes = copy(other.synapseGenes);
+		sensorNeuronGenes = other.sensorNeuronGenes;
+		outputNeuronGenes = other.outputNeuronGenes;
+		hiddenNeuronGenes = other.hiddenNeuronGenes;
+		synapseGenes = other.synapseGenes;
+		sharesGenes = true;
+		other.sharesGenes = true;
 		nNeuronGenes = other.nNeuronGenes;
-		random = other.random;
 		numStructuralMutations = other.numStructuralMutations;
 		nSensors = other.nSensors;
 		nOutputs = other.nOutputs;
@@ -46,18 +50,46 @@ public class NetworkGenome implements Serializable
 		this(0, 0);
 	}
 
-	private NeuronGene[] copy(NeuronGene[] neuronGenes) {
-		NeuronGene[] newGenes = new NeuronGene[neuronGenes.length];
-		for (int i = 0; i < neuronGenes.length; i++)
-			newGenes[i] = new NeuronGene(neuronGenes[i]);
-		return newGenes;
+	/**
+	 * Takes private copies of the gene arrays if they may be shared with another genome,
+	 * before any of their elements are replaced.
+	 */
+	private void ensureOwnGenes() {
+		if (!sharesGenes)
+			return;
+		sensorNeuronGenes = sensorNeuronGenes.clone();
+		outputNeuronGenes = outputNeuronGenes.clone();
+		hiddenNeuronGenes = hiddenNeuronGenes.clone();
+		synapseGenes = synapseGenes.clone();
+		sharesGenes = false;
+	}
+
+	private void setSensorGene(int idx, NeuronGene gene) {
+		if (sensorNeuronGenes[idx] == gene)
+			return;
+		ensureOwnGenes();
+		sensorNeuronGenes[idx] = gene;
+	}
+
+	private void setOutputGene(int idx, NeuronGene gene) {
+		if (outputNeuronGenes[idx] == gene)
+			return;
+		ensureOwnGenes();
+		outputNeuronGenes[idx] = gene;
+	}
+
+	private void setHiddenGene(int idx, NeuronGene gene) {
+		if (hiddenNeuronGenes[idx] == gene)
+			return;
+		ensureOwnGenes();
+		hiddenNeuronGenes[idx] = gene;
 	}
 
-	private SynapseGene[] copy(SynapseGene[] synapseGenes) {
-		SynapseGene[] newGenes = new SynapseGene[synapseGenes.length];
-		for (int i = 0; i < synapseGenes.length; i++)
-			newGenes[i] = new SynapseGene(synapseGenes[i]);
-		return newGenes;
+	private void setSynapseGene(int idx, SynapseGene gene) {
+		if (synapseGenes[idx] == gene)
+			return;
+		ensureOwnGenes();
+		synapseGenes[idx] = gene;
 	}
 
 	public NetworkGenome(int numInputs, int numOutputs)
@@ -163,21 +195,25 @@ public class NetworkGenome implements Serializable
 	}
 
 	public SynapseGene addSynapse(NeuronGene in, NeuronGene out) {
-		return addSynapse(in, out, MathUtils.random(-1f, 1f));
+		return addSynapse(in, out, RandomStreams.random(-1f, 1f));
 	}
 
-	private void createHiddenBetween(SynapseGene g) {
+	/**
+	 * Adds a hidden neuron taking the place of the given synapse.
+	 * @return whether the neuron was added
+	 */
+	private boolean createHiddenBetween(SynapseGene g) {
 
-		if (hiddenNeuronGenes.length >= Environment.settings.evo.maxGRNSize.get())
-			return;
+		if (hiddenNeuronGenes.length >= Environment.settings().evo.maxGRNSize.get())
+			return false;
 
 		NeuronGene n = new NeuronGene(
 			nNeuronGenes++, Neuron.Type.HIDDEN, ActivationFn.LINEAR
 		);
 
 		n.setMutationRange(
-				Environment.settings.evo.minRegulationMutationChance.get(),
-				Environment.settings.evo.maxRegulationMutationChance.get());
+				Environment.settings().evo.minRegulationMutationChance.get(),
+				Environment.settings().evo.maxRegulationMutationChance.get());
 
 		hiddenNeuronGenes = Arrays.copyOf(hiddenNeuronGenes, hiddenNeuronGenes.length + 1);
 		hiddenNeuronGenes[hiddenNeuronGenes.length - 1] = n;
@@ -189,8 +225,16 @@ public class NetworkGenome implements Serializable
 		synapseGenes = Arrays.copyOf(synapseGenes, synapseGenes.length + 2);
 		synapseGenes[synapseGenes.length - 2] = inConnection;
 		synapseGenes[synapseGenes.length - 1] = outConnection;
+		return true;
+	}
 
-		g.setDisabled(true);
+	private void splitSynapse(int idx) {
+		SynapseGene g = synapseGenes[idx];
+		if (createHiddenBetween(g)) {
+			SynapseGene disabled = new SynapseGene(g);
+			disabled.setDisabled(true);
+			setSynapseGene(idx, disabled);
+		}
 	}
 
 	private int getSynapseGeneIndex(NeuronGene in, NeuronGene out) {
@@ -206,21 +250,11 @@ public class NetworkGenome implements Serializable
 		return -1;
 	}
 
-	private int getNeuronGeneIndex(NeuronGene gene) {
-		if (gene.isGenomeIdxKnown())
-			return gene.getGenomeIdx();
-
-		for (int i = 0; i < sensorNeuronGenes.length; i++) {
-			sensorNeuronGenes[i].setGenomeIdx(i);
-		}
-		for (int i = 0; i < outputNeuronGenes.length; i++) {
-			outputNeuronGenes[i].setGenomeIdx(i);
-		}
-		for (int i = 0; i < hiddenNeuronGenes.length; i++) {
-			hiddenNeuronGenes[i].setGenomeIdx(i);
-		}
-
-		return gene.getGenomeIdx();
+	private static int indexOf(NeuronGene[] genes, NeuronGene gene) {
+		for (int i = 0; i < genes.length; i++)
+			if (genes[i] == gene)
+				return i;
+		return -1;
 	}
 
 	public NeuronGene getNeuronGene(String name) {
@@ -246,25 +280,25 @@ public class NetworkGenome implements Serializable
 			synapseGenes[synapseGenes.length - 1] = new SynapseGene(in, out);
 		} else {  // synapse does exist
 			SynapseGene g = synapseGenes[idx];
-			synapseGenes[idx] = g.cloneWithMutation();
-			if (Math.random() < g.getMutationRate())   // create new hidden neuron
+			setSynapseGene(idx, g.cloneWithMutation());
+			if (RandomStreams.random() < g.getMutationRate())   // create new hidden neuron
 				createHiddenBetween(g);
 		}
 	}
 
 	/**
 	 * The only valid kind of sensor mutation is creating a connection to a hidden or output neuron.
-	 * @param sensorGene the neuron to mutate
+	 * @param myIdx the index of the neuron to mutate
 	 */
-	private void mutateSensor(NeuronGene sensorGene) {
-		int myIdx = getNeuronGeneIndex(sensorGene);
-		sensorNeuronGenes[myIdx] = sensorGene.cloneWithMutation();
+	private void mutateSensor(int myIdx) {
+		NeuronGene sensorGene = sensorNeuronGenes[myIdx];
+		setSensorGene(myIdx, sensorGene.cloneWithMutation());
 
 		if (hiddenNeuronGenes.length + outputNeuronGenes.length == 0)
 			return;
 
-		if (Math.random() < sensorGene.getMutationRate()) {
-			int otherIdx = MathUtils.random(hiddenNeuronGenes.length + outputNeuronGenes.length - 1);
+		if (RandomStreams.random() < sensorGene.getMutationRate()) {
+			int otherIdx = RandomStreams.random(hiddenNeuronGenes.length + outputNeuronGenes.length - 1);
 			if (otherIdx < outputNeuronGenes.length)
 				mutateConnection(sensorGene, outputNeuronGenes[otherIdx]);
 			else
@@ -274,17 +308,17 @@ public class NetworkGenome implements Serializable
 
 	/**
 	 * The only valid kind of output mutation is creating a connection to a hidden or sensor neuron.
-	 * @param outputGene the neuron to mutate
+	 * @param myIdx the index of the neuron to mutate
 	 */
-	private void mutateOutput(NeuronGene outputGene) {
-		int myIdx = getNeuronGeneIndex(outputGene);
-		outputNeuronGenes[myIdx] = outputGene.cloneWithMutation();
+	private void mutateOutput(int myIdx) {
+		NeuronGene outputGene = outputNeuronGenes[myIdx];
+		setOutputGene(myIdx, outputGene.cloneWithMutation());
 
 		if (hiddenNeuronGenes.length + sensorNeuronGenes.length == 0)
 			return;
 
-		if (Math.random() < outputGene.getMutationRate()) {
-			int otherIdx = MathUtils.random(hiddenNeuronGenes.length + sensorNeuronGenes.length - 1);
+		if (RandomStreams.random() < outputGene.getMutationRate()) {
+			int otherIdx = RandomStreams.random(hiddenNeuronGenes.length + sensorNeuronGenes.length - 1);
 			if (otherIdx < sensorNeuronGenes.length)
 				mutateConnection(sensorNeuronGenes[otherIdx], outputGene);
 			else
@@ -295,16 +329,16 @@ public class NetworkGenome implements Serializable
 	/**
 	 * There are two kinds of hidden neuron mutations: creating a connection to any other neuron,
 	 * or changing the activation function.
-	 * @param hiddenGene the neuron to mutate
+	 * @param myIdx the index of the neuron to mutate
 	 */
-	private void mutateHidden(NeuronGene hiddenGene) {
-		int myIdx = getNeuronGeneIndex(hiddenGene);
-		hiddenNeuronGenes[myIdx] = hiddenGene.cloneWithMutation();
+	private void mutateHidden(int myIdx) {
+		NeuronGene hiddenGene = hiddenNeuronGenes[myIdx];
+		setHiddenGene(myIdx, hiddenGene.cloneWithMutation());
 
-		if (Math.random() < hiddenGene.getMutationRate()
+		if (RandomStreams.random() < hiddenGene.getMutationRate()
 				&& hiddenNeuronGenes.length + outputNeuronGenes.length > 0) {
 			// random connection mutation involving this neuron
-			int otherIdx = MathUtils.random(
+			int otherIdx = RandomStreams.random(
 					hiddenNeuronGenes.length +
 					outputNeuronGenes.length - 1);
 			if (otherIdx < hiddenNeuronGenes.length)
@@ -316,41 +350,41 @@ public class NetworkGenome implements Serializable
 
 	public void mutateNeuronGene(NeuronGene neuronGene) {
 		if (neuronGene.getType() == Neuron.Type.SENSOR) {
-			mutateSensor(neuronGene);
+			mutateSensor(indexOf(sensorNeuronGenes, neuronGene));
 			return;
 		}
 
 		if (neuronGene.getType() == Neuron.Type.OUTPUT) {
-			mutateOutput(neuronGene);
+			mutateOutput(indexOf(outputNeuronGenes, neuronGene));
 			return;
 		}
 
-		mutateHidden(neuronGene);
+		mutateHidden(indexOf(hiddenNeuronGenes, neuronGene));
 	}
 
 	public void mutateSynapseGene(int idx) {
-		if (Simulation.RANDOM.nextFloat() < Environment.settings.evo.structuralMutationChance.get())
-			synapseGenes[idx] = synapseGenes[idx].cloneWithMutation();
-		else if (Math.random() < synapseGenes[idx].getMutationRate())
-			createHiddenBetween(synapseGenes[idx]);
+		if (RandomStreams.random() < Environment.settings().evo.structuralMutationChance.get())
+			setSynapseGene(idx, synapseGenes[idx].cloneWithMutation());
+		else if (RandomStreams.random() < synapseGenes[idx].getMutationRate())
+			splitSynapse(idx);
 	}
 	
 	public void mutate()
 	{
 		for (int i = 0; i < maxNodeMutationsPerGeneration; i++) {
-			int idx = MathUtils.random(
+			int idx = RandomStreams.random(
 					0, sensorNeuronGenes.length + outputNeuronGenes.length + hiddenNeuronGenes.length - 1);
 			if (idx < sensorNeuronGenes.length)
-				mutateSensor(sensorNeuronGenes[idx]);
+				mutateSensor(idx);
 			else if (idx < sensorNeuronGenes.length + outputNeuronGenes.length)
-				mutateOutput(outputNeuronGenes[idx - sensorNeuronGenes.length]);
+				mutateOutput(idx - sensorNeuronGenes.length);
 			else
-				mutateHidden(hiddenNeuronGenes[idx - sensorNeuronGenes.length - outputNeuronGenes.length]);
+				mutateHidden(idx - sensorNeuronGenes.length - outputNeuronGenes.length);
 		}
 
 		if (synapseGenes.length > 0)
 			for (int i = 0; i < maxSynapseMutationsPerGeneration; i++) {
-				int idx = MathUtils.random(0, synapseGenes.length - 1);
+				int idx = RandomStreams.random(0, synapseGenes.length - 1);
 				mutateSynapseGene(idx);
 			}
 	}
@@ -361,12 +395,12 @@ public class NetworkGenome implements Serializable
 				.collect(Collectors.toMap(
 						SynapseGene::getInnovation,
 						Function.identity(),
-						(x1, x2) -> random.nextBoolean() ? x1 : x2));
+						(x1, x2) -> RandomStreams.randomBoolean() ? x1 : x2));
 		Map<Integer, SynapseGene> theirConnections = Arrays.stream(other.synapseGenes)
 				.collect(Collectors.toMap(
 						SynapseGene::getInnovation,
 						Function.identity(),
-						(x1, x2) -> random.nextBoolean() ? x1 : x2));
+						(x1, x2) -> RandomStreams.randomBoolean() ? x1 : x2));
 
 		Set<Integer> innovationNumbers = new HashSet<>();
 		innovationNumbers.addAll(myConnections.keySet());
@@ -379,11 +413,13 @@ public class NetworkGenome implements Serializable
 			boolean theyContain = theirConnections.containsKey(innovation);
 			SynapseGene g;
 			if (iContain && theyContain) {
-				g = Simulation.RANDOM.nextBoolean() ?
+				g = RandomStreams.randomBoolean() ?
 						myConnections.get(innovation) :
 						theirConnections.get(innovation);
-				if (g.isDisabled() && MathUtils.random() < Environment.settings.evo.globalMutationChance.get())
+				if (g.isDisabled() && RandomStreams.random() < Environment.settings().evo.globalMutationChance.get()) {
+					g = new SynapseGene(g);
 					g.setDisabled(false);
+				}
 				childSynapses.add(g);
 				continue;
 
@@ -393,7 +429,7 @@ public class NetworkGenome implements Serializable
 				g = theirConnections.get(innovation);
 			}
 
-			if (g.getIn().getType().equals(Neuron.Type.SENSOR) || Simulation.RANDOM.nextBoolean())
+			if (g.getIn().getType().equals(Neuron.Type.SENSOR) || RandomStreams.randomBoolean())
 				childSynapses.add(g);
 		}
 
@@ -439,59 +475,63 @@ public class NetworkGenome implements Serializable
 
 	public NeuralNetwork phenotype()
 	{
-
-		Neuron[] neurons = new Neuron[maxNeuronId() + 1];
-
-		for (NeuronGene g : sensorNeuronGenes) {
-
-			Neuron[] inputs = new Neuron[0];
-			float[] weights = new float[0];
-
-			neurons[g.getId()] = new Neuron(
-					g.getId(), inputs, weights, g.getType(), g.getActivation(), g.getLabel()
-			);
-			neurons[g.getId()].setTags(g.getTags());
-		}
-
-		int[] inputCounts = new int[neurons.length];
-		Arrays.fill(inputCounts, 0);
-
-		for (SynapseGene g : synapseGenes) {
-			if (!g.isDisabled())
-				inputCounts[g.getOut().getId()]++;
-		}
-
-		for (int i = 0; i < hiddenNeuronGenes.length + outputNeuronGenes.length; i++) {
-			NeuronGene g;
-			if (i < hiddenNeuronGenes.length)
-				g = hiddenNeuronGenes[i];
-			else g = outputNeuronGenes[i - hiddenNeuronGenes.length];
-
-			Neuron[] inputs = new Neuron[inputCounts[g.getId()]];
-			float[] weights = new float[inputCounts[g.getId()]];
-
-			neurons[g.getId()] = new Neuron(
-					g.getId(), inputs, weights, g.getType(), g.getActivation(), g.getLabel()
-			);
-			neurons[g.getId()].setTags(g.getTags());
+		// compact the neuron gene ids into the indices of the network, in order of id
+		NeuronGene[] genes = new NeuronGene[maxNeuronId() + 1];
+		for (NeuronGene g : sensorNeuronGenes)
+			genes[g.getId()] = g;
+		for (NeuronGene g : hiddenNeuronGenes)
+			genes[g.getId()] = g;
+		for (NeuronGene g : outputNeuronGenes)
+			genes[g.getId()] = g;
+
+		int[] index = new int[genes.length];
+		int size = 0;
+		for (int id = 0; id < genes.length; id++)
+			index[id] = genes[id] == null ? -1 : size++;
+
+		Neuron.Type[] types = new Neuron.Type[size];
+		ActivationFn[] activations = new ActivationFn[size];
+		String[] labels = new String[size];
+		Object[][] tags = new Object[size][];
+		for (NeuronGene g : genes) {
+			if (g == null)
+				continue;
+			int i = index[g.getId()];
+			types[i] = g.getType();
+			activations[i] = g.getActivation();
+			labels[i] = g.getLabel();
+			tags[i] = g.getTags();
 		}
 
-		Arrays.fill(inputCounts, 0);
+		// sensors take no inputs, so synapses into them are dropped
+		int[] offsets = new int[size + 1];
+		for (SynapseGene g : synapseGenes)
+			if (isExpressed(g, genes))
+				offsets[index[g.getOut().getId()] + 1]++;
+		for (int i = 0; i < size; i++)
+			offsets[i + 1] += offsets[i];
+
+		int[] sources = new int[offsets[size]];
+		float[] weights = new float[offsets[size]];
+		int[] cursor = Arrays.copyOf(offsets, size);
 		for (SynapseGene g : synapseGenes) {
-			if (g.isDisabled())
-				continue;
-			int inIdx = g.getIn().getId();
-			int outIdx = g.getOut().getId();
-			if (inIdx >= neurons.length || outIdx >= neurons.length
-					|| neurons[outIdx].getInputs().length == 0)
+			if (!isExpressed(g, genes))
 				continue;
-			int i = inputCounts[outIdx];
-			neurons[outIdx].getInputs()[i] = neurons[inIdx];
-			neurons[outIdx].getWeights()[i] = g.getWeight();
-			inputCounts[outIdx]++;
+			int k = cursor[index[g.getOut().getId()]]++;
+			sources[k] = index[g.getIn().getId()];
+			weights[k] = g.getWeight();
 		}
 
-		return new NeuralNetwork(neurons);
+		return new NeuralNetwork(offsets, sources, weights, types, activations, labels, tags);
+	}
+
+	private static boolean isExpressed(SynapseGene g, NeuronGene[] genes) {
+		int inIdx = g.getIn().getId();
+		int outIdx = g.getOut().getId();
+		return !g.isDisabled()
+				&& inIdx < genes.length && outIdx < genes.length
+				&& genes[inIdx] != null && genes[outIdx] != null
+				&& genes[outIdx].getType() != Neuron.Type.SENSOR;
 	}
 
 	public float distance(NetworkGenome other)
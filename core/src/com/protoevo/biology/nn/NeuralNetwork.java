@@ -1,5 +1,8 @@
 package com.protoevo.biology.nn;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -7,154 +10,363 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.stream.Collectors;
 
+/**
+ * Network compiled into compressed sparse rows: the inputs of neuron i are
+ * sources[offsets[i]] to sources[offsets[i + 1] - 1], with the matching weights.
+ * States are held in primitive arrays that are rotated on each tick, and activations
+ * are evaluated by opcode without boxing.
+ * <p>
+ * The {@link Neuron} objects returned by {@link #getNeurons()} are only built on demand,
+ * for rendering and inspecting the network.
+ * <p>
+ * The synapse layout and activations are never modified, and are interned by content so that
+ * networks with the same topology, such as those of relatives, share a single copy of them.
+ */
 public class NeuralNetwork implements Serializable
 {
-    private static final long serialVersionUID = 1L;
-
-    private final Neuron[] outputNeurons;
-    private final Neuron[] inputNeurons;
+    private static final long serialVersionUID = 2L;
+
+    private final int size;
+    private final int[] offsets, sources;
+    private final float[] weights;
+    private final ActivationFn[] activations;
+    private final int[] activationOps;
+    private final float[] activationMins, activationMaxs;
+    private final Neuron.Type[] types;
+    private final String[] labels;
+    private final Object[][] tags;
+    private final int[] depths;
+    private final int[] inputIds, outputIds;
+    private float[] state, nextState, lastState;
     private final float[] outputs;
-    private final List<Neuron> neurons;
-    private final HashMap<String, Neuron> outputLabels = new HashMap<>(), inputLabels = new HashMap<>();
+    private final HashMap<String, Integer> outputLabels = new HashMap<>(), inputLabels = new HashMap<>();
     private final int depth;
-    private final int nInputs;
-    private boolean computedGraphics = false;
+    private transient List<Neuron> neurons;
+    private transient Neuron[] inputNeurons, outputNeurons;
+    private transient boolean computedGraphics = false;
+    private transient Topology topology;
     private float nodeSpacing;
 
-    public NeuralNetwork(Neuron[] neurons) {
-        this.neurons = new ArrayList<>();
-
-        int nSensors = 0;
-        int nOutputs = 0;
-        int id = 0;
-        for (Neuron neuron : neurons) {
-            if (neuron == null)
-                continue;
-            neuron.setId(id++);
-            this.neurons.add(neuron);
-            if (neuron.getType().equals(Neuron.Type.SENSOR))
-                nSensors++;
-            else if (neuron.getType().equals(Neuron.Type.OUTPUT))
-                nOutputs++;
-        }
-        this.nInputs = nSensors;
-
-        inputNeurons = new Neuron[nInputs];
-        int i = 0;
-        for (Neuron neuron : this.neurons) {
-            if (neuron.getType().equals(Neuron.Type.SENSOR)) {
-                inputNeurons[i] = neuron;
-                i++;
-            }
+    NeuralNetwork(int[] offsets, int[] sources, float[] weights,
+                  Neuron.Type[] types, ActivationFn[] activations, String[] labels, Object[][] tags) {
+        this.size = types.length;
+        this.weights = weights;
+        this.types = types;
+        this.activations = activations;
+        this.labels = labels;
+        this.tags = tags;
+
+        int[] ops = new int[size];
+        float[] mins = new float[size], maxs = new float[size];
+        for (int i = 0; i < size; i++) {
+            ops[i] = activations[i].getOpcode();
+            mins[i] = activations[i].getMin();
+            maxs[i] = activations[i].getMax();
         }
 
-        outputNeurons = new Neuron[nOutputs];
-        i = 0;
-        for (Neuron neuron : this.neurons) {
-            if (neuron.getType().equals(Neuron.Type.OUTPUT)) {
-                outputNeurons[i] = neuron;
-                i++;
-            }
-        }
+        topology = Topology.intern(new Topology(size, offsets, sources, ops, mins, maxs));
+        this.offsets = topology.offsets;
+        this.sources = topology.sources;
+        this.activationOps = topology.activationOps;
+        this.activationMins = topology.activationMins;
+        this.activationMaxs = topology.activationMaxs;
+
+        inputIds = idsOfType(Neuron.Type.SENSOR);
+        outputIds = idsOfType(Neuron.Type.OUTPUT);
 
-        outputs = new float[nOutputs];
-        Arrays.fill(outputs, 0f);
+        state = new float[size];
+        nextState = new float[size];
+        lastState = new float[size];
+        outputs = new float[outputIds.length];
 
+        depths = new int[size];
         depth = calculateDepth();
     }
 
+    private int[] idsOfType(Neuron.Type type) {
+        int count = 0;
+        for (Neuron.Type t : types)
+            if (t == type)
+                count++;
+        int[] ids = new int[count];
+        int k = 0;
+        for (int i = 0; i < size; i++)
+            if (types[i] == type)
+                ids[k++] = i;
+        return ids;
+    }
+
     public int getDepth() {
         return depth;
     }
 
-    public int calculateDepth() {
-        boolean[] visited = new boolean[neurons.size()];
+    private int calculateDepth() {
+        Arrays.fill(depths, -1);
+        boolean[] visited = new boolean[size];
 
         int depth = 1;
-        for (Neuron n : outputNeurons) {
+        for (int id : outputIds) {
             Arrays.fill(visited, false);
-            depth = Math.max(depth, computeDepth(n, visited));
+            depth = Math.max(depth, computeDepth(id, visited));
         }
 
-        for (Neuron n : outputNeurons)
-            n.setDepth(depth);
+        for (int id : outputIds)
+            depths[id] = depth;
 
-        for (Neuron n : inputNeurons)
-            n.setDepth(0);
+        for (int id : inputIds)
+            depths[id] = 0;
 
-        for (Neuron n : neurons)
-            if (n.getDepth() == -1)
-                n.setDepth(depth);
+        for (int i = 0; i < size; i++)
+            if (depths[i] == -1)
+                depths[i] = depth;
 
         return depth;
     }
 
-    private int computeDepth(Neuron neuron, boolean[] visited) {
-        if (neuron.getDepth() != -1)
-            return neuron.getDepth();
+    private int computeDepth(int id, boolean[] visited) {
+        if (depths[id] != -1)
+            return depths[id];
 
-        visited[neuron.getId()] = true;
+        visited[id] = true;
         int maxDepth = 0;
-        for (Neuron input : neuron.getInputs()) {
-            try {
-            if (visited[input.getId()])
+        for (int k = offsets[id]; k < offsets[id + 1]; k++) {
+            int input = sources[k];
+            if (visited[input])
                 continue;
-            } catch (NullPointerException e) {
-                throw e;
-            }
-            int depth = computeDepth(input, visited);
-            maxDepth = Math.max(maxDepth, depth);
+            maxDepth = Math.max(maxDepth, computeDepth(input, visited));
         }
-        neuron.setDepth(maxDepth + 1);
+        depths[id] = maxDepth + 1;
         return maxDepth + 1;
     }
 
+    private float activate(int id, float z) {
+        int op = activationOps[id];
+        if (op == ActivationFn.CUSTOM)
+            return activations[id].applyAsFloat(z);
+        return ActivationFn.apply(op, activationMins[id], activationMaxs[id], z);
+    }
+
     public void setInput(float ... values) {
         for (int i = 0; i < values.length; i++)
-            inputNeurons[i].setState(values[i]);
+            setState(inputIds[i], values[i]);
     }
 
     public void tick()
     {
-        for (Neuron n : neurons) n.tick();
-        for (Neuron n : neurons) n.update();
+        final float[] state = this.state, nextState = this.nextState;
+        final int[] offsets = this.offsets, sources = this.sources;
+        final float[] weights = this.weights;
+        for (int i = 0; i < size; i++) {
+            float z = 0f;
+            for (int k = offsets[i], end = offsets[i + 1]; k < end; k++)
+                z += state[sources[k]] * weights[k];
+            nextState[i] = activate(i, z);
+        }
+        rotateStates();
+    }
+
+    private void rotateStates() {
+        float[] recycled = lastState;
+        lastState = state;
+        state = nextState;
+        nextState = recycled;
+    }
+
+    /**
+     * Identifies networks that can be evaluated together by {@link NetworkBatch}:
+     * networks with equal topologies have the same neurons, activation functions and
+     * synapse layout, and only differ in their weights and states.
+     */
+    public static final class Topology {
+        private static final Interner<Topology> interned = Interners.newWeakInterner();
+
+        final int size;
+        final int[] offsets, sources;
+        final int[] activationOps;
+        final float[] activationMins, activationMaxs;
+        private final int hash;
+
+        private Topology(int size, int[] offsets, int[] sources,
+                         int[] activationOps, float[] activationMins, float[] activationMaxs) {
+            this.size = size;
+            this.offsets = offsets;
+            this.sources = sources;
+            this.activationOps = activationOps;
+            this.activationMins = activationMins;
+            this.activationMaxs = activationMaxs;
+            int h = Arrays.hashCode(offsets);
+            h = 31 * h + Arrays.hashCode(sources);
+            h = 31 * h + Arrays.hashCode(activationOps);
+            h = 31 * h + Arrays.hashCode(activationMins);
+            hash = 31 * h + Arrays.hashCode(activationMaxs);
+        }
+
+        /**
+         * @return the live topology equal to the given one, whose arrays can be shared,
+         * or the given topology if there is none
+         */
+        static Topology intern(Topology topology) {
+            return interned.intern(topology);
+        }
+
+        public int getSynapseCount() {
+            return sources.length;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Topology))
+                return false;
+            Topology other = (Topology) o;
+            return hash == other.hash
+                    && Arrays.equals(offsets, other.offsets)
+                    && Arrays.equals(sources, other.sources)
+                    && Arrays.equals(activationOps, other.activationOps)
+                    && Arrays.equals(activationMins, other.activationMins)
+                    && Arrays.equals(activationMaxs, other.activationMaxs);
+        }
+    }
+
+    /**
+     * @return the interned topology of the network, which is rebuilt and interned again
+     * on first use after the network is deserialised
+     */
+    public Topology getTopology() {
+        if (topology == null)
+            topology = Topology.intern(
+                    new Topology(size, offsets, sources, activationOps, activationMins, activationMaxs));
+        return topology;
+    }
+
+    /**
+     * @return whether all activations are built-in, so that the network can be evaluated
+     * by opcode alongside others of the same topology.
+     */
+    public boolean isBatchable() {
+        for (int op : activationOps)
+            if (op == ActivationFn.CUSTOM)
+                return false;
+        return true;
+    }
+
+    void packState(float[] dst, int column, int stride) {
+        for (int i = 0; i < size; i++)
+            dst[i * stride + column] = state[i];
+    }
+
+    void packWeights(float[] dst, int column, int stride) {
+        for (int k = 0; k < weights.length; k++)
+            dst[k * stride + column] = weights[k];
+    }
+
+    /**
+     * Completes a tick evaluated elsewhere, taking the next states from the given column.
+     */
+    void unpackNextState(float[] src, int column, int stride) {
+        for (int i = 0; i < size; i++)
+            nextState[i] = src[i * stride + column];
+        rotateStates();
     }
 
     public float[] outputs()
     {
-        for (int i = 0; i < outputNeurons.length; i++)
-            outputs[i] = outputNeurons[i].getState();
+        for (int i = 0; i < outputIds.length; i++)
+            outputs[i] = state[outputIds[i]];
         return outputs;
     }
 
+    public float getState(int id) {
+        return state[id];
+    }
+
+    public float getLastState(int id) {
+        return lastState[id];
+    }
+
+    public void setState(int id, float value) {
+        state[id] = activate(id, value);
+    }
+
+    /**
+     * @return the sum of the states of the given type of neuron before the last tick
+     */
+    public float getLastStateSum(Neuron.Type type) {
+        float sum = 0;
+        for (int i = 0; i < size; i++)
+            if (types[i] == type)
+                sum += lastState[i];
+        return sum;
+    }
+
     @Override
     public String toString()
     {
-        return neurons.stream()
+        return getNeurons().stream()
                 .map(Neuron::toString)
                 .collect(Collectors.joining("\n"));
     }
 
     public int getInputSize() {
-        return nInputs;
+        return inputIds.length;
     }
 
     public int getSize() {
-        return neurons.size();
+        return size;
     }
 
     public List<Neuron> getNeurons() {
+        if (neurons == null)
+            buildNeurons();
         return neurons;
     }
 
     public Neuron[] getInputNeurons() {
+        if (neurons == null)
+            buildNeurons();
         return inputNeurons;
     }
 
     public Neuron[] getOutputNeurons() {
+        if (neurons == null)
+            buildNeurons();
         return outputNeurons;
     }
 
+    private synchronized void buildNeurons() {
+        if (neurons != null)
+            return;
+
+        Neuron[] views = new Neuron[size];
+        for (int i = 0; i < size; i++) {
+            int nInputs = offsets[i + 1] - offsets[i];
+            views[i] = new Neuron(this, i, new Neuron[nInputs],
+                    Arrays.copyOfRange(weights, offsets[i], offsets[i + 1]),
+                    types[i], activations[i], labels[i]);
+            views[i].setTags(tags[i]);
+            views[i].setDepth(depths[i]);
+        }
+        for (int i = 0; i < size; i++)
+            for (int k = offsets[i]; k < offsets[i + 1]; k++)
+                views[i].getInputs()[k - offsets[i]] = views[sources[k]];
+
+        inputNeurons = new Neuron[inputIds.length];
+        for (int i = 0; i < inputIds.length; i++)
+            inputNeurons[i] = views[inputIds[i]];
+
+        outputNeurons = new Neuron[outputIds.length];
+        for (int i = 0; i < outputIds.length; i++)
+            outputNeurons[i] = views[outputIds[i]];
+
+        neurons = new ArrayList<>(Arrays.asList(views));
+    }
+
     public boolean hasComputedGraphicsPositions() {
         return computedGraphics;
     }
@@ -171,63 +383,55 @@ public class NeuralNetwork implements Serializable
         return nodeSpacing;
     }
 
-    private void disableOnlyConnectedToDisabled() {
-        boolean check = true;
-        while (check) {
-            check = false;
-            for (Neuron neuron : neurons) {
-                if (!neuron.isConnectedToOutput())
-                    continue;
-
-                boolean allInputsDisabled = true;
-                for (Neuron input : neuron.getInputs())
-                    if (!input.isConnectedToOutput()) {
-                        allInputsDisabled = false;
-                        break;
-                    }
-                if (allInputsDisabled) {
-                    neuron.setConnectedToOutput(false);
-                    check = true;
-                }
-            }
-        }
+    private String getLabel(int id) {
+        return labels[id] == null ? "Neuron " + id : labels[id];
+    }
+
+    private int findLabelled(String label) {
+        for (int i = 0; i < size; i++)
+            if (labels[i] != null && labels[i].equals(label))
+                return i;
+        return -1;
+    }
+
+    /**
+     * @return the index of the neuron with the given label, or -1 if there is none
+     */
+    public int indexOf(String label) {
+        return findLabelled(label);
     }
 
     public boolean hasSensor(String label) {
         if (inputLabels.containsKey(label))
             return true;
 
-        for (Neuron n : neurons) {
-            if (n.hasLabel() && n.getLabel().equals(label)) {
-                inputLabels.put(label, n);
-            }
-        }
+        int id = findLabelled(label);
+        if (id != -1)
+            inputLabels.put(label, id);
 
-        return inputLabels.containsKey(label);
+        return id != -1;
     }
 
     public void setInput(String label, float value) {
-        if (inputLabels.containsKey(label)) {
-            inputLabels.get(label).setState(value);
-            return;
-        }
-
-        for (Neuron n : neurons)
-            if (n.hasLabel() && n.getLabel().equals(label)) {
-                n.setState(value);
-                inputLabels.put(label, n);
+        Integer id = inputLabels.get(label);
+        if (id == null) {
+            id = findLabelled(label);
+            if (id == -1)
                 return;
-            }
+            inputLabels.put(label, id);
+        }
+        setState(id, value);
     }
 
     public float getOutput(String label) {
-        if (outputLabels.containsKey(label))
-            return outputLabels.get(label).getState();
-
-        for (Neuron n : neurons) {
-            if (n.getLabel().equals(label)) {
-                outputLabels.put(label, n);
-                return n.getState();
+        Integer id = outputLabels.get(label);
+        if (id != null)
+            return state[id];
+
+        for (int i = 0; i < size; i++) {
+            if (getLabel(i).equals(label)) {
+                outputLabels.put(label, i);
+                return state[i];
             }
         }
 
@@ -238,12 +442,10 @@ public class NeuralNetwork implements Serializable
         if (outputLabels.containsKey(outputName))
             return true;
 
-        for (Neuron n : neurons) {
-            if (n.hasLabel() && n.getLabel().equals(outputName)) {
-                outputLabels.put(outputName, n);
-            }
-        }
+        int id = findLabelled(outputName);
+        if (id != -1)
+            outputLabels.put(outputName, id);
 
-        return outputLabels.containsKey(outputName);
+        return id != -1;
     }
 }
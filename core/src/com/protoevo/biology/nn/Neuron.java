@@ -7,6 +7,8 @@ import java.util.Comparator;
 
 /**
  * Created by Dylan on 26/05/2017.
+ * <p>
+ * A view of one neuron of a {@link NeuralNetwork}, whose state lives in the network's arrays.
  */
 
 public class Neuron implements Comparable<Neuron>, Serializable {
@@ -27,11 +29,11 @@ public class Neuron implements Comparable<Neuron>, Serializable {
 
     private static final long serialVersionUID = 1L;
 
+    private final NeuralNetwork network;
     private final Neuron[] inputs;
     private final float[] weights;
     private Type type;
     private int id;
-    private float state = 0, lastState = 0, nextState = 0;
     private float learningRate = 0;
     private ActivationFn activation;
     private int depth = -1;
@@ -42,8 +44,10 @@ public class Neuron implements Comparable<Neuron>, Serializable {
     private Object[] tags;
     private boolean active;
 
-    public Neuron(int id, Neuron[] inputs, float[] weights, Type type, ActivationFn activation, String label)
+    Neuron(NeuralNetwork network, int id, Neuron[] inputs, float[] weights,
+           Type type, ActivationFn activation, String label)
     {
+        this.network = network;
         this.id = id;
         this.inputs = inputs;
         this.weights = weights;
@@ -55,20 +59,6 @@ public class Neuron implements Comparable<Neuron>, Serializable {
             connectedToOutput = true;
     }
 
-    void tick()
-    {
-        nextState = 0.0f;
-        for (int i = 0; i < inputs.length; i++)
-            nextState += inputs[i].getState() * weights[i];
-        nextState = activation.apply(nextState);
-    }
-
-    void update()
-    {
-        lastState = state;
-        state = nextState;
-    }
-
     @Override
     public boolean equals(Object o) {
         if (o instanceof Neuron)
@@ -80,25 +70,16 @@ public class Neuron implements Comparable<Neuron>, Serializable {
         return id;
     }
 
-    public void setId(int i) {
-        id = i;
-    }
-
     public float getState() {
-        return state;
+        return network.getState(id);
     }
 
     public float getLastState() {
-        return lastState;
+        return network.getLastState(id);
     }
 
     public Neuron setState(float s) {
-        state = activation.apply(s);
-        return this;
-    }
-
-    public Neuron setActivation(ActivationFn activation) {
-        this.activation = activation;
+        network.setState(id, s);
         return this;
     }
 
@@ -155,7 +136,7 @@ public class Neuron implements Comparable<Neuron>, Serializable {
     @Override
     public String toString()
     {
-        StringBuilder s = new StringBuilder(String.format("id:%d, state:%.1f", id, state));
+        StringBuilder s = new StringBuilder(String.format("id:%d, state:%.1f", id, getState()));
         if (label != null)
             s.append(", label: ").append(label);
         s.append(", connections: [");
@@ -1,10 +1,9 @@
 package com.protoevo.biology.nn;
 
-import com.badlogic.gdx.math.MathUtils;
 import com.fasterxml.jackson.annotation.JsonIgnore;
-import com.protoevo.core.Simulation;
 import com.protoevo.env.Environment;
 import com.protoevo.utils.Utils;
+import com.protoevo.maths.RandomStreams;
 
 import java.io.Serializable;
 
@@ -19,13 +18,11 @@ public class NeuronGene implements Comparable<NeuronGene>, Serializable
     @JsonIgnore
     private Object[] tags;
     private boolean disabled;
-    private float mutationRate = Environment.settings.evo.globalMutationChance.get();
-    private float mutationRateMin = Environment.settings.evo.minMutationChance.get();
-    private float mutationRateMax = Environment.settings.evo.maxMutationChance.get();
+    private float mutationRate = Environment.settings().evo.globalMutationChance.get();
+    private float mutationRateMin = Environment.settings().evo.minMutationChance.get();
+    private float mutationRateMax = Environment.settings().evo.maxMutationChance.get();
     private int nMutations = 0;
     private int nMutationRateMutations = 0;
-    @JsonIgnore
-    private int genomeIdx = -1;
 
     public NeuronGene(int id, Neuron.Type type, ActivationFn activation)
     {
@@ -60,7 +57,7 @@ public class NeuronGene implements Comparable<NeuronGene>, Serializable
     public void setMutationRange(float min, float max) {
         mutationRateMin = min;
         mutationRateMax = max;
-        mutationRate = MathUtils.random(min, max);
+        mutationRate = RandomStreams.random(min, max);
     }
 
     public float getMinMutationRate() {
@@ -79,22 +76,26 @@ public class NeuronGene implements Comparable<NeuronGene>, Serializable
         return nMutations;
     }
 
+    /**
+     * @return a mutated copy of this gene, or this gene itself if it was not mutated,
+     * as genes are shared between the genomes of relatives and must not be modified
+     */
     public NeuronGene cloneWithMutation() {
-        NeuronGene newGene = new NeuronGene(this);
-        if (Math.random() > mutationRate)
-            return newGene;
+        if (RandomStreams.random() > mutationRate)
+            return this;
 
-        nMutations++;
+        NeuronGene newGene = new NeuronGene(this);
+        newGene.nMutations++;
 
         if (type == Neuron.Type.HIDDEN)
             newGene.activation = ActivationFn.randomActivation();
 
-        if (Simulation.RANDOM.nextBoolean()) {
-            newGene.mutationRate = MathUtils.random(mutationRateMin, mutationRateMax);
-            nMutationRateMutations++;
+        if (RandomStreams.randomBoolean()) {
+            newGene.mutationRate = RandomStreams.random(mutationRateMin, mutationRateMax);
+            newGene.nMutationRateMutations++;
         }
 
-        if (Math.random() < Environment.settings.evo.deleteNeuronMutationRate.get() && type == Neuron.Type.HIDDEN)
+        if (RandomStreams.random() < Environment.settings().evo.deleteNeuronMutationRate.get() && type == Neuron.Type.HIDDEN)
             newGene.disable();
 
         return newGene;
@@ -161,18 +162,6 @@ public class NeuronGene implements Comparable<NeuronGene>, Serializable
         return tags;
     }
 
-    public boolean isGenomeIdxKnown() {
-        return genomeIdx != -1;
-    }
-
-    public int getGenomeIdx() {
-        return genomeIdx;
-    }
-
-    public void setGenomeIdx(int myIdx) {
-        genomeIdx = myIdx;
-    }
-
     public int getMutationCount() {
         return nMutations + nMutationRateMutations;
     }
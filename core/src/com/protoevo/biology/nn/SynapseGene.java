@@ -1,10 +1,10 @@
 package com.protoevo.biology.nn;
 
 
-import com.badlogic.gdx.math.MathUtils;
-import com.protoevo.core.Simulation;
+import com.protoevo.core.SimulationContext;
 import com.protoevo.env.Environment;
 import com.protoevo.utils.Utils;
+import com.protoevo.maths.RandomStreams;
 
 import java.io.Serializable;
 import java.util.Objects;
@@ -12,14 +12,13 @@ import java.util.Objects;
 public class SynapseGene implements Comparable<SynapseGene>, Serializable
 {
     private final long signature;
-    private static int globalInnovation = 0;
     private final int innovation;
     private NeuronGene in, out;
     private float weight;
     private boolean disabled;
-    private float mutationRate = Environment.settings.evo.globalMutationChance.get();
-    private float mutationRateMin = Environment.settings.evo.minMutationChance.get();
-    private float mutationRateMax = Environment.settings.evo.maxMutationChance.get();
+    private float mutationRate = Environment.settings().evo.globalMutationChance.get();
+    private float mutationRateMin = Environment.settings().evo.minMutationChance.get();
+    private float mutationRateMax = Environment.settings().evo.maxMutationChance.get();
     private int nMutations, nMutationRateMutations;
 
     public SynapseGene(NeuronGene in, NeuronGene out, float weight, int innovation) {
@@ -46,7 +45,7 @@ public class SynapseGene implements Comparable<SynapseGene>, Serializable
     }
 
     public SynapseGene(NeuronGene in, NeuronGene out, float weight) {
-        this(in, out, weight, globalInnovation++);
+        this(in, out, weight, SimulationContext.current().nextInnovation());
 
         setMutationRange(
                 Math.min(in.getMinMutationRate(), out.getMinMutationRate()),
@@ -54,11 +53,11 @@ public class SynapseGene implements Comparable<SynapseGene>, Serializable
     }
 
     public static float randomInitialWeight() {
-        return (float) (2 * Simulation.RANDOM.nextDouble() - 1);
+        return (float) (2 * RandomStreams.current().nextDouble() - 1);
     }
 
     public SynapseGene(NeuronGene in, NeuronGene out) {
-        this(in, out, randomInitialWeight(), globalInnovation++);
+        this(in, out, randomInitialWeight(), SimulationContext.current().nextInnovation());
     }
 
     @Override
@@ -85,24 +84,28 @@ public class SynapseGene implements Comparable<SynapseGene>, Serializable
     public void setMutationRange(float min, float max) {
         mutationRateMin = min;
         mutationRateMax = max;
-        mutationRate = MathUtils.random(min, max);
+        mutationRate = RandomStreams.random(min, max);
     }
 
+    /**
+     * @return a mutated copy of this gene, or this gene itself if it was not mutated,
+     * as genes are shared between the genomes of relatives and must not be modified
+     */
     public SynapseGene cloneWithMutation() {
-        SynapseGene newGene = new SynapseGene(this);
-        if (Math.random() > mutationRate)
-            return newGene;
+        if (RandomStreams.random() > mutationRate)
+            return this;
 
-        nMutations++;
+        SynapseGene newGene = new SynapseGene(this);
+        newGene.nMutations++;
 
         newGene.weight = randomInitialWeight();
 
-        if (Simulation.RANDOM.nextBoolean()) {
-            newGene.mutationRate = MathUtils.random(mutationRateMin, mutationRateMax);
-            nMutationRateMutations++;
+        if (RandomStreams.randomBoolean()) {
+            newGene.mutationRate = RandomStreams.random(mutationRateMin, mutationRateMax);
+            newGene.nMutationRateMutations++;
         }
 
-        if (Math.random() < Environment.settings.evo.deleteSynapseMutationRate.get())
+        if (RandomStreams.random() < Environment.settings().evo.deleteSynapseMutationRate.get())
             newGene.setDisabled(true);
 
         return newGene;
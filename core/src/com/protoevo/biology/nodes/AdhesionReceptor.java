@@ -110,7 +110,7 @@ public class AdhesionReceptor extends NodeAttachment {
             return;
         Cell other = maybeOther.get();
 
-        float transferRate = Environment.settings.cell.bindingResourceTransport.get();
+        float transferRate = Environment.settings().cell.bindingResourceTransport.get();
 
         float massDelta = cell.getConstructionMassAvailable() - other.getConstructionMassAvailable();
         constructionMassTransfer = Math.abs(transferRate * massDelta * delta);
@@ -141,7 +141,7 @@ public class AdhesionReceptor extends NodeAttachment {
 
     private void handleComplexMoleculeTransport(Cell src, Cell dst, ComplexMolecule molecule, float delta) {
         float massDelta = dst.getComplexMoleculeAvailable(molecule) - src.getComplexMoleculeAvailable(molecule);
-        float transferRate = Environment.settings.cell.bindingResourceTransport.get();
+        float transferRate = Environment.settings().cell.bindingResourceTransport.get();
         if (massDelta > 0) {
             float massTransfer = transferRate * massDelta * delta;
             molecularMassTransfer += massTransfer;
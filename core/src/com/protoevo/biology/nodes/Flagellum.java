@@ -50,19 +50,19 @@ public class Flagellum extends NodeAttachment implements Serializable {
 
         Cell cell = node.getCell();
         // smaller flagella generate less thrust and torque
-        float sizePenalty = getConstructionProgress() * cell.getRadius() / Environment.settings.maxParticleRadius.get();
+        float sizePenalty = getConstructionProgress() * cell.getRadius() / Environment.settings().maxParticleRadius.get();
 
         float thrust = MathUtils.clamp(input[0], -1f, 1f);
 
         thrustVector.set(node.getRelativePos()).scl(-1).nor();
         thrustVector
-                .setLength(sizePenalty * thrust * Environment.settings.protozoa.maxFlagellumThrust.get())
+                .setLength(sizePenalty * thrust * Environment.settings().protozoa.maxFlagellumThrust.get())
                 .scl(thrust < 0 ? -0.5f : 1f);
 
         if (input.length > 1) {
             io3D = true;
             torque = getConstructionProgress() * MathUtils.clamp(input[1], -1f, 1f);
-            torque *= sizePenalty * Environment.settings.protozoa.maxFlagellumTorque.get();
+            torque *= sizePenalty * Environment.settings().protozoa.maxFlagellumTorque.get();
         }
         else torque = 0;
 
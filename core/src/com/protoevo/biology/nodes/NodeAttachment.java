@@ -3,9 +3,11 @@ package com.protoevo.biology.nodes;
 import com.protoevo.biology.ComplexMolecule;
 import com.protoevo.biology.Constructable;
 import com.protoevo.biology.ConstructionProject;
+import com.protoevo.core.SimulationContext;
 import com.protoevo.core.Statistics;
 import com.protoevo.env.Environment;
 import com.protoevo.maths.Geometry;
+import com.protoevo.settings.SimulationSettings;
 
 
 import java.io.Serializable;
@@ -16,11 +18,16 @@ public abstract class NodeAttachment implements Serializable, Constructable {
 
     private static final long serialVersionUID = 1L;
 
-    public static Class<? extends NodeAttachment>[] possibleAttachments = null;
+    /**
+     * @return the attachments a node may construct in the simulation on the calling thread
+     */
+    public static Class<? extends NodeAttachment>[] getPossibleAttachments() {
+        return SimulationContext.current().getPossibleAttachments();
+    }
 
-    public static void setupPossibleAttachments() {
-        if (Environment.settings.protozoa.separatePhagoNodes.get()) {
-            possibleAttachments = new Class[]{
+    public static Class<? extends NodeAttachment>[] createPossibleAttachments(SimulationSettings settings) {
+        if (settings.protozoa.separatePhagoNodes.get()) {
+            return new Class[]{
                     Flagellum.class,
                     Spike.class,
                     PlantOnlyPhagocyticReceptor.class,
@@ -29,7 +36,7 @@ public abstract class NodeAttachment implements Serializable, Constructable {
                     AdhesionReceptor.class,
             };
         } else {
-            possibleAttachments = new Class[]{
+            return new Class[]{
                     Flagellum.class,
                     Spike.class,
                     PhagocyticReceptor.class,
@@ -54,8 +61,8 @@ public abstract class NodeAttachment implements Serializable, Constructable {
     private final Map<ComplexMolecule, Float> requiredComplexMolecules = new HashMap<>();
 
     public float getRequiredMass() {
-        float density = Environment.settings.cell.basicParticleMassDensity.get();
-        float area = Geometry.getCircleArea(Environment.settings.maxParticleRadius.get());
+        float density = Environment.settings().cell.basicParticleMassDensity.get();
+        float area = Geometry.getCircleArea(Environment.settings().maxParticleRadius.get());
         return density * area / 40f;
     }
 
@@ -123,7 +123,7 @@ public class PhagocyticReceptor extends NodeAttachment implements Serializable {
         Cell cell = node.getCell();
         float progressFactor = 0.5f + 0.5f * getConstructionProgress();
         return other.getRadius() < progressFactor * cell.getRadius() * 0.8f
-                && cell.getRadius() > 2 * Environment.settings.minParticleRadius.get();
+                && cell.getRadius() > 2 * Environment.settings().minParticleRadius.get();
     }
 
     private boolean notEngulfed(Cell other) {
@@ -137,7 +137,7 @@ public class PhagocyticReceptor extends NodeAttachment implements Serializable {
     }
 
     public float engulfRange() {
-        return node.getCell().getRadius() * Environment.settings.protozoa.engulfRangeFactor.get();
+        return node.getCell().getRadius() * Environment.settings().protozoa.engulfRangeFactor.get();
     }
 
     public void engulf(Cell cell) {
@@ -2,16 +2,17 @@ package com.protoevo.biology.nodes;
 
 import com.badlogic.gdx.math.Vector2;
 import com.protoevo.biology.cells.Cell;
+import com.protoevo.biology.cells.Protozoan;
 import com.protoevo.core.Statistics;
 import com.protoevo.env.Environment;
 import com.protoevo.maths.Functions;
 import com.protoevo.physics.Coloured;
 import com.protoevo.maths.Shape;
-import com.protoevo.physics.box2d.Box2DParticle;
 import com.protoevo.utils.Colour;
 
 
 import java.io.Serializable;
+import java.util.Arrays;
 
 import static com.protoevo.biology.nodes.Photoreceptor.ColourSensitivity.*;
 
@@ -25,7 +26,6 @@ public class Photoreceptor extends NodeAttachment implements Serializable {
     private final Vector2[] ray = new Vector2[]{new Vector2(), new Vector2()};
     private final Shape.Intersection[] intersections =
             new Shape.Intersection[]{new Shape.Intersection(), new Shape.Intersection()};
-    private final Vector2 tmp = new Vector2(), tmp2 = new Vector2();
     private final Vector2 attachmentRelPos = new Vector2();
     private float interactionRange = 0;
     private final Colour colour = new Colour();
@@ -34,18 +34,32 @@ public class Photoreceptor extends NodeAttachment implements Serializable {
     private int rayIdx;
     private float minSqLen;
     private static final float maxFoV = (float) (Math.PI / 2.);
-    private static final float radiansPerRay = maxFoV / 8f; // max of 8 rays
+    private static final int maxRays = 8;
+    private static final float radiansPerRay = maxFoV / maxRays;
     public int nRays = 8;
     public float fov = maxFoV / 2f;
+    private final Vector2[] rayEnds = new Vector2[maxRays];
+    private final float[] rayAngles = new float[maxRays], rayLengths = new float[maxRays];
+    private final float[] rayMinSqLens = new float[maxRays];
+    // colour contributed by each hit, in the order the hits were found, with the ray they were on
+    private int[] hitRays = new int[maxRays];
+    private float[] hitColours = new float[3 * maxRays];
+    private int nHits;
+    private float hitR, hitG, hitB;
 
     public Photoreceptor(SurfaceNode node) {
         super(node);
+        for (int i = 0; i < maxRays; i++)
+            rayEnds[i] = new Vector2();
     }
 
     @Override
     public void update(float delta, float[] input, float[] output) {
+        if (!(node.getCell() instanceof Protozoan))
+            return;
+
 //        fov = Utils.clampedLinearRemap(input[0], -1f, 1f, 0.1f * maxFoV, maxFoV);
-        nRays = Math.max(1, Math.round(fov / radiansPerRay));
+        nRays = Math.min(maxRays, Math.max(1, Math.round(fov / radiansPerRay)));
 
         interactionRange = getInteractionRange();
         attachmentRelPos.set(node.getRelativePos());
@@ -107,15 +121,51 @@ public class Photoreceptor extends NodeAttachment implements Serializable {
         return ray;
     }
 
+    /**
+     * Finds the colour of the nearest hit along each ray. Rather than casting every ray
+     * against every object in range, each of the objects shared by the cell's photoreceptors
+     * is binned into the rays that point towards it, and only those are cast.
+     * The colours of the hits are then summed ray by ray, in the order they would be found
+     * by casting each ray against every object in turn.
+     */
     private void castRays() {
+        Cell cell = node.getCell();
         ray[0].set(attachmentRelPos)
-                .add(node.getCell().getPos());
+                .add(cell.getPos());
 
-        for (reset(); rayIdx < nRays; nextRay()) {
-            Cell cell = node.getCell();
-            for (Object o : cell.getParticle().getInteractionQueue())
-                if (o instanceof Shape && o instanceof Coloured)
-                    computeIntersections((Shape) o);
+        reset();
+        for (int k = 0; k < nRays; k++) {
+            Vector2 end = rayEnds[k].set(nextRay()[1]);
+            float dx = end.x - ray[0].x, dy = end.y - ray[0].y;
+            rayAngles[k] = (float) Math.atan2(dy, dx);
+            rayLengths[k] = (float) Math.sqrt(dx * dx + dy * dy);
+            rayMinSqLens[k] = Float.MAX_VALUE;
+        }
+
+        nHits = 0;
+        VisibleObjects visible = ((Protozoan) cell).getVisibleObjects();
+        for (int i = 0; i < visible.size(); i++) {
+            int rays = visible.binRays(i, ray[0], rayAngles, rayLengths, nRays);
+            for (int k = 0; rays != 0; k++, rays >>>= 1) {
+                if ((rays & 1) == 0)
+                    continue;
+                ray[1].set(rayEnds[k]);
+                minSqLen = rayMinSqLens[k];
+                if (findNearerHit(visible.getShape(i)))
+                    addHit(k);
+                rayMinSqLens[k] = minSqLen;
+            }
+        }
+
+        reset();
+        for (int k = 0; k < nRays; k++) {
+            for (int j = 0; j < nHits; j++) {
+                if (hitRays[j] == k) {
+                    r += hitColours[3 * j];
+                    g += hitColours[3 * j + 1];
+                    b += hitColours[3 * j + 2];
+                }
+            }
         }
 
         switch (colourSensitivity) {
@@ -137,23 +187,38 @@ public class Photoreceptor extends NodeAttachment implements Serializable {
         reset();
     }
 
-	public boolean cullFromRayCasting(Shape o) {
-		if (o instanceof Box2DParticle) {
-			Vector2 otherPos = ((Box2DParticle) o).getPos();
-            Vector2 myPos = node.getCell().getPos();
-			Vector2 dx = tmp.set(otherPos).sub(myPos).nor();
-            Vector2 dir = tmp2.set(attachmentRelPos).add(myPos).nor();
-			return dx.dot(dir) < Math.cos(fov / 2f);
-		}
-		return false;
-	}
+    private void addHit(int rayIdx) {
+        if (nHits == hitRays.length) {
+            hitRays = Arrays.copyOf(hitRays, 2 * nHits);
+            hitColours = Arrays.copyOf(hitColours, 6 * nHits);
+        }
+        hitRays[nHits] = rayIdx;
+        hitColours[3 * nHits] = hitR;
+        hitColours[3 * nHits + 1] = hitG;
+        hitColours[3 * nHits + 2] = hitB;
+        nHits++;
+    }
 
     public Shape.Intersection[] computeIntersections(Shape o) {
+        if (findNearerHit(o)) {
+            r += hitR;
+            g += hitG;
+            b += hitB;
+        }
+        return intersections;
+    }
+
+    /**
+     * Casts the current ray against the given object, and if it hits nearer than any object
+     * so far, records the distance and the colour of the hit.
+     * @return whether the object was hit nearer than any object so far
+     */
+    private boolean findNearerHit(Shape o) {
         intersections[0].didCollide = false;
         intersections[1].didCollide = false;
         boolean anyCollision = o.rayCollisions(ray, intersections);
         if (!anyCollision)
-            return intersections;
+            return false;
 
         float sqLen = Float.MAX_VALUE;
         Shape.Intersection collisionIntersection = null;
@@ -169,12 +234,13 @@ public class Photoreceptor extends NodeAttachment implements Serializable {
             float light = node.getCell().getLightAt(collisionIntersection.point);
             float w = light * getConstructionProgress() * computeColourFalloffWeight();
             Coloured coloured = (Coloured) o;
-            r += coloured.getColour().r * w;
-            g += coloured.getColour().g * w;
-            b += coloured.getColour().b * w;
+            hitR = coloured.getColour().r * w;
+            hitG = coloured.getColour().g * w;
+            hitB = coloured.getColour().b * w;
+            return true;
         }
 
-        return intersections;
+        return false;
     }
 
     public void reset() {
@@ -201,8 +267,8 @@ public class Photoreceptor extends NodeAttachment implements Serializable {
             return 0;
         return Functions.clampedLinearRemap(
                 node.getCell().getRadius(),
-                Environment.settings.protozoa.minBirthRadius.get(), Environment.settings.maxParticleRadius.get(),
-                node.getCell().getRadius() * 5f, Environment.settings.protozoa.maxLightRange.get());
+                Environment.settings().protozoa.minBirthRadius.get(), Environment.settings().maxParticleRadius.get(),
+                node.getCell().getRadius() * 5f, Environment.settings().protozoa.maxLightRange.get());
     }
 
     @Override
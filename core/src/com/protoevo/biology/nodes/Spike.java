@@ -9,6 +9,7 @@ import com.protoevo.env.Environment;
 import com.protoevo.maths.Functions;
 import com.protoevo.physics.Particle;
 import com.protoevo.maths.Geometry;
+import com.protoevo.maths.RandomStreams;
 
 
 import java.io.Serializable;
@@ -65,13 +66,13 @@ public class Spike extends NodeAttachment implements Serializable {
 
                     myLastAttack = (
                             2* cell.getHealth() +
-                            Environment.settings.protozoa.spikeDamage.get() *
+                            Environment.settings().protozoa.spikeDamage.get() *
                                     woundDepth * getSpikeLength() / other.getRadius() +
-                            2* MathUtils.random()
+                            2* RandomStreams.random()
                     );
                     theirLastDefense = other.getShieldFactor() * (
                             2*other.getHealth() +
-                            2*MathUtils.random()
+                            2*RandomStreams.random()
                     );
 
                     if (myLastAttack > theirLastDefense) {
@@ -12,7 +12,7 @@ import com.protoevo.env.Environment;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 
@@ -37,20 +37,18 @@ public class SurfaceNode implements Evolvable.Element, Serializable {
     private GeneExpressionFunction geneExpressionFunction;
     private boolean nodeExists = false, constructionBlockedByIncompatibleAttachment = false;
 
+    // the functions are lambdas hashed by identity, so are kept in insertion order for ties between
+    // equally close functions to be broken the same way on every run
     private final Map<MoleculeFunctionalContext.MoleculeFunction, Float> nodeFunctionSignatures =
-            new HashMap<>(NodeAttachment.possibleAttachments.length, 1);
+            new LinkedHashMap<>(NodeAttachment.getPossibleAttachments().length, 1);
     private final MoleculeFunctionalContext moleculeFunctionalContext = () -> nodeFunctionSignatures;
     private static final float criticalCandidateConstructionProgress = 0.1f;
 
     public SurfaceNode() {
-        if (NodeAttachment.possibleAttachments == null) {
-            throw new RuntimeException("Node attachments not initialized");
-        }
-
-        for (Class<? extends NodeAttachment> attachmentClass : NodeAttachment.possibleAttachments) {
+        for (Class<? extends NodeAttachment> attachmentClass : NodeAttachment.getPossibleAttachments()) {
             try {
-                NodeAttachment attachment = attachmentClass.getConstructor(SurfaceNode.class)
-                        .newInstance(this);
+                NodeAttachment attachment = EvolvableMetadata.constructor(attachmentClass, SurfaceNode.class)
+                        .apply(this);
                 candidateAttachments.add(attachment);
             }
             catch (Exception e) {
@@ -192,7 +190,7 @@ public class SurfaceNode implements Evolvable.Element, Serializable {
     }
 
     public float requiredArcLength() {
-        return (float) (Environment.settings.maxParticleRadius.get() * 2 * Math.PI / 15f);
+        return (float) (Environment.settings().maxParticleRadius.get() * 2 * Math.PI / 15f);
     }
 
     public void tryCreate() {
@@ -0,0 +1,105 @@
+package com.protoevo.biology.nodes;
+
+import com.badlogic.gdx.math.Vector2;
+import com.protoevo.maths.Shape;
+import com.protoevo.physics.Coloured;
+import com.protoevo.physics.Particle;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * The coloured shapes around a cell that its photoreceptors can see, gathered in a single
+ * pass over the cell's interaction queue and shared by all of its photoreceptors.
+ * <p>
+ * Each shape is kept with a bounding circle, so that a photoreceptor can bin the shape
+ * into the rays whose direction falls within the angle it subtends, and only cast those rays
+ * against it.
+ */
+public class VisibleObjects {
+
+    /** Slack on the angular bins, so that rounding never drops a ray that would hit. */
+    private static final float ANGLE_TOLERANCE = 1e-3f;
+
+    private Shape[] shapes = new Shape[16];
+    private float[] xs = new float[16], ys = new float[16], radii = new float[16];
+    private int size = 0;
+    private boolean stale = true;
+
+    public void collect(Collection<Object> interactionQueue) {
+        size = 0;
+        for (Object o : interactionQueue)
+            if (o instanceof Shape && o instanceof Coloured)
+                add((Shape) o);
+        stale = false;
+    }
+
+    private void add(Shape shape) {
+        if (size == shapes.length) {
+            shapes = Arrays.copyOf(shapes, 2 * size);
+            xs = Arrays.copyOf(xs, 2 * size);
+            ys = Arrays.copyOf(ys, 2 * size);
+            radii = Arrays.copyOf(radii, 2 * size);
+        }
+        if (shape instanceof Particle) {
+            Vector2 pos = shape.getPos();
+            xs[size] = pos.x;
+            ys[size] = pos.y;
+            radii[size] = ((Particle) shape).getRadius();
+        } else {
+            Vector2[] box = shape.getBoundingBox();
+            xs[size] = (box[0].x + box[1].x) / 2f;
+            ys[size] = (box[0].y + box[1].y) / 2f;
+            radii[size] = box[0].dst(box[1]) / 2f;
+        }
+        shapes[size] = shape;
+        size++;
+    }
+
+    /**
+     * Marks the shapes as out of date, to be collected again before they are next used.
+     */
+    public void markStale() {
+        stale = true;
+    }
+
+    public boolean isStale() {
+        return stale;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Shape getShape(int i) {
+        return shapes[i];
+    }
+
+    /**
+     * Finds the rays that may hit the i-th shape. Ray k starts at the origin and has
+     * direction rayAngles[k] and length rayLengths[k], for fewer than 32 rays.
+     * @return a mask with bit k set if ray k may hit the shape; rays it does not set cannot hit it
+     */
+    public int binRays(int i, Vector2 origin, float[] rayAngles, float[] rayLengths, int nRays) {
+        float dx = xs[i] - origin.x, dy = ys[i] - origin.y;
+        float r = radii[i] * (1 + ANGLE_TOLERANCE);
+        float dist = (float) Math.sqrt(dx * dx + dy * dy);
+
+        if (dist <= r)  // the origin is within the bounding circle
+            return (1 << nRays) - 1;
+
+        float halfWidth = (float) Math.asin(r / dist) + ANGLE_TOLERANCE;
+        float angle = (float) Math.atan2(dy, dx);
+        int mask = 0;
+        for (int k = 0; k < nRays; k++) {
+            if (dist - r > rayLengths[k])
+                continue;
+            float delta = Math.abs(angle - rayAngles[k]);
+            if (delta > Math.PI)
+                delta = (float) (2 * Math.PI) - delta;
+            if (delta <= halfWidth)
+                mask |= 1 << k;
+        }
+        return mask;
+    }
+}
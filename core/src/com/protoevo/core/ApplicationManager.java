@@ -35,6 +35,16 @@ public class ApplicationManager {
             DebugMode.setMode(DebugMode.SIMPLE_INFO);
         }
 
+        if (argsMap.containsKey("benchmark")) {
+            new HeadlessBenchmark(argsMap).run();
+            System.exit(0);
+        }
+
+        if (argsMap.containsKey("multi")) {
+            new MultiSimulationRunner(argsMap).run();
+            System.exit(0);
+        }
+
         boolean headless = argsMap.containsKey("headless") 
                             && Boolean.parseBoolean(argsMap.get("headless"));
 
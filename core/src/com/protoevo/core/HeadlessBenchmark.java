@@ -0,0 +1,226 @@
+package com.protoevo.core;
+
+import com.badlogic.gdx.physics.box2d.Box2D;
+import com.protoevo.env.Environment;
+import com.protoevo.env.Serialization;
+import com.protoevo.env.TickProfiler;
+import com.protoevo.settings.SimulationSettings;
+import com.protoevo.utils.FileIO;
+import com.protoevo.utils.Utils;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Measures the throughput of the simulation without graphics, for comparing performance
+ * between commits and machines.
+ * <p>
+ * The environment is updated directly rather than through a {@link Simulation}, so nothing is
+ * saved, no screenshots are rendered and the REPL is not started. Launched with:
+ * <pre>
+ *     --benchmark --ticks=N --warmup=M --seed=S --population=P --threads=T --deterministic
+ *     --simulation=NAME [--save=SAVE] --output=FILE
+ * </pre>
+ * where a simulation name loads that save (or the most recent one) instead of generating a new
+ * world, and the results are written as JSON to the output file, which defaults to
+ * benchmarks/<timestamp>.json. The results include a hash of the final state, which two
+ * deterministic runs with the same seed and number of threads should agree on.
+ */
+public class HeadlessBenchmark {
+
+    public static final int DEFAULT_TICKS = 5000, DEFAULT_WARMUP = 500;
+
+    private final int ticks, warmup;
+    private final long seed;
+    private final Integer population, threads;
+    private final boolean deterministic;
+    private final String simulationName, saveName, output;
+    private final Map<String, Object> results = new LinkedHashMap<>();
+
+    public HeadlessBenchmark(Map<String, String> args) {
+        ticks = Integer.parseInt(args.getOrDefault("ticks", String.valueOf(DEFAULT_TICKS)));
+        warmup = Integer.parseInt(args.getOrDefault("warmup", String.valueOf(DEFAULT_WARMUP)));
+        seed = args.containsKey("seed")
+                ? Long.parseLong(args.get("seed"))
+                : Environment.settings().simulationSeed.get();
+        population = args.containsKey("population") ? Integer.parseInt(args.get("population")) : null;
+        threads = args.containsKey("threads") ? Integer.parseInt(args.get("threads")) : null;
+        deterministic = args.containsKey("deterministic") && Boolean.parseBoolean(args.get("deterministic"));
+        simulationName = args.get("simulation");
+        saveName = args.get("save");
+        output = args.getOrDefault("output", "benchmarks/" + Utils.getTimeStampString() + ".json");
+    }
+
+    private SimulationSettings createSettings() {
+        SimulationSettings settings = SimulationSettings.createDefault();
+        settings.simulationSeed.set(seed);
+        settings.worldgen.seed.set(seed);
+        if (population != null)
+            settings.worldgen.numInitialProtozoa.set(population);
+        return settings;
+    }
+
+    private Environment createEnvironment() {
+        if (simulationName == null) {
+            SimulationSettings settings = createSettings();
+            configure(settings);
+            Environment environment = new Environment(settings);
+            environment.initialise();
+            return environment;
+        }
+
+        String path;
+        if (saveName != null) {
+            path = "saves/" + simulationName + "/env/" + saveName;
+        } else {
+            Optional<Path> mostRecent = Simulation.getMostRecentSave(simulationName);
+            if (!mostRecent.isPresent())
+                throw new RuntimeException("No saves found for simulation: " + simulationName);
+            path = mostRecent.get().toString();
+        }
+        System.out.println("Loading environment: " + path);
+        try {
+            Environment environment = Serialization.reloadEnvironment(path);
+            configure(environment.getSettings());
+            environment.buildPipeline();
+            return environment;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void configure(SimulationSettings settings) {
+        // there is no GL context to run compute shaders in without graphics
+        settings.misc.useOpenGLComputeShader.set(false);
+        if (threads != null)
+            settings.misc.simulationThreads.set(threads);
+        if (deterministic)
+            settings.misc.deterministic.set(true);
+    }
+
+    private static long gcTimeMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            total += Math.max(0, gc.getCollectionTime());
+        return total;
+    }
+
+    private static long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            total += Math.max(0, gc.getCollectionCount());
+        return total;
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP)
+                pool.resetPeakUsage();
+    }
+
+    /**
+     * @return the sum of the peak usage of each heap pool since the last reset, which can
+     * overestimate the peak of the heap as a whole since the pools need not peak together
+     */
+    private static long peakHeapBytes() {
+        long total = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP)
+                total += pool.getPeakUsage().getUsed();
+        return total;
+    }
+
+    public Map<String, Object> run() {
+        Box2D.init();
+        Environment environment = createEnvironment();
+        float delta = Environment.settings().simulationUpdateDelta.get();
+
+        System.out.println("Warming up for " + warmup + " ticks...");
+        for (int i = 0; i < warmup; i++)
+            environment.update(delta);
+
+        TickProfiler profiler = environment.getProfiler();
+        profiler.reset();
+        resetPeakHeap();
+        long gcTime = gcTimeMillis(), gcCount = gcCount();
+        float simStart = environment.getElapsedTime();
+
+        System.out.println("Running benchmark for " + ticks + " ticks...");
+        long start = System.nanoTime();
+        for (int i = 0; i < ticks; i++)
+            environment.update(delta);
+        double wallSeconds = (System.nanoTime() - start) / 1e9;
+        double simSeconds = environment.getElapsedTime() - simStart;
+
+        results.put("seed", seed);
+        results.put("simulation", simulationName);
+        results.put("save", saveName);
+        results.put("ticks", ticks);
+        results.put("warmupTicks", warmup);
+        results.put("threads", Environment.settings().misc.simulationThreads.get());
+        results.put("deterministic", Environment.settings().misc.deterministic.get());
+        results.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+        results.put("javaVersion", System.getProperty("java.version"));
+        results.put("protozoa", environment.numberOfProtozoa());
+        results.put("cells", environment.getCells().size());
+        results.put("wallSeconds", wallSeconds);
+        results.put("ticksPerSecond", ticks / wallSeconds);
+        results.put("simSecondsPerWallSecond", simSeconds / wallSeconds);
+        results.put("gcTimeMillis", gcTimeMillis() - gcTime);
+        results.put("gcCount", gcCount() - gcCount);
+        results.put("peakHeapBytes", peakHeapBytes());
+        results.put("stateHash", Long.toHexString(environment.getStateHash()));
+
+        // the profiler only keeps a window of recent ticks, so stage percentiles cover the end of the run
+        Map<String, Object> stages = new LinkedHashMap<>();
+        for (TickProfiler.StageProfile stage : profiler.getStages()) {
+            Map<String, Object> stageResults = new LinkedHashMap<>();
+            stageResults.put("samples", stage.getNumSamples());
+            stageResults.put("p50Millis", 1000 * stage.getTimePercentile(0.5));
+            stageResults.put("p95Millis", 1000 * stage.getTimePercentile(0.95));
+            stageResults.put("p99Millis", 1000 * stage.getTimePercentile(0.99));
+            stageResults.put("allocatedBytesP50", stage.getAllocatedPercentile(0.5));
+            stageResults.put("entities", stage.getLastEntityCount());
+            stages.put(stage.getName(), stageResults);
+        }
+        results.put("stages", stages);
+
+        printResults(profiler);
+        writeResults();
+        environment.dispose();
+        return results;
+    }
+
+    private void printResults(TickProfiler profiler) {
+        System.out.println();
+        System.out.printf("Ticks per second:          %.2f%n", (double) results.get("ticksPerSecond"));
+        System.out.printf("Sim seconds / wall second: %.3f%n", (double) results.get("simSecondsPerWallSecond"));
+        System.out.printf("GC time:                   %d ms over %d collections%n",
+                (long) results.get("gcTimeMillis"), (long) results.get("gcCount"));
+        System.out.printf("Peak heap:                 %.1f MB%n",
+                (long) results.get("peakHeapBytes") / (1024.0 * 1024.0));
+        System.out.println("State hash:                " + results.get("stateHash"));
+        System.out.println();
+        System.out.println(profiler.report());
+    }
+
+    private void writeResults() {
+        try {
+            Path parent = Paths.get(output).toAbsolutePath().getParent();
+            if (parent != null)
+                Files.createDirectories(parent);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        FileIO.writeJson(results, output);
+        System.out.println("Wrote benchmark results to: " + output);
+    }
+}
@@ -0,0 +1,223 @@
+package com.protoevo.core;
+
+import com.badlogic.gdx.physics.box2d.Box2D;
+import com.protoevo.env.Environment;
+import com.protoevo.settings.Settings;
+import com.protoevo.settings.SimulationSettings;
+import com.protoevo.utils.FileIO;
+import com.protoevo.utils.Utils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs several independent simulations without graphics in one JVM, e.g. for parameter sweeps.
+ * <p>
+ * The simulations are stepped concurrently by a fixed pool of threads shared between them, in
+ * batches of ticks so that every simulation makes progress when there are more simulations than
+ * threads. Each environment still runs the stages of its ticks on its own small pool, whose
+ * threads carry its {@link SimulationContext}. Launched with:
+ * <pre>
+ *     --multi --simulations=N --ticks=T --seed=S --population=P --threads=T --parallel=K
+ *     --sweep=CATEGORY.PARAM:V1,V2,... --deterministic --output=FILE
+ * </pre>
+ * where simulation i is seeded with S + i, the threads are those of each simulation's stage pool
+ * (by default the available processors divided between the simulations), and K is the number of
+ * simulations stepped at once, which defaults to all of them. Simulation i of a sweep sets the
+ * parameter to value i modulo the number of values, and the number of simulations defaults to the
+ * number of values. The results of each simulation are written as JSON to the output file, which
+ * defaults to experiments/<timestamp>.json.
+ */
+public class MultiSimulationRunner {
+
+    public static final int DEFAULT_SIMULATIONS = 4, DEFAULT_TICKS = 5000, TICKS_PER_BATCH = 100;
+
+    private class Run implements Runnable {
+        final int index;
+        final long seed;
+        final String sweepValue;
+        final Map<String, Object> results = new LinkedHashMap<>();
+        Environment environment;
+        int ticksDone = 0;
+        long nanos = 0;
+
+        Run(int index, long seed, String sweepValue) {
+            this.index = index;
+            this.seed = seed;
+            this.sweepValue = sweepValue;
+        }
+
+        @Override
+        public void run() {
+            try {
+                long start = System.nanoTime();
+                if (environment == null)
+                    environment = createEnvironment(this);
+                float delta = environment.getSettings().simulationUpdateDelta.get();
+                int end = Math.min(ticks, ticksDone + TICKS_PER_BATCH);
+                for (; ticksDone < end; ticksDone++)
+                    environment.update(delta);
+                nanos += System.nanoTime() - start;
+            } catch (Exception e) {
+                e.printStackTrace();
+                results.put("error", e.toString());
+                finish();
+                return;
+            }
+
+            if (ticksDone < ticks)
+                executor.submit(this);
+            else
+                finish();
+        }
+
+        void finish() {
+            double wallSeconds = nanos / 1e9;
+            results.put("index", index);
+            results.put("seed", seed);
+            if (sweepParameter != null)
+                results.put(sweepParameter, sweepValue);
+            results.put("ticks", ticksDone);
+            results.put("wallSeconds", wallSeconds);
+            results.put("ticksPerSecond", ticksDone / wallSeconds);
+            if (environment != null) {
+                results.put("simSeconds", environment.getElapsedTime());
+                results.put("protozoa", environment.numberOfProtozoa());
+                results.put("cells", environment.getCells().size());
+                results.put("stateHash", Long.toHexString(environment.getStateHash()));
+                environment.dispose();
+            }
+            System.out.println("Finished simulation " + index + " after " + ticksDone + " ticks.");
+            remaining.countDown();
+        }
+    }
+
+    private final int nSimulations, ticks, threads, parallel;
+    private final long seed;
+    private final Integer population;
+    private final boolean deterministic;
+    private final String sweepParameter, output;
+    private final String[] sweepValues;
+    private final List<Run> runs = new ArrayList<>();
+    private final ExecutorService executor;
+    private final CountDownLatch remaining;
+
+    public MultiSimulationRunner(Map<String, String> args) {
+        if (args.containsKey("sweep")) {
+            String[] sweep = args.get("sweep").split(":", 2);
+            if (sweep.length != 2)
+                throw new IllegalArgumentException("Sweep must be given as category.param:v1,v2,...");
+            sweepParameter = sweep[0];
+            sweepValues = sweep[1].split(",");
+        } else {
+            sweepParameter = null;
+            sweepValues = null;
+        }
+
+        nSimulations = Integer.parseInt(args.getOrDefault("simulations", String.valueOf(
+                sweepValues != null ? sweepValues.length : DEFAULT_SIMULATIONS)));
+        ticks = Integer.parseInt(args.getOrDefault("ticks", String.valueOf(DEFAULT_TICKS)));
+        seed = args.containsKey("seed")
+                ? Long.parseLong(args.get("seed"))
+                : Environment.settings().simulationSeed.get();
+        population = args.containsKey("population") ? Integer.parseInt(args.get("population")) : null;
+        parallel = Integer.parseInt(args.getOrDefault("parallel", String.valueOf(nSimulations)));
+        threads = Integer.parseInt(args.getOrDefault("threads", String.valueOf(
+                Math.max(1, Runtime.getRuntime().availableProcessors() / parallel))));
+        deterministic = args.containsKey("deterministic") && Boolean.parseBoolean(args.get("deterministic"));
+        output = args.getOrDefault("output", "experiments/" + Utils.getTimeStampString() + ".json");
+
+        executor = Executors.newFixedThreadPool(parallel);
+        remaining = new CountDownLatch(nSimulations);
+    }
+
+    private Environment createEnvironment(Run run) {
+        SimulationSettings settings = SimulationSettings.createDefault();
+        settings.simulationSeed.set(run.seed);
+        settings.worldgen.seed.set(run.seed);
+        if (population != null)
+            settings.worldgen.numInitialProtozoa.set(population);
+        // there is no GL context without graphics, and the simulations do not stay on one thread
+        settings.misc.useOpenGLComputeShader.set(false);
+        settings.misc.useCUDA.set(false);
+        settings.misc.simulationThreads.set(threads);
+        if (deterministic)
+            settings.misc.deterministic.set(true);
+        if (sweepParameter != null) {
+            Settings.Parameter<?> parameter = settings.getParameter(sweepParameter);
+            if (parameter == null)
+                throw new IllegalArgumentException("Unknown parameter: " + sweepParameter);
+            parameter.set(run.sweepValue);
+        }
+
+        Environment environment = new Environment(settings);
+        environment.initialise();
+        return environment;
+    }
+
+    public List<Map<String, Object>> run() {
+        Box2D.init();
+        System.out.println("Running " + nSimulations + " simulations for " + ticks + " ticks, "
+                + parallel + " at a time with " + threads + " threads each...");
+
+        long start = System.nanoTime();
+        for (int i = 0; i < nSimulations; i++) {
+            Run run = new Run(i, seed + i, sweepValues == null ? null : sweepValues[i % sweepValues.length]);
+            runs.add(run);
+            executor.submit(run);
+        }
+        try {
+            remaining.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdown();
+        }
+        double wallSeconds = (System.nanoTime() - start) / 1e9;
+
+        List<Map<String, Object>> simulations = new ArrayList<>(nSimulations);
+        for (Run run : runs)
+            simulations.add(run.results);
+
+        Map<String, Object> results = new LinkedHashMap<>();
+        results.put("simulations", nSimulations);
+        results.put("ticks", ticks);
+        results.put("parallel", parallel);
+        results.put("threadsPerSimulation", threads);
+        results.put("deterministic", deterministic);
+        results.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+        results.put("javaVersion", System.getProperty("java.version"));
+        results.put("wallSeconds", wallSeconds);
+        results.put("totalTicksPerSecond", (long) nSimulations * ticks / wallSeconds);
+        results.put("results", simulations);
+
+        System.out.printf("%nRan %d simulations in %.1f s (%.2f ticks per second in total)%n",
+                nSimulations, wallSeconds, (double) results.get("totalTicksPerSecond"));
+        for (Map<String, Object> simulation : simulations)
+            System.out.println(simulation);
+
+        writeResults(results);
+        return simulations;
+    }
+
+    private void writeResults(Map<String, Object> results) {
+        try {
+            Path parent = Paths.get(output).toAbsolutePath().getParent();
+            if (parent != null)
+                Files.createDirectories(parent);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        FileIO.writeJson(results, output);
+        System.out.println("Wrote results to: " + output);
+    }
+}
@@ -35,7 +35,6 @@ public class Simulation implements Runnable
 	private float timeDilation = 1, timeSinceSave = 0, timeSinceSnapshot = 0, timeSinceAutoSave = 0;
 	private TimedEventsManager timedEventsManager;
 	
-	public static Random RANDOM = new Random(Environment.settings.simulationSeed.get());
 	private boolean debug = false;
 	protected boolean initialised = false;
 
@@ -45,12 +44,12 @@ public class Simulation implements Runnable
 	private final REPL repl = new REPL(this);
 
 	public Simulation() {
-		this(Environment.settings.simulationSeed.get());
+		this(Environment.settings().simulationSeed.get());
 	}
 
 	public Simulation(long seed)
 	{
-		RANDOM = new Random(seed);
+		Environment.settings().simulationSeed.set(seed);
 		simulate = true;
 		name = generateSimName();
 		environmentLoader = this::newDefaultEnv;
@@ -58,11 +57,10 @@ public class Simulation implements Runnable
 	}
 
 	public Simulation(String name) {
-		this(Environment.settings.simulationSeed.get(), name);
+		this(Environment.settings().simulationSeed.get(), name);
 	}
 
 	public Simulation(String name, SimulationSettings settings) {
-		RANDOM = new Random(settings.simulationSeed.get());
 		this.name = name;
 		simulate = true;
 		environmentLoader = () -> newEnvironment(settings);
@@ -70,7 +68,7 @@ public class Simulation implements Runnable
 
 	public Simulation(long seed, String name)
 	{
-		RANDOM = new Random(seed);
+		Environment.settings().simulationSeed.set(seed);
 		simulate = true;
 		this.name = name;
 
@@ -79,12 +77,12 @@ public class Simulation implements Runnable
 	}
 
 	public Simulation(String name, String save) {
-		this(Environment.settings.simulationSeed.get(), name, save);
+		this(Environment.settings().simulationSeed.get(), name, save);
 	}
 
 	public Simulation(long seed, String name, String save)
 	{
-		RANDOM = new Random(seed);
+		Environment.settings().simulationSeed.set(seed);
 		simulate = true;
 		this.name = name;
 
@@ -218,15 +216,15 @@ public class Simulation implements Runnable
 
 		timedEventsManager = new TimedEventsManager();
 		timedEventsManager.add(
-			t -> t >= Environment.settings.misc.timeBetweenHistoricalSaves.get() || saveRequested,
+			t -> t >= Environment.settings().misc.timeBetweenHistoricalSaves.get() || saveRequested,
 			this::save
 		);
 		timedEventsManager.add(
-			Environment.settings.misc.statisticsSnapshotTime::get,
+			Environment.settings().misc.statisticsSnapshotTime::get,
 			this::makeStatisticsSnapshot
 		);
 		timedEventsManager.add(
-			Environment.settings.misc.timeBetweenAutoSaves::get,
+			Environment.settings().misc.timeBetweenAutoSaves::get,
 			this::createAutoSave
 		);
 	}
@@ -249,7 +247,7 @@ public class Simulation implements Runnable
 
 	public boolean isFinished() {
 		return environment.hasStarted() && environment.numberOfProtozoa() <= 0
-				&& Environment.settings.finishOnProtozoaExtinction.get();
+				&& Environment.settings().finishOnProtozoaExtinction.get();
 	}
 
 	public void requestSave() {
@@ -268,7 +266,7 @@ public class Simulation implements Runnable
 			return;
 
 		try {
-			float delta = timeDilation * Environment.settings.simulationUpdateDelta.get();
+			float delta = timeDilation * Environment.settings().simulationUpdateDelta.get();
 
 			try {
 				environment.update(delta);
@@ -285,7 +283,7 @@ public class Simulation implements Runnable
 			// timeSinceSnapshot += delta;
 			// timeSinceAutoSave += delta;
 
-			// if (timeSinceSave >= Environment.settings.misc.timeBetweenHistoricalSaves.get() || saveRequested) {
+			// if (timeSinceSave >= Environment.settings().misc.timeBetweenHistoricalSaves.get() || saveRequested) {
 			// 	timeSinceSave = 0;
 			// 	if (saveRequested) {
 			// 		saveRequested = false;
@@ -294,7 +292,7 @@ public class Simulation implements Runnable
 			// 	save();
 			// }
 
-			// if (timeSinceSnapshot >= Environment.settings.misc.statisticsSnapshotTime.get()) {
+			// if (timeSinceSnapshot >= Environment.settings().misc.statisticsSnapshotTime.get()) {
 			// 	timeSinceSnapshot = 0;
 			// 	onOtherThread(this::makeStatisticsSnapshot);
 			// }
@@ -396,7 +394,7 @@ public class Simulation implements Runnable
 
 		FileIO.writeJson(stats, getSaveFolder() + "/stats/summaries/" + timeStamp);
 
-		if (Environment.settings.misc.writeGenomes.get()) {
+		if (Environment.settings().misc.writeGenomes.get()) {
 			List<NetworkGenome> protozoaGenomes = environment.getCells().stream()
 					.filter(cell -> cell instanceof Protozoan)
 					.map(cell -> ((Protozoan) cell).getGeneExpressionFunction().getGRNGenome())
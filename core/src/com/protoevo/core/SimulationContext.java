@@ -0,0 +1,148 @@
+package com.protoevo.core;
+
+import com.protoevo.biology.ComplexMolecule;
+import com.protoevo.biology.nodes.NodeAttachment;
+import com.protoevo.settings.SimulationSettings;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The state that used to be global to the process and now belongs to one simulation: its
+ * settings, the seeds its random streams are keyed from, and caches derived from its settings.
+ * Each {@link com.protoevo.env.Environment} owns a context, so several can run in one JVM.
+ * <p>
+ * Code that has no reference to its environment, such as traits and genes, finds the context
+ * through {@link #current()}. A thread is given a context either by being a {@link Carrier},
+ * as the threads of an environment's tick pipeline are, or by {@link #bind() binding} it, which an
+ * environment does to the thread updating it. Threads that are neither, such as the UI thread,
+ * see the default context, which is that of the environment created or loaded last.
+ */
+public class SimulationContext {
+
+    /** A thread that always works for the same context. */
+    public interface Carrier {
+        SimulationContext getSimulationContext();
+    }
+
+    private static final ThreadLocal<SimulationContext> bound = new ThreadLocal<>();
+    private static volatile SimulationContext defaultContext;
+
+    private final SimulationSettings settings;
+    private volatile long tickSeed = 0;
+    private Random worldGenerationRandom;
+    private volatile ComplexMolecule[] molecules;
+    private volatile Class<? extends NodeAttachment>[] possibleAttachments;
+    private final AtomicInteger innovations = new AtomicInteger();
+
+    public SimulationContext(SimulationSettings settings) {
+        this.settings = settings;
+    }
+
+    public static SimulationContext current() {
+        Thread thread = Thread.currentThread();
+        if (thread instanceof Carrier) {
+            SimulationContext context = ((Carrier) thread).getSimulationContext();
+            if (context != null)
+                return context;
+        }
+        SimulationContext context = bound.get();
+        if (context != null)
+            return context;
+        if (defaultContext == null)
+            createDefaultContext();
+        return defaultContext;
+    }
+
+    private static synchronized void createDefaultContext() {
+        if (defaultContext == null)
+            defaultContext = new SimulationContext(SimulationSettings.createDefault());
+    }
+
+    /**
+     * Makes this the context of the calling thread until another is bound, unless the thread is a
+     * {@link Carrier} of some other context.
+     *
+     * @return the context that was bound to the thread before, which may be null
+     */
+    public SimulationContext bind() {
+        SimulationContext previous = bound.get();
+        bound.set(this);
+        return previous;
+    }
+
+    /**
+     * Rebinds the calling thread to a context returned by {@link #bind()}.
+     */
+    public static void restore(SimulationContext previous) {
+        if (previous == null)
+            bound.remove();
+        else
+            bound.set(previous);
+    }
+
+    /**
+     * Makes this the context of threads that have not been bound to one.
+     */
+    public SimulationContext makeDefault() {
+        defaultContext = this;
+        return this;
+    }
+
+    public SimulationSettings getSettings() {
+        return settings;
+    }
+
+    public long getTickSeed() {
+        return tickSeed;
+    }
+
+    public void setTickSeed(long tickSeed) {
+        this.tickSeed = tickSeed;
+    }
+
+    /**
+     * @return the generator used to lay out the world and place spawned cells, seeded by the
+     * world generation seed until it is replaced
+     */
+    public Random getWorldGenerationRandom() {
+        if (worldGenerationRandom == null)
+            worldGenerationRandom = new Random(settings.worldgen.seed.get());
+        return worldGenerationRandom;
+    }
+
+    public void setWorldGenerationRandom(Random random) {
+        worldGenerationRandom = random;
+    }
+
+    /**
+     * @return the molecules created so far, indexed by {@link ComplexMolecule#getIndex()}
+     */
+    public ComplexMolecule[] getMoleculeCache() {
+        ComplexMolecule[] cache = molecules;
+        if (cache == null) {
+            synchronized (this) {
+                if (molecules == null)
+                    molecules = new ComplexMolecule[ComplexMolecule.numPossibleIndices(settings)];
+                cache = molecules;
+            }
+        }
+        return cache;
+    }
+
+    public Class<? extends NodeAttachment>[] getPossibleAttachments() {
+        Class<? extends NodeAttachment>[] attachments = possibleAttachments;
+        if (attachments == null) {
+            attachments = NodeAttachment.createPossibleAttachments(settings);
+            possibleAttachments = attachments;
+        }
+        return attachments;
+    }
+
+    /**
+     * @return a new innovation number for a synapse gene
+     */
+    public int nextInnovation() {
+        return innovations.getAndIncrement();
+    }
+}
@@ -0,0 +1,47 @@
+package com.protoevo.core.repl;
+
+import com.protoevo.env.Environment;
+
+public class Profile extends Command {
+
+    public Profile(REPL repl) {
+        super(repl);
+    }
+
+    @Override
+    public boolean run(String[] args) {
+        Environment environment = repl.getSimulation().getEnv();
+        if (environment == null) {
+            System.out.println("No environment is loaded.");
+            return false;
+        }
+        if (args.length == 1) {
+            System.out.println(environment.getProfiler().report());
+            return true;
+        }
+        else if (args.length == 2 && args[1].equals("reset")) {
+            environment.getProfiler().reset();
+            System.out.println("Profile reset.");
+            return true;
+        }
+        System.out.println("Invalid argument 1.");
+        printUsage();
+        return false;
+    }
+
+    @Override
+    public void printUsage() {
+        System.out.println("Usage: profile");
+        System.out.println("Usage: profile reset");
+    }
+
+    @Override
+    public String[] getAliases() {
+        return new String[]{"profile", "prof"};
+    }
+
+    @Override
+    public String getDescription() {
+        return "Print the wall time and allocations of each stage of recent simulation ticks.";
+    }
+}
@@ -25,6 +25,7 @@ public class REPL implements Runnable
                 new Exit(this),
                 new TimeDilation(this),
                 new PrintStats(this),
+                new Profile(this),
                 new Pause(this),
                 new SimParams(this),
                 new ManageRemoteGraphics(this),
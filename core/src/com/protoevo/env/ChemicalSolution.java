@@ -7,13 +7,19 @@ import com.protoevo.biology.cells.Cell;
 import com.protoevo.biology.cells.Protozoan;
 import com.protoevo.maths.Functions;
 import com.protoevo.maths.Geometry;
+import com.protoevo.maths.RandomStreams;
 import com.protoevo.utils.*;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.*;
 import java.util.stream.IntStream;
 
 public class ChemicalSolution implements Serializable {
     public static final long serialVersionUID = 1L;
+    private static final int TILE_SIZE = 32;
+    private static final float VOID_P = 0.9f;
+    private static final float MIN_DIFFUSION_ALPHA = 5f / 255f;
 
 
     private Environment environment;
@@ -23,13 +29,45 @@ public class ChemicalSolution implements Serializable {
     private int chemicalTextureWidth;
     private transient boolean initialised = false;
     private byte[] byteBuffer;
-    private Colour[][] colours;
+    // Channel planes indexed by y * width + x, read from while the back planes are written to
+    private float[] r, g, b, a;
+    private transient float[] backR, backG, backB, backA;
+    // Tiles that may hold alpha above the diffusion cut-off; every other tile is zero in both buffers
+    private transient boolean[] activeTiles;
+    // Tiles changed since the dirty regions were last published
+    private transient boolean[] dirtyTiles;
+    private transient int tilesX, tilesY;
+    // Cells to deposit from / extract into, sharded by the tile containing their centre
+    private transient List<List<Cell>> depositionShards;
+    private transient List<Cell> largeDepositions;
     private float timeSinceUpdate = 0;
+    // Set while a diffusion step is due to be completed by completeUpdate
+    private transient boolean diffusionDue;
+    // Tiles diffused into the back planes by prepareUpdate, waiting for the planes to be swapped
+    private transient int[] diffusedTiles;
     private transient JCudaKernelRunner cudaDiffusionKernel;
     private transient GLComputeShaderRunner openGLDiffusionShader;
 
+    /**
+     * A rectangle of texels, from (x0, y0) inclusive to (x1, y1) exclusive.
+     */
+    public static class DirtyRegion {
+        public final int x0, y0, x1, y1;
+
+        public DirtyRegion(int x0, int y0, int x1, int y1) {
+            this.x0 = x0;
+            this.y0 = y0;
+            this.x1 = x1;
+            this.y1 = y1;
+        }
+    }
+
     public interface ChemicalUpdatedCallback {
-        void onChemicalUpdated(int i, int j, Colour colour);
+        /**
+         * Called once per tick with the regions changed during the tick. Regions cover
+         * disjoint bands of rows and are given in increasing order of y.
+         */
+        void onChemicalsUpdated(List<DirtyRegion> regions);
     }
     private transient ChemicalUpdatedCallback updateChemicalCallback;
 
@@ -65,27 +103,40 @@ public class ChemicalSolution implements Serializable {
 
     public void initialise() {
         if (!initialised) {
-            byteBuffer = new byte[chemicalTextureWidth * chemicalTextureHeight * 4];
-            colours = new Colour[chemicalTextureWidth][chemicalTextureHeight];
-            for (int i = 0; i < chemicalTextureWidth; i++) {
-                for (int j = 0; j < chemicalTextureHeight; j++) {
-                    colours[i][j] = new Colour();
-                }
+            int n = chemicalTextureWidth * chemicalTextureHeight;
+            if (byteBuffer == null)
+                byteBuffer = new byte[n * 4];
+            if (a == null) {
+                r = new float[n];
+                g = new float[n];
+                b = new float[n];
+                a = new float[n];
             }
+            backR = new float[n];
+            backG = new float[n];
+            backB = new float[n];
+            backA = new float[n];
+
+            tilesX = (chemicalTextureWidth + TILE_SIZE - 1) / TILE_SIZE;
+            tilesY = (chemicalTextureHeight + TILE_SIZE - 1) / TILE_SIZE;
+            activeTiles = new boolean[tilesX * tilesY];
+            // the field may have been loaded, so start from every tile and let empty ones retire
+            Arrays.fill(activeTiles, true);
+            dirtyTiles = new boolean[tilesX * tilesY];
 
             initialised = true;
         }
 
-        if (!JCudaKernelRunner.cudaAvailable())
-            Environment.settings.misc.useCUDA.set(false);
+        if (Environment.settings().misc.useCUDA.get() && !JCudaKernelRunner.cudaAvailable())
+            Environment.settings().misc.useCUDA.set(false);
 
-        if (Environment.settings.misc.useCUDA.get()) {
+        if (Environment.settings().misc.useCUDA.get()) {
             // has to be called on the same thread running the simulation
             if (DebugMode.isDebugMode())
                 System.out.println("Initialising chemical diffusion CUDA kernel...");
             cudaDiffusionKernel = new JCudaKernelRunner("diffusion");
         }
-        else if (Environment.settings.misc.useOpenGLComputeShader.get()){
+        else if (Environment.settings().misc.useOpenGLComputeShader.get()){
             openGLDiffusionShader = new GLComputeShaderRunner("diffusion");
         }
     }
@@ -120,8 +171,34 @@ public class ChemicalSolution implements Serializable {
         return x < 0 || x >= chemicalTextureWidth || y < 0 || y >= chemicalTextureHeight;
     }
 
-    private int toFloatBufferIndex(int x, int y) {
-        return (y * chemicalTextureWidth+ x) * 4;
+    private int toIndex(int x, int y) {
+        return y * chemicalTextureWidth + x;
+    }
+
+    private void swapBuffers() {
+        float[] tmp;
+        tmp = r; r = backR; backR = tmp;
+        tmp = g; g = backG; backG = tmp;
+        tmp = b; b = backB; backB = tmp;
+        tmp = a; a = backA; backA = tmp;
+    }
+
+    private int toTileIndex(int x, int y) {
+        return (y / TILE_SIZE) * tilesX + x / TILE_SIZE;
+    }
+
+    private void markChanged(int x, int y) {
+        int tile = toTileIndex(x, y);
+        activeTiles[tile] = true;
+        dirtyTiles[tile] = true;
+    }
+
+    public int getActiveTileCount() {
+        int count = 0;
+        for (boolean active : activeTiles)
+            if (active)
+                count++;
+        return count;
     }
 
     public int toChemicalGridY(float y) {
@@ -131,25 +208,34 @@ public class ChemicalSolution implements Serializable {
     public void set(int x, int y, Colour colour) {
         if (outOfTextureBounds(x, y))
             return;
-        colours[x][y].set(colour);
-        if (updateChemicalCallback != null)
-            updateChemicalCallback.onChemicalUpdated(x, y, colour);
+        int idx = toIndex(x, y);
+        r[idx] = MathUtils.clamp(colour.r, 0, 1);
+        g[idx] = MathUtils.clamp(colour.g, 0, 1);
+        b[idx] = MathUtils.clamp(colour.b, 0, 1);
+        a[idx] = MathUtils.clamp(colour.a, 0, 1);
+        markChanged(x, y);
     }
 
     public void set(int x, int y, float r, float g, float b, float a) {
         if (outOfTextureBounds(x, y))
             return;
-        colours[x][y].set(r, g, b, a);
-        if (updateChemicalCallback != null)
-            updateChemicalCallback.onChemicalUpdated(x, y, colours[x][y]);
+        int idx = toIndex(x, y);
+        this.r[idx] = r;
+        this.g[idx] = g;
+        this.b[idx] = b;
+        this.a[idx] = a;
+        markChanged(x, y);
     }
 
     public void set(int x, int y, int rgba8888) {
         if (outOfTextureBounds(x, y))
             return;
-        colours[x][y].set(rgba8888);
-        if (updateChemicalCallback != null)
-            updateChemicalCallback.onChemicalUpdated(x, y, colours[x][y]);
+        int idx = toIndex(x, y);
+        r[idx] = ((rgba8888 & 0xff000000) >>> 24) / 255f;
+        g[idx] = ((rgba8888 & 0x00ff0000) >>> 16) / 255f;
+        b[idx] = ((rgba8888 & 0x0000ff00) >>> 8) / 255f;
+        a[idx] = ((rgba8888 & 0x000000ff)) / 255f;
+        markChanged(x, y);
     }
 
     public void cellChemicalIO(float delta, Cell e) {
@@ -189,7 +275,8 @@ public class ChemicalSolution implements Serializable {
 
                     if (fieldX >= 0 && fieldX < chemicalTextureWidth &&
                             fieldY >= 0 && fieldY < chemicalTextureHeight) {
-                        Colour colour = colours[fieldX][fieldY];
+                        int idx = toIndex(fieldX, fieldY);
+                        float red = r[idx], green = g[idx], blue = b[idx];
 
                         float cellX = xMin + fieldX * cellWorldWidth;
                         float cellY = yMin + fieldY * cellWorldHeight;
@@ -200,21 +287,24 @@ public class ChemicalSolution implements Serializable {
                         );
                         float overlapP = overlapArea / (cellWorldWidth * cellWorldHeight);
                         float extraction =
-                                Environment.settings.cell.chemicalExtractionFactor.get() * delta * overlapP;
+                                Environment.settings().cell.chemicalExtractionFactor.get() * delta * overlapP;
                         if (extraction > 0) {
 
-                            if (colour.g > 0.5f && colour.g > 1.5f * colour.r && colour.g > 1.5f * colour.b)
+                            if (green > 0.5f && green > 1.5f * red && green > 1.5f * blue)
                                 protozoan.addFood(Food.Type.Plant,
-                                        extraction * colour.g * colour.g
-                                                * Environment.settings.cell.chemicalExtractionPlantConversion.get());
+                                        extraction * green * green
+                                                * Environment.settings().cell.chemicalExtractionPlantConversion.get());
 
-                            if (colour.r > 0.5f && colour.r > 1.5f * colour.g && colour.r > 1.5f * colour.b)
+                            if (red > 0.5f && red > 1.5f * green && red > 1.5f * blue)
                                 protozoan.addFood(Food.Type.Meat,
-                                        extraction * colour.r * colour.r
-                                                * Environment.settings.cell.chemicalExtractionMeatConversion.get());
-
-                            colour.sub(extraction);
-                            set(fieldX, fieldY, colour);
+                                        extraction * red * red
+                                                * Environment.settings().cell.chemicalExtractionMeatConversion.get());
+
+                            set(fieldX, fieldY,
+                                MathUtils.clamp(red - extraction, 0, 1),
+                                MathUtils.clamp(green - extraction, 0, 1),
+                                MathUtils.clamp(blue - extraction, 0, 1),
+                                MathUtils.clamp(a[idx] - extraction, 0, 1));
                         }
                     }
                 }
@@ -223,37 +313,93 @@ public class ChemicalSolution implements Serializable {
     }
 
     public void deposit(float delta) {
-        environment.getCells().parallelStream()
-                .forEach(e -> cellChemicalIO(delta, e));
+        deposit(delta, environment.getCells());
+    }
+
+    /**
+     * Deposits and extracts chemicals for the given cells in parallel without data races.
+     * <p>
+     * Cells are sharded by the tile containing their centre. A cell reaching at most half a
+     * tile from its centre can only touch its own tile and its neighbours, so shards in
+     * tiles of the same (x mod 2, y mod 2) phase never touch the same texel and can run
+     * concurrently. The four phases run one after another, followed by any larger cells.
+     * Within a shard cells are processed in order of id, so the resulting field does not
+     * depend on thread scheduling or the iteration order of the given cells.
+     */
+    public void deposit(float delta, Collection<? extends Cell> cells) {
+        shardByTile(cells);
+
+        for (int phase = 0; phase < 4; phase++) {
+            final int phaseX = phase % 2, phaseY = phase / 2;
+            IntStream.range(0, depositionShards.size()).parallel()
+                    .filter(tile -> (tile % tilesX) % 2 == phaseX && (tile / tilesX) % 2 == phaseY)
+                    .forEach(tile -> depositShard(delta, depositionShards.get(tile)));
+        }
+        depositShard(delta, largeDepositions);
+    }
+
+    private void shardByTile(Collection<? extends Cell> cells) {
+        if (depositionShards == null) {
+            depositionShards = new ArrayList<>(tilesX * tilesY);
+            for (int tile = 0; tile < tilesX * tilesY; tile++)
+                depositionShards.add(new ArrayList<>());
+            largeDepositions = new ArrayList<>();
+        } else {
+            depositionShards.forEach(List::clear);
+            largeDepositions.clear();
+        }
+
+        final int maxReach = TILE_SIZE / 2;
+        for (Cell cell : cells) {
+            float worldX = cell.getPos().x;
+            float worldY = -cell.getPos().y;
+            if (outOfWorldBounds(worldX, worldY))
+                continue;
+
+            if (toChemicalGridXDist(cell.getRadius()) > maxReach) {
+                largeDepositions.add(cell);
+            } else {
+                int x = Math.min(chemicalTextureWidth - 1, toChemicalGridX(worldX));
+                int y = Math.min(chemicalTextureHeight - 1, toChemicalGridY(worldY));
+                depositionShards.get(toTileIndex(x, y)).add(cell);
+            }
+        }
+    }
+
+    private void depositShard(float delta, List<Cell> shard) {
+        if (shard.isEmpty())
+            return;
+        shard.sort(Comparator.comparingLong(Cell::getId));
+        for (Cell cell : shard)
+            cellChemicalIO(delta, cell);
+    }
+
+    private static byte toByte(float channel) {
+        return (byte) (int) (MathUtils.clamp(channel, 0, 1) * 255);
     }
 
     private void loadIntoByteBuffer() {
         IntStream.range(0, chemicalTextureWidth * chemicalTextureHeight).parallel()
                 .forEach(i -> {
-                    int x = i % chemicalTextureWidth;
-                    int y = i / chemicalTextureWidth;
-                    int colourRGBA8888 = colours[x][y].getRGBA8888();
-
-                    byteBuffer[4*i] = (byte) ((colourRGBA8888 & 0xff000000) >>> 24);
-                    byteBuffer[4*i + 1] = (byte) ((colourRGBA8888 & 0x00ff0000) >>> 16);
-                    byteBuffer[4*i + 2] = (byte) ((colourRGBA8888 & 0x0000ff00) >>> 8);
-                    byteBuffer[4*i + 3] = (byte) ((colourRGBA8888 & 0x000000ff));
+                    byteBuffer[4*i] = toByte(r[i]);
+                    byteBuffer[4*i + 1] = toByte(g[i]);
+                    byteBuffer[4*i + 2] = toByte(b[i]);
+                    byteBuffer[4*i + 3] = toByte(a[i]);
                 });
     }
 
     private void unloadFromByteBuffer() {
         IntStream.range(0, chemicalTextureWidth * chemicalTextureHeight).parallel()
                 .forEach(i -> {
-                    int x = i % chemicalTextureWidth;
-                    int y = i / chemicalTextureWidth;
-                    int r = byteBuffer[4*i] & 0xFF;
-                    int g = byteBuffer[4*i + 1] & 0xFF;
-                    int b = byteBuffer[4*i + 2] & 0xFF;
-                    int a = byteBuffer[4*i + 3] & 0xFF;
-                    int colour = (r << 24) | (g << 16) | (b << 8) | a;
-
-                    set(x, y, colour);
+                    backR[i] = (byteBuffer[4*i] & 0xFF) / 255f;
+                    backG[i] = (byteBuffer[4*i + 1] & 0xFF) / 255f;
+                    backB[i] = (byteBuffer[4*i + 2] & 0xFF) / 255f;
+                    backA[i] = (byteBuffer[4*i + 3] & 0xFF) / 255f;
                 });
+        swapBuffers();
+        // the kernels leave faint alpha everywhere, so let the CPU path retire tiles itself
+        Arrays.fill(activeTiles, true);
+        Arrays.fill(dirtyTiles, true);
     }
 
     private void cudaDiffuse() {
@@ -294,7 +440,7 @@ public class ChemicalSolution implements Serializable {
     private void diffuseAt(int x, int y) {
 
         // See voidStartDistance in SimulationSettings
-        float world_radius = Environment.settings.worldgen.voidStartDistance.get();
+        float world_radius = Environment.settings().worldgen.voidStartDistance.get();
 
         int width = this.chemicalTextureWidth;
         int height = this.chemicalTextureHeight;
@@ -318,54 +464,194 @@ public class ChemicalSolution implements Serializable {
         } else {
             decay = 0.9995f;
         }
-        int channels = 4;
         int FILTER_SIZE = 3;
         float final_alpha = 0.0f;
         int radius = (FILTER_SIZE - 1) / 2;
 
-        Colour newColour = new Colour();
         for (int i = -radius; i <= radius; i++) {
             for (int j = -radius; j <= radius; j++) {
                 int x_ = x + i, y_ = y + j;
                 if (x_ < 0 || x_ >= width || y_ < 0 || y_ >= height) {
                     continue;
                 }
-                final_alpha += colours[x_][y_].a;
+                final_alpha += a[toIndex(x_, y_)];
             }
         }
         final_alpha = decay * final_alpha / ((float) (FILTER_SIZE*FILTER_SIZE));
-        newColour.a = final_alpha;
 
         if (final_alpha < 5.0 / 255.0) {
             return;
         }
 
-        float[] tmp = new float[channels - 1];
+        float newR = 0, newG = 0, newB = 0;
         for (int i = -radius; i <= radius; i++) {
             for (int j = -radius; j <= radius; j++) {
                 int x_ = x + i, y_ = y + j;
                 if (x_ < 0 || x_ >= width || y_ < 0 || y_ >= height) {
                     continue;
                 }
-                Colour pixel = colours[x_][y_];
-                tmp[0] += decay * pixel.r * pixel.a;
-                tmp[1] += decay * pixel.g * pixel.a;
-                tmp[2] += decay * pixel.b * pixel.a;
+                int idx = toIndex(x_, y_);
+                newR += decay * r[idx] * a[idx];
+                newG += decay * g[idx] * a[idx];
+                newB += decay * b[idx] * a[idx];
+            }
+            newR = newR / ((float) (FILTER_SIZE*FILTER_SIZE)) * decay / final_alpha;
+            newG = newG / ((float) (FILTER_SIZE*FILTER_SIZE)) * decay / final_alpha;
+            newB = newB / ((float) (FILTER_SIZE*FILTER_SIZE)) * decay / final_alpha;
+        }
+
+        set(x, y,
+            MathUtils.clamp(newR, 0, 1),
+            MathUtils.clamp(newG, 0, 1),
+            MathUtils.clamp(newB, 0, 1),
+            MathUtils.clamp(final_alpha, 0, 1));
+    }
+
+    /**
+     * Applies the 3x3 decay stencil of the diffusion kernels to the active tiles and their
+     * neighbours, reading from the front planes and writing into the back planes one tile per
+     * fork-join task. Tiles left entirely below the alpha cut-off are cleared and retired
+     * until something is deposited into them again.
+     */
+    public void fullGridCPUDiffuse() {
+        int[] tiles = diffuseIntoBackPlanes();
+        swapBuffers();
+        retireTiles(tiles);
+    }
+
+    /**
+     * @return the tiles that were written to the back planes
+     */
+    private int[] diffuseIntoBackPlanes() {
+        // See voidStartDistance in SimulationSettings
+        final float worldRadius = Environment.settings().worldgen.voidStartDistance.get();
+        final int[] tiles = activeTilesWithHalo();
+
+        IntStream.range(0, tiles.length).parallel()
+                .forEach(k -> {
+                    int tile = tiles[k];
+                    dirtyTiles[tile] = true;
+                    activeTiles[tile] = diffuseTile(
+                            (tile % tilesX) * TILE_SIZE,
+                            (tile / tilesX) * TILE_SIZE,
+                            worldRadius);
+                });
+        return tiles;
+    }
+
+    private void retireTiles(int[] tiles) {
+        IntStream.range(0, tiles.length).parallel()
+                .forEach(k -> {
+                    int tile = tiles[k];
+                    if (!activeTiles[tile])
+                        clearTile((tile % tilesX) * TILE_SIZE, (tile / tilesX) * TILE_SIZE);
+                });
+    }
+
+    private int[] activeTilesWithHalo() {
+        boolean[] selected = new boolean[activeTiles.length];
+        int count = 0;
+        for (int ty = 0; ty < tilesY; ty++) {
+            for (int tx = 0; tx < tilesX; tx++) {
+                if (!activeTiles[ty * tilesX + tx])
+                    continue;
+                for (int j = Math.max(0, ty - 1); j <= Math.min(tilesY - 1, ty + 1); j++) {
+                    for (int i = Math.max(0, tx - 1); i <= Math.min(tilesX - 1, tx + 1); i++) {
+                        int tile = j * tilesX + i;
+                        if (!selected[tile]) {
+                            selected[tile] = true;
+                            count++;
+                        }
+                    }
+                }
             }
-            tmp[0] = tmp[0] / ((float) (FILTER_SIZE*FILTER_SIZE)) * decay / final_alpha;
-            tmp[1] = tmp[1] / ((float) (FILTER_SIZE*FILTER_SIZE)) * decay / final_alpha;
-            tmp[2] = tmp[2] / ((float) (FILTER_SIZE*FILTER_SIZE)) * decay / final_alpha;
         }
-        newColour.r = tmp[0];
-        newColour.g = tmp[1];
-        newColour.b = tmp[2];
 
-        set(x, y, newColour);
+        int[] tiles = new int[count];
+        int k = 0;
+        for (int tile = 0; tile < selected.length; tile++)
+            if (selected[tile])
+                tiles[k++] = tile;
+        return tiles;
+    }
+
+    private void clearTile(int x0, int y0) {
+        int x1 = Math.min(chemicalTextureWidth, x0 + TILE_SIZE);
+        int y1 = Math.min(chemicalTextureHeight, y0 + TILE_SIZE);
+        for (float[] plane : new float[][]{r, g, b, a, backR, backG, backB, backA})
+            for (int y = y0; y < y1; y++)
+                Arrays.fill(plane, toIndex(x0, y), toIndex(x1, y), 0f);
+    }
+
+    /**
+     * @return whether any texel of the tile remains above the alpha cut-off
+     */
+    private boolean diffuseTile(int x0, int y0, float worldRadius) {
+        final int width = chemicalTextureWidth;
+        final int height = chemicalTextureHeight;
+        final int x1 = Math.min(width, x0 + TILE_SIZE);
+        final int y1 = Math.min(height, y0 + TILE_SIZE);
+        final float cellSizeX = 2 * worldRadius / width;
+        final float cellSizeY = 2 * worldRadius / height;
+        final float voidStart2 = VOID_P * VOID_P * worldRadius * worldRadius;
+        final float filterArea = 9f;
+        boolean active = false;
+
+        for (int y = y0; y < y1; y++) {
+            float worldY = -worldRadius + cellSizeY * y;
+            int yLo = Math.max(0, y - 1), yHi = Math.min(height - 1, y + 1);
+
+            for (int x = x0; x < x1; x++) {
+                float worldX = -worldRadius + cellSizeX * x;
+                float dist2 = worldX * worldX + worldY * worldY;
+
+                // set alpha decay to zero as we approach the void
+                float decay;
+                if (dist2 > voidStart2) {
+                    float dist = (float) Math.sqrt(dist2);
+                    decay = 0.9995f * (1f - (dist - VOID_P * worldRadius) / ((1f - VOID_P) * worldRadius));
+                    if (decay < 0f)
+                        decay = 0f;
+                } else {
+                    decay = 0.995f;
+                }
+
+                int xLo = Math.max(0, x - 1), xHi = Math.min(width - 1, x + 1);
+                float sumA = 0, sumR = 0, sumG = 0, sumB = 0;
+                for (int y_ = yLo; y_ <= yHi; y_++) {
+                    int row = y_ * width;
+                    for (int x_ = xLo; x_ <= xHi; x_++) {
+                        int idx = row + x_;
+                        float alpha = a[idx];
+                        sumA += alpha;
+                        sumR += r[idx] * alpha;
+                        sumG += g[idx] * alpha;
+                        sumB += b[idx] * alpha;
+                    }
+                }
+
+                int idx = toIndex(x, y);
+                float finalAlpha = decay * sumA / filterArea;
+                backA[idx] = Math.min(finalAlpha, 1f);
+                if (finalAlpha < MIN_DIFFUSION_ALPHA) {
+                    backR[idx] = 0;
+                    backG[idx] = 0;
+                    backB[idx] = 0;
+                } else {
+                    active = true;
+                    float scale = decay * decay / (filterArea * finalAlpha);
+                    backR[idx] = Math.min(sumR * scale, 1f);
+                    backG[idx] = Math.min(sumG * scale, 1f);
+                    backB[idx] = Math.min(sumB * scale, 1f);
+                }
+            }
+        }
+        return active;
     }
 
     public void cpuDiffuse() {
-        for (int sample = 0; sample < Environment.settings.misc.chemicalCPUIterations.get(); sample++) {
-            int i = MathUtils.random(chemicalTextureWidth * chemicalTextureHeight);
+        for (int sample = 0; sample < Environment.settings().misc.chemicalCPUIterations.get(); sample++) {
+            int i = RandomStreams.random(chemicalTextureWidth * chemicalTextureHeight);
             int x = i % chemicalTextureWidth;
             int y = i / chemicalTextureWidth;
             diffuseAt(x, y);
@@ -373,33 +659,148 @@ public class ChemicalSolution implements Serializable {
     }
 
     public void diffuse() {
-        if (Environment.settings.misc.useCUDA.get())
+        if (Environment.settings().misc.useCUDA.get())
             cudaDiffuse();
-        else if (Environment.settings.misc.useOpenGLComputeShader.get())
+        else if (Environment.settings().misc.useOpenGLComputeShader.get())
             openGLDiffuse();
+        else if (Environment.settings().misc.useFullGridCPUDiffusion.get())
+            fullGridCPUDiffuse();
         else
             cpuDiffuse();
     }
 
     public void update(float delta) {
-        if (!initialised) {
-            initialise();
-        }
+        prepareUpdate(delta);
+        completeUpdate(delta);
+    }
+
+    /**
+     * @return whether {@link #prepareUpdate(float)} can run while cells are being updated
+     */
+    public boolean canPrepareConcurrently() {
+        return !Environment.settings().misc.useCUDA.get()
+                && !Environment.settings().misc.useOpenGLComputeShader.get()
+                && Environment.settings().misc.useFullGridCPUDiffusion.get();
+    }
+
+    /**
+     * Advances the diffusion timer and, when the full-grid CPU diffusion is due, diffuses the
+     * field into the back planes. Only the front planes are read, and they are not swapped until
+     * {@link #publishPreparedDiffusion()}, so this can overlap with cells sampling the field. Other
+     * diffusion methods are bound to the simulation thread and are deferred to
+     * {@link #completeUpdate(float)}.
+     */
+    public void prepareUpdate(float delta) {
+        if (!initialised)
+            return;
 
         timeSinceUpdate += delta;
-        if (timeSinceUpdate > delta * Environment.settings.env.chemicalDiffusionInterval.get()) {
-            diffuse();
+        if (timeSinceUpdate > delta * Environment.settings().env.chemicalDiffusionInterval.get()) {
             timeSinceUpdate = 0;
+            if (canPrepareConcurrently())
+                diffusedTiles = diffuseIntoBackPlanes();
+            else
+                diffusionDue = true;
+        }
+    }
+
+    /**
+     * Swaps in the back planes diffused by {@link #prepareUpdate(float)}, if any. Anything written
+     * to the front planes between the two would be lost, so this must be called once the stage
+     * overlapping the diffusion has finished and before anything else is deposited.
+     */
+    public void publishPreparedDiffusion() {
+        if (diffusedTiles != null) {
+            swapBuffers();
+            retireTiles(diffusedTiles);
+            diffusedTiles = null;
         }
-        deposit(delta);
     }
 
-    public Colour[][] getImage() {
+    /**
+     * Publishes the diffusion started by {@link #prepareUpdate(float)}, then deposits and
+     * extracts chemicals for the cells.
+     */
+    public void completeUpdate(float delta) {
+        completeUpdate(delta, environment.getCells());
+    }
+
+    public void completeUpdate(float delta, Collection<? extends Cell> cells) {
+        completeDiffusion();
+        completeDeposition(delta, cells);
+    }
+
+    /**
+     * Publishes the diffusion started by {@link #prepareUpdate(float)}, or runs diffusion that
+     * was deferred to the simulation thread. Must be called on the simulation thread.
+     */
+    public void completeDiffusion() {
         if (!initialised) {
             initialise();
         }
 
-        return colours;
+        publishPreparedDiffusion();
+        if (diffusionDue)
+            diffuse();
+        diffusionDue = false;
+    }
+
+    /**
+     * Deposits and extracts chemicals for the cells and publishes the regions that changed. The
+     * deposition runs as a parallel stream, so should be called from a thread of the simulation's
+     * pool rather than the simulation thread.
+     */
+    public void completeDeposition(float delta, Collection<? extends Cell> cells) {
+        deposit(delta, cells);
+        publishDirtyRegions();
+    }
+
+    /**
+     * Passes the regions changed since the last call to the update callback, one region
+     * spanning the changed tiles of each row of tiles, then marks everything clean.
+     */
+    public void publishDirtyRegions() {
+        if (updateChemicalCallback == null) {
+            Arrays.fill(dirtyTiles, false);
+            return;
+        }
+
+        List<DirtyRegion> regions = new ArrayList<>();
+        for (int ty = 0; ty < tilesY; ty++) {
+            int minTX = tilesX, maxTX = -1;
+            for (int tx = 0; tx < tilesX; tx++) {
+                int tile = ty * tilesX + tx;
+                if (dirtyTiles[tile]) {
+                    minTX = Math.min(minTX, tx);
+                    maxTX = tx;
+                    dirtyTiles[tile] = false;
+                }
+            }
+            if (maxTX >= 0)
+                regions.add(new DirtyRegion(
+                        minTX * TILE_SIZE, ty * TILE_SIZE,
+                        Math.min(chemicalTextureWidth, (maxTX + 1) * TILE_SIZE),
+                        Math.min(chemicalTextureHeight, (ty + 1) * TILE_SIZE)));
+        }
+
+        if (!regions.isEmpty())
+            updateChemicalCallback.onChemicalsUpdated(regions);
+    }
+
+    /**
+     * Writes the region of the field into a tightly packed RGBA8888 buffer covering the whole grid.
+     */
+    public void copyRGBA8888(ByteBuffer pixels, DirtyRegion region) {
+        for (int y = region.y0; y < region.y1; y++) {
+            for (int x = region.x0; x < region.x1; x++) {
+                int idx = toIndex(x, y);
+                int offset = 4 * idx;
+                pixels.put(offset, toByte(r[idx]));
+                pixels.put(offset + 1, toByte(g[idx]));
+                pixels.put(offset + 2, toByte(b[idx]));
+                pixels.put(offset + 3, toByte(a[idx]));
+            }
+        }
     }
 
     public int getNYCells() {
@@ -435,9 +836,20 @@ public class ChemicalSolution implements Serializable {
     public float getDensity(int i, int j, int axis) {
         if (i < 0 || i >= chemicalTextureWidth || j < 0 || j >= chemicalTextureHeight)
             return 0;
-;
-        Colour c = colours[i][j];
-        return c.get(axis) * c.a;
+
+        int idx = toIndex(i, j);
+        switch (axis) {
+            case 0:
+                return r[idx] * a[idx];
+            case 1:
+                return g[idx] * a[idx];
+            case 2:
+                return b[idx] * a[idx];
+            case 3:
+                return a[idx] * a[idx];
+            default:
+                throw new RuntimeException("Invalid axis " + axis);
+        }
     }
 
     public float getMinX() {
@@ -491,10 +903,15 @@ public class ChemicalSolution implements Serializable {
     public Colour getColour(float x, float y) {
         int gridX = toChemicalGridX(x);
         int gridY = toChemicalGridY(y);
-        return colours[gridX][gridY];
+        return getColour(gridX, gridY);
     }
 
     public Colour getColour(int i, int j) {
-        return colours[i][j];
+        return getColour(i, j, new Colour());
+    }
+
+    public Colour getColour(int i, int j, Colour output) {
+        int idx = toIndex(i, j);
+        return output.set(r[idx], g[idx], b[idx], a[idx]);
     }
 }
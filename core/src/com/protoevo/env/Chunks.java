@@ -10,8 +10,11 @@ import com.protoevo.physics.SpatialHash;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -19,28 +22,94 @@ public class Chunks implements Serializable {
     public static final long serialVersionUID = 1L;
 
     private ConcurrentHashMap<Class<? extends Cell>, SpatialHash<Cell>> cellHashes;
-    private ConcurrentHashMap<Class<? extends Cell>, Integer> globalCellCounts;
+    private SpatialHash<Cell> pendingCellsHash;
 
     public void initialise() {
         cellHashes = new ConcurrentHashMap<>(3, 1);
-        globalCellCounts = new ConcurrentHashMap<>(3, 1);
 
-        int resolution = Environment.settings.misc.spatialHashResolution.get();
-        int protozoaLocalCap = Environment.settings.misc.protozoaLocalCap.get();
-        int plantLocalCap = Environment.settings.misc.plantLocalCap.get();
-        int meatLocalCap = Environment.settings.misc.meatLocalCap.get();
-        float hashRadius = 1.5f * Environment.settings.worldgen.radius.get();
+        int resolution = Environment.settings().misc.spatialHashResolution.get();
+        int protozoaLocalCap = Environment.settings().misc.protozoaLocalCap.get();
+        int plantLocalCap = Environment.settings().misc.plantLocalCap.get();
+        int meatLocalCap = Environment.settings().misc.meatLocalCap.get();
+        float hashRadius = 1.5f * Environment.settings().worldgen.radius.get();
         cellHashes.put(Protozoan.class, new SpatialHash<>(resolution, protozoaLocalCap, hashRadius));
         cellHashes.put(PlantCell.class, new SpatialHash<>(resolution, plantLocalCap, hashRadius));
         cellHashes.put(MeatCell.class, new SpatialHash<>(resolution, meatLocalCap, hashRadius));
+        pendingCellsHash = new SpatialHash<>(resolution, hashRadius);
+    }
+
+    /**
+     * Indexes a cell that has been registered to be added to the environment,
+     * so that spatial queries can see it before it is added.
+     */
+    public void addPending(Cell cell) {
+        int idx = pendingCellsHash.getChunkIndex(cell.getPos());
+        pendingCellsHash.put(cell, idx);
+        cell.setChunkIndex(idx);
+    }
+
+    public void updatePending(Cell cell) {
+        int idx = pendingCellsHash.getChunkIndex(cell.getPos());
+        pendingCellsHash.move(cell, cell.getChunkIndex(), idx);
+        cell.setChunkIndex(idx);
+    }
+
+    public void clearPending() {
+        pendingCellsHash.clear();
     }
 
     public void add(Cell cell) {
-        cellHashes.get(cell.getClass()).add(cell, cell.getPos());
+        SpatialHash<Cell> hash = cellHashes.get(cell.getClass());
+        int idx = hash.getChunkIndex(cell.getPos());
+        hash.put(cell, idx);
+        cell.setChunkIndex(idx);
     }
 
-    public int getLocalCount(Class<? extends Cell> cellClass) {
-        return cellHashes.get(cellClass).size();
+    public void remove(Cell cell) {
+        int idx = cell.getChunkIndex();
+        if (idx < 0)
+            return;
+        cellHashes.get(cell.getClass()).remove(cell, idx);
+        cell.setChunkIndex(-1);
+    }
+
+    private boolean hasChangedChunk(Cell cell) {
+        return cell.getChunkIndex() != cellHashes.get(cell.getClass()).getChunkIndex(cell.getPos());
+    }
+
+    /**
+     * Moves the cells that have left their chunk since the last update.
+     * Cells must have been added via {@link #add(Cell)} or {@link #rebuild(Collection)}.
+     *
+     * @return the number of cells that were moved
+     */
+    public int update(Collection<Cell> cells) {
+        List<Cell> movedCells = cells.parallelStream()
+                .filter(this::hasChangedChunk)
+                .collect(Collectors.toList());
+
+        for (Cell cell : movedCells) {
+            SpatialHash<Cell> hash = cellHashes.get(cell.getClass());
+            int idx = hash.getChunkIndex(cell.getPos());
+            hash.move(cell, cell.getChunkIndex(), idx);
+            cell.setChunkIndex(idx);
+        }
+        return movedCells.size();
+    }
+
+    public void rebuild(Collection<Cell> cells) {
+        Map<Class<? extends Cell>, List<Cell>> cellsByType = new HashMap<>(cellHashes.size(), 1);
+        for (Class<? extends Cell> cellType : cellHashes.keySet())
+            cellsByType.put(cellType, new ArrayList<>(getSpatialHash(cellType).size()));
+
+        for (Cell cell : cells)
+            cellsByType.get(cell.getClass()).add(cell);
+
+        cellsByType.forEach((cellType, typeCells) -> {
+            int[] chunkIndices = cellHashes.get(cellType).rebuild(typeCells, Cell::getPos);
+            for (int i = 0; i < chunkIndices.length; i++)
+                typeCells.get(i).setChunkIndex(chunkIndices[i]);
+        });
     }
 
     public int getGlobalCount(Cell cell) {
@@ -48,13 +117,7 @@ public class Chunks implements Serializable {
     }
 
     public int getGlobalCount(Class<? extends Cell> cellClass) {
-        if (!globalCellCounts.containsKey(cellClass)) {
-            int count = getSpatialHash(cellClass).getChunkIndices().stream()
-                    .mapToInt(i -> getSpatialHash(cellClass).getCount(i))
-                    .sum();
-            globalCellCounts.put(cellClass, count);
-        }
-        return globalCellCounts.get(cellClass);
+        return cellHashes.get(cellClass).size();
     }
 
     public int getGlobalCapacity(Cell cell) {
@@ -63,21 +126,85 @@ public class Chunks implements Serializable {
 
     public int getGlobalCapacity(Class<? extends Cell> cellClass) {
         if (cellClass.equals(Protozoan.class))
-            return Environment.settings.misc.maxProtozoa.get();
+            return Environment.settings().misc.maxProtozoa.get();
         else if (cellClass.equals(PlantCell.class))
-            return Environment.settings.misc.maxPlants.get();
+            return Environment.settings().misc.maxPlants.get();
         else if (cellClass.equals(MeatCell.class))
-            return Environment.settings.misc.maxMeat.get();
+            return Environment.settings().misc.maxMeat.get();
         return 0;
     }
 
-    public void clear() {
-        cellHashes.values().forEach(SpatialHash::clear);
-        globalCellCounts.clear();
+    /**
+     * Visits every live and pending cell in the chunks overlapping the given box,
+     * stopping early if the visitor returns false.
+     *
+     * @return false if the visitor stopped the search early
+     */
+    public boolean visitCells(float minX, float minY, float maxX, float maxY, Predicate<Cell> visitor) {
+        int iMin = Math.max(0, pendingCellsHash.getChunkX(minX));
+        int jMin = Math.max(0, pendingCellsHash.getChunkY(minY));
+        int iMax = Math.min(pendingCellsHash.getResolution() - 1, pendingCellsHash.getChunkX(maxX));
+        int jMax = Math.min(pendingCellsHash.getResolution() - 1, pendingCellsHash.getChunkY(maxY));
+        for (int i = iMin; i <= iMax; i++)
+            for (int j = jMin; j <= jMax; j++)
+                if (!visitChunk(i, j, visitor))
+                    return false;
+        return true;
+    }
+
+    /**
+     * Visits every live and pending cell in the chunk at the given chunk coordinates,
+     * stopping early if the visitor returns false.
+     *
+     * @return false if the visitor stopped the search early
+     */
+    public boolean visitChunk(int i, int j, Predicate<Cell> visitor) {
+        for (SpatialHash<Cell> hash : cellHashes.values())
+            if (!visitChunk(hash, i, j, visitor))
+                return false;
+        return visitChunk(pendingCellsHash, i, j, visitor);
+    }
+
+    private boolean visitChunk(SpatialHash<Cell> hash, int i, int j, Predicate<Cell> visitor) {
+        if (hash.getCount(i, j) == 0)
+            return true;
+        for (Cell cell : hash.getChunkContents(i, j))
+            if (!visitor.test(cell))
+                return false;
+        return true;
+    }
+
+    /**
+     * @return the number of chunks, which are indexed the same way for every cell type
+     */
+    public int getNumChunks() {
+        int resolution = pendingCellsHash.getResolution();
+        return resolution * resolution;
     }
 
-    public void allocate(Cell cell) {
-        cellHashes.get(cell.getClass()).add(cell, cell.getPos());
+    public float getChunkSize() {
+        return pendingCellsHash.getChunkSize();
+    }
+
+    /**
+     * @return the number of chunks along each side of the grid
+     */
+    public int getResolution() {
+        return pendingCellsHash.getResolution();
+    }
+
+    /**
+     * @return the column of the chunk containing x, clamped to the grid
+     */
+    public int getChunkX(float x) {
+        return Math.max(0, Math.min(getResolution() - 1, pendingCellsHash.getChunkX(x)));
+    }
+
+    /**
+     * @return the row of the chunk containing y, clamped to the grid
+     */
+    public int getChunkY(float y) {
+        return Math.max(0, Math.min(getResolution() - 1, pendingCellsHash.getChunkY(y)));
     }
 
     public SpatialHash<? extends Cell> getCellHash(Class<? extends Cell> cellType, Vector2 pos) {
@@ -88,6 +215,17 @@ public class Chunks implements Serializable {
         return cellHashes.get(cellType).getCount(pos);
     }
 
+    /**
+     * @return the number of cells of the given type registered to be added in the chunk containing pos
+     */
+    public int getPendingChunkCount(Class<? extends Cell> cellType, Vector2 pos) {
+        int count = 0;
+        for (Cell cell : pendingCellsHash.getChunkContents(pendingCellsHash.getChunkIndex(pos)))
+            if (cell.getClass() == cellType)
+                count++;
+        return count;
+    }
+
     public int getChunkCapacity(Class<? extends Cell> cellType) {
         return cellHashes.get(cellType).getChunkCapacity();
     }
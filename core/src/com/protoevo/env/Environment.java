@@ -1,38 +1,46 @@
 package com.protoevo.env;
 
-import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector2;
 import com.fasterxml.jackson.annotation.JsonIgnore;
-import com.google.common.collect.Streams;
 import com.protoevo.biology.BurstRequest;
 import com.protoevo.biology.CauseOfDeath;
 import com.protoevo.biology.cells.Cell;
+import com.protoevo.biology.cells.CellStates;
+import com.protoevo.biology.cells.EvolvableCell;
 import com.protoevo.biology.cells.MeatCell;
 import com.protoevo.biology.cells.PlantCell;
 import com.protoevo.biology.cells.Protozoan;
 import com.protoevo.biology.evolution.Evolvable;
-import com.protoevo.biology.nodes.NodeAttachment;
+import com.protoevo.biology.nn.NetworkBatch;
+import com.protoevo.biology.nn.NeuralNetwork;
+import com.protoevo.core.SimulationContext;
 import com.protoevo.core.Statistics;
 import com.protoevo.maths.Shape;
 import com.protoevo.physics.*;
 import com.protoevo.physics.box2d.Box2DPhysics;
 import com.protoevo.settings.SimulationSettings;
 import com.protoevo.maths.Geometry;
+import com.protoevo.maths.RandomStream;
+import com.protoevo.maths.RandomStreams;
+import com.protoevo.utils.EntityRegistry;
 import com.protoevo.utils.SerializableFunction;
 
 import java.io.Serializable;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 
 public class Environment implements Serializable
 {
 	private static final long serialVersionUID = 2804817237950199223L;
-	public static SimulationSettings settings = SimulationSettings.createDefault();
 
 	private final SimulationSettings mySettings;
+	@JsonIgnore
+	private transient SimulationContext context;
 	private String simulationName;
 	private final Physics physics;
 	private String loadingStatus;
@@ -42,6 +50,10 @@ public class Environment implements Serializable
 			new ConcurrentHashMap<>(CauseOfDeath.values().length, 1);
 
 	private transient Chunks chunks;
+	private transient RockBVH rockBVH;
+	private transient NetworkBatch grnBatch;
+	private transient volatile boolean batchingGeneExpression;
+	private float timeSinceBatchedGeneExpression = 0;
 
 	private Map<Class<? extends Cell>, SerializableFunction<Float, Vector2>> spawnPositionFns;
 
@@ -61,8 +73,19 @@ public class Environment implements Serializable
 
 	@JsonIgnore
 	private transient Set<Cell> cellsToAdd;
-	private final ConcurrentHashMap<Long, Cell> cells = new ConcurrentHashMap<>();
+	@JsonIgnore
+	private transient Map<Class<? extends Cell>, Integer> cellsToAddCounts;
+	private final EntityRegistry<Cell> cells = new EntityRegistry<>();
+	@JsonIgnore
+	private transient CellStates cellStates;
+	@JsonIgnore
+	private transient TickPipeline pipeline;
+	// Cells grouped by chunk for the cell update, with the cells of chunk i from chunkStarts[i]
+	private transient Cell[] cellsByChunk;
+	private transient int[] chunkStarts;
+	private transient int birthsAndDeaths, movedCells;
 	private boolean hasInitialised, hasStarted;
+	private long ticks = 0;
 	private Vector2[] populationStartCentres;
 	@JsonIgnore
 	private final ConcurrentHashMap<Cell, BurstRequest<? extends Cell>> burstRequests = new ConcurrentHashMap<>();
@@ -70,42 +93,124 @@ public class Environment implements Serializable
 
 	public Environment()
 	{
-		this(settings);
+		this(settings());
 	}
 
 	public Environment(SimulationSettings settings) {
 		mySettings = settings;
-		Environment.settings = settings;
 
 		hasStarted = false;
 		createTransientObjects();
 		physics = new Box2DPhysics();
 
 		System.out.println("Creating chemicals solution... ");
-		if (Environment.settings.enableChemicalField.get()) {
+		if (Environment.settings().enableChemicalField.get()) {
 			chemicalSolution = new ChemicalSolution(
 					this,
-					Environment.settings.worldgen.chemicalFieldResolution.get(),
-					Environment.settings.worldgen.chemicalFieldRadius.get());
+					Environment.settings().worldgen.chemicalFieldResolution.get(),
+					Environment.settings().worldgen.chemicalFieldRadius.get());
 		} else {
 			chemicalSolution = null;
 		}
 
 		timeManager = new TimeManager();
 
-		int lightDim = Environment.settings.worldgen.lightMapResolution.get();
-		light = new LightManager(lightDim, lightDim, Environment.settings.worldgen.radius.get());
+		int lightDim = Environment.settings().worldgen.lightMapResolution.get();
+		light = new LightManager(lightDim, lightDim, Environment.settings().worldgen.radius.get());
 		light.setTimeManager(timeManager);
 
 		hasInitialised = false;
-		NodeAttachment.setupPossibleAttachments();
+	}
+
+	/**
+	 * @return the settings of the simulation the calling thread is working for, see {@link SimulationContext}
+	 */
+	public static SimulationSettings settings() {
+		return SimulationContext.current().getSettings();
+	}
+
+	public SimulationContext getContext() {
+		return context;
 	}
 
 	public void createTransientObjects() {
-		cellsToAdd = new HashSet<>();
+		if (context == null)
+			context = new SimulationContext(mySettings).makeDefault();
+		context.bind();
+		// insertion ordered, so that cells are added in the same order on every run
+		cellsToAdd = new LinkedHashSet<>();
+		cellsToAddCounts = new HashMap<>(3, 1);
 		chunks = new Chunks();
 		chunks.initialise();
-		updateChunkAllocations();
+		grnBatch = new NetworkBatch();
+		CellStates previousStates = cellStates;
+		cellStates = new CellStates(cells.size());
+		for (Cell cell : cells) {
+			if (previousStates != null)
+				previousStates.unbind(cell);
+			cellStates.bind(cell, cells.slotOf(cell.getId()));
+		}
+		rebuildChunkAllocations();
+		buildRockIndex();
+		buildPipeline();
+	}
+
+	/**
+	 * (Re)creates the tick pipeline, e.g. after the number of simulation threads has changed.
+	 */
+	public void buildPipeline() {
+		if (pipeline != null)
+			pipeline.shutdown();
+		pipeline = new TickPipeline(mySettings.misc.simulationThreads.get(), context)
+				.add("Particle Sync", delta -> getCells().forEach(cell -> cell.getParticle().physicsUpdate()))
+				.counting(cells::size)
+				.add("Physics", delta -> {
+					physics.step(delta);
+					cellStates.syncPhysics();
+				})
+				.counting(() -> physics.getParticles().size())
+				.addAlongside("Light", delta -> {
+					timeManager.update(delta);
+					light.update(delta);
+				})
+				.add("Cell Updates", this::handleCellUpdates)
+				.counting(cells::size)
+				.addAlongside("Chemical Diffusion", delta -> {
+					if (chemicalSolution != null) {
+						RandomStreams.enter(RandomStreams.CHEMICALS, 0);
+						chemicalSolution.prepareUpdate(delta);
+					}
+				}, () -> chemicalSolution != null && chemicalSolution.canPrepareConcurrently())
+				.add("Births and Deaths", delta -> {
+					// dying cells deposit into the field, so the diffused planes have to be swapped in first
+					if (chemicalSolution != null)
+						chemicalSolution.publishPreparedDiffusion();
+					handleBirthsAndDeaths();
+				})
+				.counting(() -> birthsAndDeaths)
+				.add("Chunk Allocation", delta -> updateChunkAllocations())
+				.counting(() -> movedCells)
+				.add("Joints", delta -> physics.getJointsManager().flushJoints())
+				.counting(() -> physics.getJointsManager().getJoinings().size())
+				// diffusion may need the GL or CUDA context of the simulation thread
+				.addOnCallingThread("Chemicals", delta -> {
+					if (mySettings.enableChemicalField.get()) {
+						RandomStreams.enter(RandomStreams.CHEMICALS, 1);
+						chemicalSolution.completeDiffusion();
+					}
+				})
+				// deposition is parallel, so has to run on the pool, whose threads carry this simulation's context
+				.add("Chemical Deposition", delta -> {
+					if (mySettings.enableChemicalField.get())
+						chemicalSolution.completeDeposition(delta, getCells());
+				})
+				.counting(() -> chemicalSolution == null ? 0 : chemicalSolution.getActiveTileCount())
+				.add("Cell State Write Back", delta -> cellStates.writeBack())
+				.counting(cells::size);
+	}
+
+	private void buildRockIndex() {
+		rockBVH = new RockBVH(rocks);
 	}
 
 	public boolean hasStarted() {
@@ -113,49 +218,132 @@ public class Environment implements Serializable
 	}
 
 	public void rebuildWorld() {
-		settings = mySettings;
-		NodeAttachment.setupPossibleAttachments();
+		context.bind();
 		physics.rebuildTransientFields(this);
 		getCells().forEach(cell -> cell.setEnvironment(this));
-		updateChunkAllocations();
+		rebuildChunkAllocations();
 	}
 
 	public void update(float delta)
 	{
 		hasStarted = true;
-		settings = mySettings;
-		getCells().forEach(cell -> cell.getParticle().physicsUpdate());
-
-		timeManager.update(delta);
-		light.update(delta);
-
-		physics.step(delta);
+		context.bind();
+		RandomStreams.beginTick(mySettings.simulationSeed.get(), ticks++);
+		pipeline.run(delta);
+	}
 
-  		handleCellUpdates(delta);
-		handleBirthsAndDeaths();
-		updateChunkAllocations();
+	public void ensureAddedToEnvironment(Cell cell) {
+		if (!cells.containsId(cell.getId()))
+			registerToAdd(cell);
+	}
 
-		physics.getJointsManager().flushJoints();
+	private void handleCellUpdates(float delta) {
+		batchingGeneExpression = numberOfProtozoa() > Environment.settings().misc.batchedGRNMinProtozoa.get();
+		int nChunks = groupCellsByChunk();
+		// cells read and write their neighbours, so are only updated in a fixed order when deterministic
+		IntStream chunkRange = IntStream.range(0, nChunks);
+		if (!Environment.settings().misc.deterministic.get())
+			chunkRange = chunkRange.parallel();
+		chunkRange.forEach(chunk -> {
+			for (int i = chunkStarts[chunk]; i < chunkStarts[chunk + 1]; i++) {
+				Cell cell = cellsByChunk[i];
+				RandomStreams.enter(RandomStreams.CELL_UPDATE, cell.getId());
+				cell.update(delta);
+			}
+		});
+		Arrays.fill(cellsByChunk, 0, chunkStarts[nChunks], null);
+		cellStates.update(delta);
+
+		timeSinceBatchedGeneExpression += delta;
+		if (batchingGeneExpression
+				&& timeSinceBatchedGeneExpression >= Environment.settings().protozoa.geneExpressionInterval.get()) {
+			handleBatchedGeneExpression();
+			timeSinceBatchedGeneExpression = 0;
+		}
+	}
 
-		if (Environment.settings.enableChemicalField.get()) {
-			chemicalSolution.update(delta);
+	private int chunkOf(Cell cell, int nChunks) {
+		int chunk = cell.getChunkIndex();
+		return chunk >= 0 && chunk < nChunks ? chunk : 0;
+	}
+
+	/**
+	 * Counting-sorts the cells by the chunk they were in at the last chunk update, so that the
+	 * cells updated by each task are close together in space and share the state they read.
+	 *
+	 * @return the number of chunks
+	 */
+	private int groupCellsByChunk() {
+		int nChunks = chunks.getNumChunks();
+		if (chunkStarts == null || chunkStarts.length != nChunks + 1)
+			chunkStarts = new int[nChunks + 1];
+		else
+			Arrays.fill(chunkStarts, 0);
+		if (cellsByChunk == null || cellsByChunk.length < cells.size())
+			cellsByChunk = new Cell[Math.max(cells.size(), 2 * (cellsByChunk == null ? 0 : cellsByChunk.length))];
+
+		for (Cell cell : cells)
+			chunkStarts[chunkOf(cell, nChunks) + 1]++;
+		for (int chunk = 0; chunk < nChunks; chunk++)
+			chunkStarts[chunk + 1] += chunkStarts[chunk];
+		int[] cursors = Arrays.copyOf(chunkStarts, nChunks);
+		for (Cell cell : cells)
+			cellsByChunk[cursors[chunkOf(cell, nChunks)]++] = cell;
+		return nChunks;
+	}
+
+	/**
+	 * @return whether the cell's gene regulatory network is ticked by the environment as part of a
+	 * population-wide batch, rather than by the cell itself.
+	 */
+	public boolean isBatchingGeneExpression(Cell cell) {
+		return batchingGeneExpression && cell instanceof Protozoan;
+	}
+
+	private void handleBatchedGeneExpression() {
+		List<Protozoan> expressing = new ArrayList<>();
+		List<NeuralNetwork> networks = new ArrayList<>();
+		for (Cell cell : getCells()) {
+			if (cell instanceof Protozoan && !cell.isDead()
+					&& ((Protozoan) cell).getGeneExpressionFunction() != null) {
+				NeuralNetwork grn = ((Protozoan) cell).getGeneExpressionFunction().getRegulatoryNetwork();
+				if (grn != null) {
+					expressing.add((Protozoan) cell);
+					networks.add(grn);
+				}
+			}
 		}
+
+		expressing.parallelStream().forEach(EvolvableCell::beginGeneExpression);
+		grnBatch.tick(networks);
+		expressing.parallelStream().forEach(cell -> {
+			RandomStreams.enter(RandomStreams.GENE_EXPRESSION, cell.getId());
+			cell.completeGeneExpression();
+		});
 	}
 
-	public void ensureAddedToEnvironment(Cell cell) {
-		if (!cells.containsKey(cell.getId()))
-			registerToAdd(cell);
+	private void releaseGeneRegulatoryNetwork(Cell cell) {
+		if (cell instanceof EvolvableCell && ((EvolvableCell) cell).getGeneExpressionFunction() != null) {
+			NeuralNetwork grn = ((EvolvableCell) cell).getGeneExpressionFunction().getRegulatoryNetwork();
+			if (grn != null)
+				grnBatch.remove(grn);
+		}
 	}
 
-	private void handleCellUpdates(float delta) {
-		getCells().parallelStream().forEach(cell -> cell.update(delta));
+	public NetworkBatch getGRNBatch() {
+		return grnBatch;
 	}
 
 	private void handleBirthsAndDeaths() {
 		handledBurstRequests.clear();
-		for (Cell parent : burstRequests.keySet()) {
+		// requests are made in parallel, so are handled in order of id for the capacity checks to
+		// come out the same on every run
+		List<Cell> parents = new ArrayList<>(burstRequests.keySet());
+		parents.sort(Comparator.comparingLong(Cell::getId));
+		for (Cell parent : parents) {
 			BurstRequest<? extends Cell> burstRequest = burstRequests.get(parent);
 			if (hasBurstCapacity(parent, burstRequest.getCellType()) && burstRequest.canBurst()) {
+				RandomStreams.enter(RandomStreams.BIRTHS, parent.getId());
 				burstRequest.burst();
 				handledBurstRequests.add(parent);
 			}
@@ -164,12 +352,17 @@ public class Environment implements Serializable
 			burstRequests.remove(parent);
 		handledBurstRequests.clear();
 
+		birthsAndDeaths = cellsToAdd.size();
 		flushEntitiesToAdd();
 
 		for (Cell cell : getCells()) {
 			if (cell.isDead()) {
+				birthsAndDeaths++;
+				chunks.remove(cell);
+				releaseGeneRegulatoryNetwork(cell);
 				dispose(cell);
 				depositOnDeath(cell);
+				cellStates.unbind(cell);
 			}
 		}
 		getCells().removeIf(Cell::isDead);
@@ -178,18 +371,21 @@ public class Environment implements Serializable
 	public void createRocks() {
 		System.out.println("Creating rocks structures...");
 		rocks.addAll(WorldGeneration.generate());
+		buildRockIndex();
 		physics.registerStaticBodies(this);
 	}
 
 	public void initialise() {
+		RandomStreams.beginTick(mySettings.simulationSeed.get(), ticks);
+		RandomStreams.enter(RandomStreams.WORLD_GENERATION, 0);
 		System.out.println("Commencing world generation... ");
 		loadingStatus = "Generating World";
 		createRocks();
 		loadingStatus = "Creating Light";
 		System.out.println("Baking shadows... ");
-		if (settings.worldgen.bakeRockLights.get())
-			LightManager.bakeRockShadows(light, rocks);
-		if (settings.worldgen.generateLightNoiseTexture.get())
+		if (mySettings.worldgen.bakeRockLights.get())
+			LightManager.bakeRockShadows(light, rockBVH);
+		if (mySettings.worldgen.generateLightNoiseTexture.get())
 			light.generateNoiseLight(0);
 
 		loadingStatus = "Creating Population";
@@ -214,7 +410,7 @@ public class Environment implements Serializable
 	private void buildSpawners() {
 		spawnPositionFns = new HashMap<>(3, 1);
 		if (populationStartCentres != null) {
-			final float clusterR = Environment.settings.worldgen.populationClusterRadius.get();
+			final float clusterR = Environment.settings().worldgen.populationClusterRadius.get();
 			spawnPositionFns.put(PlantCell.class, r -> randomPosition(r, populationStartCentres, clusterR));
 			spawnPositionFns.put(Protozoan.class, r -> randomPosition(r, populationStartCentres, 0.8f * clusterR));
 		}
@@ -225,22 +421,22 @@ public class Environment implements Serializable
 	}
 
 	public void initialisePopulation() {
-		populationStartCentres = new Vector2[Environment.settings.worldgen.numPopulationStartClusters.get()];
-		final float clusterR = Environment.settings.worldgen.populationClusterRadius.get();
+		populationStartCentres = new Vector2[Environment.settings().worldgen.numPopulationStartClusters.get()];
+		final float clusterR = Environment.settings().worldgen.populationClusterRadius.get();
 		for (int i = 0; i < populationStartCentres.length; i++)
 			populationStartCentres[i] = Geometry.randomPointInCircle(
-					Environment.settings.worldgen.radius.get() - clusterR, WorldGeneration.RANDOM
+					Environment.settings().worldgen.radius.get() - clusterR, context.getWorldGenerationRandom()
 			);
 
 		buildSpawners();
 
-		int nPlants = Environment.settings.worldgen.numInitialPlantPellets.get();
+		int nPlants = Environment.settings().worldgen.numInitialPlantPellets.get();
 		nPlants = Math.min(nPlants, chunks.getGlobalCapacity(PlantCell.class));
 		System.out.println("Creating population of " + nPlants + " plants..." );
 		loadingStatus = "Seeding Plants";
 		for (int i = 0; i < nPlants; i++) {
 			PlantCell cell;
-			if (Environment.settings.plant.evolutionEnabled.get())
+			if (Environment.settings().plant.evolutionEnabled.get())
 				cell = Evolvable.createNew(PlantCell.class);
 			else
 				cell = new PlantCell();
@@ -248,7 +444,7 @@ public class Environment implements Serializable
 			findRandomPositionOrKillCell(cell);
 		}
 
-		int nProtozoa = Environment.settings.worldgen.numInitialProtozoa.get();
+		int nProtozoa = Environment.settings().worldgen.numInitialProtozoa.get();
 		nProtozoa = Math.min(nProtozoa, chunks.getGlobalCapacity(Protozoan.class));
 		System.out.println("Creating population of " + nProtozoa + " protozoa...");
 		loadingStatus = "Spawning Protozoa";
@@ -268,25 +464,35 @@ public class Environment implements Serializable
 			cell.kill(CauseOfDeath.FAILED_TO_CONSTRUCT);
 			return;
 		}
+		setSpawnPosition(cell, pos);
+	}
+
+	/**
+	 * Moves a newly created cell, keeping it visible to spatial queries
+	 * before it is added to the environment.
+	 */
+	public void setSpawnPosition(Cell cell, Vector2 pos) {
 		cell.getParticle().setPos(pos);
+		if (cellsToAdd.contains(cell))
+			chunks.updatePending(cell);
 	}
 
 	public Vector2 randomPosition(float entityRadius, Vector2[] clusterCentres) {
-		int clusterIdx = MathUtils.random(clusterCentres.length - 1);
+		int clusterIdx = RandomStreams.random(clusterCentres.length - 1);
 		Vector2 clusterCentre = clusterCentres[clusterIdx];
-		return randomPosition(entityRadius, clusterCentre, Environment.settings.worldgen.populationClusterRadius.get());
+		return randomPosition(entityRadius, clusterCentre, Environment.settings().worldgen.populationClusterRadius.get());
 	}
 
 	public Vector2 randomPosition(float entityRadius, Vector2[] clusterCentres, float clusterRadius) {
-		int clusterIdx = MathUtils.random(clusterCentres.length - 1);
+		int clusterIdx = RandomStreams.random(clusterCentres.length - 1);
 		Vector2 clusterCentre = clusterCentres[clusterIdx];
 		return randomPosition(entityRadius, clusterCentre, clusterRadius);
 	}
 
 	public Vector2 randomPosition(float entityRadius, Vector2 centre, float clusterRadius) {
 		for (int i = 0; i < 20; i++) {
-			float r = WorldGeneration.RANDOM.nextFloat() * clusterRadius;
-			Vector2 pos = Geometry.randomPointInCircle(r, WorldGeneration.RANDOM);
+			float r = context.getWorldGenerationRandom().nextFloat() * clusterRadius;
+			Vector2 pos = Geometry.randomPointInCircle(r, context.getWorldGenerationRandom());
 			pos.add(centre);
 			Optional<? extends Shape> collision = getCollidingShape(pos, entityRadius);
 			if (collision.isPresent() && collision.get() instanceof Particle
@@ -311,7 +517,7 @@ public class Environment implements Serializable
 	}
 
 	public Vector2 randomPosition(float entityRadius) {
-		return randomPosition(entityRadius, Geometry.ZERO, Environment.settings.worldgen.minRockClusterRadius.get());
+		return randomPosition(entityRadius, Geometry.ZERO, Environment.settings().worldgen.minRockClusterRadius.get());
 	}
 
 	public void tryAdd(Cell cell) {
@@ -324,7 +530,7 @@ public class Environment implements Serializable
 	}
 
 	public void add(Cell cell) {
-		cells.put(cell.getId(), cell);
+		cellStates.bind(cell, cells.put(cell.getId(), cell));
 		chunks.add(cell);
 	}
 
@@ -332,19 +538,31 @@ public class Environment implements Serializable
 		return Optional.ofNullable(cells.get(id));
 	}
 
+	/**
+	 * @return the cell with the given id, or null if there is none
+	 */
+	public Cell findCell(long id) {
+		return cells.get(id);
+	}
+
 	private void flushEntitiesToAdd() {
+		chunks.clearPending();
 		for (Cell cell : cellsToAdd)
 			tryAdd(cell);
 		cellsToAdd.clear();
+		cellsToAddCounts.clear();
 	}
 
 	public int getCount(Class<? extends Cell> cellClass) {
-		return chunks.getLocalCount(cellClass);
+		return chunks.getGlobalCount(cellClass);
 	}
 
 	public void updateChunkAllocations() {
-		chunks.clear();
-		getCells().forEach(chunks::allocate);
+		movedCells = chunks.update(getCells());
+	}
+
+	public void rebuildChunkAllocations() {
+		chunks.rebuild(getCells());
 	}
 
 	private void dispose(Cell e) {
@@ -357,7 +575,7 @@ public class Environment implements Serializable
 	}
 
 	public void depositOnDeath(Cell cell) {
-		if (settings.enableChemicalField.get()) {
+		if (mySettings.enableChemicalField.get()) {
 			if (!cell.isEngulfed() && cell.hasNotBurst()) {
 				chemicalSolution.depositCircle(
 						cell.getPos(), cell.getRadius() * 1.25f,
@@ -377,12 +595,7 @@ public class Environment implements Serializable
 	}
 
 	public int getGlobalCount(Class<? extends Cell> cellType) {
-		int toAdd = 0;
-		for (Cell cell : cellsToAdd)
-			if (cell.getClass().equals(cellType))
-				toAdd++;
-
-		return chunks.getGlobalCount(cellType) + toAdd;
+		return chunks.getGlobalCount(cellType) + cellsToAddCounts.getOrDefault(cellType, 0);
 	}
 
 	public int getGlobalCapacity(Cell cell) {
@@ -397,18 +610,11 @@ public class Environment implements Serializable
 		return getLocalCount(cell.getClass(), cell.getPos());
 	}
 
+	/**
+	 * @return the number of live and pending cells of the given type in the chunk containing pos
+	 */
 	public int getLocalCount(Class<? extends Cell> cellType, Vector2 pos) {
-		int existingCount = chunks.getChunkCount(cellType, pos);
-		SpatialHash<? extends Cell> cellHash = chunks.getCellHash(cellType, pos);
-		int chunkX = cellHash.getChunkX(pos.x);
-		int chunkY = cellHash.getChunkY(pos.y);
-		for (Cell cell : cellsToAdd) {
-			int thisChunkX = cellHash.getChunkX(cell.getPos().x);
-			int thisChunkY = cellHash.getChunkY(cell.getPos().y);
-			if (thisChunkY == chunkY && thisChunkX == chunkX)
-				existingCount++;
-		}
-		return existingCount;
+		return chunks.getChunkCount(cellType, pos) + chunks.getPendingChunkCount(cellType, pos);
 	}
 
 	public int getLocalCapacity(Cell cell) {
@@ -420,7 +626,10 @@ public class Environment implements Serializable
 	}
 
 	public void registerToAdd(Cell e) {
-		cellsToAdd.add(e);
+		if (cellsToAdd.add(e)) {
+			cellsToAddCounts.merge(e.getClass(), 1, Integer::sum);
+			chunks.addPending(e);
+		}
 	}
 
 	public Statistics getStats() {
@@ -444,7 +653,7 @@ public class Environment implements Serializable
 			stats.putCount(cellClassNames.get(cellClass) + " Created",
 					bornCounts.get(cellClass).intValue());
 
-		if (Environment.settings.protozoa.matingEnabled.get())
+		if (Environment.settings().protozoa.matingEnabled.get())
 			stats.putCount("Crossover Events", (int) crossoverEvents);
 
 		for (CauseOfDeath cod : CauseOfDeath.values()) {
@@ -466,9 +675,17 @@ public class Environment implements Serializable
 			if (count > 0)
 				debugStats.put("Died from " + cod.getReason(), (float) count);
 		}
+		debugStats.putAll(pipeline.getProfiler().getStats());
 		return debugStats;
 	}
 
+	/**
+	 * @return the profile of the stages of recent ticks
+	 */
+	public TickProfiler getProfiler() {
+		return pipeline.getProfiler();
+	}
+
 	public Statistics getPhysicsDebugStats() {
 		return physics.getDebugStats();
 	}
@@ -508,21 +725,204 @@ public class Environment implements Serializable
 		return generationCounts.getOrDefault(Protozoan.class, 0L);
 	}
 
+	private Optional<Rock> getCollidingRock(Vector2 pos, float r) {
+		int idx = rockBVH.findOverlapping(pos.x, pos.y, r);
+		if (idx == RockBVH.NO_HIT)
+			return Optional.empty();
+		return Optional.of(rockBVH.getRock(idx));
+	}
+
+	private float getCellQueryMargin() {
+		return Environment.settings().maxParticleRadius.get();
+	}
+
+	/**
+	 * Collects the live and pending cells that overlap the given circle.
+	 */
+	public void queryRadius(Vector2 pos, float r, Collection<? super Cell> results) {
+		float range = r + getCellQueryMargin();
+		chunks.visitCells(pos.x - range, pos.y - range, pos.x + range, pos.y + range, cell -> {
+			if (Geometry.doCirclesCollide(pos, r, cell.getPos(), cell.getRadius()))
+				results.add(cell);
+			return true;
+		});
+	}
+
+	public List<Cell> queryRadius(Vector2 pos, float r) {
+		List<Cell> results = new ArrayList<>();
+		queryRadius(pos, r, results);
+		return results;
+	}
+
+	/**
+	 * Visits the chunks in square rings of growing size around the chunk containing pos, so each
+	 * chunk is visited at most once. After ring n, every cell within n chunk sizes of pos has been
+	 * seen, so the search stops once k of the cells seen are that close, once that distance
+	 * reaches maxDistance or once the rings cover the grid.
+	 *
+	 * @return up to k cells with centres within maxDistance of pos, nearest first.
+	 */
+	public List<Cell> queryKNearest(Vector2 pos, int k, float maxDistance) {
+		List<Cell> candidates = new ArrayList<>();
+		if (k <= 0)
+			return candidates;
+
+		final float maxDistance2 = maxDistance * maxDistance;
+		Predicate<Cell> collect = cell -> {
+			if (cell.getPos().dst2(pos) <= maxDistance2)
+				candidates.add(cell);
+			return true;
+		};
+
+		int resolution = chunks.getResolution();
+		float chunkSize = chunks.getChunkSize();
+		int ci = chunks.getChunkX(pos.x), cj = chunks.getChunkY(pos.y);
+		int lastRing = Math.max(Math.max(ci, resolution - 1 - ci), Math.max(cj, resolution - 1 - cj));
+		for (int ring = 0; ring <= lastRing; ring++) {
+			visitChunkRing(ci, cj, ring, collect);
+
+			float covered = ring * chunkSize;
+			if (covered >= maxDistance)
+				break;
+			if (candidates.size() >= k) {
+				float covered2 = covered * covered;
+				int withinCovered = 0;
+				for (Cell cell : candidates)
+					if (cell.getPos().dst2(pos) <= covered2)
+						withinCovered++;
+				if (withinCovered >= k)
+					break;
+			}
+		}
+		candidates.sort(Comparator.comparingDouble(cell -> cell.getPos().dst2(pos)));
+		return candidates.size() > k ? new ArrayList<>(candidates.subList(0, k)) : candidates;
+	}
+
+	private void visitChunkRing(int ci, int cj, int ring, Predicate<Cell> visitor) {
+		int resolution = chunks.getResolution();
+		int iMin = Math.max(0, ci - ring), iMax = Math.min(resolution - 1, ci + ring);
+		int jMin = Math.max(0, cj - ring), jMax = Math.min(resolution - 1, cj + ring);
+		for (int i = iMin; i <= iMax; i++) {
+			boolean onSide = i == ci - ring || i == ci + ring;
+			for (int j = jMin; j <= jMax; j++)
+				if (onSide || j == cj - ring || j == cj + ring)
+					chunks.visitChunk(i, j, visitor);
+		}
+	}
+
+	/**
+	 * Finds the nearest rock or cell hit by the segment from start to end.
+	 *
+	 * @param closestHit set to the nearest intersection point if anything was hit.
+	 */
+	public Optional<Shape> raycast(Vector2 start, Vector2 end, Shape.Intersection closestHit) {
+		final Vector2[] ray = new Vector2[]{start, end};
+		final Shape.Intersection[] intersections =
+				new Shape.Intersection[]{new Shape.Intersection(), new Shape.Intersection()};
+		final float[] closestDist2 = new float[]{Float.MAX_VALUE};
+		final Shape[] closestShape = new Shape[1];
+		closestHit.didCollide = false;
+
+		Predicate<Shape> testShape = shape -> {
+			intersections[0].didCollide = false;
+			intersections[1].didCollide = false;
+			if (shape.rayCollisions(ray, intersections)) {
+				for (Shape.Intersection intersection : intersections) {
+					float dist2 = intersection.didCollide ? intersection.point.dst2(start) : Float.MAX_VALUE;
+					if (dist2 < closestDist2[0]) {
+						closestDist2[0] = dist2;
+						closestShape[0] = shape;
+						closestHit.point.set(intersection.point);
+						closestHit.didCollide = true;
+					}
+				}
+			}
+			return true;
+		};
+
+		final float[] rockHitT = new float[1];
+		int rockIdx = rockBVH.raycast(start.x, start.y, end.x, end.y, rockHitT);
+		if (rockIdx != RockBVH.NO_HIT) {
+			closestHit.point.set(start).lerp(end, rockHitT[0]);
+			closestHit.didCollide = true;
+			closestDist2[0] = closestHit.point.dst2(start);
+			closestShape[0] = rockBVH.getRock(rockIdx);
+		}
+
+		float minX = Math.min(start.x, end.x), maxX = Math.max(start.x, end.x);
+		float minY = Math.min(start.y, end.y), maxY = Math.max(start.y, end.y);
+
+		float margin = getCellQueryMargin();
+		chunks.visitCells(minX - margin, minY - margin, maxX + margin, maxY + margin,
+				cell -> testShape.test(cell.getParticle()));
+
+		return Optional.ofNullable(closestShape[0]);
+	}
+
+	public boolean anyOverlap(Vector2 pos, float r) {
+		return getCollidingShape(pos, r).isPresent();
+	}
+
 	public Optional<? extends Shape> getCollidingShape(Vector2 pos, float r) {
-		Optional<Rock> collidingRock = rocks.stream().filter(rock -> rock.intersectsWith(pos, r)).findAny();
+		Optional<Rock> collidingRock = getCollidingRock(pos, r);
 		if (collidingRock.isPresent())
 			return collidingRock;
 
-		return Streams.concat(getCells().stream(), cellsToAdd.stream())
-				.filter(cell -> Geometry.doCirclesCollide(pos, r, cell.getPos(), cell.getRadius()))
-				.map(Cell::getParticle)
-				.findAny();
+		final Cell[] collidingCell = new Cell[1];
+		float range = r + getCellQueryMargin();
+		chunks.visitCells(pos.x - range, pos.y - range, pos.x + range, pos.y + range, cell -> {
+			if (Geometry.doCirclesCollide(pos, r, cell.getPos(), cell.getRadius())) {
+				collidingCell[0] = cell;
+				return false;
+			}
+			return true;
+		});
+		return Optional.ofNullable(collidingCell[0]).map(Cell::getParticle);
+	}
+
+	public boolean overlapsRock(Vector2 pos, float r) {
+		return getCollidingRock(pos, r).isPresent();
 	}
 
 	public float getElapsedTime() {
 		return timeManager.getTimeElapsed();
 	}
 
+	public long getTicks() {
+		return ticks;
+	}
+
+	/**
+	 * Hashes the id, position, velocity, angle, size and resources of every cell in order of id,
+	 * so that two runs can be checked to have reached the same state.
+	 */
+	public long getStateHash() {
+		List<Cell> sorted = new ArrayList<>(cells);
+		sorted.sort(Comparator.comparingLong(Cell::getId));
+		long hash = RandomStream.mix64(ticks);
+		for (Cell cell : sorted) {
+			hash = hashStep(hash, cell.getId());
+			hash = hashStep(hash, cell.getPos().x);
+			hash = hashStep(hash, cell.getPos().y);
+			hash = hashStep(hash, cell.getVel().x);
+			hash = hashStep(hash, cell.getVel().y);
+			hash = hashStep(hash, cell.getParticle().getAngle());
+			hash = hashStep(hash, cell.getRadius());
+			hash = hashStep(hash, cell.getHealth());
+			hash = hashStep(hash, cell.getEnergyAvailable());
+			hash = hashStep(hash, cell.getConstructionMassAvailable());
+		}
+		return hash;
+	}
+
+	private static long hashStep(long hash, float value) {
+		return hashStep(hash, Float.floatToIntBits(value));
+	}
+
+	private static long hashStep(long hash, long value) {
+		return RandomStream.mix64(31 * hash + value);
+	}
+
 	public ChemicalSolution getChemicalSolution() {
 		return chemicalSolution;
 	}
@@ -531,12 +931,20 @@ public class Environment implements Serializable
 		return rocks;
 	}
 
+	public RockBVH getRockBVH() {
+		return rockBVH;
+	}
+
 	public Physics getPhysics() {
 		return physics;
 	}
 
 	public Collection<Cell> getCells() {
-		return cells.values();
+		return cells;
+	}
+
+	public CellStates getCellStates() {
+		return cellStates;
 	}
 
 	public Stream<Particle> getParticles() {
@@ -586,11 +994,12 @@ public class Environment implements Serializable
 	}
 
 	public float getRadius() {
-		return settings.worldgen.radius.get();
+		return mySettings.worldgen.radius.get();
 	}
 
 	public void dispose() {
 		physics.dispose();
+		pipeline.shutdown();
 	}
 
 	public LightManager getLightMap() {
@@ -602,7 +1011,7 @@ public class Environment implements Serializable
 	}
 
 	public float getTemperature(Vector2 pos) {
-		return light.getLightLevel(pos) * settings.env.maxLightEnvTemp.get();
+		return light.getLightLevel(pos) * mySettings.env.maxLightEnvTemp.get();
 	}
 
 	public String getLoadingStatus() {
@@ -3,9 +3,6 @@ package com.protoevo.env;
 import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector2;
 import com.protoevo.maths.Functions;
-import com.protoevo.maths.Shape;
-import com.protoevo.physics.SpatialHash;
-import com.protoevo.maths.Geometry;
 import com.protoevo.utils.Perlin;
 
 import java.io.Serializable;
@@ -16,64 +13,38 @@ public class LightManager implements Serializable {
     public static long serialVersionUID = 1L;
 
     public static void bakeRockShadows(LightManager lightManager, List<Rock> rocks) {
-        float rayLen = Environment.settings.worldgen.maxRockSize.get() * 5f;
-
-        int resolution = (int) (lightManager.getFieldWidth() / rayLen);
-
-        SpatialHash<Rock> rockSpatialHash = new SpatialHash<>(resolution, Environment.settings.worldgen.radius.get());
-        for (Rock rock : rocks) {
-            rockSpatialHash.add(rock, rock.getBoundingBox());
-        }
-
-        collectLight(lightManager, rockSpatialHash, rayLen);
+        bakeRockShadows(lightManager, new RockBVH(rocks));
     }
 
-    private static void collectLight(LightManager lightManager, SpatialHash<Rock> rockSpatialHash, float rayLen) {
-
-        int lightSamples = 16;
+    public static void bakeRockShadows(LightManager lightManager, RockBVH rockBVH) {
+        float rayLen = Environment.settings().worldgen.maxRockSize.get() * 5f;
+        collectLight(lightManager, rockBVH, rayLen);
+    }
 
-        final Vector2[] ray = new Vector2[2];
+    private static void collectLight(LightManager lightManager, RockBVH rockBVH, float rayLen) {
 
-        final Shape.Intersection[] intersections =
-                new Shape.Intersection[]{new Shape.Intersection(), new Shape.Intersection()};
+        final int lightSamples = 16;
+        final float[] rayDirX = new float[lightSamples];
+        final float[] rayDirY = new float[lightSamples];
+        for (int a = 0; a < lightSamples; a++) {
+            float angle = (float) (a * Math.PI * 2 / lightSamples);
+            rayDirX[a] = rayLen * (float) Math.cos(angle);
+            rayDirY[a] = rayLen * (float) Math.sin(angle);
+        }
 
-        IntStream.range(0, lightManager.width * lightManager.height).forEach(i -> {
+        IntStream.range(0, lightManager.width * lightManager.height).parallel().forEach(i -> {
             int x = i % lightManager.width;
             int y = i / lightManager.width;
-            Vector2 cellPos = lightManager.toEnvironmentCoords(x, y);
-            ray[0] = cellPos;
+            float cellX = lightManager.xMin + (0.5f + x) * lightManager.cellSizeX;
+            float cellY = lightManager.yMin + (0.5f + y) * lightManager.cellSizeY;
+            float[] hitT = new float[1];
 
             float collisionValue = 0f;
-
-            int hashIMin = rockSpatialHash.getChunkX(cellPos.x - rayLen);
-            int hashIMax = rockSpatialHash.getChunkX(cellPos.x + rayLen);
-            int hashJMin = rockSpatialHash.getChunkY(cellPos.y - rayLen);
-            int hashJMax = rockSpatialHash.getChunkY(cellPos.y + rayLen);
-
-            Set<Rock> checkRocks = new HashSet<>();
-
             for (int a = 0; a < lightSamples; a++) {
-                float angle = (float) (a * Math.PI * 2 / lightSamples);
-                Vector2 rayDir = Geometry.fromAngle(angle).scl(rayLen);
-                ray[1] = cellPos.cpy().add(rayDir);
-                float dist = rayLen;
-
-                checkRocks.clear();
-
-                for (int hashI = hashIMin; hashI <= hashIMax; hashI++) {
-                    for (int hashJ = hashJMin; hashJ <= hashJMax; hashJ++) {
-                        checkRocks.addAll(rockSpatialHash.getChunkContents(hashI, hashJ));
-                    }
-                }
-
-                for (Rock rock : checkRocks) {
-                    intersections[0].didCollide = false;
-                    intersections[1].didCollide = false;
-                    if (rock.rayCollisions(ray, intersections)) {
-                        dist = Math.min(dist, getClosestDist(cellPos, intersections));
-                    }
-                }
-                collisionValue += 1 - dist / rayLen;
+                int hit = rockBVH.raycast(
+                        cellX, cellY, cellX + rayDirX[a], cellY + rayDirY[a], hitT);
+                float t = hit == RockBVH.NO_HIT ? 1f : hitT[0];
+                collisionValue += 1 - t;
             }
 
             collisionValue /= lightSamples;
@@ -84,15 +55,6 @@ public class LightManager implements Serializable {
         });
     }
 
-    private static float getClosestDist(Vector2 point, Shape.Intersection[] intersections) {
-        float dist = Float.MAX_VALUE;
-        if (intersections[0].didCollide)
-            dist = Math.min(dist, point.dst(intersections[0].point));
-        if (intersections[1].didCollide)
-            dist = Math.min(dist, point.dst(intersections[1].point));
-        return dist;
-    }
-
     private final float[][] lightMap;
     private final int width, height;
     private final float cellSizeX, cellSizeY;
@@ -143,16 +105,16 @@ public class LightManager implements Serializable {
         if (timeManager == null)
             return;
 
-        if (!Environment.settings.env.dayNightCycleEnabled.get()) {
+        if (!Environment.settings().env.dayNightCycleEnabled.get()) {
             environmentLight = 1f;
             return;
         }
 
         float t = timeManager.getTimeOfDayPercentage();
 
-        float transition = Environment.settings.env.dayNightTransition.get();
-        float night = Environment.settings.env.nightPercentage.get();
-        float nightLightLevel = Environment.settings.env.nightLightLevel.get();
+        float transition = Environment.settings().env.dayNightTransition.get();
+        float night = Environment.settings().env.nightPercentage.get();
+        float nightLightLevel = Environment.settings().env.nightLightLevel.get();
 
         if (t < 1 - 2*transition - night) {
             environmentLight = 1f;
@@ -1,11 +1,11 @@
 package com.protoevo.env;
 
-import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector2;
 import com.protoevo.physics.Coloured;
 import com.protoevo.maths.Shape;
 import com.protoevo.utils.Colour;
 import com.protoevo.maths.Geometry;
+import com.protoevo.maths.RandomStreams;
 
 import java.io.Serializable;
 
@@ -206,8 +206,8 @@ public class Rock implements Serializable, Shape, Coloured {
 
     public static Colour randomRockColour() {
         float darkener = 0.65f;
-        int tone = 80 + MathUtils.random(20);
-        int yellowing = MathUtils.random(20);
+        int tone = 80 + RandomStreams.random(20);
+        int yellowing = RandomStreams.random(20);
         return new Colour(
                 darkener * (tone + yellowing) / 255.f,
                 darkener * (tone + yellowing) / 255.f,
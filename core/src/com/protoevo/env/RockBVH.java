@@ -0,0 +1,320 @@
+package com.protoevo.env;
+
+import com.badlogic.gdx.math.Vector2;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Immutable bounding volume hierarchy over rock triangles.
+ * <p>
+ * Nodes and triangle vertices are packed into primitive arrays in depth-first order,
+ * with the left child of a node stored directly after it. Queries walk the tree
+ * recursively and, apart from the predicate a caller passes to {@link #findInBox},
+ * do not allocate.
+ */
+public class RockBVH {
+
+    public static final int NO_HIT = -1;
+    private static final int MAX_LEAF_SIZE = 4;
+    private static final int[][] EDGES = {{0, 1}, {1, 2}, {0, 2}};
+
+    private final Rock[] rocks;
+    private final float[] vertices;
+    private final boolean[] edgeAttached;
+    private final float[] nodeMinX, nodeMinY, nodeMaxX, nodeMaxY;
+    private final int[] nodeStart, nodeCount, nodeRight;
+    private int numNodes = 0;
+
+    public RockBVH(List<Rock> rockList) {
+        int n = rockList.size();
+        rocks = new Rock[n];
+        vertices = new float[6 * n];
+        edgeAttached = new boolean[3 * n];
+
+        int maxNodes = Math.max(1, 2 * n);
+        nodeMinX = new float[maxNodes];
+        nodeMinY = new float[maxNodes];
+        nodeMaxX = new float[maxNodes];
+        nodeMaxY = new float[maxNodes];
+        nodeStart = new int[maxNodes];
+        nodeCount = new int[maxNodes];
+        nodeRight = new int[maxNodes];
+
+        Integer[] order = new Integer[n];
+        float[] centres = new float[2 * n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+            Vector2 centre = rockList.get(i).getCentre();
+            centres[2 * i] = centre.x;
+            centres[2 * i + 1] = centre.y;
+        }
+
+        if (n > 0)
+            buildNode(rockList, order, centres, 0, n);
+
+        for (int i = 0; i < n; i++) {
+            Rock rock = rockList.get(order[i]);
+            rocks[i] = rock;
+            Vector2[] points = rock.getPoints();
+            for (int p = 0; p < 3; p++) {
+                vertices[6 * i + 2 * p] = points[p].x;
+                vertices[6 * i + 2 * p + 1] = points[p].y;
+            }
+            for (int e = 0; e < 3; e++)
+                edgeAttached[3 * i + e] = rock.isEdgeAttached(e);
+        }
+    }
+
+    private int buildNode(List<Rock> rockList, Integer[] order, float[] centres, int start, int end) {
+        int node = numNodes++;
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        float cMinX = Float.MAX_VALUE, cMinY = Float.MAX_VALUE;
+        float cMaxX = -Float.MAX_VALUE, cMaxY = -Float.MAX_VALUE;
+        for (int i = start; i < end; i++) {
+            Vector2[] bounds = rockList.get(order[i]).getBoundingBox();
+            minX = Math.min(minX, bounds[0].x);
+            minY = Math.min(minY, bounds[0].y);
+            maxX = Math.max(maxX, bounds[1].x);
+            maxY = Math.max(maxY, bounds[1].y);
+            cMinX = Math.min(cMinX, centres[2 * order[i]]);
+            cMinY = Math.min(cMinY, centres[2 * order[i] + 1]);
+            cMaxX = Math.max(cMaxX, centres[2 * order[i]]);
+            cMaxY = Math.max(cMaxY, centres[2 * order[i] + 1]);
+        }
+        nodeMinX[node] = minX;
+        nodeMinY[node] = minY;
+        nodeMaxX[node] = maxX;
+        nodeMaxY[node] = maxY;
+
+        if (end - start <= MAX_LEAF_SIZE) {
+            nodeStart[node] = start;
+            nodeCount[node] = end - start;
+            return node;
+        }
+
+        // Median split along the axis with the largest spread of centres
+        final int axis = (cMaxX - cMinX) >= (cMaxY - cMinY) ? 0 : 1;
+        Arrays.sort(order, start, end, (a, b) -> Float.compare(centres[2 * a + axis], centres[2 * b + axis]));
+        int mid = (start + end) / 2;
+
+        nodeCount[node] = 0;
+        buildNode(rockList, order, centres, start, mid);
+        nodeRight[node] = buildNode(rockList, order, centres, mid, end);
+        return node;
+    }
+
+    public int size() {
+        return rocks.length;
+    }
+
+    public Rock getRock(int idx) {
+        return rocks[idx];
+    }
+
+    private boolean isLeaf(int node) {
+        return nodeCount[node] > 0;
+    }
+
+    private boolean nodeOverlapsBox(int node, float minX, float minY, float maxX, float maxY) {
+        return nodeMinX[node] <= maxX && nodeMaxX[node] >= minX
+                && nodeMinY[node] <= maxY && nodeMaxY[node] >= minY;
+    }
+
+    /**
+     * Tests every rock whose bounding box overlaps the given box,
+     * stopping at the first index for which the test returns true.
+     *
+     * @return the index of the first rock passing the test, or {@link #NO_HIT}.
+     */
+    public int findInBox(float minX, float minY, float maxX, float maxY, IntPredicate test) {
+        if (numNodes == 0)
+            return NO_HIT;
+        return findInBox(0, minX, minY, maxX, maxY, test);
+    }
+
+    private int findInBox(int node, float minX, float minY, float maxX, float maxY, IntPredicate test) {
+        if (!nodeOverlapsBox(node, minX, minY, maxX, maxY))
+            return NO_HIT;
+        if (isLeaf(node)) {
+            int end = nodeStart[node] + nodeCount[node];
+            for (int i = nodeStart[node]; i < end; i++)
+                if (rockOverlapsBox(i, minX, minY, maxX, maxY) && test.test(i))
+                    return i;
+            return NO_HIT;
+        }
+        int hit = findInBox(node + 1, minX, minY, maxX, maxY, test);
+        if (hit != NO_HIT)
+            return hit;
+        return findInBox(nodeRight[node], minX, minY, maxX, maxY, test);
+    }
+
+    private boolean rockOverlapsBox(int idx, float minX, float minY, float maxX, float maxY) {
+        float[] v = vertices;
+        int o = 6 * idx;
+        float rMinX = Math.min(v[o], Math.min(v[o + 2], v[o + 4]));
+        float rMaxX = Math.max(v[o], Math.max(v[o + 2], v[o + 4]));
+        float rMinY = Math.min(v[o + 1], Math.min(v[o + 3], v[o + 5]));
+        float rMaxY = Math.max(v[o + 1], Math.max(v[o + 3], v[o + 5]));
+        return rMinX <= maxX && rMaxX >= minX && rMinY <= maxY && rMaxY >= minY;
+    }
+
+    private static float sign(float px, float py, float ax, float ay, float bx, float by) {
+        return (px - bx) * (ay - by) - (ax - bx) * (py - by);
+    }
+
+    public boolean pointInside(int idx, float x, float y) {
+        float[] v = vertices;
+        int o = 6 * idx;
+        float d1 = sign(x, y, v[o], v[o + 1], v[o + 2], v[o + 3]);
+        float d2 = sign(x, y, v[o + 2], v[o + 3], v[o + 4], v[o + 5]);
+        float d3 = sign(x, y, v[o + 4], v[o + 5], v[o], v[o + 1]);
+
+        boolean hasNeg = (d1 < 0) || (d2 < 0) || (d3 < 0);
+        boolean hasPos = (d1 > 0) || (d2 > 0) || (d3 > 0);
+        return !(hasNeg && hasPos);
+    }
+
+    /**
+     * Same test as {@link Rock#intersectsWith(Vector2, float)}:
+     * whether the circle boundary crosses any edge of the rock.
+     */
+    public boolean edgesIntersectCircle(int idx, float cx, float cy, float r) {
+        float[] v = vertices;
+        int o = 6 * idx;
+        for (int[] edge : EDGES) {
+            float ax = v[o + 2 * edge[0]], ay = v[o + 2 * edge[0] + 1];
+            float dirX = v[o + 2 * edge[1]] - ax, dirY = v[o + 2 * edge[1] + 1] - ay;
+            float xX = cx - ax, xY = cy - ay;
+            float a = dirX * dirX + dirY * dirY;
+            float b = -2 * (dirX * xX + dirY * xY);
+            float c = xX * xX + xY * xY - r * r;
+            float disc = b * b - 4 * a * c;
+            if (disc < 0)
+                continue;
+            float sqrtDisc = (float) Math.sqrt(disc);
+            float t1 = (-b + sqrtDisc) / (2 * a);
+            float t2 = (-b - sqrtDisc) / (2 * a);
+            float eps = 1e-9f;
+            if ((eps < t1 && t1 < 1 - eps) || (eps < t2 && t2 < 1 - eps))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the index of a rock containing the point, or {@link #NO_HIT}.
+     */
+    public int findContaining(float x, float y) {
+        if (numNodes == 0)
+            return NO_HIT;
+        return findOverlapping(0, x, y, 0, false);
+    }
+
+    /**
+     * @return the index of a rock that the circle crosses or whose centre lies inside, or {@link #NO_HIT}.
+     */
+    public int findOverlapping(float x, float y, float r) {
+        if (numNodes == 0)
+            return NO_HIT;
+        return findOverlapping(0, x, y, r, true);
+    }
+
+    private int findOverlapping(int node, float x, float y, float r, boolean testEdges) {
+        float minX = x - r, minY = y - r, maxX = x + r, maxY = y + r;
+        if (!nodeOverlapsBox(node, minX, minY, maxX, maxY))
+            return NO_HIT;
+        if (isLeaf(node)) {
+            int end = nodeStart[node] + nodeCount[node];
+            for (int i = nodeStart[node]; i < end; i++)
+                if (rockOverlapsBox(i, minX, minY, maxX, maxY)
+                        && ((testEdges && edgesIntersectCircle(i, x, y, r)) || pointInside(i, x, y)))
+                    return i;
+            return NO_HIT;
+        }
+        int hit = findOverlapping(node + 1, x, y, r, testEdges);
+        if (hit != NO_HIT)
+            return hit;
+        return findOverlapping(nodeRight[node], x, y, r, testEdges);
+    }
+
+    /**
+     * Finds the nearest unattached rock edge crossed by the segment from (sx, sy) to (ex, ey),
+     * matching the intersections reported by {@link Rock#rayCollisions}.
+     *
+     * @param hitT if a rock is hit, its first element is set to the fraction along the segment of the hit.
+     * @return the index of the rock hit, or {@link #NO_HIT}.
+     */
+    public int raycast(float sx, float sy, float ex, float ey, float[] hitT) {
+        hitT[0] = Float.MAX_VALUE;
+        if (numNodes == 0)
+            return NO_HIT;
+        float dx = ex - sx, dy = ey - sy;
+        float invDx = dx != 0 ? 1f / dx : Float.POSITIVE_INFINITY;
+        float invDy = dy != 0 ? 1f / dy : Float.POSITIVE_INFINITY;
+        return raycast(0, sx, sy, dx, dy, invDx, invDy, hitT, NO_HIT);
+    }
+
+    private boolean rayHitsNode(int node, float sx, float sy, float invDx, float invDy, float tMax) {
+        float tx1 = (nodeMinX[node] - sx) * invDx, tx2 = (nodeMaxX[node] - sx) * invDx;
+        float ty1 = (nodeMinY[node] - sy) * invDy, ty2 = (nodeMaxY[node] - sy) * invDy;
+        if (Float.isNaN(tx1) || Float.isNaN(tx2)) {
+            if (sx < nodeMinX[node] || sx > nodeMaxX[node])
+                return false;
+            tx1 = -Float.MAX_VALUE;
+            tx2 = Float.MAX_VALUE;
+        }
+        if (Float.isNaN(ty1) || Float.isNaN(ty2)) {
+            if (sy < nodeMinY[node] || sy > nodeMaxY[node])
+                return false;
+            ty1 = -Float.MAX_VALUE;
+            ty2 = Float.MAX_VALUE;
+        }
+        float tEnter = Math.max(Math.min(tx1, tx2), Math.min(ty1, ty2));
+        float tExit = Math.min(Math.max(tx1, tx2), Math.max(ty1, ty2));
+        return tExit >= Math.max(0, tEnter) && tEnter <= tMax;
+    }
+
+    private int raycast(int node, float sx, float sy, float dx, float dy,
+                        float invDx, float invDy, float[] hitT, int closest) {
+        if (!rayHitsNode(node, sx, sy, invDx, invDy, Math.min(1f, hitT[0])))
+            return closest;
+
+        if (!isLeaf(node)) {
+            closest = raycast(node + 1, sx, sy, dx, dy, invDx, invDy, hitT, closest);
+            return raycast(nodeRight[node], sx, sy, dx, dy, invDx, invDy, hitT, closest);
+        }
+
+        int end = nodeStart[node] + nodeCount[node];
+        float[] v = vertices;
+        for (int i = nodeStart[node]; i < end; i++) {
+            int o = 6 * i;
+            for (int e = 0; e < 3; e++) {
+                if (edgeAttached[3 * i + e])
+                    continue;
+                int[] edge = EDGES[e];
+                float ax = v[o + 2 * edge[0]], ay = v[o + 2 * edge[0] + 1];
+                float ex = v[o + 2 * edge[1]] - ax, ey = v[o + 2 * edge[1] + 1] - ay;
+
+                float coef00 = dx * dx + dy * dy;
+                float coef01 = -(dx * ex + dy * ey);
+                float coef11 = ex * ex + ey * ey;
+                float const0 = (ax - sx) * dx + (ay - sy) * dy;
+                float const1 = (sx - ax) * ex + (sy - ay) * ey;
+                float det = coef00 * coef11 - coef01 * coef01;
+                if (det == 0)
+                    continue;
+
+                float t1 = (const0 * coef11 - const1 * coef01) / det;
+                float t2 = (-const0 * coef01 + const1 * coef00) / det;
+                if (0f < t1 && t1 < 1f && 0f < t2 && t2 < 1f && t1 < hitT[0]) {
+                    hitT[0] = t1;
+                    closest = i;
+                }
+            }
+        }
+        return closest;
+    }
+}
@@ -20,6 +20,8 @@ import com.protoevo.physics.JointsManager;
 import com.protoevo.physics.SpatialHash;
 import com.protoevo.physics.box2d.Box2DCollisionHandler;
 import com.protoevo.utils.Colour;
+import com.protoevo.utils.EntityRegistry;
+import com.protoevo.utils.LongIntMap;
 import org.nustaq.serialization.FSTConfiguration;
 import org.nustaq.serialization.FSTObjectInput;
 import org.nustaq.serialization.FSTObjectOutput;
@@ -78,6 +80,8 @@ public class Serialization {
                 BooleanTrait.class,
                 IntegerTrait.class,
                 CollectionTrait.class,
+                EntityRegistry.class,
+                LongIntMap.class,
                 Vector2.class
         );
         return fstConfig;
@@ -0,0 +1,197 @@
+package com.protoevo.env;
+
+import com.protoevo.core.SimulationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntSupplier;
+
+/**
+ * Runs the stages of a simulation tick in order on a dedicated fork-join pool.
+ * <p>
+ * Stages run one after another, each on a pool thread, so that parallel streams started by a
+ * stage are executed by the pool rather than the common pool, and the number of threads working
+ * on the simulation is fixed by {@link #TickPipeline(int)}. Stages that have to stay on the
+ * thread calling {@link #run(float)}, such as those using a GL or CUDA context, are added with
+ * {@link #addOnCallingThread(String, Stage)}.
+ * <p>
+ * A stage added with {@link #addAlongside(String, Stage, BooleanSupplier)} is forked when the
+ * stage before it starts and joined before the next stage starts, so it must only touch state
+ * that the stage it overlaps with does not.
+ * <p>
+ * The pool threads carry the {@link SimulationContext} of the simulation the pipeline belongs to,
+ * so they always work for that simulation, whichever thread runs the pipeline. Parallel streams
+ * started on the calling thread would run on the common pool, whose threads do not, so stages on
+ * the calling thread hand any parallel work to {@link #execute(Runnable)}.
+ * <p>
+ * Every stage, and the tick as a whole, is recorded by a {@link TickProfiler}, which counts the
+ * allocations of the pool threads and the calling thread.
+ */
+public class TickPipeline {
+
+    public interface Stage {
+        void run(float delta);
+    }
+
+    private class Step {
+        final Stage stage;
+        final boolean onCallingThread;
+        final List<Step> alongside = new ArrayList<>(1);
+        final TickProfiler.StageProfile profile;
+        BooleanSupplier canOverlap;
+        IntSupplier entities;
+
+        Step(String name, Stage stage, boolean onCallingThread) {
+            this.stage = stage;
+            this.onCallingThread = onCallingThread;
+            this.profile = profiler.addStage(name);
+        }
+
+        void timedRun(float delta) {
+            long bytes = profiler.allocatedBytes();
+            long start = System.nanoTime();
+            stage.run(delta);
+            long nanos = System.nanoTime() - start;
+            profiler.record(profile, nanos, profiler.allocatedBytes() - bytes,
+                    entities == null ? 0 : entities.getAsInt());
+        }
+    }
+
+    private static class WorkerThread extends ForkJoinWorkerThread implements SimulationContext.Carrier {
+        private final SimulationContext context;
+
+        WorkerThread(ForkJoinPool pool, SimulationContext context) {
+            super(pool);
+            this.context = context;
+        }
+
+        @Override
+        public SimulationContext getSimulationContext() {
+            return context;
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final TickProfiler profiler = new TickProfiler();
+    private final TickProfiler.StageProfile tickProfile = profiler.addStage("Tick");
+    private final List<Step> steps = new ArrayList<>();
+    private Step lastAdded;
+    private Thread callingThread;
+
+    /**
+     * @param nThreads the number of pool threads, or 0 to use one per available processor
+     */
+    public TickPipeline(int nThreads) {
+        this(nThreads, null);
+    }
+
+    /**
+     * @param nThreads the number of pool threads, or 0 to use one per available processor
+     * @param context the context of the simulation the pool threads work for, or null for them to
+     *                use whichever context is current
+     */
+    public TickPipeline(int nThreads, SimulationContext context) {
+        pool = new ForkJoinPool(
+                nThreads > 0 ? nThreads : Runtime.getRuntime().availableProcessors(),
+                p -> {
+                    ForkJoinWorkerThread thread = new WorkerThread(p, context);
+                    profiler.registerThread(thread);
+                    return thread;
+                },
+                null, false);
+    }
+
+    public TickPipeline add(String name, Stage stage) {
+        lastAdded = new Step(name, stage, false);
+        steps.add(lastAdded);
+        return this;
+    }
+
+    public TickPipeline addOnCallingThread(String name, Stage stage) {
+        lastAdded = new Step(name, stage, true);
+        steps.add(lastAdded);
+        return this;
+    }
+
+    /**
+     * Sets the number of entities reported for the last stage added, sampled after it runs.
+     */
+    public TickPipeline counting(IntSupplier entities) {
+        lastAdded.entities = entities;
+        return this;
+    }
+
+    /**
+     * Adds a stage that runs at the same time as the last stage added, whenever canOverlap
+     * returns true. Otherwise it runs on its own straight after that stage.
+     */
+    public TickPipeline addAlongside(String name, Stage stage, BooleanSupplier canOverlap) {
+        if (steps.isEmpty())
+            throw new IllegalStateException("No stage to run " + name + " alongside.");
+        Step step = new Step(name, stage, false);
+        step.canOverlap = canOverlap;
+        steps.get(steps.size() - 1).alongside.add(step);
+        lastAdded = step;
+        return this;
+    }
+
+    public TickPipeline addAlongside(String name, Stage stage) {
+        return addAlongside(name, stage, () -> true);
+    }
+
+    public void run(float delta) {
+        if (callingThread != Thread.currentThread()) {
+            callingThread = Thread.currentThread();
+            profiler.registerThread(callingThread);
+        }
+        long bytes = profiler.allocatedBytes();
+        long start = System.nanoTime();
+        for (Step step : steps) {
+            List<ForkJoinTask<?>> forked = new ArrayList<>(step.alongside.size());
+            List<Step> deferred = new ArrayList<>(0);
+            for (Step other : step.alongside) {
+                if (other.canOverlap.getAsBoolean())
+                    forked.add(pool.submit(() -> other.timedRun(delta)));
+                else
+                    deferred.add(other);
+            }
+
+            runStep(step, delta);
+            for (ForkJoinTask<?> task : forked)
+                task.join();
+            for (Step other : deferred)
+                runStep(other, delta);
+        }
+        profiler.record(tickProfile, System.nanoTime() - start, profiler.allocatedBytes() - bytes, 0);
+    }
+
+    private void runStep(Step step, float delta) {
+        if (step.onCallingThread)
+            step.timedRun(delta);
+        else
+            pool.submit(() -> step.timedRun(delta)).join();
+    }
+
+    /**
+     * Runs the given task on the pool, so that any parallel streams it starts use the pool.
+     */
+    public void execute(Runnable task) {
+        pool.submit(task).join();
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    public TickProfiler getProfiler() {
+        return profiler;
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+}
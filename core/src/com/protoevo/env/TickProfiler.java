@@ -0,0 +1,214 @@
+package com.protoevo.env;
+
+import com.protoevo.core.Statistics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the wall time, bytes allocated and number of entities handled by each stage of a
+ * tick over a rolling window of recent ticks, and summarises them as percentiles.
+ * <p>
+ * Allocations are measured with the per-thread counters of the JVM over the threads that have
+ * been {@link #registerThread(Thread) registered}, so a stage is charged with everything allocated
+ * by those threads while it ran, including by any stage overlapping with it. Recording a sample
+ * only writes into preallocated ring buffers; sorting happens when the summary is requested.
+ */
+public class TickProfiler {
+
+    public static final int DEFAULT_WINDOW = 256;
+
+    public static class StageProfile {
+        private final String name;
+        private final long[] nanos, bytes;
+        private final int[] entities;
+        private volatile int samples = 0;
+
+        private StageProfile(String name, int window) {
+            this.name = name;
+            nanos = new long[window];
+            bytes = new long[window];
+            entities = new int[window];
+        }
+
+        private void record(long nanos, long bytes, int entities) {
+            int i = samples % this.nanos.length;
+            this.nanos[i] = nanos;
+            this.bytes[i] = bytes;
+            this.entities[i] = entities;
+            samples++;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getNumSamples() {
+            return Math.min(samples, nanos.length);
+        }
+
+        private static long percentile(long[] sorted, double p) {
+            if (sorted.length == 0)
+                return 0;
+            int rank = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, rank))];
+        }
+
+        private long[] sortedWindow(long[] values) {
+            long[] window = Arrays.copyOf(values, getNumSamples());
+            Arrays.sort(window);
+            return window;
+        }
+
+        /**
+         * @param p the percentile, between 0 and 1
+         * @return the wall time in seconds below which the fraction p of the window lies
+         */
+        public double getTimePercentile(double p) {
+            return toSeconds(percentile(sortedWindow(nanos), p));
+        }
+
+        public long getAllocatedPercentile(double p) {
+            return percentile(sortedWindow(bytes), p);
+        }
+
+        public int getLastEntityCount() {
+            int n = samples;
+            return n == 0 ? 0 : entities[(n - 1) % entities.length];
+        }
+    }
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final boolean measureAllocations;
+    private final List<Thread> registeredThreads = new ArrayList<>();
+    private volatile long[] threadIds = new long[0];
+    private final Map<String, StageProfile> stages = new LinkedHashMap<>();
+    private final int window;
+    private final Statistics stats = new Statistics();
+
+    public TickProfiler() {
+        this(DEFAULT_WINDOW);
+    }
+
+    public TickProfiler(int window) {
+        this.window = window;
+        measureAllocations = threads instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()
+                && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemoryEnabled();
+    }
+
+    private static double toSeconds(long nanos) {
+        return nanos / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+
+    /**
+     * Adds a thread whose allocations are counted towards the stages.
+     */
+    public synchronized void registerThread(Thread thread) {
+        if (registeredThreads.contains(thread))
+            return;
+        registeredThreads.removeIf(registered -> !registered.isAlive());
+        registeredThreads.add(thread);
+        threadIds = registeredThreads.stream().mapToLong(Thread::getId).toArray();
+    }
+
+    /**
+     * Stages have to be added before ticks start being recorded, in the order they are to be
+     * reported.
+     */
+    public StageProfile addStage(String name) {
+        return stages.computeIfAbsent(name, n -> new StageProfile(n, window));
+    }
+
+    /**
+     * @return the total bytes allocated so far by the registered threads that are still alive,
+     * or 0 if allocations cannot be measured
+     */
+    public long allocatedBytes() {
+        if (!measureAllocations)
+            return 0;
+        long total = 0;
+        // threads that have terminated report -1
+        for (long bytes : ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(threadIds))
+            total += Math.max(0, bytes);
+        return total;
+    }
+
+    /**
+     * @param allocatedBytes may be negative if a registered thread terminated during the stage,
+     *                       in which case it is recorded as 0
+     */
+    public void record(StageProfile stage, long nanos, long allocatedBytes, int entities) {
+        stage.record(nanos, Math.max(0, allocatedBytes), entities);
+    }
+
+    public StageProfile getStage(String name) {
+        return stages.get(name);
+    }
+
+    public Collection<StageProfile> getStages() {
+        return stages.values();
+    }
+
+    public void reset() {
+        for (StageProfile stage : stages.values())
+            stage.samples = 0;
+    }
+
+    /**
+     * @return the p50, p95 and p99 wall time and p50 allocation of each stage over the window,
+     * with the number of entities each stage handled in the last tick
+     */
+    public Statistics getStats() {
+        stats.clear();
+        for (StageProfile stage : stages.values()) {
+            if (stage.getNumSamples() == 0)
+                continue;
+            String name = stage.getName();
+            stats.put(name + " Time p50", stage.getTimePercentile(0.5), Statistics.ComplexUnit.TIME);
+            stats.put(name + " Time p95", stage.getTimePercentile(0.95), Statistics.ComplexUnit.TIME);
+            stats.put(name + " Time p99", stage.getTimePercentile(0.99), Statistics.ComplexUnit.TIME);
+            if (measureAllocations)
+                stats.put(name + " Allocated Bytes p50", (double) stage.getAllocatedPercentile(0.5));
+            if (stage.getLastEntityCount() > 0)
+                stats.putCount(name + " Entities", stage.getLastEntityCount());
+        }
+        return stats;
+    }
+
+    /**
+     * @return a table of the stages with their wall time and allocation percentiles
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-22s %10s %10s %10s %12s %9s%n",
+                "Stage", "p50 (ms)", "p95 (ms)", "p99 (ms)", "alloc p50", "entities"));
+        for (StageProfile stage : stages.values()) {
+            sb.append(String.format("%-22s %10.3f %10.3f %10.3f %12s %9d%n",
+                    stage.getName(),
+                    1000 * stage.getTimePercentile(0.5),
+                    1000 * stage.getTimePercentile(0.95),
+                    1000 * stage.getTimePercentile(0.99),
+                    measureAllocations ? formatBytes(stage.getAllocatedPercentile(0.5)) : "n/a",
+                    stage.getLastEntityCount()));
+        }
+        int samples = stages.values().stream().mapToInt(StageProfile::getNumSamples).max().orElse(0);
+        sb.append("Over the last ").append(samples).append(" ticks.");
+        return sb.toString();
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024)
+            return bytes + " B";
+        if (bytes < 1024 * 1024)
+            return String.format("%.1f KB", bytes / 1024.0);
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+}
@@ -2,46 +2,89 @@ package com.protoevo.env;
 
 import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector2;
+import com.protoevo.core.SimulationContext;
 import com.protoevo.maths.Geometry;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.function.Predicate;
 
 public class WorldGeneration {
     
-    public static Random RANDOM = new Random(Environment.settings.worldgen.seed.get());
+    private static final int BVH_REBUILD_THRESHOLD = 64;
+
+    // only used during generate, which is synchronised so that simulations can generate their worlds concurrently
+    private static List<Rock> indexedRocks;
+    private static RockBVH rockBVH;
+
+    /**
+     * Visits the rocks whose bounding boxes overlap the given box, stopping at the first
+     * one for which the test returns true. Rocks are generated incrementally, so the
+     * hierarchy only covers a prefix of the list and is rebuilt once enough rocks
+     * have been appended; the remaining rocks are checked directly.
+     */
+    private static boolean anyRockInBox(List<Rock> rocks, float minX, float minY, float maxX, float maxY,
+                                        Predicate<Rock> test) {
+        if (rocks != indexedRocks || rockBVH.size() > rocks.size()
+                || rocks.size() - rockBVH.size() > BVH_REBUILD_THRESHOLD) {
+            indexedRocks = rocks;
+            rockBVH = new RockBVH(rocks);
+        }
+
+        if (rockBVH.findInBox(minX, minY, maxX, maxY, i -> test.test(rockBVH.getRock(i))) != RockBVH.NO_HIT)
+            return true;
+
+        for (int i = rockBVH.size(); i < rocks.size(); i++) {
+            Rock rock = rocks.get(i);
+            Vector2[] bounds = rock.getBoundingBox();
+            if (bounds[0].x <= maxX && bounds[1].x >= minX && bounds[0].y <= maxY && bounds[1].y >= minY
+                    && test.test(rock))
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean anyRockInBox(List<Rock> rocks, Vector2[] bounds, Predicate<Rock> test) {
+        return anyRockInBox(rocks, bounds[0].x, bounds[0].y, bounds[1].x, bounds[1].y, test);
+    }
+
+    private static Random random() {
+        return SimulationContext.current().getWorldGenerationRandom();
+    }
+
+    public static synchronized List<Rock> generate() {
+        SimulationContext.current().setWorldGenerationRandom(new Random(Environment.settings().worldgen.seed.get()));
 
-    public static List<Rock> generate() {
-        RANDOM = new Random(Environment.settings.worldgen.seed.get());
-        
         List<Rock> rocks = new ArrayList<>();
 
-        if (Environment.settings.worldgen.closedRingBorder.get()) {
-            generateRingOfRocks(rocks, Vector2.Zero.cpy(), 1.15f * Environment.settings.worldgen.radius.get(), 0);
+        if (Environment.settings().worldgen.closedRingBorder.get()) {
+            generateRingOfRocks(rocks, Vector2.Zero.cpy(), 1.15f * Environment.settings().worldgen.radius.get(), 0);
         }
 
-        float minR = Environment.settings.worldgen.minRockClusterRadius.get();
-        float maxR = Environment.settings.worldgen.maxRockClusterRadius.get();
-        int numClusterCentres = Environment.settings.worldgen.numRingClusters.get();
+        float minR = Environment.settings().worldgen.minRockClusterRadius.get();
+        float maxR = Environment.settings().worldgen.maxRockClusterRadius.get();
+        int numClusterCentres = Environment.settings().worldgen.numRingClusters.get();
 
         WorldGeneration.generateClustersOfRocks(
                 rocks, numClusterCentres, minR, maxR,
-                Environment.settings.worldgen.radius.get() - maxR);
+                Environment.settings().worldgen.radius.get() - maxR);
 
-        generateRocks(rocks, Environment.settings.worldgen.rockGenerationIterations.get());
-        
+        generateRocks(rocks, Environment.settings().worldgen.rockGenerationIterations.get());
+
+        indexedRocks = null;
+        rockBVH = null;
         return rocks;
     }
 
     public static Vector2 randomPosition(Vector2 centre, float minR, float maxR) {
-        float t = (float) (2 * Math.PI * RANDOM.nextDouble());
-        float r = minR + (maxR - minR) * RANDOM.nextFloat();
+        float t = (float) (2 * Math.PI * random().nextDouble());
+        float r = minR + (maxR - minR) * random().nextFloat();
         return Geometry.fromAngle(t).scl(r).add(centre);
     }
 
     public static Vector2 randomPosition(float entityRadius) {
-        return randomPosition(Geometry.ZERO, entityRadius, Environment.settings.worldgen.radius.get());
+        return randomPosition(Geometry.ZERO, entityRadius, Environment.settings().worldgen.radius.get());
     }
 
     public static Vector2 randomPosition(float minR, float maxR) {
@@ -51,29 +94,29 @@ public class WorldGeneration {
     public static void generateClustersOfRocks(
             List<Rock> rocks, int nRings, float minR, float maxR, float centreOffset) {
         for (int i = 0; i < nRings; i++) {
-            Vector2 centre = Geometry.polarRandomPointInCircle(centreOffset, RANDOM);
-            float radius = RANDOM.nextFloat() * (maxR - minR) + minR;
+            Vector2 centre = Geometry.polarRandomPointInCircle(centreOffset, random());
+            float radius = random().nextFloat() * (maxR - minR) + minR;
             generateRingOfRocks(rocks, centre, radius);
         }
     }
 
     public static void generateRingOfRocks(List<Rock> rocks, Vector2 ringCentre, float ringRadius) {
-        generateRingOfRocks(rocks, ringCentre, ringRadius, Environment.settings.worldgen.ringBreakProbability.get());
+        generateRingOfRocks(rocks, ringCentre, ringRadius, Environment.settings().worldgen.ringBreakProbability.get());
     }
 
     public static void generateRingOfRocks(List<Rock> rocks, Vector2 ringCentre, float ringRadius, float breakProb) {
-        float angleDelta = (float) (2 * Math.asin(Environment.settings.worldgen.minRockSize.get() / (20 * ringRadius)));
+        float angleDelta = (float) (2 * Math.asin(Environment.settings().worldgen.minRockSize.get() / (20 * ringRadius)));
         Rock currentRock = null;
         for (float angle = 0; angle < 2*Math.PI; angle += angleDelta) {
-            if (breakProb > 0 && RANDOM.nextFloat() < breakProb) {
+            if (breakProb > 0 && random().nextFloat() < breakProb) {
                 currentRock = null;
-                angle += Environment.settings.worldgen.ringBreakAngleMinSkip.get() +
-                        RANDOM.nextFloat() * (Environment.settings.worldgen.ringBreakAngleMaxSkip.get()
-                                                - Environment.settings.worldgen.ringBreakAngleMinSkip.get());
+                angle += Environment.settings().worldgen.ringBreakAngleMinSkip.get() +
+                        random().nextFloat() * (Environment.settings().worldgen.ringBreakAngleMaxSkip.get()
+                                                - Environment.settings().worldgen.ringBreakAngleMinSkip.get());
             }
             if (currentRock == null || currentRock.allEdgesAttached()) {
                 currentRock = newCircumferenceRockAtAngle(ringCentre, ringRadius, angle);
-                if (isRockObstructed(currentRock, rocks, Environment.settings.worldgen.minRockOpeningSize.get())) {
+                if (isRockObstructed(currentRock, rocks, Environment.settings().worldgen.minRockOpeningSize.get())) {
                     currentRock = null;
                 } else {
                     rocks.add(currentRock);
@@ -83,10 +126,10 @@ public class WorldGeneration {
                 float bestRockDistToCirc = Float.MAX_VALUE;
                 int bestRockAttachIdx = -1;
                 for (int i = 0; i < currentRock.getEdges().length; i++) {
-                    float sizeRange = (Environment.settings.worldgen.maxRockSize.get()
-                            - Environment.settings.worldgen.minRockOpeningSize.get());
-                    float rockSize = 1.5f * Environment.settings.worldgen.minRockOpeningSize.get()
-                            + sizeRange * RANDOM.nextFloat();
+                    float sizeRange = (Environment.settings().worldgen.maxRockSize.get()
+                            - Environment.settings().worldgen.minRockOpeningSize.get());
+                    float rockSize = 1.5f * Environment.settings().worldgen.minRockOpeningSize.get()
+                            + sizeRange * random().nextFloat();
                     if (!currentRock.isEdgeAttached(i)) {
                         Rock newRock = newAttachedRock(currentRock, i, rocks, rockSize);
                         if (newRock != null) {
@@ -124,7 +167,7 @@ public class WorldGeneration {
 
         for (int i = 0; i < nIterations; i++) {
             if (unattachedRocks.size() == 0
-                    || RANDOM.nextFloat() > Environment.settings.worldgen.rockClustering.get()) {
+                    || random().nextFloat() > Environment.settings().worldgen.rockClustering.get()) {
                 Rock rock = newRock(rocks);
                 if (tryAdd(rock, rocks)) {
                     unattachedRocks.add(rock);
@@ -164,13 +207,13 @@ public class WorldGeneration {
     public static Rock newAttachedRock(Rock toAttach, int edgeIdx, List<Rock> rocks) {
         float attachedSize = toAttach.getSize();
         float sizeMin = Math.max(
-                Environment.settings.worldgen.minRockSize.get(),
-                attachedSize * (1 - Environment.settings.worldgen.attachedRockSizeChange.get()));
+                Environment.settings().worldgen.minRockSize.get(),
+                attachedSize * (1 - Environment.settings().worldgen.attachedRockSizeChange.get()));
         float sizeMax = Math.min(
-                Environment.settings.worldgen.maxRockSize.get(),
-                attachedSize * (1 + Environment.settings.worldgen.attachedRockSizeChange.get()));
+                Environment.settings().worldgen.maxRockSize.get(),
+                attachedSize * (1 + Environment.settings().worldgen.attachedRockSizeChange.get()));
         float sizeRange = (sizeMax - sizeMin);
-        float rockSize = sizeMin + sizeRange * RANDOM.nextFloat();
+        float rockSize = sizeMin + sizeRange * random().nextFloat();
         return newAttachedRock(toAttach, edgeIdx, rocks, rockSize);
     }
 
@@ -184,29 +227,27 @@ public class WorldGeneration {
         Vector2[] newEdge1 = new Vector2[]{p1, p3};
         Vector2[] newEdge2 = new Vector2[]{p2, p3};
         if (notInAnyRocks(newEdge1, newEdge2, rocks, toAttach)
-                && leavesOpening(p3, rocks, Environment.settings.worldgen.minRockOpeningSize.get())) {
+                && leavesOpening(p3, rocks, Environment.settings().worldgen.minRockOpeningSize.get())) {
             return new Rock(p1, p2, p3);
         }
         return null;
     }
 
     private static Rock selectRandomUnattachedRock(List<Rock> unattachedRocks) {
-        int i = RANDOM.nextInt(unattachedRocks.size());
+        int i = random().nextInt(unattachedRocks.size());
         return unattachedRocks.get(i);
     }
 
     private static boolean tryAdd(Rock rock, List<Rock> rocks) {
-        for (Rock otherRock : rocks)
-            if (rock.intersectsWith(otherRock))
-                return false;
+        if (anyRockInBox(rocks, rock.getBoundingBox(), rock::intersectsWith))
+            return false;
         rocks.add(rock);
         return true;
     }
 
     private static boolean isRockObstructed(Rock rock, List<Rock> rocks, float openingSize) {
-        for (Rock otherRock : rocks)
-            if (otherRock.intersectsWith(rock))
-                return true;
+        if (anyRockInBox(rocks, rock.getBoundingBox(), otherRock -> otherRock.intersectsWith(rock)))
+            return true;
         if (openingSize > 0)
             for (Vector2 point : rock.getPoints())
                 if (!leavesOpening(point, rocks, openingSize))
@@ -215,52 +256,60 @@ public class WorldGeneration {
     }
 
     private static boolean notInAnyRocks(Vector2[] e1, Vector2[] e2, List<Rock> rocks, Rock excluding) {
-        for (Rock rock : rocks)
+        float minX = Math.min(Math.min(e1[0].x, e1[1].x), Math.min(e2[0].x, e2[1].x));
+        float minY = Math.min(Math.min(e1[0].y, e1[1].y), Math.min(e2[0].y, e2[1].y));
+        float maxX = Math.max(Math.max(e1[0].x, e1[1].x), Math.max(e2[0].x, e2[1].x));
+        float maxY = Math.max(Math.max(e1[0].y, e1[1].y), Math.max(e2[0].y, e2[1].y));
+        return !anyRockInBox(rocks, minX, minY, maxX, maxY, rock -> {
+            if (rock.equals(excluding))
+                return false;
             for (Vector2[] rockEdge : rock.getEdges())
-                if (!rock.equals(excluding) &&
-                        (Rock.edgesIntersect(rockEdge, e1) || Rock.edgesIntersect(rockEdge, e2)))
-                    return false;
-        return true;
+                if (Rock.edgesIntersect(rockEdge, e1) || Rock.edgesIntersect(rockEdge, e2))
+                    return true;
+            return false;
+        });
     }
 
     private static boolean leavesOpening(Vector2 rockPoint, List<Rock> rocks, float openingSize) {
-        for (Rock rock : rocks) {
-            for (Vector2[] edge : rock.getEdges()) {
-                if (Geometry.doesLineIntersectCircle(edge, rockPoint, openingSize))
+        return !anyRockInBox(rocks,
+                rockPoint.x - openingSize, rockPoint.y - openingSize,
+                rockPoint.x + openingSize, rockPoint.y + openingSize,
+                rock -> {
+                    for (Vector2[] edge : rock.getEdges())
+                        if (Geometry.doesLineIntersectCircle(edge, rockPoint, openingSize))
+                            return true;
                     return false;
-            }
-        }
-        return true;
+                });
     }
 
     public static Rock newRock(List<Rock> rocks) {
-        float centreR = Environment.settings.worldgen.radius.get() * RANDOM.nextFloat();
-        float centreT = (float) (2*Math.PI * RANDOM.nextFloat());
+        float centreR = Environment.settings().worldgen.radius.get() * random().nextFloat();
+        float centreT = (float) (2*Math.PI * random().nextFloat());
         Vector2 centre = Geometry.fromAngle(centreT).setLength(centreR);
         return newRockAt(centre);
     }
 
     public static Rock newRockAt(Vector2 centre) {
-        Vector2 dir = Geometry.fromAngle((float) (2 * Math.PI * RANDOM.nextFloat()));
+        Vector2 dir = Geometry.fromAngle((float) (2 * Math.PI * random().nextFloat()));
         return newRockAt(centre, dir);
     }
 
     public static Rock newRockAt(Vector2 centre, Vector2 dir) {
-        float sizeRange = (Environment.settings.worldgen.maxRockSize.get()
-                - Environment.settings.worldgen.minRockSize.get());
-        float rockSize = Environment.settings.worldgen.minRockSize.get()
-                + sizeRange * RANDOM.nextFloat();
+        float sizeRange = (Environment.settings().worldgen.maxRockSize.get()
+                - Environment.settings().worldgen.minRockSize.get());
+        float rockSize = Environment.settings().worldgen.minRockSize.get()
+                + sizeRange * random().nextFloat();
 
         Vector2 p1 = centre.cpy().add(dir.cpy().setLength(rockSize));
 
-        float dt = Environment.settings.worldgen.minRockSpikiness.get() / 2f;
+        float dt = Environment.settings().worldgen.minRockSpikiness.get() / 2f;
         float tMin = 2 * MathUtils.PI / 3 - dt;
         float tMax = 2 * MathUtils.PI / 3 + dt;
 
-        float t1 = tMin + (tMax - tMin) * RANDOM.nextFloat();
+        float t1 = tMin + (tMax - tMin) * random().nextFloat();
         Vector2 p2 = centre.cpy().add(dir.cpy().rotateRad(t1).setLength(rockSize));
 
-        float t2 = tMin + (tMax - tMin) * RANDOM.nextFloat();
+        float t2 = tMin + (tMax - tMin) * random().nextFloat();
         Vector2 p3 = centre.cpy().add(dir.cpy().rotateRad(t1 + t2).setLength(rockSize));
 
         return new Rock(p1, p2, p3);
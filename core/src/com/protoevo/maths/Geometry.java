@@ -62,7 +62,7 @@ public class Geometry {
     }
 
     public static Vector2 randomUnit() {
-        return Geometry.fromAngle((float) (Math.random() * 2 * Math.PI));
+        return Geometry.fromAngle((float) (RandomStreams.random() * 2 * Math.PI));
     }
 
     public static Vector2 randomUnit(Random random) {
@@ -79,20 +79,20 @@ public class Geometry {
 
     public static Vector2 randomPointInCircle(float circleR) {
         // try uniform sampling first
-        float x = MathUtils.random(-circleR, circleR);
-        float y = MathUtils.random(-circleR, circleR);
+        float x = RandomStreams.random(-circleR, circleR);
+        float y = RandomStreams.random(-circleR, circleR);
         if (x * x + y * y <= circleR * circleR)
             return new Vector2(x, y);
 
         // if that fails, sample from polar coordinates
-        float length = circleR * (float) Math.sqrt(MathUtils.random());
+        float length = circleR * (float) Math.sqrt(RandomStreams.random());
         return Geometry.randomVector(length);
     }
 
     public static Vector2 randomPointInCircle(float circleR, Random random) {
         // try uniform sampling first
-        float x = MathUtils.random(-circleR, circleR);
-        float y = MathUtils.random(-circleR, circleR);
+        float x = RandomStreams.random(-circleR, circleR);
+        float y = RandomStreams.random(-circleR, circleR);
         if (x * x + y * y <= circleR * circleR)
             return new Vector2(x, y);
 
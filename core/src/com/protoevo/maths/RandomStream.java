@@ -0,0 +1,92 @@
+package com.protoevo.maths;
+
+import java.util.Random;
+
+/**
+ * A SplitMix64 generator behind the {@link Random} interface, so that it can be passed to
+ * anything taking a Random.
+ * <p>
+ * Unlike Random it is not thread-safe, and reseeding it is a single write, so it can cheaply be
+ * re-keyed for every entity it draws numbers for. Its state is just the seed, which makes the
+ * numbers drawn after {@link #setSeed(long)} depend on nothing but that seed.
+ */
+public class RandomStream extends Random {
+
+    private static final long serialVersionUID = 1L;
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    // assigned by setSeed from the Random constructor, so must not have an initialiser
+    private long state;
+
+    public RandomStream(long seed) {
+        super(seed);
+    }
+
+    /**
+     * The finaliser of SplitMix64, which maps distinct inputs to well-mixed distinct outputs.
+     */
+    public static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * @return a seed for the stream identified by key within the streams derived from seed
+     */
+    public static long derive(long seed, long key) {
+        return mix64(seed ^ mix64(key + GOLDEN_GAMMA));
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        state = seed;
+    }
+
+    /**
+     * @return an independent stream seeded from this one
+     */
+    public RandomStream split() {
+        return new RandomStream(mix64(nextLong()));
+    }
+
+    @Override
+    protected int next(int bits) {
+        return (int) (nextLong() >>> (64 - bits));
+    }
+
+    @Override
+    public long nextLong() {
+        return mix64(state += GOLDEN_GAMMA);
+    }
+
+    @Override
+    public int nextInt() {
+        return (int) (nextLong() >>> 32);
+    }
+
+    @Override
+    public float nextFloat() {
+        return (nextLong() >>> 40) * 0x1.0p-24f;
+    }
+
+    @Override
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    @Override
+    public boolean nextBoolean() {
+        return nextLong() < 0;
+    }
+
+    /**
+     * Draws a fresh pair of uniforms on every call rather than caching the second gaussian as
+     * Random does, so the result only depends on the seed.
+     */
+    @Override
+    public double nextGaussian() {
+        double u = 1 - nextDouble();
+        return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * nextDouble());
+    }
+}
@@ -0,0 +1,91 @@
+package com.protoevo.maths;
+
+import com.protoevo.core.SimulationContext;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The source of random numbers for the simulation. Each thread draws from its own
+ * {@link RandomStream}, so parallel updates never contend on a shared generator.
+ * <p>
+ * Before an entity is handled in some phase of a tick, the simulation {@link #enter(long, long)
+ * re-keys} the stream of the thread handling it from the seed, the tick, the phase and the
+ * entity's id. The numbers an entity draws therefore do not depend on which thread handles it or
+ * on what that thread handled before. Entities created while handling another take their ids
+ * from its stream, so every entity's stream derives from the seed.
+ * <p>
+ * The seed of the tick is kept by the {@link SimulationContext} of the simulation, so that
+ * simulations running side by side each key their own streams.
+ * <p>
+ * The helpers mirror those of libGDX's MathUtils, which the simulation used before.
+ */
+public class RandomStreams {
+
+    /** The phases of a tick, which key the streams alongside the entity's id. */
+    public static final long WORLD_GENERATION = 1, CELL_UPDATE = 2, GENE_EXPRESSION = 3,
+            BIRTHS = 4, CHEMICALS = 5;
+
+    private static final AtomicLong threadCount = new AtomicLong();
+    private static final ThreadLocal<RandomStream> streams = ThreadLocal.withInitial(
+            () -> new RandomStream(RandomStream.derive(System.nanoTime(), threadCount.incrementAndGet())));
+
+    /**
+     * Derives the streams entered from now on in the current simulation from the given seed and tick.
+     */
+    public static void beginTick(long seed, long tick) {
+        SimulationContext.current().setTickSeed(RandomStream.derive(seed, tick));
+    }
+
+    /**
+     * Re-keys the calling thread's stream for handling the entity with the given id in a phase of
+     * the current tick.
+     *
+     * @return the calling thread's stream
+     */
+    public static RandomStream enter(long phase, long id) {
+        RandomStream stream = streams.get();
+        long tickSeed = SimulationContext.current().getTickSeed();
+        stream.setSeed(RandomStream.derive(RandomStream.derive(tickSeed, phase), id));
+        return stream;
+    }
+
+    /**
+     * @return the calling thread's stream, in whatever state its last use left it
+     */
+    public static RandomStream current() {
+        return streams.get();
+    }
+
+    /** @return a random float between 0 (inclusive) and 1 (exclusive) */
+    public static float random() {
+        return current().nextFloat();
+    }
+
+    /** @return a random int between 0 and range, inclusive */
+    public static int random(int range) {
+        return current().nextInt(range + 1);
+    }
+
+    /** @return a random int between start and end, inclusive */
+    public static int random(int start, int end) {
+        return start + current().nextInt(end - start + 1);
+    }
+
+    /** @return a random float between start (inclusive) and end (exclusive) */
+    public static float random(float start, float end) {
+        return start + current().nextFloat() * (end - start);
+    }
+
+    public static boolean randomBoolean() {
+        return current().nextBoolean();
+    }
+
+    /** @return true with the given probability */
+    public static boolean randomBoolean(float chance) {
+        return random() < chance;
+    }
+
+    public static long randomLong() {
+        return current().nextLong();
+    }
+}
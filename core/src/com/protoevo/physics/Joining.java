@@ -99,10 +99,9 @@ public class Joining implements Serializable {
     }
 
     public boolean anyDied() {
-        Optional<Particle> a = getParticleA();
-        Optional<Particle> b = getParticleB();
-        return a.map(Particle::isDead).orElse(true)
-                || b.map(Particle::isDead).orElse(true);
+        Particle a = physics.findParticle(particleAId);
+        Particle b = physics.findParticle(particleBId);
+        return a == null || a.isDead() || b == null || b.isDead();
     }
 
     private Vector2 getAnchor(
@@ -3,19 +3,18 @@ package com.protoevo.physics;
 import com.protoevo.core.Statistics;
 import com.protoevo.env.Environment;
 import com.protoevo.maths.Geometry;
+import com.protoevo.utils.EntityRegistry;
 
 import java.io.Serializable;
 import java.util.Collection;
-import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 public abstract class Physics implements Serializable {
     private static final long serialVersionUID = 1L;
     private final Statistics debugStats = new Statistics();
     protected float physicsStepTime;
-    private final Map<Long, Particle> particles = new ConcurrentHashMap<>();
+    private final EntityRegistry<Particle> particles = new EntityRegistry<>();
 
     public abstract void registerStaticBodies(Environment environment);
 
@@ -24,13 +23,12 @@ public abstract class Physics implements Serializable {
     public void step(float delta) {
         long startTime = System.nanoTime();
         stepPhysics(delta);
-        physicsStepTime = TimeUnit.SECONDS.convert(
-                System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        physicsStepTime = (System.nanoTime() - startTime) / (float) TimeUnit.SECONDS.toNanos(1);
 
-        particles.entrySet().removeIf(entry -> {
-            boolean dead = entry.getValue().isDead();
+        particles.removeIf(particle -> {
+            boolean dead = particle.isDead();
             if (dead)
-                entry.getValue().dispose();
+                particle.dispose();
             return dead;
         });
     }
@@ -40,7 +38,7 @@ public abstract class Physics implements Serializable {
     public abstract JointsManager getJointsManager();
 
     public Collection<Particle> getParticles() {
-        return particles.values();
+        return particles;
     }
 
     public Particle createNewParticle() {
@@ -55,6 +53,13 @@ public abstract class Physics implements Serializable {
         return Optional.ofNullable(particles.get(id));
     }
 
+    /**
+     * @return the particle with the given id, or null if there is none
+     */
+    public Particle findParticle(long id) {
+        return particles.get(id);
+    }
+
     public Statistics getDebugStats() {
         debugStats.clear();
         debugStats.put("Physics Step Time", physicsStepTime, Statistics.ComplexUnit.TIME);
@@ -4,21 +4,29 @@ import com.badlogic.gdx.math.Vector2;
 
 
 import java.io.Serializable;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.Iterator;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListSet;
-
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Uniform grid over the world backed by flat per-chunk arrays.
+ * <p>
+ * Bulk rebuilds via {@link #rebuild(Collection, Function)} compute chunk indices and
+ * counting-sort objects into their chunks in parallel. Objects whose chunk is tracked by
+ * the caller can instead be moved between chunks with {@link #move(Object, int, int)},
+ * so that only the objects that actually changed chunk need to be touched each tick.
+ */
 public class SpatialHash<T> implements Serializable, Iterable<Collection<T>> {
-    
+
     private static final long serialVersionUID = 1L;
+    private static final int PARALLEL_BLOCK_SIZE = 4096;
+    private static final Object[] EMPTY_CHUNK = new Object[0];
 
     private final int resolution;
     private final float chunkSize, worldRadius;
     private final int maxObjectsPerChunk;
-    private final ConcurrentHashMap<Integer, Collection<T>> chunkContents;
+    private final int[] counts;
+    private final Object[][] chunkContents;
     private int size = 0;
 
     public SpatialHash(int resolution, int maxObjectsPerChunk, float worldRadius) {
@@ -26,7 +34,9 @@ public class SpatialHash<T> implements Serializable, Iterable<Collection<T>> {
         this.maxObjectsPerChunk = maxObjectsPerChunk;
         this.chunkSize = 2 * worldRadius / resolution;
         this.worldRadius = worldRadius;
-        this.chunkContents = new ConcurrentHashMap<>();
+        this.counts = new int[resolution * resolution];
+        this.chunkContents = new Object[resolution * resolution][];
+        Arrays.fill(chunkContents, EMPTY_CHUNK);
     }
 
     public SpatialHash(int resolution, float worldRadius) {
@@ -42,20 +52,19 @@ public class SpatialHash<T> implements Serializable, Iterable<Collection<T>> {
     }
 
     public int getCount(Vector2 worldPos) {
-        int i = getChunkX(worldPos.x);
-        int j = getChunkY(worldPos.y);
-        return getCount(i, j);
+        return counts[getChunkIndex(worldPos)];
     }
 
     public int getCount(int i, int j) {
-        int idx = getChunkIndex(i, j);
-        return getCount(idx);
+        if (!inBounds(i, j))
+            return 0;
+        return getCount(getChunkIndex(i, j));
     }
 
     public int getCount(int idx) {
-        if (chunkContents.containsKey(idx))
-            return chunkContents.get(idx).size();
-        return 0;
+        if (idx < 0 || idx >= counts.length)
+            return 0;
+        return counts[idx];
     }
 
     public boolean isFull(Vector2 worldPos) {
@@ -63,50 +72,91 @@ public class SpatialHash<T> implements Serializable, Iterable<Collection<T>> {
     }
 
     public int getChunkX(float x) {
-        return (int) (x / chunkSize);
+        return (int) Math.floor((x - getOriginX()) / chunkSize);
     }
 
     public int getChunkY(float y) {
-        return (int) (y / chunkSize);
+        return (int) Math.floor((y - getOriginY()) / chunkSize);
+    }
+
+    private boolean inBounds(int i, int j) {
+        return i >= 0 && i < resolution && j >= 0 && j < resolution;
+    }
+
+    private int clamp(int i) {
+        return Math.max(0, Math.min(resolution - 1, i));
     }
 
-    private int getChunkIndex(int i, int j) {
+    public int getChunkIndex(int i, int j) {
         return i * resolution + j;
     }
 
-    public boolean add(T t, int i, int j) {
-        int idx = getChunkIndex(i, j);
-
-        Collection<T> chunk;
-        if (!chunkContents.containsKey(idx)) {
-            chunk = new ConcurrentSkipListSet<>(Comparator.comparingInt(Object::hashCode));
-            chunkContents.put(idx, chunk);
-        } else {
-            chunk = chunkContents.get(idx);
+    /**
+     * @return the index of the chunk containing the given position,
+     * with positions outside the grid assigned to the nearest edge chunk.
+     */
+    public int getChunkIndex(Vector2 worldPos) {
+        return getChunkIndex(clamp(getChunkX(worldPos.x)), clamp(getChunkY(worldPos.y)));
+    }
+
+    private void append(T t, int idx) {
+        Object[] chunk = chunkContents[idx];
+        int count = counts[idx];
+        if (count == chunk.length) {
+            chunk = Arrays.copyOf(chunk, Math.max(4, 2 * chunk.length));
+            chunkContents[idx] = chunk;
         }
+        chunk[count] = t;
+        counts[idx] = count + 1;
+        size++;
+    }
 
-        if (chunk.size() >= maxObjectsPerChunk)
-            return false;
+    /**
+     * Adds the object to the given chunk, regardless of the chunk capacity.
+     */
+    public void put(T t, int idx) {
+        append(t, idx);
+    }
 
-        chunk.add(t);
-        size++;
+    public boolean remove(T t, int idx) {
+        Object[] chunk = chunkContents[idx];
+        int count = counts[idx];
+        for (int k = 0; k < count; k++) {
+            if (chunk[k] == t) {
+                System.arraycopy(chunk, k + 1, chunk, k, count - k - 1);
+                chunk[count - 1] = null;
+                counts[idx] = count - 1;
+                size--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void move(T t, int fromIdx, int toIdx) {
+        if (fromIdx == toIdx)
+            return;
+        if (remove(t, fromIdx))
+            append(t, toIdx);
+    }
 
+    public boolean add(T t, int i, int j) {
+        int idx = getChunkIndex(clamp(i), clamp(j));
+        if (counts[idx] >= maxObjectsPerChunk)
+            return false;
+        append(t, idx);
         return true;
     }
 
     public boolean add(T t, Vector2 pos) {
-
-        int x = getChunkX(pos.x);
-        int y = getChunkY(pos.y);
-
-        return add(t, x, y);
+        return add(t, getChunkX(pos.x), getChunkY(pos.y));
     }
 
     public boolean add(T t, Vector2[] bounds) {
-        int x1 = getChunkX(bounds[0].x);
-        int y1 = getChunkY(bounds[0].y);
-        int x2 = getChunkX(bounds[1].x);
-        int y2 = getChunkY(bounds[1].y);
+        int x1 = clamp(getChunkX(bounds[0].x));
+        int y1 = clamp(getChunkY(bounds[0].y));
+        int x2 = clamp(getChunkX(bounds[1].x));
+        int y2 = clamp(getChunkY(bounds[1].y));
 
         if (x1 > x2) {
             int tmp = x1;
@@ -129,9 +179,75 @@ public class SpatialHash<T> implements Serializable, Iterable<Collection<T>> {
         return added;
     }
 
+    /**
+     * Replaces the contents of the hash with the given objects, preserving their iteration
+     * order within each chunk. Unlike {@link #add(Object, Vector2)}, no object is rejected
+     * for exceeding the chunk capacity.
+     *
+     * @return the chunk index assigned to each object, in iteration order
+     */
+    public int[] rebuild(Collection<? extends T> objects, Function<? super T, Vector2> positionFn) {
+        final Object[] items = objects.toArray();
+        final int n = items.length;
+        final int nChunks = counts.length;
+        final int[] itemChunks = new int[n];
+
+        final int nBlocks = Math.max(1, Math.min(
+                Runtime.getRuntime().availableProcessors(), n / PARALLEL_BLOCK_SIZE));
+        final int blockSize = (n + nBlocks - 1) / nBlocks;
+
+        // Histogram of each block, later reused as the write cursor for that block
+        final int[][] blockCursors = new int[nBlocks][nChunks];
+        blockRange(nBlocks).forEach(b -> {
+            int[] hist = blockCursors[b];
+            int end = Math.min(n, (b + 1) * blockSize);
+            for (int k = b * blockSize; k < end; k++) {
+                @SuppressWarnings("unchecked")
+                int idx = getChunkIndex(positionFn.apply((T) items[k]));
+                itemChunks[k] = idx;
+                hist[idx]++;
+            }
+        });
+
+        size = n;
+        for (int idx = 0; idx < nChunks; idx++) {
+            int total = 0;
+            for (int b = 0; b < nBlocks; b++) {
+                int blockCount = blockCursors[b][idx];
+                blockCursors[b][idx] = total;
+                total += blockCount;
+            }
+            Object[] chunk = chunkContents[idx];
+            if (chunk.length < total)
+                chunkContents[idx] = new Object[total];
+            else if (counts[idx] > total)
+                Arrays.fill(chunk, total, counts[idx], null);
+            counts[idx] = total;
+        }
+
+        blockRange(nBlocks).forEach(b -> {
+            int[] cursor = blockCursors[b];
+            int end = Math.min(n, (b + 1) * blockSize);
+            for (int k = b * blockSize; k < end; k++) {
+                int idx = itemChunks[k];
+                chunkContents[idx][cursor[idx]++] = items[k];
+            }
+        });
+
+        return itemChunks;
+    }
+
+    private static IntStream blockRange(int nBlocks) {
+        IntStream range = IntStream.range(0, nBlocks);
+        return nBlocks > 1 ? range.parallel() : range;
+    }
+
     public void clear() {
+        for (int idx = 0; idx < counts.length; idx++) {
+            Arrays.fill(chunkContents[idx], 0, counts[idx], null);
+            counts[idx] = 0;
+        }
         size = 0;
-        chunkContents.values().forEach(Collection::clear);
     }
 
     public int getChunkCapacity() {
@@ -160,21 +276,47 @@ public class SpatialHash<T> implements Serializable, Iterable<Collection<T>> {
 
     @Override
     public Iterator<Collection<T>> iterator() {
-        return chunkContents.values().iterator();
+        return getChunkIndices().stream().map(this::getChunkContents).iterator();
     }
 
     public Collection<Integer> getChunkIndices() {
-        return chunkContents.keySet();
+        List<Integer> indices = new ArrayList<>();
+        for (int idx = 0; idx < counts.length; idx++)
+            if (counts[idx] > 0)
+                indices.add(idx);
+        return indices;
     }
 
     public Collection<T> getChunkContents(int i) {
-        if (chunkContents.containsKey(i))
-            return chunkContents.get(i);
-        return Collections.emptyList();
+        if (i < 0 || i >= counts.length || counts[i] == 0)
+            return Collections.emptyList();
+        return new ChunkView(chunkContents[i], counts[i]);
     }
 
     public Collection<T> getChunkContents(int i, int j) {
-        int idx = getChunkIndex(i, j);
-        return getChunkContents(idx);
+        if (!inBounds(i, j))
+            return Collections.emptyList();
+        return getChunkContents(getChunkIndex(i, j));
+    }
+
+    private class ChunkView extends AbstractList<T> implements RandomAccess {
+        private final Object[] contents;
+        private final int size;
+
+        ChunkView(Object[] contents, int size) {
+            this.contents = contents;
+            this.size = size;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public T get(int index) {
+            return (T) contents[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
     }
 }
@@ -14,6 +14,7 @@ import com.protoevo.physics.FixtureCategories;
 import com.protoevo.physics.Joining;
 import com.protoevo.physics.Particle;
 import com.protoevo.maths.Geometry;
+import com.protoevo.maths.RandomStreams;
 
 import java.io.Serializable;
 import java.util.*;
@@ -23,7 +24,7 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 public class Box2DParticle extends Particle implements Serializable {
 
     public static long serialVersionUID = 1L;
-    protected final long id = UUID.randomUUID().getMostSignificantBits();
+    protected final long id = RandomStreams.randomLong();
 
     private final Vector2[] boundingBox = new Vector2[]{new Vector2(), new Vector2()};
 
@@ -32,7 +33,7 @@ public class Box2DParticle extends Particle implements Serializable {
     private transient Body body;
     private transient Fixture dynamicsFixture, sensorFixture;
     private boolean dead = false, disposed = false;
-    private double radius = Environment.settings.minParticleRadius.get() * (1 + 2 * Math.random());
+    private double radius = Environment.settings().minParticleRadius.get() * (1 + 2 * RandomStreams.random());
     private float interactionRadius = 0f;
     private final Vector2 pos = new Vector2(0, 0);
     private final Vector2 impulseToApply = new Vector2(0, 0);
@@ -111,6 +112,13 @@ public class Box2DParticle extends Particle implements Serializable {
         if (body != null || disposed)
             return;
 
+        Box2DPhysics box2DPhysics = (Box2DPhysics) physics;
+        body = box2DPhysics.obtainRecycledBody();
+        if (body != null) {
+            reuseBody();
+            return;
+        }
+
         CircleShape circle = new CircleShape();
         circle.setRadius((float) radius);
 
@@ -120,7 +128,7 @@ public class Box2DParticle extends Particle implements Serializable {
         // Body consists of a dynamics fixture and a sensor fixture
         // The dynamics fixture is used for collisions and the sensor fixture is used for
         // detecting when the particle in interaction range with other objects
-        body = ((Box2DPhysics) physics).getWorld().createBody(bodyDef);
+        body = box2DPhysics.getWorld().createBody(bodyDef);
 
         // Create the dynamics fixture and attach it to the body
         FixtureDef fixtureDef = new FixtureDef();
@@ -134,7 +142,7 @@ public class Box2DParticle extends Particle implements Serializable {
         dynamicsFixture.setUserData(this);
 
         body.setUserData(this);
-        body.setLinearDamping(Environment.settings.env.fluidDragDampening.get());
+        body.setLinearDamping(Environment.settings().env.fluidDragDampening.get());
         body.setAngularDamping(5f);
         body.setSleepingAllowed(true);
 
@@ -143,6 +151,21 @@ public class Box2DParticle extends Particle implements Serializable {
         circle.dispose();
     }
 
+    private void reuseBody() {
+        dynamicsFixture = body.getFixtureList().first();
+        dynamicsFixture.setUserData(this);
+        dynamicsFixture.getShape().setRadius((float) radius);
+        body.resetMassData();
+
+        body.setUserData(this);
+        body.setLinearDamping(Environment.settings().env.fluidDragDampening.get());
+        body.setTransform(pos, angle);
+        body.setLinearVelocity(0, 0);
+        body.setAngularVelocity(0);
+        body.setActive(true);
+        body.setAwake(true);
+    }
+
     @Override
     public void setCanInteractAtRange() {
         super.setCanInteractAtRange();
@@ -278,7 +301,7 @@ public class Box2DParticle extends Particle implements Serializable {
             vel.set(body.getLinearVelocity());
             pos.set(body.getPosition());
             angle = body.getAngle();
-            body.setLinearDamping(getDampeningFactor() * Environment.settings.env.fluidDragDampening.get());
+            body.setLinearDamping(getDampeningFactor() * Environment.settings().env.fluidDragDampening.get());
 
             if (getSpeed() < getRadius() / 50f) {
                 body.setLinearVelocity(0, 0);
@@ -316,8 +339,8 @@ public class Box2DParticle extends Particle implements Serializable {
     }
 
     public void setRadius(double radius) {
-        this.radius = Math.max(Environment.settings.minParticleRadius.get(), radius);
-        this.radius = Math.min(Environment.settings.maxParticleRadius.get(), this.radius);
+        this.radius = Math.max(Environment.settings().minParticleRadius.get(), radius);
+        this.radius = Math.min(Environment.settings().maxParticleRadius.get(), this.radius);
     }
 
     public boolean isPointInside(Vector2 point) {
@@ -360,7 +383,7 @@ public class Box2DParticle extends Particle implements Serializable {
     }
 
     public float getMassDensity() {
-        return Environment.settings.cell.basicParticleMassDensity.get();
+        return Environment.settings().cell.basicParticleMassDensity.get();
     }
 
     @Override
@@ -468,8 +491,10 @@ public class Box2DParticle extends Particle implements Serializable {
 
     public void destroyBody() {
         if (body != null) {
-            ((Box2DPhysics) physics).getWorld().destroyBody(body);
+            ((Box2DPhysics) physics).recycleBody(body);
             body = null;
+            dynamicsFixture = null;
+            sensorFixture = null;
         }
         requestedDestroyBody = false;
     }
@@ -2,6 +2,7 @@ package com.protoevo.physics.box2d;
 
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.physics.box2d.*;
+import com.badlogic.gdx.utils.Array;
 import com.protoevo.core.Statistics;
 import com.protoevo.env.Environment;
 import com.protoevo.env.Rock;
@@ -10,11 +11,13 @@ import com.protoevo.physics.JointsManager;
 import com.protoevo.physics.Particle;
 import com.protoevo.physics.Physics;
 
+import java.util.ArrayDeque;
 import java.util.Collection;
 
 public class Box2DPhysics extends Physics {
 
     private transient World world;
+    private transient ArrayDeque<Body> recycledBodies;
     private final JointsManager jointsManager;
 
     public Box2DPhysics() {
@@ -27,6 +30,47 @@ public class Box2DPhysics extends Physics {
         world.setContinuousPhysics(false);
         world.setAutoClearForces(true);
         world.setContactListener(new Box2DCollisionHandler());
+        recycledBodies = new ArrayDeque<>();
+    }
+
+    /**
+     * Deactivates the body of a dead particle and keeps it to be reused by a new particle,
+     * or destroys it if enough bodies are already kept.
+     * Recycled bodies keep their dynamics fixture, but lose their sensor fixtures and joints.
+     */
+    public void recycleBody(Body body) {
+        if (recycledBodies.size() >= Environment.settings().misc.maxRecycledPhysicsBodies.get()) {
+            world.destroyBody(body);
+            return;
+        }
+
+        Array<JointEdge> joints = body.getJointList();
+        while (joints.size > 0)
+            world.destroyJoint(joints.first().joint);
+
+        Array<Fixture> fixtures = body.getFixtureList();
+        for (int i = fixtures.size - 1; i >= 0; i--) {
+            if (fixtures.get(i).isSensor())
+                body.destroyFixture(fixtures.get(i));
+        }
+
+        // removes the body's contacts, so must happen while its user data still refers to the particle
+        body.setActive(false);
+        body.setUserData(null);
+        for (Fixture fixture : fixtures)
+            fixture.setUserData(null);
+        recycledBodies.push(body);
+    }
+
+    /**
+     * @return a deactivated body left by a dead particle, or null if there are none
+     */
+    public Body obtainRecycledBody() {
+        return recycledBodies.poll();
+    }
+
+    public int getNumRecycledBodies() {
+        return recycledBodies.size();
     }
 
     public void createRockFixtures(Environment environment) {
@@ -70,8 +114,8 @@ public class Box2DPhysics extends Physics {
     public void stepPhysics(float delta) {
         world.step(
                 delta,
-                Environment.settings.misc.physicsVelocityIterations.get(),
-                Environment.settings.misc.physicsPositionIterations.get());
+                Environment.settings().misc.physicsVelocityIterations.get(),
+                Environment.settings().misc.physicsPositionIterations.get());
     }
 
     @Override
@@ -89,6 +133,7 @@ public class Box2DPhysics extends Physics {
         Statistics debugStats = super.getDebugStats();
 
         debugStats.putCount("Bodies", world.getBodyCount());
+        debugStats.putCount("Recycled Bodies", recycledBodies.size());
         debugStats.putCount("Contacts", world.getContactCount());
         debugStats.putCount("Joints", world.getJointCount());
         debugStats.putCount("Fixtures", world.getFixtureCount());
@@ -67,14 +67,38 @@ public class MiscSettings extends Settings {
             "Use OpenGL Compute Shader",
             "Whether or not to use OpenGL compute shaders for accelerating calculations on the GPU.",
             true);
+    public final Settings.Parameter<Boolean> useFullGridCPUDiffusion = new Settings.Parameter<>(
+            "Use Full-Grid CPU Chemical Diffusion",
+            "Whether chemical diffusion on the CPU should update the whole grid in parallel each step, " +
+                    "matching the GPU kernels, rather than a random sample of texels.",
+            true);
     public final Settings.Parameter<Integer> chemicalCPUIterations = new Settings.Parameter<>(
             "CPU Chemical Diffusion Iterations",
-            "Number of chemical diffusion iterations to perform when running on the CPU.",
+            "Number of texels to diffuse per step when running on the CPU without full-grid diffusion.",
             100000);
+    public final Settings.Parameter<Integer> batchedGRNMinProtozoa = new Settings.Parameter<>(
+            "Batched GRN Protozoa Threshold",
+            "When more than this many protozoa are alive, gene regulatory networks are evaluated " +
+                    "together across the population rather than one cell at a time.",
+            200);
     public final Settings.Parameter<Integer> spatialHashResolution = new Settings.Parameter<>(
             "Spatial Hash Resolution",
             "The resolution of the spatial hash used for local population caps.",
             20);
+    public final Settings.Parameter<Integer> simulationThreads = new Settings.Parameter<>(
+            "Simulation Threads",
+            "The number of threads used to update the simulation. Set to 0 to use one per processor.",
+            0);
+    public final Settings.Parameter<Boolean> deterministic = new Settings.Parameter<>(
+            "Deterministic Updates",
+            "Whether cells are updated one after another in a fixed order, so that runs with the same seed " +
+                    "and number of threads produce the same world. Slower, as cell updates are not parallelised.",
+            false);
+    public final Settings.Parameter<Integer> maxRecycledPhysicsBodies = new Settings.Parameter<>(
+            "Max Recycled Physics Bodies",
+            "The maximum number of physics bodies of dead cells to deactivate and keep for new cells, " +
+                    "rather than destroying them and creating new ones. Set to 0 to disable recycling.",
+            500);
     public final Settings.Parameter<Float> checkCellJoiningsInterval = new Settings.Parameter<>(
             "Check Cell Joinings Interval",
             "The amount of time between checking for cell joinings.",
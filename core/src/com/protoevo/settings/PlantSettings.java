@@ -9,7 +9,7 @@ public class PlantSettings extends Settings {
     public final Settings.Parameter<Float> minBirthRadius = new Settings.Parameter<>(
             "Min Birth Radius",
             "The minimum radius of a plant at birth.",
-            Environment.settings.minParticleRadius.get());
+            Environment.settings().minParticleRadius.get());
     public final Settings.Parameter<Float> maxBirthRadius = new Settings.Parameter<>(
             "Max Birth Radius",
             "The maximum radius of a plant at birth.",
@@ -26,7 +26,7 @@ public class PlantSettings extends Settings {
             "Contact Death Rate",
             "The rate at which a plant's health is reduced when it collides with another non-plant object.",
             Geometry.getCircleArea(maxBirthRadius.get())
-                    * Environment.settings.cell.basicParticleMassDensity.get()
+                    * Environment.settings().cell.basicParticleMassDensity.get()
     );
     public final Settings.Parameter<Float> minHealthToSplit = new Settings.Parameter<>(
             "Min Health to Split",
@@ -35,7 +35,7 @@ public class PlantSettings extends Settings {
     public final Settings.Parameter<Float> geneExpressionInterval = new Settings.Parameter<>(
             "Gene Expression Interval",
             "The amount of in-simulation time between ticking the Gene Regulatory Networks of plants.",
-            Environment.settings.simulationUpdateDelta.get() * 100f,
+            Environment.settings().simulationUpdateDelta.get() * 100f,
             Statistics.ComplexUnit.TIME
     );
     public final Settings.Parameter<Float> photosynthesizeEnergyRate = new Settings.Parameter<>(
@@ -8,7 +8,7 @@ public class ProtozoaSettings extends Settings {
     public final Settings.Parameter<Float> geneExpressionInterval = new Settings.Parameter<>(
             "Gene Expression Interval",
             "The amount of in-simulation time between ticking the Gene Regulatory Networks of protozoa.",
-            Environment.settings.simulationUpdateDelta.get() * 10f,
+            Environment.settings().simulationUpdateDelta.get() * 10f,
             Statistics.ComplexUnit.TIME
     );
     public final Settings.Parameter<Boolean> matingEnabled = new Settings.Parameter<>(
@@ -73,7 +73,7 @@ public class ProtozoaSettings extends Settings {
     public final Settings.Parameter<Float> maxLightRange = new Settings.Parameter<>(
             "Light Range",
             "The maximum range of light.",
-            Environment.settings.maxParticleRadius.get() * 10f);
+            Environment.settings().maxParticleRadius.get() * 10f);
 //    public final Settings.Parameter<Float> eatingConversionRatio = new Settings.Parameter<>(
 //            "Eating Conversion Ratio",
 //            "",
@@ -1,7 +1,7 @@
 package com.protoevo.settings;
 
+import com.protoevo.core.SimulationContext;
 import com.protoevo.core.Statistics;
-import com.protoevo.env.Environment;
 import com.protoevo.utils.Utils;
 
 import java.util.ArrayList;
@@ -104,8 +104,17 @@ public class SimulationSettings extends Settings {
     public static SimulationSettings createDefault() {
         SimulationSettings settings = new SimulationSettings();
         settings.collectParameters();
-        Environment.settings = settings;
+        // the defaults of some parameters are derived from others, which they look up in the current context
+        SimulationContext previous = new SimulationContext(settings).bind();
+        try {
+            createSubSettings(settings);
+        } finally {
+            SimulationContext.restore(previous);
+        }
+        return settings;
+    }
 
+    private static void createSubSettings(SimulationSettings settings) {
         settings.env = new EnvironmentSettings();
         settings.env.collectParameters();
 
@@ -126,8 +135,6 @@ public class SimulationSettings extends Settings {
 
         settings.evo = new EvolutionSettings();
         settings.evo.collectParameters();
-
-        return settings;
     }
 
     public List<Settings> getSettings() {
@@ -154,4 +161,22 @@ public class SimulationSettings extends Settings {
                 return this;
         }
     }
+
+    /**
+     * @param path the field name of a parameter, prefixed by its subcategory as in the REPL,
+     *             e.g. protozoa.starvationFactor
+     * @return the parameter, or null if there is none at the path
+     */
+    public Parameter<?> getParameter(String path) {
+        String subcategory = "base", fieldName = path;
+        if (path.contains(".")) {
+            String[] split = path.split("\\.");
+            subcategory = split[0];
+            fieldName = split[1];
+        }
+        for (Parameter<?> param : getSettings(subcategory).getParameters())
+            if (param.getFieldName().equals(fieldName))
+                return param;
+        return null;
+    }
 }
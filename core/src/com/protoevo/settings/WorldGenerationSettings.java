@@ -29,7 +29,7 @@ public class WorldGenerationSettings extends Settings {
             radius.get()
     );
     public final Settings.Parameter<Float> maxRockSize = new Settings.Parameter<>(
-            "Maximum Rock Size", "", Environment.settings.maxParticleRadius.get() * 2.25f);
+            "Maximum Rock Size", "", Environment.settings().maxParticleRadius.get() * 2.25f);
     public final Settings.Parameter<Float> minRockSize = new Settings.Parameter<>(
             "Minimum Rock Size", "", maxRockSize.get() / 3f);
     public final Settings.Parameter<Float> attachedRockSizeChange = new Settings.Parameter<>(
@@ -0,0 +1,93 @@
+package com.protoevo.test;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Box2D;
+import com.protoevo.biology.CauseOfDeath;
+import com.protoevo.env.Environment;
+import com.protoevo.physics.Particle;
+import com.protoevo.physics.box2d.Box2DPhysics;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Simulates the churn of plants and meat, where particles are constantly killed and replaced,
+ * with and without recycling the physics bodies of dead particles, and reports the birth rate,
+ * the bytes allocated per birth and the time spent in garbage collection.
+ */
+public class BodyRecyclingBenchmark {
+
+    private static final int POPULATION = 2000, DEATHS_PER_STEP = 50, WARMUP = 200, STEPS = 2000;
+
+    private static long gcTimeMillis() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            time += Math.max(0, gc.getCollectionTime());
+        return time;
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static void spawn(Box2DPhysics physics, List<Particle> particles, int i, Random random) {
+        Particle particle = physics.createNewParticle();
+        particle.setPos(new Vector2(random.nextFloat() * 20 - 10, random.nextFloat() * 20 - 10));
+        particles.set(i, particle);
+    }
+
+    /**
+     * @return the number of particles respawned, which can be fewer than the kills requested
+     * since the same particle can be picked more than once in a step
+     */
+    private static long churn(Box2DPhysics physics, List<Particle> particles, int steps, Random random) {
+        long births = 0;
+        for (int step = 0; step < steps; step++) {
+            for (int k = 0; k < DEATHS_PER_STEP; k++)
+                particles.get(random.nextInt(POPULATION)).kill(CauseOfDeath.MEAT_DECAY);
+            physics.step(1 / 60f);
+            for (int i = 0; i < POPULATION; i++) {
+                if (particles.get(i).isDead()) {
+                    spawn(physics, particles, i, random);
+                    births++;
+                }
+            }
+        }
+        return births;
+    }
+
+    private static void run(String label, int maxRecycledBodies) {
+        Environment.settings().misc.maxRecycledPhysicsBodies.set(maxRecycledBodies);
+        Random random = new Random(0);
+        Box2DPhysics physics = new Box2DPhysics();
+        List<Particle> particles = new ArrayList<>(POPULATION);
+        for (int i = 0; i < POPULATION; i++)
+            particles.add(null);
+        for (int i = 0; i < POPULATION; i++)
+            spawn(physics, particles, i, random);
+
+        churn(physics, particles, WARMUP, random);
+
+        long gcTime = gcTimeMillis(), allocated = allocatedBytes(), start = System.nanoTime();
+        long births = churn(physics, particles, STEPS, random);
+        long time = System.nanoTime() - start;
+        allocated = allocatedBytes() - allocated;
+        gcTime = gcTimeMillis() - gcTime;
+
+        System.out.printf("%-12s %10.0f births/s %10.0f bytes/birth %8d ms in GC (%d recycled bodies)%n",
+                label, births * 1e9 / time, (double) allocated / births, gcTime,
+                physics.getNumRecycledBodies());
+        physics.dispose();
+    }
+
+    public static void main(String[] args) {
+        Box2D.init();
+        int maxRecycledBodies = Environment.settings().misc.maxRecycledPhysicsBodies.get();
+        run("Destroyed", 0);
+        run("Recycled", maxRecycledBodies);
+    }
+}
@@ -0,0 +1,107 @@
+package com.protoevo.test;
+
+import com.protoevo.biology.cells.Protozoan;
+import com.protoevo.biology.evolution.Evolvable;
+import com.protoevo.biology.evolution.GRNFactory;
+import com.protoevo.biology.evolution.GeneExpressionFunction;
+import com.protoevo.biology.nn.NeuralNetwork;
+import com.protoevo.maths.RandomStreams;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares updating gene expression functions through their compiled trait bindings against
+ * the previous path, which looked up every sensor and output by label, read regulators and
+ * wrote traits by reflection, and boxed every value. Also measures the rate at which new
+ * protozoa can be born by cloning.
+ */
+public class GeneExpressionBenchmark {
+
+    private static final int POPULATION = 200, WARMUP = 200, ROUNDS = 10, REPEATS = 100;
+    private static final int BIRTH_WARMUP = 200, BIRTHS = 1000;
+
+    /** The per-tick path the bindings replaced, kept here as a baseline. */
+    static void legacyUpdate(GeneExpressionFunction fn) {
+        NeuralNetwork grn = fn.getRegulatoryNetwork();
+        legacySetInputs(fn);
+        grn.tick();
+        legacySetInputs(fn);
+        for (String trait : fn.getTraitNames()) {
+            GeneExpressionFunction.ExpressionNode node = fn.getNode(trait);
+            Evolvable target = fn.getTargetEvolvable(node.getTargetID());
+            if (node.mapsToTrait() && target != null)
+                node.setTraitValue(target, fn.getTraitValue(trait));
+        }
+    }
+
+    private static void legacySetInputs(GeneExpressionFunction fn) {
+        NeuralNetwork grn = fn.getRegulatoryNetwork();
+        grn.setInput("Bias", 1f);
+        grn.setInput("Random Source", RandomStreams.random(-1f, 1f));
+        for (String geneName : fn.getTraitNames()) {
+            String inputName = GRNFactory.getInputName(geneName);
+            if (grn.hasSensor(inputName)) {
+                if (!fn.getTraitGene(geneName).isDisabled()) {
+                    Object geneValue = fn.getGeneValue(geneName);
+                    float value;
+                    if (geneValue instanceof Float)
+                        value = (float) geneValue;
+                    else if (geneValue instanceof Integer)
+                        value = (int) geneValue;
+                    else
+                        value = ((boolean) geneValue) ? 1f : -1f;
+                    grn.setInput(inputName, value);
+                } else {
+                    grn.setInput(inputName, 0);
+                }
+            }
+        }
+        for (String regulatorName : fn.getGeneRegulators().keySet()) {
+            GeneExpressionFunction.RegulationNode node = fn.getGeneRegulators().get(regulatorName);
+            Evolvable target = fn.getTargetEvolvable(node.getTargetID());
+            if (target != null && grn.hasSensor(regulatorName))
+                grn.setInput(regulatorName, node.getValue(target));
+        }
+    }
+
+    private static long timeNanos(Runnable runnable) {
+        for (int i = 0; i < WARMUP; i++)
+            runnable.run();
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < REPEATS; i++)
+                runnable.run();
+            best = Math.min(best, (System.nanoTime() - start) / REPEATS);
+        }
+        return best;
+    }
+
+    public static void main(String[] args) {
+        List<Protozoan> population = new ArrayList<>(POPULATION);
+        for (int i = 0; i < POPULATION; i++)
+            population.add(Evolvable.createNew(Protozoan.class));
+
+        long legacyTime = timeNanos(() -> {
+            for (Protozoan p : population)
+                legacyUpdate(p.getGeneExpressionFunction());
+        });
+        long boundTime = timeNanos(() -> {
+            for (Protozoan p : population)
+                p.getGeneExpressionFunction().update();
+        });
+
+        System.out.printf("%d protozoa: legacy %10.0f updates/s, bound %10.0f updates/s (%.1fx)%n",
+                POPULATION, POPULATION * 1e9 / legacyTime, POPULATION * 1e9 / boundTime,
+                (float) legacyTime / boundTime);
+
+        for (int i = 0; i < BIRTH_WARMUP; i++)
+            Evolvable.asexualClone(population.get(i % POPULATION));
+        long start = System.nanoTime();
+        for (int i = 0; i < BIRTHS; i++)
+            Evolvable.asexualClone(population.get(i % POPULATION));
+        long birthTime = System.nanoTime() - start;
+        System.out.printf("asexual cloning: %10.0f births/s%n", BIRTHS * 1e9 / birthTime);
+    }
+}
@@ -0,0 +1,55 @@
+package com.protoevo.test;
+
+import com.protoevo.biology.nn.NetworkGenome;
+import com.protoevo.biology.nn.NeuralNetwork;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Simulates births and deaths in a population of gene regulatory networks descended from
+ * a single ancestor, as when protozoa split, and reports the birth rate and the heap
+ * retained by the genomes and networks of the population.
+ */
+public class GenomeSharingBenchmark {
+
+    private static final int POPULATION = 5000, BIRTHS = 50_000;
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public static void main(String[] args) {
+        Random random = new Random(0);
+        long baseline = usedHeap();
+
+        NetworkGenome ancestor = NeuralNetworkBenchmark.randomGenome(20, 20, 5, random);
+        List<NetworkGenome> genomes = new ArrayList<>(POPULATION);
+        List<NeuralNetwork> networks = new ArrayList<>(POPULATION);
+        for (int i = 0; i < POPULATION; i++) {
+            NetworkGenome genome = new NetworkGenome(ancestor);
+            genome.mutate();
+            genomes.add(genome);
+            networks.add(genome.phenotype());
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < BIRTHS; i++) {
+            NetworkGenome child = new NetworkGenome(genomes.get(random.nextInt(POPULATION)));
+            child.mutate();
+            int dead = random.nextInt(POPULATION);
+            genomes.set(dead, child);
+            networks.set(dead, child.phenotype());
+        }
+        long time = System.nanoTime() - start;
+
+        long retained = usedHeap() - baseline;
+        System.out.printf("%d births: %10.0f births/s%n", BIRTHS, BIRTHS * 1e9 / time);
+        System.out.printf("%d genomes and networks: %.1f MB retained%n",
+                POPULATION, retained / (1024f * 1024f));
+    }
+}
@@ -0,0 +1,179 @@
+package com.protoevo.test;
+
+import com.protoevo.biology.nn.*;
+
+import java.util.*;
+
+/**
+ * Compares ticking the compiled {@link NeuralNetwork} against the previous graph of
+ * neurons with boxed activations, for gene regulatory networks of typical sizes.
+ * Also checks that both evaluators produce bit-identical states, and measures the
+ * throughput of ticking a population of networks one at a time against {@link NetworkBatch}.
+ */
+public class NeuralNetworkBenchmark {
+
+    private static final int WARMUP = 20_000, ROUNDS = 20, REPEATS = 5_000;
+    private static final int POPULATION = 1000, TOPOLOGIES = 20, POPULATION_REPEATS = 20;
+    private static final int[][] SIZES = {
+            // sensors, outputs, hidden
+            {20, 20, 5},
+            {60, 60, 20},
+            {150, 150, 100},
+    };
+
+    /** The evaluator the compiled network replaced, kept here as a baseline. */
+    private static class LegacyNeuron {
+        LegacyNeuron[] inputs;
+        float[] weights;
+        ActivationFn activation;
+        float state, nextState;
+
+        void tick() {
+            nextState = 0.0f;
+            for (int i = 0; i < inputs.length; i++)
+                nextState += inputs[i].state * weights[i];
+            nextState = activation.apply(nextState);
+        }
+
+        void update() {
+            state = nextState;
+        }
+    }
+
+    private static LegacyNeuron[] legacyPhenotype(NetworkGenome genome) {
+        Map<Integer, LegacyNeuron> byId = new TreeMap<>();
+        Iterator<NeuronGene> neuronGenes = genome.iterateNeuronGenes();
+        while (neuronGenes.hasNext()) {
+            NeuronGene g = neuronGenes.next();
+            LegacyNeuron n = new LegacyNeuron();
+            n.activation = g.getActivation();
+            n.inputs = new LegacyNeuron[0];
+            n.weights = new float[0];
+            byId.put(g.getId(), n);
+        }
+        for (SynapseGene g : genome.getSynapseGenes()) {
+            if (g.isDisabled() || g.getOut().getType() == Neuron.Type.SENSOR)
+                continue;
+            LegacyNeuron out = byId.get(g.getOut().getId());
+            out.inputs = Arrays.copyOf(out.inputs, out.inputs.length + 1);
+            out.inputs[out.inputs.length - 1] = byId.get(g.getIn().getId());
+            out.weights = Arrays.copyOf(out.weights, out.weights.length + 1);
+            out.weights[out.weights.length - 1] = g.getWeight();
+        }
+        return byId.values().toArray(new LegacyNeuron[0]);
+    }
+
+    static NetworkGenome randomGenome(int nSensors, int nOutputs, int nHidden, Random random) {
+        return randomGenome(nSensors, nOutputs, nHidden, random, random);
+    }
+
+    /**
+     * Genomes built from topology generators in the same state share a topology,
+     * and differ only in their weights.
+     */
+    static NetworkGenome randomGenome(int nSensors, int nOutputs, int nHidden,
+                                      Random random, Random weightRandom) {
+        int id = 0;
+        NeuronGene[] sensors = new NeuronGene[nSensors];
+        for (int i = 0; i < nSensors; i++)
+            sensors[i] = new NeuronGene(id++, Neuron.Type.SENSOR,
+                    ActivationFn.getInputMapper(-random.nextFloat(), random.nextFloat()), "Sensor " + i);
+        NeuronGene[] outputs = new NeuronGene[nOutputs];
+        for (int i = 0; i < nOutputs; i++)
+            outputs[i] = new NeuronGene(id++, Neuron.Type.OUTPUT,
+                    ActivationFn.getOutputMapper(-random.nextFloat(), random.nextFloat()), "Output " + i);
+        NeuronGene[] hidden = new NeuronGene[nHidden];
+        for (int i = 0; i < nHidden; i++)
+            hidden[i] = new NeuronGene(id++, Neuron.Type.HIDDEN,
+                    ActivationFn.activationFunctions[random.nextInt(ActivationFn.activationFunctions.length)]);
+
+        List<SynapseGene> synapses = new ArrayList<>();
+        for (NeuronGene in : sensors)
+            for (NeuronGene out : outputs)
+                synapses.add(new SynapseGene(in, out, 2 * weightRandom.nextFloat() - 1));
+        for (NeuronGene h : hidden) {
+            for (int k = 0; k < 4; k++) {
+                synapses.add(new SynapseGene(sensors[random.nextInt(nSensors)], h, 2 * weightRandom.nextFloat() - 1));
+                synapses.add(new SynapseGene(h, outputs[random.nextInt(nOutputs)], 2 * weightRandom.nextFloat() - 1));
+            }
+            if (nHidden > 1)
+                synapses.add(new SynapseGene(hidden[random.nextInt(nHidden)], h, 2 * weightRandom.nextFloat() - 1));
+        }
+        return new NetworkGenome(sensors, outputs, hidden, synapses.toArray(new SynapseGene[0]));
+    }
+
+    /** Best of several rounds, to be robust to other load on the machine. */
+    private static long timeNanos(Runnable runnable) {
+        for (int i = 0; i < WARMUP; i++)
+            runnable.run();
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < REPEATS; i++)
+                runnable.run();
+            best = Math.min(best, (System.nanoTime() - start) / REPEATS);
+        }
+        return best;
+    }
+
+    public static void main(String[] args) {
+        Random random = new Random(0);
+        for (int[] size : SIZES) {
+            NetworkGenome genome = randomGenome(size[0], size[1], size[2], random);
+            LegacyNeuron[] legacy = legacyPhenotype(genome);
+            NeuralNetwork compiled = genome.phenotype();
+
+            for (int i = 0; i < size[0]; i++) {
+                float input = 2 * random.nextFloat() - 1;
+                legacy[i].state = legacy[i].activation.apply(input);
+                compiled.setInput("Sensor " + i, input);
+            }
+            for (int t = 0; t < 10; t++) {
+                for (LegacyNeuron n : legacy) n.tick();
+                for (LegacyNeuron n : legacy) n.update();
+                compiled.tick();
+            }
+            for (int i = 0; i < legacy.length; i++)
+                if (Float.floatToIntBits(legacy[i].state) != Float.floatToIntBits(compiled.getState(i)))
+                    throw new AssertionError("Compiled network diverged at neuron " + i);
+
+            long legacyTime = timeNanos(() -> {
+                for (LegacyNeuron n : legacy) n.tick();
+                for (LegacyNeuron n : legacy) n.update();
+            });
+            long compiledTime = timeNanos(compiled::tick);
+
+            System.out.printf("%4d neurons, %5d synapses: graph %8.3f us, compiled %8.3f us (%.1fx)%n",
+                    compiled.getSize(), genome.getSynapseGenes().length,
+                    legacyTime / 1e3, compiledTime / 1e3, (float) legacyTime / compiledTime);
+        }
+
+        for (int[] size : SIZES) {
+            List<NeuralNetwork> population = new ArrayList<>(POPULATION);
+            for (int i = 0; i < POPULATION; i++)
+                population.add(randomGenome(size[0], size[1], size[2],
+                        new Random(i % TOPOLOGIES), random).phenotype());
+
+            long sequentialTime = timePopulationNanos(() -> population.forEach(NeuralNetwork::tick));
+            NetworkBatch batch = new NetworkBatch();
+            long batchedTime = timePopulationNanos(() -> batch.tick(population));
+
+            System.out.printf("%4d networks of %3d neurons: sequential %10.0f ticks/s, batched %10.0f ticks/s%n",
+                    POPULATION, population.get(0).getSize(),
+                    POPULATION * 1e9 / sequentialTime, POPULATION * 1e9 / batchedTime);
+        }
+    }
+
+    private static long timePopulationNanos(Runnable runnable) {
+        for (int i = 0; i < POPULATION_REPEATS; i++)
+            runnable.run();
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < POPULATION_REPEATS; i++)
+                runnable.run();
+            best = Math.min(best, (System.nanoTime() - start) / POPULATION_REPEATS);
+        }
+        return best;
+    }
+}
@@ -0,0 +1,151 @@
+package com.protoevo.test;
+
+import com.protoevo.biology.ComplexMolecule;
+import com.protoevo.biology.Food;
+import com.protoevo.biology.MoleculeAmounts;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compares the heap used per cell by its food and complex molecule resources, and the rate at
+ * which they can be digested and decayed, between the primitive containers cells now use and
+ * the hash maps they replaced.
+ */
+public class ResourceContainersBenchmark {
+
+    private static final int CELLS = 20000, MOLECULES_PER_CELL = 3, WARMUP = 20, TICKS = 200;
+    private static final float DELTA = 1 / 60f, RATE = 0.01f, DECAY = 0.001f;
+
+    /** The resources of a cell as they were stored before. */
+    static class LegacyResources {
+        final Map<ComplexMolecule, Float> molecules = new ConcurrentHashMap<>(0);
+        final Map<Food.Type, Float> digestionRates = new HashMap<>(0);
+        final Map<Food.Type, Map<ComplexMolecule, Float>> foodMolecules = new HashMap<>(0);
+        final Map<Food.Type, float[]> foodMasses = new HashMap<>(0);
+
+        void digest() {
+            for (Food.Type type : foodMasses.keySet()) {
+                float rate = DELTA * RATE * digestionRates.getOrDefault(type, 0f);
+                float[] mass = foodMasses.get(type);
+                mass[0] -= mass[0] * rate;
+                Map<ComplexMolecule, Float> food = foodMolecules.get(type);
+                for (ComplexMolecule molecule : food.keySet()) {
+                    float amount = food.getOrDefault(molecule, 0f);
+                    if (amount == 0)
+                        continue;
+                    float extracted = amount * rate;
+                    molecules.put(molecule, molecules.getOrDefault(molecule, 0f) + extracted);
+                    food.put(molecule, Math.max(0, amount - extracted));
+                }
+            }
+            for (ComplexMolecule molecule : molecules.keySet())
+                molecules.put(molecule, Math.max(0, molecules.getOrDefault(molecule, 0f) - DELTA * DECAY));
+        }
+    }
+
+    /** The resources of a cell as they are stored now. */
+    static class Resources {
+        final MoleculeAmounts molecules = new MoleculeAmounts();
+        final float[] digestionRates = new float[Food.Type.numTypes()];
+        final Food[] foodToDigest = new Food[Food.Type.numTypes()];
+
+        void digest() {
+            for (Food food : foodToDigest) {
+                if (food == null)
+                    continue;
+                float rate = DELTA * RATE * digestionRates[food.getType().ordinal()];
+                food.subtractSimpleMass(food.getSimpleMass() * rate);
+                MoleculeAmounts foodMolecules = food.getComplexMoleculeMasses();
+                for (int i = 0; i < foodMolecules.size(); i++) {
+                    float amount = foodMolecules.getAmount(i);
+                    if (amount == 0)
+                        continue;
+                    float extracted = amount * rate;
+                    molecules.add(foodMolecules.getMolecule(i), extracted);
+                    foodMolecules.setAmount(i, Math.max(0, amount - extracted));
+                }
+            }
+            for (int i = 0; i < molecules.size(); i++)
+                molecules.setAmount(i, Math.max(0, molecules.getAmount(i) - DELTA * DECAY));
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static ComplexMolecule randomMolecule(Random random) {
+        return ComplexMolecule.fromSignature(random.nextFloat());
+    }
+
+    private static List<LegacyResources> createLegacy(Random random) {
+        List<LegacyResources> cells = new ArrayList<>(CELLS);
+        for (int c = 0; c < CELLS; c++) {
+            LegacyResources cell = new LegacyResources();
+            Food.Type type = Food.Type.values()[c % Food.Type.numTypes()];
+            cell.digestionRates.put(type, 1f);
+            cell.foodMasses.put(type, new float[]{1f});
+            Map<ComplexMolecule, Float> food = new HashMap<>(0);
+            for (int i = 0; i < MOLECULES_PER_CELL; i++) {
+                food.put(randomMolecule(random), 1f);
+                cell.molecules.put(randomMolecule(random), 1f);
+            }
+            cell.foodMolecules.put(type, food);
+            cells.add(cell);
+        }
+        return cells;
+    }
+
+    private static List<Resources> create(Random random) {
+        List<Resources> cells = new ArrayList<>(CELLS);
+        for (int c = 0; c < CELLS; c++) {
+            Resources cell = new Resources();
+            Food.Type type = Food.Type.values()[c % Food.Type.numTypes()];
+            cell.digestionRates[type.ordinal()] = 1f;
+            Food food = new Food(1f, type);
+            for (int i = 0; i < MOLECULES_PER_CELL; i++) {
+                food.addComplexMoleculeMass(randomMolecule(random), 1f);
+                cell.molecules.put(randomMolecule(random), 1f);
+            }
+            cell.foodToDigest[type.ordinal()] = food;
+            cells.add(cell);
+        }
+        return cells;
+    }
+
+    private static void report(String label, long heap, Runnable tick) {
+        for (int i = 0; i < WARMUP; i++)
+            tick.run();
+        long start = System.nanoTime();
+        for (int i = 0; i < TICKS; i++)
+            tick.run();
+        long time = System.nanoTime() - start;
+        System.out.printf("%-8s %8.0f bytes/cell %12.0f cell digests/s%n",
+                label, heap / (double) CELLS, (double) CELLS * TICKS * 1e9 / time);
+    }
+
+    public static void main(String[] args) {
+        // fill the molecule cache outside the measurements
+        for (int i = 0; i < ComplexMolecule.numPossibleIndices(); i++)
+            ComplexMolecule.fromSignature(i / (ComplexMolecule.numPossibleIndices() - 1f));
+
+        long baseline = usedHeap();
+        List<LegacyResources> legacy = createLegacy(new Random(0));
+        long legacyHeap = usedHeap() - baseline;
+        report("Maps", legacyHeap, () -> legacy.forEach(LegacyResources::digest));
+        legacy.clear();
+
+        baseline = usedHeap();
+        List<Resources> cells = create(new Random(0));
+        long heap = usedHeap() - baseline;
+        report("Arrays", heap, () -> cells.forEach(Resources::digest));
+    }
+}
@@ -1,5 +1,6 @@
 package com.protoevo.test;
 
+import com.protoevo.core.SimulationContext;
 import com.protoevo.env.Environment;
 import com.protoevo.env.LightManager;
 import com.protoevo.env.Rock;
@@ -26,10 +27,10 @@ public class RocksDrawer {
         g.setColor(new Color(0, 0, 0, 0));
         g.fillRect(0, 0, width, height);
 
-        float rockWorldMinX = -Environment.settings.worldgen.radius.get();
-        float rockWorldMinY = -Environment.settings.worldgen.radius.get();
-        float rockWorldMaxX = Environment.settings.worldgen.radius.get();
-        float rockWorldMaxY = Environment.settings.worldgen.radius.get();
+        float rockWorldMinX = -Environment.settings().worldgen.radius.get();
+        float rockWorldMinY = -Environment.settings().worldgen.radius.get();
+        float rockWorldMaxX = Environment.settings().worldgen.radius.get();
+        float rockWorldMaxY = Environment.settings().worldgen.radius.get();
 
         for (Rock rock : rocks) {
             int[] xPoints = new int[3];
@@ -77,11 +78,11 @@ public class RocksDrawer {
     }
 
     public static void main(String[] args) {
-        Environment.settings = DefaultBackgroundGenerator.createBgEnvSettings();
+        new SimulationContext(DefaultBackgroundGenerator.createBgEnvSettings()).makeDefault();
         List<Rock> rocks = WorldGeneration.generate();
         drawRocks(rocks);
 
-        LightManager lightManager = new LightManager(256, 256, Environment.settings.worldgen.radius.get());
+        LightManager lightManager = new LightManager(256, 256, Environment.settings().worldgen.radius.get());
         LightManager.bakeRockShadows(lightManager, rocks);
         drawLightMap(lightManager);
     }
@@ -0,0 +1,115 @@
+package com.protoevo.test;
+
+import com.badlogic.gdx.math.Vector2;
+import com.protoevo.maths.Geometry;
+import com.protoevo.physics.SpatialHash;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Compares the per-tick rebuild of the dense {@link SpatialHash} against the
+ * previous map-of-skip-lists implementation, and against incrementally moving
+ * only the entries that changed chunk in a mostly stationary population.
+ */
+public class SpatialHashBenchmark {
+
+    private static final int RESOLUTION = 20;
+    private static final float WORLD_RADIUS = 1.5f * 30f;
+    private static final int WARMUP = 50, REPEATS = 200;
+    private static final float MOVING_FRACTION = 0.02f;
+
+    /** The implementation {@link SpatialHash} replaced, kept here as a baseline. */
+    private static class SkipListSpatialHash<T> {
+        private final int resolution;
+        private final float chunkSize;
+        private final int maxObjectsPerChunk;
+        private final ConcurrentHashMap<Integer, Collection<T>> chunkContents = new ConcurrentHashMap<>();
+
+        SkipListSpatialHash(int resolution, int maxObjectsPerChunk, float worldRadius) {
+            this.resolution = resolution;
+            this.maxObjectsPerChunk = maxObjectsPerChunk;
+            this.chunkSize = 2 * worldRadius / resolution;
+        }
+
+        void add(T t, Vector2 pos) {
+            int idx = (int) (pos.x / chunkSize) * resolution + (int) (pos.y / chunkSize);
+            Collection<T> chunk = chunkContents.computeIfAbsent(
+                    idx, k -> new ConcurrentSkipListSet<>(Comparator.comparingInt(Object::hashCode)));
+            if (chunk.size() < maxObjectsPerChunk)
+                chunk.add(t);
+        }
+
+        void clear() {
+            chunkContents.values().forEach(Collection::clear);
+        }
+    }
+
+    private static long timeNanos(Runnable runnable) {
+        for (int i = 0; i < WARMUP; i++)
+            runnable.run();
+        long start = System.nanoTime();
+        for (int i = 0; i < REPEATS; i++)
+            runnable.run();
+        return (System.nanoTime() - start) / REPEATS;
+    }
+
+    public static void main(String[] args) {
+        Random random = new Random(0);
+        for (int n : new int[]{1_000, 10_000, 100_000}) {
+            List<Vector2> positions = new ArrayList<>(n);
+            for (int i = 0; i < n; i++)
+                positions.add(Geometry.randomPointInCircle(WORLD_RADIUS / 1.5f, random));
+
+            SkipListSpatialHash<Vector2> legacy = new SkipListSpatialHash<>(RESOLUTION, n, WORLD_RADIUS);
+            long legacyTime = timeNanos(() -> {
+                legacy.clear();
+                for (Vector2 pos : positions)
+                    legacy.add(pos, pos);
+            });
+
+            SpatialHash<Vector2> dense = new SpatialHash<>(RESOLUTION, n, WORLD_RADIUS);
+            long denseTime = timeNanos(() -> {
+                dense.rebuild(positions, pos -> pos);
+                dense.getChunkContents(0);
+            });
+
+            System.out.printf("%7d cells: skip-list %8.3f ms, dense %8.3f ms (%.1fx)%n",
+                    n, legacyTime / 1e6, denseTime / 1e6, (float) legacyTime / denseTime);
+        }
+
+        for (int n : new int[]{1_000, 10_000, 100_000}) {
+            List<Vector2> positions = new ArrayList<>(n);
+            for (int i = 0; i < n; i++)
+                positions.add(Geometry.randomPointInCircle(WORLD_RADIUS / 1.5f, random));
+            int nMoving = (int) (MOVING_FRACTION * n);
+            float step = 0.05f;
+
+            SpatialHash<Vector2> rebuilt = new SpatialHash<>(RESOLUTION, n, WORLD_RADIUS);
+            long rebuildTime = timeNanos(() -> {
+                for (int i = 0; i < nMoving; i++)
+                    positions.get(i).add(random.nextFloat() * step - step / 2, random.nextFloat() * step - step / 2);
+                rebuilt.rebuild(positions, pos -> pos);
+            });
+
+            SpatialHash<Vector2> incremental = new SpatialHash<>(RESOLUTION, n, WORLD_RADIUS);
+            int[] chunkIndices = incremental.rebuild(positions, pos -> pos);
+            long incrementalTime = timeNanos(() -> {
+                for (int i = 0; i < nMoving; i++)
+                    positions.get(i).add(random.nextFloat() * step - step / 2, random.nextFloat() * step - step / 2);
+                for (int i = 0; i < n; i++) {
+                    int idx = incremental.getChunkIndex(positions.get(i));
+                    if (idx != chunkIndices[i]) {
+                        incremental.move(positions.get(i), chunkIndices[i], idx);
+                        chunkIndices[i] = idx;
+                    }
+                }
+            });
+
+            System.out.printf("%7d cells (%.0f%% moving): rebuild %8.3f ms, incremental %8.3f ms (%.1fx)%n",
+                    n, 100 * MOVING_FRACTION, rebuildTime / 1e6, incrementalTime / 1e6,
+                    (float) rebuildTime / incrementalTime);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.protoevo.test;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.Box2D;
+import com.badlogic.gdx.physics.box2d.Fixture;
+import com.protoevo.biology.CauseOfDeath;
+import com.protoevo.env.Environment;
+import com.protoevo.physics.box2d.Box2DParticle;
+import com.protoevo.physics.box2d.Box2DPhysics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestBodyRecycling {
+
+    private Box2DPhysics physics;
+
+    @Before
+    public void createPhysics() {
+        Box2D.init();
+        physics = new Box2DPhysics();
+    }
+
+    @After
+    public void disposePhysics() {
+        physics.dispose();
+    }
+
+    @Test
+    public void testRecycledBodyIsResetForNewParticle() {
+        Box2DParticle dead = (Box2DParticle) physics.createNewParticle();
+        dead.setPos(new Vector2(5, 5));
+        dead.setVel(3, 1);
+        dead.setAngularVel(2);
+        dead.setCanInteractAtRange();
+        Body body = dead.getBody();
+        assertEquals(2, body.getFixtureList().size);
+
+        dead.kill(CauseOfDeath.MEAT_DECAY);
+        physics.step(1 / 60f);
+        assertEquals(1, physics.getNumRecycledBodies());
+        assertFalse(body.isActive());
+        assertNull(body.getUserData());
+
+        Box2DParticle born = (Box2DParticle) physics.createNewParticle();
+        born.setPos(new Vector2(-3, 2));
+        assertSame(body, born.getBody());
+        assertEquals(0, physics.getNumRecycledBodies());
+
+        assertTrue(body.isActive());
+        assertTrue(body.isAwake());
+        assertSame(born, body.getUserData());
+        assertEquals(-3, body.getPosition().x, 1e-5f);
+        assertEquals(2, body.getPosition().y, 1e-5f);
+        assertEquals(0, body.getLinearVelocity().len(), 0);
+        assertEquals(0, body.getAngularVelocity(), 0);
+
+        // only the dynamics fixture is kept, resized to the new particle
+        assertEquals(1, body.getFixtureList().size);
+        Fixture fixture = body.getFixtureList().first();
+        assertFalse(fixture.isSensor());
+        assertSame(born, fixture.getUserData());
+        float r = born.getRadius();
+        assertEquals(r, fixture.getShape().getRadius(), 1e-6f);
+        float expectedMass = fixture.getDensity() * (float) Math.PI * r * r;
+        assertEquals(expectedMass, body.getMass(), 1e-4f * expectedMass);
+    }
+
+    @Test
+    public void testBodiesAreDestroyedPastTheLimit() {
+        int maxRecycledBodies = Environment.settings().misc.maxRecycledPhysicsBodies.get();
+        Environment.settings().misc.maxRecycledPhysicsBodies.set(0);
+        try {
+            int bodies = physics.getWorld().getBodyCount();
+            Box2DParticle dead = (Box2DParticle) physics.createNewParticle();
+            dead.kill(CauseOfDeath.MEAT_DECAY);
+            physics.step(1 / 60f);
+            assertEquals(0, physics.getNumRecycledBodies());
+            assertEquals(bodies, physics.getWorld().getBodyCount());
+        } finally {
+            Environment.settings().misc.maxRecycledPhysicsBodies.set(maxRecycledBodies);
+        }
+    }
+}
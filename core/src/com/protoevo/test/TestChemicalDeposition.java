@@ -0,0 +1,196 @@
+package com.protoevo.test;
+
+import com.badlogic.gdx.math.Vector2;
+import com.protoevo.biology.cells.Cell;
+import com.protoevo.biology.cells.PlantCell;
+import com.protoevo.biology.cells.Protozoan;
+import com.protoevo.env.ChemicalSolution;
+import com.protoevo.env.Environment;
+import com.protoevo.maths.Geometry;
+import com.protoevo.utils.Colour;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Stress tests parallel chemical deposition for determinism. Run main() to compare
+ * its speed with depositing from each cell sequentially.
+ */
+public class TestChemicalDeposition {
+
+    private static final int CELLS = 512;
+    private static final float MAP_RADIUS = 30f;
+    private static final int N_CELLS = 20_000;
+    private static final float DELTA = 1 / 60f;
+
+    private static class StubPlant extends PlantCell {
+        private final long id;
+        private final Vector2 pos;
+        private final float radius;
+        private final Colour colour;
+
+        StubPlant(long id, Vector2 pos, float radius, Colour colour) {
+            this.id = id;
+            this.pos = pos;
+            this.radius = radius;
+            this.colour = colour;
+        }
+
+        @Override public long getId() { return id; }
+        @Override public Vector2 getPos() { return pos; }
+        @Override public float getRadius() { return radius; }
+        @Override public Colour getColour() { return colour; }
+        @Override public boolean isDead() { return false; }
+    }
+
+    private static class StubProtozoan extends Protozoan {
+        private final long id;
+        private final Vector2 pos;
+        private final float radius;
+
+        StubProtozoan(long id, Vector2 pos, float radius) {
+            this.id = id;
+            this.pos = pos;
+            this.radius = radius;
+        }
+
+        @Override public long getId() { return id; }
+        @Override public Vector2 getPos() { return pos; }
+        @Override public float getRadius() { return radius; }
+        @Override public boolean isDead() { return false; }
+    }
+
+    private static List<Cell> randomCells(long seed) {
+        Random random = new Random(seed);
+        List<Cell> cells = new ArrayList<>(N_CELLS);
+        for (long id = 0; id < N_CELLS; id++) {
+            Vector2 pos = Geometry.randomPointInCircle(0.9f * MAP_RADIUS, random);
+            // a few cells reach further than half a tile to exercise the sequential fallback
+            float radius = random.nextFloat() < 0.01f ? 3f : 0.1f + 0.5f * random.nextFloat();
+            if (random.nextBoolean())
+                cells.add(new StubProtozoan(id, pos, radius));
+            else
+                cells.add(new StubPlant(id, pos, radius, new Colour(
+                        random.nextFloat(), random.nextFloat(), random.nextFloat(), 1f)));
+        }
+        return cells;
+    }
+
+    private static ChemicalSolution newSolution() {
+        Environment.settings().misc.useCUDA.set(false);
+        Environment.settings().misc.useOpenGLComputeShader.set(false);
+        return new ChemicalSolution(null, CELLS, MAP_RADIUS);
+    }
+
+    private static int[] snapshot(ChemicalSolution solution) {
+        int[] bits = new int[CELLS * CELLS * 4];
+        Colour colour = new Colour();
+        for (int y = 0; y < CELLS; y++)
+            for (int x = 0; x < CELLS; x++) {
+                solution.getColour(x, y, colour);
+                int idx = 4 * (y * CELLS + x);
+                bits[idx] = Float.floatToIntBits(colour.r);
+                bits[idx + 1] = Float.floatToIntBits(colour.g);
+                bits[idx + 2] = Float.floatToIntBits(colour.b);
+                bits[idx + 3] = Float.floatToIntBits(colour.a);
+            }
+        return bits;
+    }
+
+    private static int[] simulate(List<Cell> cells, int steps) {
+        ChemicalSolution solution = newSolution();
+        for (int step = 0; step < steps; step++) {
+            solution.deposit(DELTA, cells);
+            solution.fullGridCPUDiffuse();
+        }
+        return snapshot(solution);
+    }
+
+    @Test
+    public void testRepeatedRunsAreBitIdentical() {
+        List<Cell> cells = randomCells(0);
+        int[] expected = simulate(cells, 5);
+        for (int run = 0; run < 3; run++)
+            assertArrayEquals(expected, simulate(cells, 5));
+    }
+
+    @Test
+    public void testIndependentOfIterationOrder() {
+        List<Cell> cells = randomCells(1);
+        int[] expected = simulate(cells, 5);
+
+        List<Cell> shuffled = new ArrayList<>(cells);
+        Collections.shuffle(shuffled, new Random(2));
+        assertArrayEquals(expected, simulate(shuffled, 5));
+    }
+
+    @Test
+    public void testDepositsEveryPlant() {
+        List<Cell> plants = new ArrayList<>();
+        for (Cell cell : randomCells(3))
+            if (cell.isEdible())
+                plants.add(cell);
+
+        ChemicalSolution solution = newSolution();
+        solution.deposit(DELTA, plants);
+        for (Cell plant : plants)
+            assertTrue(solution.getColour(plant.getPos().x, -plant.getPos().y).a == 1f);
+    }
+
+    @Test
+    public void testPublishesRegionsCoveringDeposits() {
+        List<Cell> plants = new ArrayList<>();
+        for (Cell cell : randomCells(4))
+            if (cell.isEdible() && plants.size() < 10)
+                plants.add(cell);
+
+        ChemicalSolution solution = newSolution();
+        solution.publishDirtyRegions();
+        List<ChemicalSolution.DirtyRegion> regions = new ArrayList<>();
+        solution.setUpdateChemicalCallback(regions::addAll);
+        solution.deposit(DELTA, plants);
+        solution.publishDirtyRegions();
+
+        for (int k = 1; k < regions.size(); k++)
+            assertTrue(regions.get(k - 1).y1 <= regions.get(k).y0);
+        for (Cell plant : plants) {
+            int x = (int) ((plant.getPos().x + MAP_RADIUS) / (2 * MAP_RADIUS) * CELLS);
+            int y = (int) ((-plant.getPos().y + MAP_RADIUS) / (2 * MAP_RADIUS) * CELLS);
+            assertTrue(regions.stream().anyMatch(
+                    r -> r.x0 <= x && x < r.x1 && r.y0 <= y && y < r.y1));
+        }
+
+        regions.clear();
+        solution.publishDirtyRegions();
+        assertTrue(regions.isEmpty());
+    }
+
+    private static long timeNanos(Runnable runnable, int repeats) {
+        runnable.run();
+        long start = System.nanoTime();
+        for (int i = 0; i < repeats; i++)
+            runnable.run();
+        return (System.nanoTime() - start) / repeats;
+    }
+
+    public static void main(String[] args) {
+        int repeats = 20;
+        List<Cell> cells = randomCells(0);
+
+        ChemicalSolution sequential = newSolution();
+        long sequentialTime = timeNanos(() -> {
+            for (Cell cell : cells)
+                sequential.cellChemicalIO(DELTA, cell);
+        }, repeats);
+
+        ChemicalSolution sharded = newSolution();
+        long shardedTime = timeNanos(() -> sharded.deposit(DELTA, cells), repeats);
+
+        System.out.printf("%d cells on %d threads: sequential %.3f ms, sharded %.3f ms (%.1fx)%n",
+                cells.size(), Runtime.getRuntime().availableProcessors(),
+                sequentialTime / 1e6, shardedTime / 1e6, (float) sequentialTime / shardedTime);
+    }
+}
@@ -0,0 +1,207 @@
+package com.protoevo.test;
+
+import com.badlogic.gdx.math.Vector2;
+import com.protoevo.env.ChemicalSolution;
+import com.protoevo.env.Environment;
+import com.protoevo.utils.Colour;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestChemicalDiffusion {
+
+    private static final int CELLS = 150;
+    private static final float MAP_RADIUS = 30f;
+    private static final int CHANNELS = 4;
+
+    @Before
+    public void disableGPU() {
+        Environment.settings().misc.useCUDA.set(false);
+        Environment.settings().misc.useOpenGLComputeShader.set(false);
+    }
+
+    /** Port of assets/kernels/diffusion.cu operating on the same byte buffer as the GPU paths. */
+    private static byte[] gpuReferenceStep(byte[] img, int width, int height, float worldRadius) {
+        byte[] result = new byte[img.length];
+        int alphaChannel = CHANNELS - 1;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                float cellSizeX = 2 * worldRadius / width;
+                float cellSizeY = 2 * worldRadius / height;
+                float worldX = -worldRadius + cellSizeX * x;
+                float worldY = -worldRadius + cellSizeY * y;
+                float dist2 = worldX * worldX + worldY * worldY;
+
+                float decay;
+                float voidP = 0.9f;
+                if (dist2 > voidP * voidP * worldRadius * worldRadius) {
+                    float dist = (float) Math.sqrt(dist2);
+                    decay = 0.9995f * (1f - (dist - voidP * worldRadius) / ((1f - voidP) * worldRadius));
+                    if (decay < 0)
+                        decay = 0;
+                } else {
+                    decay = 0.995f;
+                }
+
+                float finalAlpha = 0;
+                for (int i = -1; i <= 1; i++)
+                    for (int j = -1; j <= 1; j++) {
+                        int x_ = x + i, y_ = y + j;
+                        if (x_ < 0 || x_ >= width || y_ < 0 || y_ >= height)
+                            continue;
+                        finalAlpha += (img[(y_ * width + x_) * CHANNELS + alphaChannel] & 0xFF) / 255f;
+                    }
+                finalAlpha = decay * finalAlpha / 9f;
+                int out = (y * width + x) * CHANNELS;
+                result[out + alphaChannel] = (byte) (int) (255 * finalAlpha);
+
+                // The CUDA kernel falls through and divides by the tiny alpha here;
+                // the intended (and GLSL) behaviour is to clear the colour.
+                if (finalAlpha < 5f / 255f)
+                    continue;
+
+                for (int c = 0; c < CHANNELS - 1; c++) {
+                    float value = 0;
+                    for (int i = -1; i <= 1; i++)
+                        for (int j = -1; j <= 1; j++) {
+                            int x_ = x + i, y_ = y + j;
+                            if (x_ < 0 || x_ >= width || y_ < 0 || y_ >= height)
+                                continue;
+                            int idx = (y_ * width + x_) * CHANNELS;
+                            float alpha = decay * (img[idx + alphaChannel] & 0xFF) / 255f;
+                            value += (img[idx + c] & 0xFF) / 255f * alpha;
+                        }
+                    value = decay * 255 * (value / 9f) / finalAlpha;
+                    result[out + c] = (byte) (int) value;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static ChemicalSolution randomSolution(byte[] img, long seed) {
+        ChemicalSolution solution = new ChemicalSolution(null, CELLS, MAP_RADIUS);
+        new Random(seed).nextBytes(img);
+        for (int y = 0; y < CELLS; y++)
+            for (int x = 0; x < CELLS; x++) {
+                int idx = (y * CELLS + x) * CHANNELS;
+                solution.set(x, y,
+                        (img[idx] & 0xFF) / 255f, (img[idx + 1] & 0xFF) / 255f,
+                        (img[idx + 2] & 0xFF) / 255f, (img[idx + 3] & 0xFF) / 255f);
+            }
+        return solution;
+    }
+
+    private static void assertParity(ChemicalSolution solution, byte[] expected, float tolerance) {
+        Colour colour = new Colour();
+        for (int y = 0; y < CELLS; y++)
+            for (int x = 0; x < CELLS; x++) {
+                int idx = (y * CELLS + x) * CHANNELS;
+                solution.getColour(x, y, colour);
+                float expectedAlpha = (expected[idx + 3] & 0xFF) / 255f;
+                assertEquals(expectedAlpha, colour.a, tolerance);
+                // Either side of the cut-off the colour is either cleared or not
+                if (Math.abs(colour.a - 5f / 255f) < tolerance)
+                    continue;
+                assertEquals((expected[idx] & 0xFF) / 255f, colour.r, tolerance);
+                assertEquals((expected[idx + 1] & 0xFF) / 255f, colour.g, tolerance);
+                assertEquals((expected[idx + 2] & 0xFF) / 255f, colour.b, tolerance);
+            }
+    }
+
+    @Test
+    public void testSingleStepMatchesGPUKernel() {
+        byte[] img = new byte[CELLS * CELLS * CHANNELS];
+        ChemicalSolution solution = randomSolution(img, 0);
+        float worldRadius = Environment.settings().worldgen.voidStartDistance.get();
+
+        byte[] expected = gpuReferenceStep(img, CELLS, CELLS, worldRadius);
+        solution.fullGridCPUDiffuse();
+
+        // the GPU kernel truncates to bytes, so may be up to one level lower
+        assertParity(solution, expected, 1.01f / 255f);
+    }
+
+    @Test
+    public void testRepeatedStepsStayWithinQuantisationError() {
+        int steps = 20;
+        byte[] img = new byte[CELLS * CELLS * CHANNELS];
+        ChemicalSolution solution = randomSolution(img, 1);
+        float worldRadius = Environment.settings().worldgen.voidStartDistance.get();
+
+        for (int step = 0; step < steps; step++) {
+            img = gpuReferenceStep(img, CELLS, CELLS, worldRadius);
+            solution.fullGridCPUDiffuse();
+        }
+
+        assertParity(solution, img, (steps + 0.01f) / 255f);
+    }
+
+    @Test
+    public void testSparseBlobMatchesGPUKernel() {
+        int steps = 20;
+        byte[] img = new byte[CELLS * CELLS * CHANNELS];
+        ChemicalSolution solution = new ChemicalSolution(null, CELLS, MAP_RADIUS);
+        for (int y = 40; y < 50; y++)
+            for (int x = 40; x < 50; x++) {
+                int idx = (y * CELLS + x) * CHANNELS;
+                img[idx + 1] = (byte) 255;
+                img[idx + 3] = (byte) 255;
+                solution.set(x, y, 0f, 1f, 0f, 1f);
+            }
+        float worldRadius = Environment.settings().worldgen.voidStartDistance.get();
+
+        for (int step = 0; step < steps; step++) {
+            img = gpuReferenceStep(img, CELLS, CELLS, worldRadius);
+            solution.fullGridCPUDiffuse();
+        }
+
+        // Only the tile holding the blob and the neighbours it spread into are still diffused
+        assertTrue(solution.getActiveTileCount() <= 4);
+        assertParity(solution, img, (steps + 0.01f) / 255f);
+    }
+
+    @Test
+    public void testDeathDepositSurvivesConcurrentDiffusion() throws Exception {
+        Environment.settings().misc.useFullGridCPUDiffusion.set(true);
+        Environment.settings().env.chemicalDiffusionInterval.set(0f);
+        float delta = 1 / 60f;
+        ChemicalSolution solution = new ChemicalSolution(null, CELLS, MAP_RADIUS);
+        solution.set(10, 10, 0f, 1f, 0f, 1f);
+
+        // the order of a tick's stages: diffusion overlapping the cell updates, then births and deaths
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.submit(() -> solution.prepareUpdate(delta)).get();
+        executor.shutdown();
+        solution.publishPreparedDiffusion();
+        solution.depositCircle(new Vector2(0, 0), 0.5f, 1f, 0f, 0f, 1f);
+        solution.completeUpdate(delta, Collections.emptyList());
+
+        Colour colour = new Colour();
+        assertTrue(solution.getColour(10, 10, colour).a < 1f);
+        solution.getColour(CELLS / 2, CELLS / 2, colour);
+        assertEquals(1f, colour.r, 0f);
+        assertEquals(1f, colour.a, 0f);
+    }
+
+    @Test
+    public void testFaintTilesRetire() {
+        ChemicalSolution solution = new ChemicalSolution(null, CELLS, MAP_RADIUS);
+        solution.set(CELLS / 2, CELLS / 2, 1f, 0f, 0f, 6f / 255f);
+
+        solution.fullGridCPUDiffuse();
+
+        assertEquals(0, solution.getActiveTileCount());
+        Colour colour = new Colour();
+        for (int y = 0; y < CELLS; y++)
+            for (int x = 0; x < CELLS; x++)
+                assertEquals(0f, solution.getColour(x, y, colour).a, 0f);
+    }
+}
@@ -0,0 +1,58 @@
+package com.protoevo.test;
+
+import com.badlogic.gdx.physics.box2d.Box2D;
+import com.protoevo.env.Environment;
+import com.protoevo.settings.SimulationSettings;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Replays seeded worlds twice with deterministic updates and checks that both runs reach the
+ * same state on every tick. Several seeds are replayed, since some orderings only diverge
+ * between runs when two choices happen to tie.
+ */
+public class TestDeterminism {
+
+    private static final long[] SEEDS = {1, 2, 3};
+    private static final int THREADS = 4, POPULATION = 200, TICKS = 200;
+
+    private static Environment createEnvironment(long seed) {
+        SimulationSettings settings = SimulationSettings.createDefault();
+        settings.simulationSeed.set(seed);
+        settings.worldgen.seed.set(seed);
+        settings.worldgen.numInitialProtozoa.set(POPULATION);
+        settings.misc.useCUDA.set(false);
+        settings.misc.useOpenGLComputeShader.set(false);
+        settings.misc.simulationThreads.set(THREADS);
+        settings.misc.deterministic.set(true);
+
+        Environment environment = new Environment(settings);
+        environment.initialise();
+        return environment;
+    }
+
+    private static void assertReplaysMatch(long seed) {
+        Environment first = createEnvironment(seed), second = createEnvironment(seed);
+        try {
+            float delta = first.getSettings().simulationUpdateDelta.get();
+            assertEquals(first.getStateHash(), second.getStateHash());
+            for (int tick = 1; tick <= TICKS; tick++) {
+                first.update(delta);
+                second.update(delta);
+                assertEquals("State diverged on tick " + tick + " with seed " + seed,
+                        first.getStateHash(), second.getStateHash());
+            }
+        } finally {
+            first.dispose();
+            second.dispose();
+        }
+    }
+
+    @Test
+    public void testReplaysMatchEveryTick() {
+        Box2D.init();
+        for (long seed : SEEDS)
+            assertReplaysMatch(seed);
+    }
+}
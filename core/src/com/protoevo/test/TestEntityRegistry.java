@@ -0,0 +1,88 @@
+package com.protoevo.test;
+
+import com.protoevo.utils.EntityRegistry;
+import com.protoevo.utils.LongIntMap;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TestEntityRegistry {
+
+    @Test
+    public void testLookupAfterRemovals() {
+        EntityRegistry<String> registry = new EntityRegistry<>(2);
+        Map<Long, String> expected = new HashMap<>();
+        Random random = new Random(0);
+        for (int i = 0; i < 10000; i++) {
+            long id = random.nextInt(500);
+            if (random.nextBoolean()) {
+                registry.put(id, "entity" + i);
+                expected.put(id, "entity" + i);
+            } else {
+                assertEquals(expected.remove(id), registry.removeId(id));
+            }
+        }
+
+        assertEquals(expected.size(), registry.size());
+        for (long id = 0; id < 500; id++)
+            assertEquals(expected.get(id), registry.get(id));
+        assertEquals(new HashSet<>(expected.values()), new HashSet<>(registry));
+    }
+
+    @Test
+    public void testRemovedSlotsAreInvalidated() {
+        EntityRegistry<String> registry = new EntityRegistry<>();
+        int slot = registry.put(1, "a");
+        int generation = registry.generationOf(slot);
+        assertEquals("a", registry.get(slot, generation));
+
+        registry.removeId(1);
+        assertNull(registry.get(slot, generation));
+
+        // the freed slot is reused by the next entity, under a new generation
+        assertEquals(slot, registry.put(2, "b"));
+        assertNull(registry.get(slot, generation));
+        assertEquals("b", registry.get(slot, registry.generationOf(slot)));
+    }
+
+    @Test
+    public void testRemoveIfKeepsOrder() {
+        EntityRegistry<Integer> registry = new EntityRegistry<>();
+        for (int i = 0; i < 100; i++)
+            registry.put(i, i);
+
+        assertTrue(registry.removeIf(i -> i % 3 == 0));
+        List<Integer> remaining = new ArrayList<>(registry);
+        for (int i = 1; i < remaining.size(); i++)
+            assertTrue(remaining.get(i - 1) < remaining.get(i));
+        assertEquals(66, registry.size());
+        assertEquals(66, registry.parallelStream().count());
+        assertNull(registry.get(3));
+        assertEquals(Integer.valueOf(4), registry.get(4));
+    }
+
+    @Test
+    public void testLongIntMapWithCollidingKeys() {
+        LongIntMap map = new LongIntMap(4);
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 20000; i++) {
+            long key = random.nextInt(64) * (1L << 40);  // includes the key 0
+            if (random.nextInt(3) > 0) {
+                map.put(key, i);
+                expected.put(key, i);
+            } else {
+                Integer removed = expected.remove(key);
+                assertEquals(removed == null ? -1 : removed, map.remove(key, -1));
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (long k = 0; k < 64; k++) {
+            long key = k * (1L << 40);
+            assertEquals(expected.getOrDefault(key, -1).intValue(), map.get(key, -1));
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.protoevo.test;
+
+import com.protoevo.biology.evolution.*;
+import com.protoevo.biology.nn.NeuralNetwork;
+import com.protoevo.maths.RandomStreams;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestGeneExpressionBinding {
+
+    private static final int TICKS = 50;
+
+    public static class StubEvolvable implements Evolvable {
+        private GeneExpressionFunction fn;
+        float growth, control;
+        int count, optionalCount;
+        float health = 0.25f;
+
+        @EvolvableFloat(name = "Growth", min = 0, max = 2)
+        public void setGrowth(float growth) {
+            this.growth = growth;
+        }
+
+        @ControlVariable(name = "Control", min = 0, max = 2)
+        public void setControl(float control) {
+            this.control = control;
+        }
+
+        @EvolvableInteger(name = "Count", min = 0, max = 5)
+        public void setCount(int count) {
+            this.count = count;
+        }
+
+        @EvolvableInteger(name = "Optional Count", min = 0, max = 5, canDisable = true, disableValue = -1)
+        public void setOptionalCount(int optionalCount) {
+            this.optionalCount = optionalCount;
+        }
+
+        @GeneRegulator(name = "Health", min = 0, max = 2)
+        public float getHealth() {
+            health = (health * 1.7f) % 2f;
+            return health;
+        }
+
+        @Override
+        @EvolvableComponent
+        public void setGeneExpressionFunction(GeneExpressionFunction fn) {
+            this.fn = fn;
+        }
+
+        @Override
+        public GeneExpressionFunction getGeneExpressionFunction() {
+            return fn;
+        }
+    }
+
+    private static StubEvolvable copyOf(StubEvolvable original) {
+        StubEvolvable copy = new StubEvolvable();
+        GeneExpressionFunction fn = original.getGeneExpressionFunction().copy();
+        copy.setGeneExpressionFunction(fn);
+        fn.registerTargetEvolvable(copy.name(), copy);
+        return copy;
+    }
+
+    @Test
+    public void testBoundUpdateMatchesLegacy() {
+        StubEvolvable original = Evolvable.createNew(StubEvolvable.class);
+        StubEvolvable legacy = copyOf(original), bound = copyOf(original);
+
+        RandomStreams.beginTick(0, 0);
+        RandomStreams.enter(RandomStreams.GENE_EXPRESSION, 0);
+        for (int t = 0; t < TICKS; t++)
+            GeneExpressionBenchmark.legacyUpdate(legacy.getGeneExpressionFunction());
+
+        RandomStreams.enter(RandomStreams.GENE_EXPRESSION, 0);
+        for (int t = 0; t < TICKS; t++)
+            bound.getGeneExpressionFunction().update();
+
+        NeuralNetwork expected = legacy.getGeneExpressionFunction().getRegulatoryNetwork();
+        NeuralNetwork actual = bound.getGeneExpressionFunction().getRegulatoryNetwork();
+        for (int i = 0; i < expected.getSize(); i++)
+            assertEquals(Float.floatToIntBits(expected.getState(i)), Float.floatToIntBits(actual.getState(i)));
+
+        assertEquals(Float.floatToIntBits(legacy.growth), Float.floatToIntBits(bound.growth));
+        assertEquals(Float.floatToIntBits(legacy.control), Float.floatToIntBits(bound.control));
+        assertEquals(legacy.count, bound.count);
+        assertEquals(legacy.optionalCount, bound.optionalCount);
+        assertEquals(Float.floatToIntBits(legacy.health), Float.floatToIntBits(bound.health));
+    }
+}
@@ -0,0 +1,47 @@
+package com.protoevo.test;
+
+import com.protoevo.biology.nn.NetworkGenome;
+import com.protoevo.biology.nn.NeuralNetwork;
+import com.protoevo.env.Serialization;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class TestGenomeSharing {
+
+    private static final int GENERATIONS = 50;
+
+    @Test
+    public void testMutatingOffspringLeavesParentUnchanged() {
+        NetworkGenome parent = NeuralNetworkBenchmark.randomGenome(10, 10, 4, new Random(0));
+        String expected = parent.toString();
+        int expectedMutations = parent.getMutationCount();
+
+        NetworkGenome child = parent;
+        for (int i = 0; i < GENERATIONS; i++) {
+            NetworkGenome sibling = new NetworkGenome(parent);
+            sibling.mutate();
+            child = new NetworkGenome(child);
+            child.mutate();
+        }
+
+        assertEquals(expected, parent.toString());
+        assertEquals(expectedMutations, parent.getMutationCount());
+    }
+
+    @Test
+    public void testEqualTopologiesAreInterned() {
+        NetworkGenome genome = NeuralNetworkBenchmark.randomGenome(10, 10, 4, new Random(1));
+        assertSame(genome.phenotype().getTopology(), new NetworkGenome(genome).phenotype().getTopology());
+    }
+
+    @Test
+    public void testDeserialisedTopologiesAreInterned() {
+        NeuralNetwork network = NeuralNetworkBenchmark.randomGenome(10, 10, 4, new Random(2)).phenotype();
+        NeuralNetwork copy = Serialization.clone(network, NeuralNetwork.class);
+        assertSame(network.getTopology(), copy.getTopology());
+    }
+}
@@ -0,0 +1,134 @@
+package com.protoevo.test;
+
+import com.protoevo.biology.nn.NetworkBatch;
+import com.protoevo.biology.nn.NetworkGenome;
+import com.protoevo.biology.nn.NeuralNetwork;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestNetworkBatch {
+
+    private static final int TICKS = 10;
+
+    private static List<NetworkGenome> population(int size, int topologies, Random random) {
+        List<NetworkGenome> genomes = new ArrayList<>();
+        for (int i = 0; i < size; i++)
+            genomes.add(NeuralNetworkBenchmark.randomGenome(12, 8, 6, new Random(i % topologies), random));
+        return genomes;
+    }
+
+    private static void setInputs(NeuralNetwork network, Random random) {
+        for (int i = 0; i < 12; i++)
+            network.setInput("Sensor " + i, 2 * random.nextFloat() - 1);
+    }
+
+    @Test
+    public void testSharedTopologiesAreGrouped() {
+        List<NetworkGenome> genomes = population(4, 2, new Random(0));
+        NeuralNetwork.Topology a = genomes.get(0).phenotype().getTopology();
+        NeuralNetwork.Topology b = genomes.get(2).phenotype().getTopology();
+        NeuralNetwork.Topology c = genomes.get(1).phenotype().getTopology();
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertTrue(!a.equals(c));
+    }
+
+    private static void assertBitIdentical(List<NeuralNetwork> expected, List<NeuralNetwork> actual) {
+        for (int i = 0; i < expected.size(); i++) {
+            for (int n = 0; n < expected.get(i).getSize(); n++) {
+                assertEquals(Float.floatToIntBits(expected.get(i).getState(n)),
+                        Float.floatToIntBits(actual.get(i).getState(n)));
+                assertEquals(Float.floatToIntBits(expected.get(i).getLastState(n)),
+                        Float.floatToIntBits(actual.get(i).getLastState(n)));
+            }
+        }
+    }
+
+    @Test
+    public void testBatchedTickMatchesSequential() {
+        // enough networks per topology to span several chunks, plus a partial chunk
+        List<NetworkGenome> genomes = population(3 * NetworkBatch.CHUNK_SIZE + 7, 3, new Random(1));
+        List<NeuralNetwork> sequential = new ArrayList<>(), batched = new ArrayList<>();
+        for (NetworkGenome genome : genomes) {
+            sequential.add(genome.phenotype());
+            batched.add(genome.phenotype());
+        }
+
+        NetworkBatch batch = new NetworkBatch();
+        long expectedTicks = 0;
+        for (int t = 0; t < TICKS; t++) {
+            // on odd ticks only some of the networks are due
+            List<NeuralNetwork> dueSequential = new ArrayList<>(), dueBatched = new ArrayList<>();
+            Random inputsA = new Random(t), inputsB = new Random(t);
+            for (int i = 0; i < genomes.size(); i++) {
+                if (t % 2 == 1 && i % 3 != 0)
+                    continue;
+                setInputs(sequential.get(i), inputsA);
+                setInputs(batched.get(i), inputsB);
+                dueSequential.add(sequential.get(i));
+                dueBatched.add(batched.get(i));
+            }
+            dueSequential.forEach(NeuralNetwork::tick);
+            batch.tick(dueBatched);
+            expectedTicks += dueBatched.size();
+        }
+        assertEquals(expectedTicks, batch.getTickCount());
+        assertEquals(genomes.size(), batch.size());
+        assertBitIdentical(sequential, batched);
+    }
+
+    @Test
+    public void testRemovedColumnsAreReused() {
+        List<NetworkGenome> genomes = population(NetworkBatch.CHUNK_SIZE, 1, new Random(2));
+        List<NeuralNetwork> sequential = new ArrayList<>(), batched = new ArrayList<>();
+        for (NetworkGenome genome : genomes) {
+            sequential.add(genome.phenotype());
+            batched.add(genome.phenotype());
+        }
+
+        NetworkBatch batch = new NetworkBatch();
+        batch.tick(batched);
+        sequential.forEach(NeuralNetwork::tick);
+
+        // replace every other network with a fresh one of the same topology
+        for (int i = 0; i < genomes.size(); i += 2) {
+            batch.remove(batched.get(i));
+            sequential.set(i, genomes.get(i).phenotype());
+            batched.set(i, genomes.get(i).phenotype());
+        }
+        assertEquals(genomes.size() / 2, batch.size());
+
+        for (int t = 0; t < TICKS; t++) {
+            Random inputsA = new Random(t), inputsB = new Random(t);
+            for (int i = 0; i < genomes.size(); i++) {
+                setInputs(sequential.get(i), inputsA);
+                setInputs(batched.get(i), inputsB);
+            }
+            sequential.forEach(NeuralNetwork::tick);
+            batch.tick(batched);
+        }
+        assertEquals(genomes.size(), batch.size());
+        assertBitIdentical(sequential, batched);
+    }
+
+    @Test
+    public void testStaleNetworksAreEvicted() {
+        List<NetworkGenome> genomes = population(8, 2, new Random(3));
+        List<NeuralNetwork> networks = new ArrayList<>();
+        for (NetworkGenome genome : genomes)
+            networks.add(genome.phenotype());
+
+        NetworkBatch batch = new NetworkBatch();
+        batch.tick(networks);
+        List<NeuralNetwork> survivors = networks.subList(0, 3);
+        for (int t = 0; t < 2 * NetworkBatch.EVICT_AFTER_TICKS; t++)
+            batch.tick(survivors);
+        assertEquals(survivors.size(), batch.size());
+    }
+}
@@ -0,0 +1,74 @@
+package com.protoevo.test;
+
+import com.protoevo.maths.RandomStream;
+import com.protoevo.maths.RandomStreams;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class TestRandomStreams {
+
+    private static long[] draw(long phase, long id) {
+        RandomStreams.enter(phase, id);
+        long[] values = new long[8];
+        for (int i = 0; i < values.length; i++)
+            values[i] = RandomStreams.randomLong();
+        return values;
+    }
+
+    @Test
+    public void testEnteredStreamDependsOnlyOnKey() throws Exception {
+        RandomStreams.beginTick(42, 7);
+        long[] expected = draw(RandomStreams.CELL_UPDATE, 123);
+
+        // drawing for another entity first, or on another thread, must not change the numbers
+        draw(RandomStreams.CELL_UPDATE, 456);
+        assertArrayEquals(expected, draw(RandomStreams.CELL_UPDATE, 123));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<long[]> other = executor.submit(() -> draw(RandomStreams.CELL_UPDATE, 123));
+        assertArrayEquals(expected, other.get());
+        executor.shutdown();
+    }
+
+    @Test
+    public void testStreamsDifferByKey() {
+        RandomStreams.beginTick(42, 7);
+        long first = draw(RandomStreams.CELL_UPDATE, 123)[0];
+        assertNotEquals(first, draw(RandomStreams.CELL_UPDATE, 124)[0]);
+        assertNotEquals(first, draw(RandomStreams.BIRTHS, 123)[0]);
+
+        RandomStreams.beginTick(42, 8);
+        assertNotEquals(first, draw(RandomStreams.CELL_UPDATE, 123)[0]);
+
+        RandomStreams.beginTick(43, 7);
+        assertNotEquals(first, draw(RandomStreams.CELL_UPDATE, 123)[0]);
+    }
+
+    @Test
+    public void testRanges() {
+        RandomStream stream = new RandomStream(1);
+        for (int i = 0; i < 10000; i++) {
+            float f = stream.nextFloat();
+            assertTrue(f >= 0 && f < 1);
+            double d = stream.nextDouble();
+            assertTrue(d >= 0 && d < 1);
+            int n = stream.nextInt(5);
+            assertTrue(n >= 0 && n < 5);
+        }
+        RandomStreams.beginTick(1, 1);
+        RandomStreams.enter(RandomStreams.CELL_UPDATE, 1);
+        boolean sawStart = false, sawEnd = false;
+        for (int i = 0; i < 1000; i++) {
+            int n = RandomStreams.random(2, 4);
+            assertTrue(n >= 2 && n <= 4);
+            sawStart |= n == 2;
+            sawEnd |= n == 4;
+        }
+        assertTrue(sawStart && sawEnd);
+    }
+}
@@ -0,0 +1,134 @@
+package com.protoevo.test;
+
+import com.badlogic.gdx.math.Vector2;
+import com.protoevo.env.Rock;
+import com.protoevo.env.RockBVH;
+import com.protoevo.maths.Shape;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the queries of {@link RockBVH} against brute-force tests over every {@link Rock}.
+ */
+public class TestRockBVH {
+
+    private static final int ROCKS = 300, TRIALS = 5000;
+    private static final float WORLD_RADIUS = 100f, ROCK_SIZE = 8f;
+
+    private Random random;
+    private List<Rock> rocks;
+    private RockBVH bvh;
+
+    private Vector2 randomPoint() {
+        return new Vector2((2 * random.nextFloat() - 1) * WORLD_RADIUS,
+                (2 * random.nextFloat() - 1) * WORLD_RADIUS);
+    }
+
+    @Before
+    public void createRocks() {
+        random = new Random(0);
+        rocks = new ArrayList<>();
+        for (int i = 0; i < ROCKS; i++) {
+            Vector2 centre = randomPoint();
+            Vector2[] points = new Vector2[3];
+            for (int p = 0; p < 3; p++)
+                points[p] = centre.cpy().add(new Vector2(random.nextFloat() * ROCK_SIZE, 0)
+                        .rotateRad(random.nextFloat() * 2 * (float) Math.PI));
+            Rock rock = new Rock(points[0], points[1], points[2]);
+            for (int e = 0; e < 3; e++)
+                if (random.nextFloat() < 0.2f)
+                    rock.setEdgeAttached(e);
+            rocks.add(rock);
+        }
+        bvh = new RockBVH(rocks);
+    }
+
+    @Test
+    public void testEmpty() {
+        RockBVH empty = new RockBVH(new ArrayList<>());
+        assertEquals(RockBVH.NO_HIT, empty.findContaining(0, 0));
+        assertEquals(RockBVH.NO_HIT, empty.findOverlapping(0, 0, 1));
+        assertEquals(RockBVH.NO_HIT, empty.raycast(0, 0, 1, 1, new float[1]));
+    }
+
+    @Test
+    public void testFindContaining() {
+        int hits = 0;
+        for (int trial = 0; trial < TRIALS; trial++) {
+            Vector2 point = randomPoint();
+            boolean expected = false;
+            for (Rock rock : rocks)
+                expected |= rock.pointInside(point);
+
+            int idx = bvh.findContaining(point.x, point.y);
+            assertEquals(expected, idx != RockBVH.NO_HIT);
+            if (idx != RockBVH.NO_HIT) {
+                assertTrue(bvh.getRock(idx).pointInside(point));
+                hits++;
+            }
+        }
+        assertTrue(hits > 0);
+    }
+
+    @Test
+    public void testFindOverlapping() {
+        int hits = 0;
+        for (int trial = 0; trial < TRIALS; trial++) {
+            Vector2 point = randomPoint();
+            float r = random.nextFloat() * ROCK_SIZE;
+            boolean expected = false;
+            for (Rock rock : rocks)
+                expected |= rock.intersectsWith(point, r) || rock.pointInside(point);
+
+            int idx = bvh.findOverlapping(point.x, point.y, r);
+            assertEquals(expected, idx != RockBVH.NO_HIT);
+            if (idx != RockBVH.NO_HIT) {
+                Rock rock = bvh.getRock(idx);
+                assertTrue(rock.intersectsWith(point, r) || rock.pointInside(point));
+                hits++;
+            }
+        }
+        assertTrue(hits > 0);
+    }
+
+    @Test
+    public void testRaycast() {
+        Shape.Intersection[] intersections = {new Shape.Intersection(), new Shape.Intersection()};
+        float[] hitT = new float[1];
+        int hits = 0;
+        for (int trial = 0; trial < TRIALS; trial++) {
+            Vector2 start = randomPoint();
+            Vector2 end = start.cpy().add(new Vector2(random.nextFloat() * WORLD_RADIUS / 2, 0)
+                    .rotateRad(random.nextFloat() * 2 * (float) Math.PI));
+            Vector2[] ray = {start, end};
+
+            float expectedDist = Float.MAX_VALUE;
+            for (Rock rock : rocks) {
+                intersections[0].didCollide = false;
+                intersections[1].didCollide = false;
+                if (!rock.rayCollisions(ray, intersections))
+                    continue;
+                for (Shape.Intersection intersection : intersections)
+                    if (intersection.didCollide)
+                        expectedDist = Math.min(expectedDist, intersection.point.dst(start));
+            }
+
+            int idx = bvh.raycast(start.x, start.y, end.x, end.y, hitT);
+            assertEquals(expectedDist < Float.MAX_VALUE, idx != RockBVH.NO_HIT);
+            if (idx != RockBVH.NO_HIT) {
+                // both solve the edge intersections in single precision, so allow for rounding
+                // on rays that cross edges at shallow angles
+                float rayLength = start.dst(end);
+                assertEquals(expectedDist, rayLength * hitT[0], 1e-2f * rayLength);
+                hits++;
+            }
+        }
+        assertTrue(hits > 0);
+    }
+}
@@ -0,0 +1,85 @@
+package com.protoevo.test;
+
+import com.protoevo.core.SimulationContext;
+import com.protoevo.env.TickPipeline;
+import com.protoevo.maths.RandomStreams;
+import com.protoevo.settings.SimulationSettings;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class TestSimulationContext {
+
+    @Test
+    public void testBindAndRestore() {
+        SimulationContext a = new SimulationContext(SimulationSettings.createDefault());
+        SimulationContext b = new SimulationContext(SimulationSettings.createDefault());
+
+        SimulationContext beforeA = a.bind();
+        assertSame(a, SimulationContext.current());
+        SimulationContext beforeB = b.bind();
+        assertSame(a, beforeB);
+        assertSame(b, SimulationContext.current());
+        assertSame(b.getSettings(), SimulationContext.current().getSettings());
+
+        SimulationContext.restore(beforeB);
+        assertSame(a, SimulationContext.current());
+        SimulationContext.restore(beforeA);
+    }
+
+    @Test
+    public void testPipelineThreadsCarryContext() {
+        SimulationContext a = new SimulationContext(SimulationSettings.createDefault());
+        SimulationContext b = new SimulationContext(SimulationSettings.createDefault());
+        Set<SimulationContext> onPool = Collections.synchronizedSet(new HashSet<>());
+        Set<SimulationContext> onCaller = Collections.synchronizedSet(new HashSet<>());
+
+        TickPipeline pipeline = new TickPipeline(2, a);
+        pipeline.add("Parallel", delta -> IntStream.range(0, 1000).parallel()
+                .forEach(i -> onPool.add(SimulationContext.current())))
+                .addOnCallingThread("Calling Thread", delta -> {
+                    onCaller.add(SimulationContext.current());
+                    pipeline.execute(() -> IntStream.range(0, 1000).parallel()
+                            .forEach(i -> onPool.add(SimulationContext.current())));
+                });
+
+        SimulationContext previous = b.bind();
+        try {
+            pipeline.run(0);
+        } finally {
+            SimulationContext.restore(previous);
+            pipeline.shutdown();
+        }
+        assertEquals(Collections.singleton(a), onPool);
+        assertEquals(Collections.singleton(b), onCaller);
+    }
+
+    @Test
+    public void testContextsKeyTheirOwnStreams() {
+        SimulationContext a = new SimulationContext(SimulationSettings.createDefault());
+        SimulationContext b = new SimulationContext(SimulationSettings.createDefault());
+
+        SimulationContext previous = a.bind();
+        try {
+            RandomStreams.beginTick(1, 1);
+            long expected = RandomStreams.enter(RandomStreams.CELL_UPDATE, 7).nextLong();
+
+            // another simulation starting a tick must not change the streams of the first
+            b.bind();
+            RandomStreams.beginTick(2, 5);
+            assertNotEquals(expected, RandomStreams.enter(RandomStreams.CELL_UPDATE, 7).nextLong());
+
+            a.bind();
+            assertEquals(expected, RandomStreams.enter(RandomStreams.CELL_UPDATE, 7).nextLong());
+            assertEquals(0, a.nextInnovation());
+            assertEquals(0, b.nextInnovation());
+        } finally {
+            SimulationContext.restore(previous);
+        }
+    }
+}
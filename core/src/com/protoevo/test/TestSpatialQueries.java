@@ -0,0 +1,158 @@
+package com.protoevo.test;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Box2D;
+import com.protoevo.biology.cells.Cell;
+import com.protoevo.env.Environment;
+import com.protoevo.env.Rock;
+import com.protoevo.maths.Geometry;
+import com.protoevo.maths.Shape;
+import com.protoevo.settings.SimulationSettings;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the chunked and BVH-backed queries of {@link Environment} against brute-force scans
+ * over every cell and rock.
+ */
+public class TestSpatialQueries {
+
+    private static final int TRIALS = 500;
+
+    private static Environment environment;
+    private static float worldRadius;
+
+    @BeforeClass
+    public static void createEnvironment() {
+        Box2D.init();
+        SimulationSettings settings = SimulationSettings.createDefault();
+        settings.simulationSeed.set(1L);
+        settings.worldgen.seed.set(1L);
+        settings.misc.useCUDA.set(false);
+        settings.misc.useOpenGLComputeShader.set(false);
+        environment = new Environment(settings);
+        environment.initialise();
+        worldRadius = settings.worldgen.radius.get();
+    }
+
+    @AfterClass
+    public static void disposeEnvironment() {
+        environment.dispose();
+    }
+
+    private static Vector2 randomPoint(Random random) {
+        // include points beyond the edge of the world, which clamp to the border chunks
+        float extent = 1.2f * worldRadius;
+        return new Vector2((2 * random.nextFloat() - 1) * extent, (2 * random.nextFloat() - 1) * extent);
+    }
+
+    @Test
+    public void testQueryRadius() {
+        Random random = new Random(0);
+        for (int trial = 0; trial < TRIALS; trial++) {
+            Vector2 pos = randomPoint(random);
+            float r = random.nextFloat() * worldRadius / 4;
+
+            Set<Cell> expected = new HashSet<>();
+            for (Cell cell : environment.getCells())
+                if (Geometry.doCirclesCollide(pos, r, cell.getPos(), cell.getRadius()))
+                    expected.add(cell);
+
+            assertEquals(expected, new HashSet<>(environment.queryRadius(pos, r)));
+        }
+    }
+
+    @Test
+    public void testQueryKNearest() {
+        Random random = new Random(1);
+        int nCells = environment.getCells().size();
+        float[] maxDistances = {worldRadius / 10, worldRadius, Float.MAX_VALUE, Float.POSITIVE_INFINITY};
+        int[] ks = {1, 5, 50, nCells + 10};
+        for (int trial = 0; trial < TRIALS; trial++) {
+            Vector2 pos = randomPoint(random);
+            float maxDistance = maxDistances[trial % maxDistances.length];
+            int k = ks[(trial / maxDistances.length) % ks.length];
+
+            List<Float> expected = new ArrayList<>();
+            for (Cell cell : environment.getCells()) {
+                float dist2 = cell.getPos().dst2(pos);
+                if (dist2 <= maxDistance * maxDistance)
+                    expected.add(dist2);
+            }
+            Collections.sort(expected);
+            if (expected.size() > k)
+                expected = expected.subList(0, k);
+
+            List<Cell> nearest = environment.queryKNearest(pos, k, maxDistance);
+            assertEquals(expected.size(), nearest.size());
+            for (int i = 0; i < nearest.size(); i++)
+                assertEquals(expected.get(i), nearest.get(i).getPos().dst2(pos), 1e-6f);
+        }
+    }
+
+    @Test
+    public void testAnyOverlap() {
+        Random random = new Random(2);
+        int overlaps = 0;
+        for (int trial = 0; trial < TRIALS; trial++) {
+            Vector2 pos = randomPoint(random);
+            float r = random.nextFloat() * worldRadius / 20;
+
+            boolean expected = false;
+            for (Rock rock : environment.getRocks())
+                expected |= rock.intersectsWith(pos, r) || rock.pointInside(pos);
+            for (Cell cell : environment.getCells())
+                expected |= Geometry.doCirclesCollide(pos, r, cell.getPos(), cell.getRadius());
+
+            assertEquals(expected, environment.anyOverlap(pos, r));
+            if (expected)
+                overlaps++;
+        }
+        assertTrue(overlaps > 0);
+    }
+
+    @Test
+    public void testRaycast() {
+        Random random = new Random(3);
+        Shape.Intersection[] intersections = {new Shape.Intersection(), new Shape.Intersection()};
+        Shape.Intersection hit = new Shape.Intersection();
+        int hits = 0;
+        for (int trial = 0; trial < TRIALS; trial++) {
+            Vector2 start = randomPoint(random);
+            Vector2 end = start.cpy().add(new Vector2(worldRadius / 5, 0).rotateRad(
+                    random.nextFloat() * 2 * (float) Math.PI));
+            Vector2[] ray = {start, end};
+
+            List<Shape> shapes = new ArrayList<>(environment.getRocks());
+            for (Cell cell : environment.getCells())
+                shapes.add(cell.getParticle());
+
+            float expectedDist2 = Float.MAX_VALUE;
+            for (Shape shape : shapes) {
+                intersections[0].didCollide = false;
+                intersections[1].didCollide = false;
+                if (!shape.rayCollisions(ray, intersections))
+                    continue;
+                for (Shape.Intersection intersection : intersections)
+                    if (intersection.didCollide)
+                        expectedDist2 = Math.min(expectedDist2, intersection.point.dst2(start));
+            }
+
+            Optional<Shape> shape = environment.raycast(start, end, hit);
+            assertEquals(expectedDist2 < Float.MAX_VALUE, shape.isPresent());
+            assertEquals(shape.isPresent(), hit.didCollide);
+            if (shape.isPresent()) {
+                // the rock BVH and Rock.rayCollisions round differently on shallow crossings
+                float tolerance = 1e-2f * start.dst(end);
+                assertEquals((float) Math.sqrt(expectedDist2), hit.point.dst(start), tolerance);
+                hits++;
+            }
+        }
+        assertTrue(hits > 0);
+    }
+}
@@ -0,0 +1,85 @@
+package com.protoevo.test;
+
+import com.protoevo.env.TickPipeline;
+import com.protoevo.env.TickProfiler;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TestTickPipeline {
+
+    @Test
+    public void testStagesRunInOrder() {
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        TickPipeline pipeline = new TickPipeline(2)
+                .add("A", delta -> order.add("A"))
+                .addOnCallingThread("B", delta -> order.add("B"))
+                .add("C", delta -> order.add("C"))
+                .addAlongside("D", delta -> order.add("D"), () -> false);
+        pipeline.run(1f);
+        pipeline.shutdown();
+        assertEquals(Arrays.asList("A", "B", "C", "D"), order);
+    }
+
+    @Test
+    public void testAlongsideStageOverlaps() {
+        // each stage waits for the other, so the tick can only finish if they overlap
+        CountDownLatch first = new CountDownLatch(1), second = new CountDownLatch(1);
+        boolean[] overlapped = new boolean[2];
+        TickPipeline pipeline = new TickPipeline(2)
+                .add("A", delta -> {
+                    first.countDown();
+                    overlapped[0] = await(second);
+                })
+                .addAlongside("B", delta -> {
+                    second.countDown();
+                    overlapped[1] = await(first);
+                });
+        pipeline.run(1f);
+        pipeline.shutdown();
+        assertTrue(overlapped[0] && overlapped[1]);
+    }
+
+    @Test
+    public void testCallingThreadStage() {
+        Thread[] thread = new Thread[2];
+        TickPipeline pipeline = new TickPipeline(1)
+                .add("Pool", delta -> thread[0] = Thread.currentThread())
+                .addOnCallingThread("Caller", delta -> thread[1] = Thread.currentThread());
+        pipeline.run(1f);
+        pipeline.shutdown();
+        assertNotSame(Thread.currentThread(), thread[0]);
+        assertSame(Thread.currentThread(), thread[1]);
+    }
+
+    @Test
+    public void testStagesAreProfiled() {
+        TickPipeline pipeline = new TickPipeline(1)
+                .add("A", delta -> {})
+                .counting(() -> 7);
+        for (int i = 0; i < 10; i++)
+            pipeline.run(1f);
+        pipeline.shutdown();
+        TickProfiler profiler = pipeline.getProfiler();
+        assertEquals(10, profiler.getStage("A").getNumSamples());
+        assertEquals(10, profiler.getStage("Tick").getNumSamples());
+        assertEquals(7, profiler.getStage("A").getLastEntityCount());
+        assertTrue(profiler.getStage("A").getTimePercentile(0.99)
+                >= profiler.getStage("A").getTimePercentile(0.5));
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+}
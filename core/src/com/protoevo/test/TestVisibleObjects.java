@@ -0,0 +1,111 @@
+package com.protoevo.test;
+
+import com.badlogic.gdx.math.Vector2;
+import com.protoevo.biology.nodes.VisibleObjects;
+import com.protoevo.maths.Shape;
+import com.protoevo.physics.Coloured;
+import com.protoevo.utils.Colour;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestVisibleObjects {
+
+    private static final int TRIALS = 2000, RAYS = 8;
+
+    private static class Circle implements Shape, Coloured {
+        private final Vector2 pos;
+        private final float radius;
+        private final Vector2[] boundingBox;
+
+        Circle(float x, float y, float radius) {
+            pos = new Vector2(x, y);
+            this.radius = radius;
+            boundingBox = new Vector2[]{new Vector2(x - radius, y - radius), new Vector2(x + radius, y + radius)};
+        }
+
+        @Override
+        public boolean pointInside(Vector2 p) {
+            return p.dst2(pos) <= radius * radius;
+        }
+
+        @Override
+        public boolean rayCollisions(Vector2[] ray, Intersection[] intersections) {
+            float dx = ray[1].x - ray[0].x, dy = ray[1].y - ray[0].y;
+            float fx = ray[0].x - pos.x, fy = ray[0].y - pos.y;
+            float a = dx * dx + dy * dy;
+            float b = 2 * (fx * dx + fy * dy);
+            float c = fx * fx + fy * fy - radius * radius;
+            float d = b * b - 4 * a * c;
+            if (d < 0)
+                return false;
+            float t1 = (float) ((-b - Math.sqrt(d)) / (2 * a));
+            float t2 = (float) ((-b + Math.sqrt(d)) / (2 * a));
+            return (0 <= t1 && t1 <= 1) || (0 <= t2 && t2 <= 1);
+        }
+
+        @Override
+        public Vector2[] getBoundingBox() {
+            return boundingBox;
+        }
+
+        @Override
+        public Vector2 getPos() {
+            return pos;
+        }
+
+        @Override
+        public Colour getColour() {
+            return null;
+        }
+    }
+
+    @Test
+    public void testBinnedRaysIncludeEveryHit() {
+        Random random = new Random(0);
+        Vector2 origin = new Vector2();
+        float[] angles = new float[RAYS], lengths = new float[RAYS];
+        Vector2[] ray = {origin, new Vector2()};
+        int culled = 0;
+
+        for (int trial = 0; trial < TRIALS; trial++) {
+            List<Object> queue = new ArrayList<>();
+            queue.add(new Object());  // only coloured shapes are visible
+            for (int i = 0; i < 10; i++)
+                queue.add(new Circle(random.nextFloat() * 4 - 2, random.nextFloat() * 4 - 2,
+                        0.05f + random.nextFloat() * 0.5f));
+            VisibleObjects visible = new VisibleObjects();
+            visible.collect(queue);
+            assertEquals(10, visible.size());
+
+            origin.set(random.nextFloat() - 0.5f, random.nextFloat() - 0.5f);
+            float direction = (float) (random.nextFloat() * 2 * Math.PI);
+            for (int k = 0; k < RAYS; k++) {
+                angles[k] = (float) Math.atan2(
+                        Math.sin(direction + 0.2 * k), Math.cos(direction + 0.2 * k));
+                lengths[k] = 0.5f + random.nextFloat() * 2;
+            }
+
+            for (int i = 0; i < visible.size(); i++) {
+                int mask = visible.binRays(i, origin, angles, lengths, RAYS);
+                for (int k = 0; k < RAYS; k++) {
+                    ray[1].set(origin.x + lengths[k] * (float) Math.cos(angles[k]),
+                            origin.y + lengths[k] * (float) Math.sin(angles[k]));
+                    boolean hit = visible.getShape(i).rayCollisions(ray, null);
+                    boolean binned = (mask & (1 << k)) != 0;
+                    if (hit)
+                        assertTrue(binned);
+                    else if (!binned)
+                        culled++;
+                }
+            }
+        }
+        // most rays miss most objects, and should not be cast against them
+        assertTrue(culled > TRIALS * 10 * RAYS / 2);
+    }
+}
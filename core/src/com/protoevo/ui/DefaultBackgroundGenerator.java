@@ -21,8 +21,8 @@ public class DefaultBackgroundGenerator extends Game {
     public void create() {
         OrthographicCamera camera = new OrthographicCamera();
         camera.setToOrtho(
-                false, Environment.settings.worldgen.radius.get(),
-                Environment.settings.worldgen.radius.get());
+                false, Environment.settings().worldgen.radius.get(),
+                Environment.settings().worldgen.radius.get());
         camera.position.set(0, 0, 0);
         camera.zoom = 2f;
 
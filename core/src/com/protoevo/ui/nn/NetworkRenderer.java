@@ -197,7 +197,7 @@ public class NetworkRenderer extends InputAdapter implements Renderer {
                                              float boxWidth,
                                              float boxHeight) {
         List<Neuron> neurons = nn.getNeurons();
-        int networkDepth = nn.calculateDepth();
+        int networkDepth = nn.getDepth();
 
         int[] depthWidthValues = new int[networkDepth + 1];
         Arrays.fill(depthWidthValues, 0);
@@ -1,6 +1,7 @@
 package com.protoevo.ui.rendering;
 
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.OrthographicCamera;
 import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.graphics.Texture;
@@ -10,6 +11,12 @@ import com.protoevo.env.ChemicalSolution;
 import com.protoevo.env.Environment;
 import com.protoevo.utils.DebugMode;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 public class ChemicalsRenderer implements Renderer {
     private Environment environment;
     private final ChemicalSolution chemicalSolution;
@@ -18,6 +25,10 @@ public class ChemicalsRenderer implements Renderer {
     private final Texture chemicalTexture;
     private final Pixmap chemicalPixmap;
     private final OrthographicCamera camera;
+    // Published by the simulation thread, uploaded on the render thread. Regions are keyed by
+    // their first row and merged with the region already pending for the same band of rows, so
+    // at most one per row of tiles is kept however long the screen goes without rendering.
+    private final Map<Integer, ChemicalSolution.DirtyRegion> dirtyRegions = new HashMap<>();
 
     public ChemicalsRenderer(OrthographicCamera camera, Environment environment) {
         this.environment = environment;
@@ -32,9 +43,8 @@ public class ChemicalsRenderer implements Renderer {
 
         chemicalTexture = new Texture(chemicalPixmap);
 
-        chemicalSolution.setUpdateChemicalCallback((x, y, c) -> {
-            chemicalPixmap.drawPixel(x, y, c.getRGBA8888());
-        });
+        dirtyRegions.put(0, new ChemicalSolution.DirtyRegion(0, 0, w, h));
+        chemicalSolution.setUpdateChemicalCallback(this::markDirty);
 
         batch = new SpriteBatch();
         shader = new ShaderProgram(
@@ -51,7 +61,7 @@ public class ChemicalsRenderer implements Renderer {
         if (chemicalSolution == null || chemicalTexture == null)
             return;
 
-        chemicalTexture.draw(chemicalPixmap, 0, 0);
+        uploadDirtyRegions();
 
         batch.enableBlending();
         batch.setProjectionMatrix(camera.combined);
@@ -73,6 +83,44 @@ public class ChemicalsRenderer implements Renderer {
         batch.end();
     }
 
+    private void markDirty(List<ChemicalSolution.DirtyRegion> regions) {
+        synchronized (dirtyRegions) {
+            for (ChemicalSolution.DirtyRegion region : regions)
+                dirtyRegions.merge(region.y0, region, ChemicalsRenderer::union);
+        }
+    }
+
+    private static ChemicalSolution.DirtyRegion union(ChemicalSolution.DirtyRegion a,
+                                                      ChemicalSolution.DirtyRegion b) {
+        return new ChemicalSolution.DirtyRegion(
+                Math.min(a.x0, b.x0), Math.min(a.y0, b.y0),
+                Math.max(a.x1, b.x1), Math.max(a.y1, b.y1));
+    }
+
+    private void uploadDirtyRegions() {
+        List<ChemicalSolution.DirtyRegion> regions;
+        synchronized (dirtyRegions) {
+            if (dirtyRegions.isEmpty())
+                return;
+            regions = new ArrayList<>(dirtyRegions.values());
+            dirtyRegions.clear();
+        }
+
+        int w = chemicalPixmap.getWidth();
+        ByteBuffer pixels = chemicalPixmap.getPixels();
+        chemicalTexture.bind();
+        Gdx.gl.glPixelStorei(GL20.GL_UNPACK_ALIGNMENT, 1);
+
+        for (ChemicalSolution.DirtyRegion region : regions) {
+            chemicalSolution.copyRGBA8888(pixels, region);
+            // rows of the pixmap are contiguous, so upload the full width of the changed rows
+            pixels.position(4 * region.y0 * w);
+            Gdx.gl.glTexSubImage2D(GL20.GL_TEXTURE_2D, 0, 0, region.y0, w, region.y1 - region.y0,
+                    chemicalPixmap.getGLFormat(), chemicalPixmap.getGLType(), pixels);
+        }
+        pixels.position(0);
+    }
+
     @Override
     public void dispose() {
         chemicalSolution.setUpdateChemicalCallback(null);
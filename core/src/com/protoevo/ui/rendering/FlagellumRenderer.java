@@ -50,7 +50,7 @@ public class FlagellumRenderer extends NodeRenderer {
             float thrust = attachment.getThrustVector().len();
             if (thrust > 0) {
                 float p = Functions.clampedLinearRemap(thrust,
-                        0, Environment.settings.protozoa.maxFlagellumThrust.get(),
+                        0, Environment.settings().protozoa.maxFlagellumThrust.get(),
                         0.5f, 1f);
                 animationTime += animationSpeed * delta * p;
             }
@@ -83,7 +83,7 @@ public class FlagellumRenderer extends NodeRenderer {
         Vector2 pos = cell.getPos();
 
         Flagellum attachment = (Flagellum) node.getAttachment();
-        float maxThrust = Environment.settings.protozoa.maxFlagellumThrust.get();
+        float maxThrust = Environment.settings().protozoa.maxFlagellumThrust.get();
         Vector2 thrust = attachment.getThrustVector().cpy().setLength(cell.getRadius()*1.5f);
         float mag = Functions.clampedLinearRemap(thrust.len(), 0, maxThrust, 0, 1.5f);
         sr.setColor(0, 1, 0, 1);
@@ -173,7 +173,7 @@ public class ProtozoaRenderer {
             DamageEvent lastDamageEvent = maybeLastDamage.get();
 
             float lastDamageAmount = lastDamageEvent.getDamageAmount();
-            float delta = Environment.settings.simulationUpdateDelta.get();
+            float delta = Environment.settings().simulationUpdateDelta.get();
             float dps = lastDamageAmount / delta;
             float minDPSForRed = GraphicsAdapter.settings.minDPSAmountForRedness.get();
             if (dps < minDPSForRed)
@@ -62,7 +62,7 @@ public class PauseScreen extends ScreenAdapter {
         stage = new Stage();
         stage.setDebugAll(DebugMode.isDebugMode());
 
-        SimulationSettings settings = Environment.settings;
+        SimulationSettings settings = Environment.settings();
 
         final Table scrollTable = new Table();
 
@@ -29,7 +29,7 @@ public class VignetteLayer extends ShaderLayer {
         shaderProgram.setUniformf("resolution", new Vector2(graphicsWidth, graphicsHeight));
         shaderProgram.setUniformf("u_resolution", graphicsWidth, graphicsHeight);
         shaderProgram.setUniformi("u_tracking", particleTracker.isTracking() && !uiHidden ? 1 : 0);
-        shaderProgram.setUniformf("u_void_dist", Environment.settings.worldgen.voidStartDistance.get());
+        shaderProgram.setUniformf("u_void_dist", Environment.settings().worldgen.voidStartDistance.get());
         shaderProgram.setUniformMatrix("u_projTrans", camera.combined);
         shaderProgram.setUniformMatrix("u_projTransInv", camera.invProjectionView);
         shaderProgram.setUniformf("u_cam_pos", camera.position);
@@ -0,0 +1,242 @@
+package com.protoevo.utils;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Stores entities densely in an array, so that they can be iterated and split for parallel
+ * streams without allocating, and addresses them by generational slots.
+ * <p>
+ * Each entity is given a slot when it is added. The slot's generation is incremented when the entity
+ * is removed and the slot freed for reuse, so a (slot, generation) pair held across ticks never
+ * resolves to a different entity. Entities also keep the 64-bit ids they had before the registry,
+ * which are still used to refer to them and in saved simulations, and a {@link LongIntMap}
+ * maps those ids to slots without boxing.
+ * <p>
+ * Entities are only added and removed between the parallel phases of an update, so reads are not
+ * synchronised: any number of threads may look entities up or iterate over them at the same time,
+ * as long as no thread modifies the registry meanwhile.
+ */
+public class EntityRegistry<T> extends AbstractCollection<T> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private Object[] entities;
+    private long[] entityIds;
+    private int[] entitySlots;
+    private int size = 0;
+
+    private int[] slotIndices;  // index in the dense arrays of each slot's entity, or -1 if the slot is free
+    private int[] generations;
+    private int[] freeSlots;
+    private int nFreeSlots = 0, nSlots = 0;
+
+    private final LongIntMap idToSlot;
+
+    public EntityRegistry() {
+        this(64);
+    }
+
+    public EntityRegistry(int initialCapacity) {
+        initialCapacity = Math.max(1, initialCapacity);
+        entities = new Object[initialCapacity];
+        entityIds = new long[initialCapacity];
+        entitySlots = new int[initialCapacity];
+        slotIndices = new int[initialCapacity];
+        generations = new int[initialCapacity];
+        freeSlots = new int[initialCapacity];
+        idToSlot = new LongIntMap(initialCapacity);
+    }
+
+    /**
+     * Adds the entity with the given id, replacing any entity already registered under it.
+     * @return the slot of the entity
+     */
+    public int put(long id, T entity) {
+        int slot = idToSlot.get(id, -1);
+        if (slot != -1) {
+            entities[slotIndices[slot]] = entity;
+            return slot;
+        }
+
+        if (nFreeSlots > 0) {
+            slot = freeSlots[--nFreeSlots];
+        } else {
+            if (nSlots == slotIndices.length) {
+                slotIndices = Arrays.copyOf(slotIndices, 2 * nSlots);
+                generations = Arrays.copyOf(generations, 2 * nSlots);
+                freeSlots = Arrays.copyOf(freeSlots, 2 * nSlots);
+            }
+            slot = nSlots++;
+        }
+
+        if (size == entities.length) {
+            entities = Arrays.copyOf(entities, 2 * size);
+            entityIds = Arrays.copyOf(entityIds, 2 * size);
+            entitySlots = Arrays.copyOf(entitySlots, 2 * size);
+        }
+        entities[size] = entity;
+        entityIds[size] = id;
+        entitySlots[size] = slot;
+        slotIndices[slot] = size;
+        size++;
+        idToSlot.put(id, slot);
+        return slot;
+    }
+
+    /**
+     * @return the entity with the given id, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public T get(long id) {
+        int slot = idToSlot.get(id, -1);
+        return slot == -1 ? null : (T) entities[slotIndices[slot]];
+    }
+
+    /**
+     * @return the entity in the given slot, or null if it has since been removed
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int slot, int generation) {
+        if (slot < 0 || slot >= nSlots || generations[slot] != generation || slotIndices[slot] == -1)
+            return null;
+        return (T) entities[slotIndices[slot]];
+    }
+
+    public boolean containsId(long id) {
+        return idToSlot.containsKey(id);
+    }
+
+    /**
+     * @return the slot of the entity with the given id, or -1 if there is none
+     */
+    public int slotOf(long id) {
+        return idToSlot.get(id, -1);
+    }
+
+    public int generationOf(int slot) {
+        return generations[slot];
+    }
+
+    /**
+     * @return the entity at the given position in iteration order, from 0 to {@link #size()} - 1
+     */
+    @SuppressWarnings("unchecked")
+    public T getAt(int index) {
+        return (T) entities[index];
+    }
+
+    public T removeId(long id) {
+        int slot = idToSlot.get(id, -1);
+        if (slot == -1)
+            return null;
+        T entity = getAt(slotIndices[slot]);
+        removeAt(slotIndices[slot]);
+        return entity;
+    }
+
+    /**
+     * Removes the entity at the given index, moving the last entity into its place.
+     */
+    private void removeAt(int index) {
+        freeSlot(index);
+        int last = --size;
+        if (index != last) {
+            entities[index] = entities[last];
+            entityIds[index] = entityIds[last];
+            entitySlots[index] = entitySlots[last];
+            slotIndices[entitySlots[index]] = index;
+        }
+        entities[last] = null;
+    }
+
+    private void freeSlot(int index) {
+        int slot = entitySlots[index];
+        idToSlot.remove(entityIds[index], -1);
+        slotIndices[slot] = -1;
+        generations[slot]++;
+        freeSlots[nFreeSlots++] = slot;
+    }
+
+    /**
+     * Removes the matching entities, keeping the others in the same order.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean removeIf(Predicate<? super T> filter) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (filter.test((T) entities[i])) {
+                freeSlot(i);
+                continue;
+            }
+            if (kept != i) {
+                entities[kept] = entities[i];
+                entityIds[kept] = entityIds[i];
+                entitySlots[kept] = entitySlots[i];
+                slotIndices[entitySlots[kept]] = kept;
+            }
+            kept++;
+        }
+        boolean removed = kept != size;
+        Arrays.fill(entities, kept, size, null);
+        size = kept;
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        removeIf(entity -> true);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(Consumer<? super T> action) {
+        final Object[] entities = this.entities;
+        for (int i = 0, n = Math.min(size, entities.length); i < n; i++)
+            action.accept((T) entities[i]);
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private int next = 0, last = -1;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public T next() {
+                if (next >= size)
+                    throw new NoSuchElementException();
+                last = next;
+                return getAt(next++);
+            }
+
+            @Override
+            public void remove() {
+                if (last == -1)
+                    throw new IllegalStateException();
+                // the last entity is moved into the removed one's place, so is visited next
+                removeAt(last);
+                next = last;
+                last = -1;
+            }
+        };
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Spliterator<T> spliterator() {
+        return (Spliterator<T>) Spliterators.spliterator(
+                entities, 0, size, Spliterator.SIZED | Spliterator.NONNULL);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
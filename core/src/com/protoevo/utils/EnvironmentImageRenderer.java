@@ -22,10 +22,10 @@ public class EnvironmentImageRenderer {
     private final int width, height;
 
     float zoom = 1.2f;
-    float worldMinX = zoom * -Environment.settings.worldgen.radius.get();
-    float worldMinY = zoom * -Environment.settings.worldgen.radius.get();
-    float worldMaxX = zoom * Environment.settings.worldgen.radius.get();
-    float worldMaxY = zoom * Environment.settings.worldgen.radius.get();
+    float worldMinX = zoom * -Environment.settings().worldgen.radius.get();
+    float worldMinY = zoom * -Environment.settings().worldgen.radius.get();
+    float worldMaxX = zoom * Environment.settings().worldgen.radius.get();
+    float worldMaxY = zoom * Environment.settings().worldgen.radius.get();
 
     public EnvironmentImageRenderer(int w, int h, Environment environment) {
         this.environment = environment;
@@ -95,7 +95,7 @@ public class EnvironmentImageRenderer {
             g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
             g.setColor(color.darker());
             Stroke s = g.getStroke();
-            float strokeR = 0.02f * Environment.settings.worldgen.maxRockSize.get();
+            float strokeR = 0.02f * Environment.settings().worldgen.maxRockSize.get();
             g.setStroke(new BasicStroke(Math.max(1, Math.round(toImageDistance(strokeR)))));
 //            g.setStroke(new BasicStroke(1));
             for (int i = 0; i < rock.getEdges().length; i++) {
@@ -0,0 +1,158 @@
+package com.protoevo.utils;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from primitive longs to primitive ints, with linear probing,
+ * so that looking up an entity by its 64-bit id neither boxes the key nor allocates.
+ * <p>
+ * Not thread-safe: reads may run concurrently with each other, but not with writes.
+ */
+public class LongIntMap implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final float MAX_LOAD = 0.5f;
+
+    // the key 0 marks an empty bucket, so it is stored separately
+    private long[] keys;
+    private int[] values;
+    private int mask, size;
+    private boolean hasZeroKey;
+    private int zeroValue;
+
+    public LongIntMap() {
+        this(16);
+    }
+
+    public LongIntMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / MAX_LOAD)) - 1) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * @return the value mapped to the key, or missingValue if there is none
+     */
+    public int get(long key, int missingValue) {
+        if (key == 0)
+            return hasZeroKey ? zeroValue : missingValue;
+
+        final long[] keys = this.keys;
+        final int mask = this.mask;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key)
+                return values[i];
+            if (k == 0)
+                return missingValue;
+        }
+    }
+
+    public boolean containsKey(long key) {
+        if (key == 0)
+            return hasZeroKey;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key)
+                return true;
+            if (k == 0)
+                return false;
+        }
+    }
+
+    public void put(long key, int value) {
+        if (key == 0) {
+            if (!hasZeroKey)
+                size++;
+            hasZeroKey = true;
+            zeroValue = value;
+            return;
+        }
+
+        int i = hash(key) & mask;
+        for (; keys[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > MAX_LOAD * keys.length)
+            rehash(2 * keys.length);
+    }
+
+    /**
+     * @return the value that was mapped to the key, or missingValue if there was none
+     */
+    public int remove(long key, int missingValue) {
+        if (key == 0) {
+            if (!hasZeroKey)
+                return missingValue;
+            hasZeroKey = false;
+            size--;
+            return zeroValue;
+        }
+
+        int i = hash(key) & mask;
+        for (; keys[i] != key; i = (i + 1) & mask)
+            if (keys[i] == 0)
+                return missingValue;
+
+        int removed = values[i];
+        size--;
+
+        // shift back the following entries of the probe sequence, so that no tombstones are needed
+        int gap = i;
+        for (int j = (gap + 1) & mask; keys[j] != 0; j = (j + 1) & mask) {
+            int home = hash(keys[j]) & mask;
+            boolean reachable = gap <= j ? (home <= gap || home > j) : (home <= gap && home > j);
+            if (reachable) {
+                keys[gap] = keys[j];
+                values[gap] = values[j];
+                gap = j;
+            }
+        }
+        keys[gap] = 0;
+        return removed;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key == 0)
+                continue;
+            int j = hash(key) & mask;
+            while (keys[j] != 0)
+                j = (j + 1) & mask;
+            keys[j] = key;
+            values[j] = oldValues[i];
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+        hasZeroKey = false;
+        size = 0;
+    }
+}
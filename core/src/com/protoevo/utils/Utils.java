@@ -1,21 +1,22 @@
 package com.protoevo.utils;
 
+import com.protoevo.maths.RandomStreams;
+
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.UUID;
 
 public class Utils {
 
     public static long randomLong() {
-        return UUID.randomUUID().getMostSignificantBits();
+        return RandomStreams.randomLong();
     }
 
     public static Map<String, String> parseArgs(String[] args) {
         Map<String, String> argsMap = new HashMap<>();
         for (String arg : args) {
-            if (arg.startsWith("--"))
+            if (arg.startsWith("--") && !arg.contains("="))
                 argsMap.put(arg.replace("--", ""), "true");
             else if (arg.startsWith("-")) {
                 String[] split = arg.split("=");